@@ -0,0 +1,141 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import bluej.parser.InitConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A benchmark of the time taken to get diagnostics from an error-check compile (as done
+ * after each pause in editing), using CompilerAPICompiler.  This is not run as part of
+ * the tests; run it with the benchmark task in build.gradle.
+ *
+ * <p>It generates a project of 30 classes which refer to each other, with all the jars on the
+ * benchmark's class path on the project's class path (as if they were in +libs), and then
+ * repeatedly introduces an error into a class and then fixes it, error-check compiling after
+ * each edit.
+ */
+public class CompilerBenchmark
+{
+    private static final int CLASSES = 30;
+    private static final int COMPILES = 40;
+
+    public static void main(String[] args) throws Exception
+    {
+        InitConfig.init();
+        File projectDir = Files.createTempDirectory("bluejbench").toFile();
+        for (int i = 0; i < CLASSES; i++)
+        {
+            writeClass(projectDir, i, false);
+        }
+
+        List<File> classPath = new ArrayList<>();
+        classPath.add(projectDir);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            if (entry.endsWith(".jar"))
+            {
+                classPath.add(new File(entry));
+            }
+        }
+
+        // Compile everything once, keeping the classes, as when a project is opened:
+        CompilerAPICompiler compiler = new CompilerAPICompiler();
+        compiler.setDestDir(projectDir);
+        compiler.setClasspath(classPath);
+        File[] all = new File[CLASSES];
+        for (int i = 0; i < CLASSES; i++)
+        {
+            all[i] = new File(projectDir, "Class" + i + ".java");
+        }
+        DiagnosticCounter counter = new DiagnosticCounter();
+        compiler.compile(all, counter, false, Collections.emptyList(), StandardCharsets.UTF_8, CompileType.EXPLICIT_USER_COMPILE);
+
+        long[] times = new long[COMPILES];
+        for (int i = 0; i < COMPILES; i++)
+        {
+            // Introduce an error into a class, then fix it again:
+            int edited = (i / 2) % CLASSES;
+            boolean withError = i % 2 == 0;
+            writeClass(projectDir, edited, withError);
+            counter.errors = 0;
+            long start = System.nanoTime();
+            compiler.compile(new File[] {all[edited]}, counter, false, Collections.emptyList(),
+                    StandardCharsets.UTF_8, CompileType.ERROR_CHECK_ONLY);
+            times[i] = System.nanoTime() - start;
+            if (withError != (counter.errors > 0))
+            {
+                throw new IllegalStateException("Unexpected diagnostics for compile " + i);
+            }
+        }
+
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("class path entries: %d   first error check: %.1f ms   median: %.1f ms   max: %.1f ms%n",
+                classPath.size(), times[0] / 1e6, sorted[COMPILES / 2] / 1e6, sorted[COMPILES - 1] / 1e6);
+    }
+
+    private static void writeClass(File projectDir, int i, boolean withError) throws IOException
+    {
+        int next = (i + 1) % CLASSES;
+        String source = "import java.util.*;\n"
+                + "public class Class" + i + "\n{\n"
+                + "    private List<Class" + next + "> items = new ArrayList<>();\n"
+                + "    public int count(Class" + next + " other)\n    {\n"
+                + "        items.add(other);\n"
+                + "        return items.size()" + (withError ? " + missing" : "") + ";\n"
+                + "    }\n}\n";
+        Files.writeString(new File(projectDir, "Class" + i + ".java").toPath(), source);
+    }
+
+    private static class DiagnosticCounter implements CompileObserver
+    {
+        private int errors;
+
+        @Override
+        public void startCompile(CompileInputFile[] sources, CompileReason reason, CompileType type, int compilationSequence)
+        {
+        }
+
+        @Override
+        public void compilerMessage(Diagnostic diagnostic, CompileType type)
+        {
+            if (diagnostic.getType() == Diagnostic.ERROR)
+            {
+                errors++;
+            }
+        }
+
+        @Override
+        public void endCompile(CompileInputFile[] sources, boolean succesful, CompileType type, int compilationSequence)
+        {
+        }
+    }
+}
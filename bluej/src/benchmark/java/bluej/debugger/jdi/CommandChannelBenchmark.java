@@ -0,0 +1,131 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import bluej.runtime.ExecCommand;
+import bluej.runtime.ExecServer;
+
+/**
+ * A benchmark of the command channel to the debug VM.  This is not run as part of the tests;
+ * run it with the benchmark task in build.gradle.  A thread stands in for the ExecServer's
+ * command thread, connecting as the debug VM does and loading classes for LOAD_CLASS commands,
+ * while the main thread sends LOAD_CLASS and SET_SERVER_ACTION commands through a
+ * VMCommandChannel one at a time, as VMReference does.  It reports the number of actions per
+ * second.
+ *
+ * <p>Each action through the debugger instead takes several JDWP round trips (one per field
+ * set or read, one per string mirrored, plus resuming the worker thread and waiting for its
+ * breakpoint), which is what the channel replaces.
+ */
+public class CommandChannelBenchmark
+{
+    private static final int ACTIONS = 50_000;
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            run();
+        }
+    }
+
+    private static void run() throws Exception
+    {
+        VMCommandChannel channel = new VMCommandChannel();
+        String argument = channel.getLaunchArgument();
+        // The key file is deleted once the connection is accepted, so read it first:
+        String keyFile = argument.substring(argument.indexOf('=') + 1);
+        String [] portAndKey = Files.readString(Paths.get(keyFile), StandardCharsets.UTF_8).trim().split(":");
+        Thread server = new Thread(() -> serve(Integer.parseInt(portAndKey[0]), portAndKey[1]));
+        server.setDaemon(true);
+        server.start();
+        if (!channel.accept(10_000))
+        {
+            throw new IOException("Command channel did not connect");
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ACTIONS; i++)
+        {
+            channel.send(ExecServer.LOAD_CLASS, i % 2 == 0 ? "java.lang.String" : "java.util.ArrayList");
+        }
+        long loaded = System.nanoTime();
+        for (int i = 0; i < ACTIONS; i++)
+        {
+            channel.send(ExecCommand.SET_SERVER_ACTION, Integer.toString(ExecServer.INVOKE_METHOD),
+                    "Counter", "increment", "int", "java.lang.String");
+        }
+        long set = System.nanoTime();
+        channel.close();
+        server.join();
+
+        System.out.printf("LOAD_CLASS: %.0f actions/sec   SET_SERVER_ACTION: %.0f actions/sec%n",
+                ACTIONS / ((loaded - start) / 1e9), ACTIONS / ((set - loaded) / 1e9));
+    }
+
+    /**
+     * Serve commands as the ExecServer's command thread does, until the channel is closed.
+     */
+    private static void serve(int port, String key)
+    {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(key);
+            out.flush();
+            while (true)
+            {
+                ExecCommand command = ExecCommand.read(in);
+                int reply = ExecCommand.REPLY_OK;
+                if (command.getCode() == ExecServer.LOAD_CLASS)
+                {
+                    try
+                    {
+                        Class.forName(command.getStrings()[0], false, CommandChannelBenchmark.class.getClassLoader()).getFields();
+                    }
+                    catch (ClassNotFoundException e)
+                    {
+                        reply = ExecCommand.REPLY_FAILED;
+                    }
+                }
+                new ExecCommand(reply).write(out);
+            }
+        }
+        catch (IOException e)
+        {
+            // Channel closed; the benchmark run is over.
+        }
+    }
+}
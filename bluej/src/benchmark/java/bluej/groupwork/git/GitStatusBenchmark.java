@@ -0,0 +1,214 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.groupwork.git;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+
+import bluej.groupwork.StatusHandle;
+import bluej.groupwork.StatusListener;
+import bluej.groupwork.TeamStatusInfo;
+import bluej.groupwork.TeamStatusInfo.Status;
+import bluej.groupwork.git.GitStatusCache.LocalStatus;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+
+/**
+ * Times Git status checks on a synthetic repository of 10,000 files, of which a large
+ * number are untracked (as generated assets would be) or modified. Compares:
+ * <ul>
+ * <li>building the status list with a linear search for each file (as GitStatusCommand
+ *     used to) against GitStatusCommand itself;
+ * <li>a full JGit status check against an incremental check with GitStatusCache, with
+ *     nothing changed and with a few files changed.
+ * </ul>
+ *
+ * <p>This is not run as part of the tests; run it with the benchmark task in build.gradle,
+ * giving the number of files with --args if not 10,000.
+ */
+public class GitStatusBenchmark
+{
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        int numFiles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        File dir = Files.createTempDirectory("gitbench").toFile();
+        try (Git git = createRepository(dir, numFiles)) {
+            FileFilter filter = f -> ! f.getName().equals(".git");
+            LocalStatus status = new LocalStatus(git.status().call());
+            System.out.println(numFiles + " files: " + status.uncommitted.size() + " uncommitted, "
+                    + status.untracked.size() + " untracked");
+
+            time("Status list, linear search", () -> listStatus(dir, status, filter));
+            GitRepository repository = new GitRepository(dir, "file", null, null, null, null, "bench", "bench@example.com");
+            time("GitStatusCommand", () -> {
+                int[] count = new int[1];
+                new GitStatusCommand(repository, new StatusListener() {
+                    public void gotStatus(TeamStatusInfo info)
+                    {
+                        count[0]++;
+                    }
+
+                    public void statusComplete(StatusHandle statusHandle)
+                    {
+                    }
+                }, filter, false).getResult();
+            });
+
+            time("Full JGit status", () -> git.status().call());
+            GitStatusCache cache = new GitStatusCache();
+            cache.getStatus(git);
+            Thread.sleep(3100); // So that no files count as recently modified
+            cache.getStatus(git);
+            time("Incremental status, unchanged", () -> cache.getStatus(git));
+            int[] edit = new int[1];
+            time("Incremental status, 5 files changed", () -> {
+                for (int i = 0; i < 5; i++) {
+                    write(new File(dir, "src" + (i % 10) + "/Tracked" + i + ".java"),
+                            "class Tracked" + i + " { int v" + edit[0]++ + "; }");
+                }
+                cache.getStatus(git);
+            });
+            System.out.println("Full checks: " + cache.getFullCheckCount() + ", partial checks: "
+                    + cache.getPartialCheckCount());
+        }
+        finally {
+            deleteAll(dir);
+        }
+    }
+
+    /**
+     * Create a repository with 40% of the files committed, of which a tenth are then
+     * modified, and the rest untracked.
+     */
+    private static Git createRepository(File dir, int numFiles) throws Exception
+    {
+        Git git = Git.init().setDirectory(dir).call();
+        int tracked = numFiles * 4 / 10;
+        for (int i = 0; i < tracked; i++) {
+            write(new File(dir, "src" + (i % 10) + "/Tracked" + i + ".java"), "class Tracked" + i + " { }");
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial").setAuthor("bench", "bench@example.com")
+                .setCommitter("bench", "bench@example.com").call();
+
+        // Make the remote branch the same as the local one, so there are no remote changes:
+        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+        RefUpdate update = git.getRepository().updateRef(Constants.R_REMOTES + "origin/"
+                + git.getRepository().getBranch());
+        update.setNewObjectId(head);
+        update.update();
+
+        for (int i = 0; i < tracked; i += 10) {
+            write(new File(dir, "src" + (i % 10) + "/Tracked" + i + ".java"), "class Tracked" + i + " { int x; }");
+        }
+        for (int i = tracked; i < numFiles; i++) {
+            write(new File(dir, "assets" + (i % 20) + "/generated" + i + ".dat"), "data " + i);
+        }
+        return git;
+    }
+
+    /**
+     * Build the list of status entries as GitStatusCommand did before it kept them in a
+     * map: searching the list for each file.
+     */
+    private static LinkedList<TeamStatusInfo> listStatus(File gitPath, LocalStatus s, FileFilter filter)
+    {
+        LinkedList<TeamStatusInfo> returnInfo = new LinkedList<>();
+        s.uncommitted.stream()
+                .filter(p -> filter.accept(new File(gitPath, p)))
+                .forEach(item -> {
+                    TeamStatusInfo teamInfo = new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_COMMIT);
+                    if (getTeamStatusInfo(returnInfo, teamInfo.getFile()) == null) {
+                        returnInfo.add(teamInfo);
+                    }
+                });
+        s.untracked.stream()
+                .filter(p -> filter.accept(new File(gitPath, p)))
+                .forEach(item -> returnInfo.add(new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_ADD)));
+        addUpToDateFiles(returnInfo, gitPath, filter);
+        return returnInfo;
+    }
+
+    private static void addUpToDateFiles(LinkedList<TeamStatusInfo> returnInfo, File path, FileFilter filter)
+    {
+        for (File item : path.listFiles()) {
+            if (filter.accept(item)) {
+                if (item.isDirectory()) {
+                    addUpToDateFiles(returnInfo, item, filter);
+                }
+                else if (getTeamStatusInfo(returnInfo, item) == null) {
+                    returnInfo.add(new TeamStatusInfo(item, "", null, Status.UP_TO_DATE, Status.UP_TO_DATE));
+                }
+            }
+        }
+    }
+
+    private static TeamStatusInfo getTeamStatusInfo(LinkedList<TeamStatusInfo> returnInfo, File file)
+    {
+        return returnInfo.stream().filter(entry -> entry.getFile().getPath().contains(file.getPath()))
+                .findFirst().orElse(null);
+    }
+
+    private interface Task
+    {
+        void run() throws Exception;
+    }
+
+    private static void time(String name, Task task) throws Exception
+    {
+        task.run(); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            task.run();
+        }
+        long elapsed = (System.nanoTime() - start) / RUNS;
+        System.out.printf("%-40s %8.1f ms%n", name, elapsed / 1e6);
+    }
+
+    private static void write(File f, String contents) throws IOException
+    {
+        f.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void deleteAll(File f)
+    {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.parser;
+
+import bluej.parser.entity.ClassLoaderResolver;
+import bluej.parser.entity.PackageResolver;
+import javafx.application.Platform;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A benchmark of the incremental parser on a large (10,000 line) class.  This is not run as
+ * part of the tests; run it with the benchmark task in build.gradle.  It reports the time taken
+ * to parse the whole class, and then to reparse after a series of small edits spread through
+ * the class.
+ */
+public class ReparseBenchmark
+{
+    private static final int METHODS = 1000;
+    private static final int EDITS = 200;
+
+    public static void main(String[] args) throws Exception
+    {
+        InitConfig.init();
+        Platform.startup(() -> {});
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try
+            {
+                for (int i = 0; i < 3; i++)
+                {
+                    run();
+                }
+            }
+            catch (Throwable t)
+            {
+                t.printStackTrace();
+            }
+            done.countDown();
+        });
+        done.await();
+        // Timers started by the editor code would otherwise keep us running:
+        System.exit(0);
+    }
+
+    private static void run()
+    {
+        StringBuilder source = new StringBuilder("public class Large\n{\n");
+        for (int i = 0; i < METHODS; i++)
+        {
+            // Ten lines per method:
+            source.append("    /**\n     * Method ").append(i).append("\n     */\n");
+            source.append("    public int method").append(i).append("(int x)\n    {\n");
+            source.append("        int y = x * ").append(i).append(";\n");
+            source.append("        // Return the result:\n        return y + 1;\n    }\n\n");
+        }
+        source.append("}\n");
+
+        TestEntityResolver resolver = new TestEntityResolver(new ClassLoaderResolver(ReparseBenchmark.class.getClassLoader()));
+        TestableDocument document = new TestableDocument(new PackageResolver(resolver, ""));
+        document.enableParser(true);
+
+        long start = System.nanoTime();
+        document.insertString(0, source.toString());
+        document.flushReparseQueue();
+        long parsed = System.nanoTime();
+
+        // Insert a statement into methods spread through the class, reparsing after each.
+        // Each edit adds a line before the following edits:
+        int stride = METHODS / EDITS;
+        for (int i = 0; i < EDITS; i++)
+        {
+            int line = 2 + (i * stride) * 10 + 6 + i;
+            int pos = document.getDefaultRootElement().getElement(line).getStartOffset();
+            document.insertString(pos, "        y += 2;\n");
+            document.flushReparseQueue();
+        }
+        long reparsed = System.nanoTime();
+
+        System.out.printf("lines: %d   full parse: %.1f ms   reparse after edit: %.2f ms%n",
+                document.getDefaultRootElement().getElementCount(),
+                (parsed - start) / 1e6, (reparsed - parsed) / 1e6 / EDITS);
+    }
+}
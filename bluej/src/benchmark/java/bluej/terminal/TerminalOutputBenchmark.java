@@ -0,0 +1,118 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bluej.editor.base.TextLine.StyledSegment;
+import bluej.parser.InitConfig;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * A benchmark of terminal output throughput.  This is not run as part of the tests; run it
+ * with the benchmark task in build.gradle.  A thread writes 100,000 lines (one println-sized
+ * write per line, as System.out does) through a TerminalOutputBuffer, while an AnimationTimer
+ * on the FX thread drains it into a TerminalTextPane once per pulse and trims the pane to 200
+ * lines, as the terminal does by default.  It reports the number of lines per second shown.
+ */
+public class TerminalOutputBenchmark
+{
+    private static final int LINES = 100_000;
+    private static final int MAX_LINES = 200;
+    private static final List<String> STYLE = Collections.singletonList("terminal-output");
+
+    public static void main(String[] args) throws Exception
+    {
+        InitConfig.init();
+        Platform.startup(() -> {});
+        for (int i = 0; i < 3; i++)
+        {
+            run();
+        }
+        System.exit(0);
+    }
+
+    private static void run() throws InterruptedException
+    {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger pulses = new AtomicInteger();
+        TerminalTextPane[] pane = new TerminalTextPane[1];
+        AnimationTimer[] timer = new AnimationTimer[1];
+        TerminalOutputBuffer buffer = new TerminalOutputBuffer(256 * 1024, () -> Platform.runLater(() -> timer[0].start()));
+
+        CountDownLatch ready = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            pane[0] = new TerminalTextPane(null)
+            {
+                @Override
+                public void focusPrevious() { }
+
+                @Override
+                public void focusNext() { }
+            };
+            timer[0] = new AnimationTimer()
+            {
+                private int linesShown = 0;
+
+                @Override
+                public void handle(long now)
+                {
+                    String s = buffer.drain();
+                    if (s == null)
+                    {
+                        stop();
+                        return;
+                    }
+                    pulses.incrementAndGet();
+                    pane[0].append(new StyledSegment(STYLE, s));
+                    pane[0].trimToMostRecentNLines(MAX_LINES);
+                    linesShown += (int) s.chars().filter(c -> c == '\n').count();
+                    if (linesShown == LINES)
+                    {
+                        stop();
+                        done.countDown();
+                    }
+                }
+            };
+            ready.countDown();
+        });
+        ready.await();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LINES; i++)
+        {
+            char[] line = ("Line number " + i + " of the output\n").toCharArray();
+            buffer.write(line, 0, line.length);
+        }
+        long written = System.nanoTime();
+        done.await();
+        long shown = System.nanoTime();
+
+        System.out.printf("lines: %d   written in %.0f ms   shown in %.0f ms (%.0f lines/sec, %d pulses)%n",
+                LINES, (written - start) / 1e6, (shown - start) / 1e6,
+                LINES / ((shown - start) / 1e9), pulses.get());
+    }
+}
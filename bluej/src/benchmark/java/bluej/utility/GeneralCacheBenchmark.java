@@ -0,0 +1,165 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.utility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * A benchmark of GeneralCache against the LinkedList-based implementation it replaced.
+ * This is not run as part of the tests; run it with the benchmark task in build.gradle.
+ * Each run looks up keys drawn with a skewed distribution (a few keys are much more
+ * popular, as with the classes of a completion list), putting values for keys which
+ * are not found, and reports the lookups per second for several cache sizes.  It also
+ * reports the rate for GeneralCache with several threads looking up at once.
+ */
+public class GeneralCacheBenchmark
+{
+    private static final int LOOKUPS = 2_000_000;
+    private static final int KEYS = 2_000;
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws Exception
+    {
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++)
+        {
+            keys[i] = "pkg.Class" + i;
+        }
+        int[] sequence = makeSequence(LOOKUPS);
+
+        for (int round = 0; round < 3; round++)
+        {
+            for (int size : new int[] {20, 100, 1000})
+            {
+                GeneralCache<String, String> cache = new GeneralCache<>(size);
+                double current = run(sequence, keys, cache::get, cache::put);
+                LinkedListCache<String, String> old = new LinkedListCache<>(size);
+                double previous = run(sequence, keys, old::get, old::put);
+                double concurrent = runConcurrent(sequence, keys, size);
+                System.out.printf("size %4d: linked list %,12.0f/s   GeneralCache %,12.0f/s   %d threads %,12.0f/s%n",
+                        size, previous, current, THREADS, concurrent);
+            }
+        }
+    }
+
+    /**
+     * Make a sequence of key indexes, skewed so that low indexes are much more common.
+     */
+    private static int[] makeSequence(int length)
+    {
+        Random random = new Random(42);
+        int[] sequence = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            double r = random.nextDouble();
+            sequence[i] = (int)(KEYS * r * r * r);
+        }
+        return sequence;
+    }
+
+    private interface Putter
+    {
+        void put(String key, String value);
+    }
+
+    /**
+     * Run the lookups, and return the number per second.
+     */
+    private static double run(int[] sequence, String[] keys, Function<String, String> get, Putter put)
+    {
+        long start = System.nanoTime();
+        for (int index : sequence)
+        {
+            String key = keys[index];
+            if (get.apply(key) == null)
+            {
+                put.put(key, key);
+            }
+        }
+        return sequence.length / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double runConcurrent(int[] sequence, String[] keys, int size) throws InterruptedException
+    {
+        GeneralCache<String, String> cache = new GeneralCache<>(size);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++)
+        {
+            threads.add(new Thread(() -> run(sequence, keys, cache::get, cache::put)));
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        return (double)THREADS * sequence.length / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * The previous implementation of GeneralCache, for comparison.
+     */
+    private static class LinkedListCache<K,V>
+    {
+        private Map<K,V> cacheMap = new HashMap<K,V>();
+        private List<K> cachedKeys = new LinkedList<K>();
+        private int cacheSize;
+
+        LinkedListCache(int cacheSize)
+        {
+            this.cacheSize = cacheSize;
+        }
+
+        V get(K key)
+        {
+            V rval = cacheMap.get(key);
+            if (rval != null) {
+                for (Iterator<K> i = cachedKeys.iterator(); ; ) {
+                    K k = i.next();
+                    if (k.equals(key)) {
+                        i.remove();
+                        cachedKeys.add(key);
+                        break;
+                    }
+                }
+            }
+            return rval;
+        }
+
+        void put(K key, V value)
+        {
+            if (cachedKeys.size() >= cacheSize) {
+                K toRemove = cachedKeys.remove(0);
+                cacheMap.remove(toRemove);
+            }
+            cacheMap.put(key, value);
+            cachedKeys.add(key);
+        }
+    }
+}
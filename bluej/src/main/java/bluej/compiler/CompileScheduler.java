@@ -0,0 +1,296 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import bluej.compiler.JobQueue.JobTiming;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * The queue of pending compile jobs, shared by the compiler threads.
+ *
+ * <p>Jobs are not simply run in the order they were added:
+ * <ul>
+ * <li>Jobs for an interactive reason (the user editing or invoking) are run before bulk
+ * compilation (rebuilds, compiling a project as it is loaded, etc).  Within a project,
+ * though, jobs which keep their classes are run in the order they were added, since the
+ * classes compiled by one job may depend on those of an earlier one.  Only an error check
+ * (whose classes are discarded) can go ahead of an earlier job for the same project, and
+ * only if it compiles none of the same files, so compilation of any particular file still
+ * happens in the order it was requested.
+ * <li>Only one job runs at a time for each project (identified by its destination directory),
+ * but jobs for different projects may run at the same time on different compiler threads.
+ * <li>An error-check job which is identical to one that is still waiting to run is merged
+ * into the waiting job.  The waiting job will read the sources when it runs, so it will
+ * report on the latest version; both observers are notified of its results.
+ * </ul>
+ *
+ * <p>The time each job waited in the queue and took to compile is recorded.
+ */
+class CompileScheduler
+{
+    /** The number of recent job timings which are kept. */
+    private static final int TIMING_HISTORY = 100;
+
+    private final List<PendingJob> pending = new ArrayList<>();
+    private final Set<File> busyProjects = new HashSet<>();
+    private final ArrayDeque<JobTiming> timings = new ArrayDeque<>();
+    private int running = 0;
+
+    /**
+     * Add a job to the queue, or merge it into an identical error-check job which is already
+     * waiting.  This method returns immediately.
+     */
+    @OnThread(Tag.Any)
+    public synchronized void addJob(Job job)
+    {
+        PendingJob toAdd = new PendingJob(job);
+        if (job.type() == CompileType.ERROR_CHECK_ONLY) {
+            for (PendingJob p : pending) {
+                if (p.canMerge(toAdd)) {
+                    p.merge(toAdd);
+                    return;
+                }
+            }
+        }
+        pending.add(toAdd);
+        notifyAll();
+    }
+
+    /**
+     * Remove the next job to run from the queue, waiting until there is one which can be run.
+     * The caller must call jobFinished once the job has been compiled.
+     */
+    @OnThread(Tag.Any)
+    public synchronized PendingJob takeJob() throws InterruptedException
+    {
+        while (true) {
+            PendingJob next = findNextJob();
+            if (next != null) {
+                pending.remove(next);
+                busyProjects.add(next.project);
+                running++;
+                next.startTime = System.nanoTime();
+                return next;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Find the job that should be run next, or null if none of the waiting jobs can run yet.
+     */
+    private PendingJob findNextJob()
+    {
+        PendingJob best = null;
+        for (int i = 0; i < pending.size(); i++) {
+            PendingJob candidate = pending.get(i);
+            if (busyProjects.contains(candidate.project)
+                    || (best != null && best.priority <= candidate.priority)) {
+                continue;
+            }
+            boolean blocked = false;
+            for (int j = 0; j < i && !blocked; j++) {
+                PendingJob earlier = pending.get(j);
+                blocked = earlier.project.equals(candidate.project)
+                        && (candidate.job.type().keepClasses()
+                            || !Collections.disjoint(earlier.files, candidate.files));
+            }
+            if (!blocked) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mark a job returned by takeJob as complete.
+     */
+    @OnThread(Tag.Any)
+    public synchronized void jobFinished(PendingJob job)
+    {
+        long endTime = System.nanoTime();
+        busyProjects.remove(job.project);
+        running--;
+
+        if (timings.size() == TIMING_HISTORY) {
+            timings.removeFirst();
+        }
+        Job j = job.job;
+        timings.addLast(new JobTiming(j.reason(), j.type(), j.sources().length, job.mergedCount,
+                (job.startTime - job.queueTime) / 1000000, (endTime - job.startTime) / 1000000));
+        notifyAll();
+    }
+
+    /**
+     * Get the number of jobs waiting to be run (not including those currently running).
+     */
+    @OnThread(Tag.Any)
+    public synchronized int getQueueDepth()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Get the timings of the most recently completed jobs, oldest first.
+     */
+    @OnThread(Tag.Any)
+    public synchronized List<JobTiming> getRecentTimings()
+    {
+        return new ArrayList<>(timings);
+    }
+
+    /**
+     * Wait until there are no jobs waiting or running.
+     */
+    @OnThread(Tag.Any)
+    public synchronized void waitForEmpty()
+    {
+        while (!pending.isEmpty() || running != 0) {
+            try {
+                wait();
+            }
+            catch (InterruptedException ex) {}
+        }
+    }
+
+    /**
+     * Get the scheduling priority of a job; lower numbers are run first.
+     */
+    private static int getPriority(CompileReason reason)
+    {
+        switch (reason) {
+            case INVOKE:
+            case MODIFIED:
+            case USER:
+            case EARLY:
+            case LATE:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * A job in the queue, with the information needed to schedule it.
+     */
+    static class PendingJob
+    {
+        private Job job;
+        private int priority;
+        private int mergedCount = 0;
+        private final File project;
+        private final Set<File> files = new HashSet<>();
+        private final long queueTime = System.nanoTime();
+        private long startTime;
+
+        private PendingJob(Job job)
+        {
+            this.job = job;
+            this.priority = getPriority(job.reason());
+            this.project = job.destDir() == null ? new File("") : job.destDir();
+            for (CompileInputFile source : job.sources()) {
+                files.add(source.getJavaCompileInputFile());
+            }
+        }
+
+        public Job getJob()
+        {
+            return job;
+        }
+
+        private boolean canMerge(PendingJob other)
+        {
+            Job o = other.job;
+            return job.type() == o.type() && project.equals(other.project) && files.equals(other.files)
+                    && job.internal() == o.internal() && job.bpClassLoader() == o.bpClassLoader()
+                    && Objects.equals(job.fileCharset(), o.fileCharset())
+                    && Objects.equals(job.userCompileOptions(), o.userCompileOptions());
+        }
+
+        private void merge(PendingJob other)
+        {
+            job = new Job(job.sources(), new MergedObserver(job.observer(), other.job.observer()), job.bpClassLoader(),
+                    job.destDir(), job.internal(), job.userCompileOptions(), job.fileCharset(), job.type(),
+                    job.reason());
+            priority = Math.min(priority, other.priority);
+            mergedCount += 1 + other.mergedCount;
+        }
+    }
+
+    /**
+     * An observer which passes on all events to the observers of jobs which have been merged.
+     */
+    private static class MergedObserver implements CompileObserver
+    {
+        private final List<CompileObserver> observers = new ArrayList<>();
+
+        private MergedObserver(CompileObserver first, CompileObserver second)
+        {
+            add(first);
+            add(second);
+        }
+
+        private void add(CompileObserver observer)
+        {
+            if (observer instanceof MergedObserver merged) {
+                observers.addAll(merged.observers);
+            }
+            else if (observer != null) {
+                observers.add(observer);
+            }
+        }
+
+        @Override
+        public void startCompile(CompileInputFile[] sources, CompileReason reason, CompileType type, int compilationSequence)
+        {
+            for (CompileObserver observer : observers) {
+                observer.startCompile(sources, reason, type, compilationSequence);
+            }
+        }
+
+        @Override
+        public void compilerMessage(Diagnostic diagnostic, CompileType type)
+        {
+            for (CompileObserver observer : observers) {
+                observer.compilerMessage(diagnostic, type);
+            }
+        }
+
+        @Override
+        public void endCompile(CompileInputFile[] sources, boolean succesful, CompileType type, int compilationSequence)
+        {
+            for (CompileObserver observer : observers) {
+                observer.endCompile(sources, succesful, type, compilationSequence);
+            }
+        }
+    }
+}
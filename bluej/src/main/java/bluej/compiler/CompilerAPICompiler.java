@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2018  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2018,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -23,19 +23,27 @@ package bluej.compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
@@ -46,12 +54,33 @@ import bluej.compiler.Diagnostic.DiagnosticOrigin;
 /**
  * A compiler implementation using the Compiler API introduced in Java 6.
  * 
+ * <p>The compiler and its file manager are kept from one compilation to the next. The file
+ * manager caches the contents of the archives (jar files, and the platform classes) on the
+ * class path, so keeping it saves re-reading them for each compilation. It is replaced if the
+ * file encoding or file manager options change, or if an archive on the class path is modified.
+ * 
  * @author Marion Zalk
  */
 public class CompilerAPICompiler extends Compiler
 {
     private static final AtomicInteger nextDiagnosticIdentifier = new AtomicInteger(1);
 
+    // All of the following are only used from the compiler thread which owns this compiler:
+    private JavaCompiler javaCompiler;
+    private OutputDiscardingFileManager fileManager;
+    // The settings that the file manager was created with:
+    private Charset fileManagerCharset;
+    private List<String> fileManagerOptions;
+    // The modification times of the archives on the class path, when the file manager first saw them:
+    private final Map<File, Long> fileManagerArchives = new HashMap<>();
+    // The locations last set in the file manager (to avoid setting them again if unchanged,
+    // which would mean re-reading the archive manifests):
+    private List<File> fileManagerSourcePath;
+    private List<File> fileManagerClassPath;
+    private List<File> fileManagerPlatformPath;
+    // The listener for the current compilation, which also receives any diagnostics from the file manager:
+    private DiagnosticListener<JavaFileObject> currentDiagListener;
+
     public CompilerAPICompiler()
     {
         setDebug(true);
@@ -77,7 +106,10 @@ public class CompilerAPICompiler extends Compiler
             final boolean internal, List<String> userOptions, Charset fileCharset, CompileType type)
     {
         boolean result = true;
-        JavaCompiler jc = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler == null) {
+            javaCompiler = ToolProvider.getSystemJavaCompiler();
+        }
+        JavaCompiler jc = javaCompiler;
         List<String> optionsList = new ArrayList<String>();
         
         if (jc == null) {
@@ -182,35 +214,40 @@ public class CompilerAPICompiler extends Compiler
         };
         
         try
-        {  
+        {
             //setup the filemanager
-            StandardJavaFileManager sjfm = jc.getStandardFileManager(diagListener, null, fileCharset);
-            List<File> pathList = new ArrayList<File>();
-            List<File> outputList = new ArrayList<File>();
-            outputList.add(getDestDir());
-            pathList.addAll(getClassPath());
+            OutputDiscardingFileManager fm = getFileManager(jc, fileCharset, userOptions);
+            currentDiagListener = diagListener;
+            List<File> outputList = Collections.singletonList(getDestDir());
             
             // In BlueJ, the destination directory and the source path are
             // always the same
-            sjfm.setLocation(StandardLocation.SOURCE_PATH, outputList);
-            sjfm.setLocation(StandardLocation.CLASS_PATH, pathList);
-            File tempDir = null;
-            if (type.keepClasses())
-            {
-                sjfm.setLocation(StandardLocation.CLASS_OUTPUT, outputList);
+            if (! outputList.equals(fileManagerSourcePath)) {
+                fm.getStandardFileManager().setLocation(StandardLocation.SOURCE_PATH, outputList);
+                fm.getStandardFileManager().setLocation(StandardLocation.CLASS_OUTPUT, outputList);
+                fileManagerSourcePath = outputList;
             }
-            else
-            {
-                // We could make a new file manager that memory-mapped the output files
-                // and discarded them... but creating a temporary dir is much more
-                // straightforward:
-                tempDir = Files.createTempDirectory("bluej").toFile();
-                sjfm.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(tempDir));
+            List<File> pathList = new ArrayList<File>(getClassPath());
+            if (! pathList.equals(fileManagerClassPath)) {
+                fm.getStandardFileManager().setLocation(StandardLocation.CLASS_PATH, pathList);
+                fileManagerClassPath = pathList;
             }
             
+            File[] bootClassPath = getBootClassPath();
+            List<File> platformPath = (bootClassPath != null && bootClassPath.length != 0) ? Arrays.asList(bootClassPath) : null;
+            if (! Objects.equals(platformPath, fileManagerPlatformPath)) {
+                // Setting null restores the default:
+                fm.getStandardFileManager().setLocation(StandardLocation.PLATFORM_CLASS_PATH, platformPath);
+                fileManagerPlatformPath = platformPath;
+            }
+
+            // Classes from an error check are not wanted, so rather than writing them
+            // we send them to a sink in memory:
+            fm.setDiscardOutput(! type.keepClasses());
+            
             //get the source files for compilation  
             Iterable<? extends JavaFileObject> compilationUnits1 =
-                sjfm.getJavaFileObjectsFromFiles(Arrays.asList(sources));
+                fm.getStandardFileManager().getJavaFileObjectsFromFiles(Arrays.asList(sources));
             //add any options
             if(isDebug()) {
                 optionsList.add("-g");
@@ -219,28 +256,192 @@ public class CompilerAPICompiler extends Compiler
                 optionsList.add("-deprecation");
             }
             
-            File[] bootClassPath = getBootClassPath();
-            if (bootClassPath != null && bootClassPath.length != 0) {
-                sjfm.setLocation(StandardLocation.PLATFORM_CLASS_PATH, Arrays.asList(bootClassPath));
-            }
-            
             optionsList.addAll(userOptions);
             
             //compile
-            result = jc.getTask(null, sjfm, diagListener, optionsList, null, compilationUnits1).call();
-            sjfm.close();
-            if (tempDir != null)
-                tempDir.delete();
+            try {
+                result = jc.getTask(null, fm, diagListener, optionsList, null, compilationUnits1).call();
+                fm.flush();
+            }
+            catch (RuntimeException e) {
+                // We don't know what state the file manager is in, so start again next time:
+                closeFileManager();
+                throw e;
+            }
+            finally {
+                currentDiagListener = null;
+            }
         }
         catch(IOException e)
         {
             e.printStackTrace(System.out);
+            closeFileManager();
             return false;
         }
 
         return result;
     }
 
+    /**
+     * Get the file manager to use for a compilation, re-using the one from the previous
+     * compilation if it is still valid.
+     * 
+     * @param jc           The compiler
+     * @param fileCharset  The character set of the source files
+     * @param userOptions  The user's compiler options (some of which may be file manager options)
+     */
+    private OutputDiscardingFileManager getFileManager(JavaCompiler jc, Charset fileCharset, List<String> userOptions)
+    {
+        List<String> fmOptions = (fileManager == null) ? null : getFileManagerOptions(fileManager, userOptions);
+        if (fileManager != null && (! fileCharset.equals(fileManagerCharset)
+                || ! fmOptions.equals(fileManagerOptions) || archivesModified())) {
+            closeFileManager();
+        }
+        
+        if (fileManager == null) {
+            // The file manager keeps this listener, so we give it one which
+            // forwards to the listener of the current compilation:
+            DiagnosticListener<JavaFileObject> fmListener = diag -> {
+                if (currentDiagListener != null) {
+                    currentDiagListener.report(diag);
+                }
+            };
+            fileManager = new OutputDiscardingFileManager(jc.getStandardFileManager(fmListener, null, fileCharset));
+            fileManagerCharset = fileCharset;
+            fileManagerOptions = getFileManagerOptions(fileManager, userOptions);
+        }
+        
+        // Note the modification time of any new archives, so we can tell if they change:
+        for (File entry : getClassPath()) {
+            if (! fileManagerArchives.containsKey(entry) && entry.isFile()) {
+                fileManagerArchives.put(entry, entry.lastModified());
+            }
+        }
+        return fileManager;
+    }
+
+    /**
+     * Get those options from the user's options which are handled by the file manager.
+     */
+    private static List<String> getFileManagerOptions(JavaFileManager fm, List<String> userOptions)
+    {
+        List<String> fmOptions = new ArrayList<>();
+        for (int i = 0; i < userOptions.size(); i++) {
+            int args = fm.isSupportedOption(userOptions.get(i));
+            if (args >= 0) {
+                int end = Math.min(i + 1 + args, userOptions.size());
+                fmOptions.addAll(userOptions.subList(i, end));
+                i = end - 1;
+            }
+        }
+        return fmOptions;
+    }
+
+    /**
+     * Check whether any archives that the file manager has seen have been modified (or removed)
+     * since. The file manager's cached contents of such an archive would be out of date.
+     */
+    private boolean archivesModified()
+    {
+        for (Map.Entry<File, Long> archive : fileManagerArchives.entrySet()) {
+            if (archive.getKey().lastModified() != archive.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close the file manager (if any), so that a new one will be created for the next compilation.
+     */
+    private void closeFileManager()
+    {
+        if (fileManager != null) {
+            try {
+                fileManager.close();
+            }
+            catch (IOException e) {
+                // Nothing useful we can do
+            }
+        }
+        fileManager = null;
+        fileManagerArchives.clear();
+        fileManagerSourcePath = null;
+        fileManagerClassPath = null;
+        fileManagerPlatformPath = null;
+    }
+
+    /**
+     * A file manager which can discard all output, rather than writing it, for
+     * compilations where the classes are not needed.
+     */
+    private static class OutputDiscardingFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+    {
+        private boolean discardOutput;
+
+        private OutputDiscardingFileManager(StandardJavaFileManager fileManager)
+        {
+            super(fileManager);
+        }
+
+        public StandardJavaFileManager getStandardFileManager()
+        {
+            return fileManager;
+        }
+
+        public void setDiscardOutput(boolean discardOutput)
+        {
+            this.discardOutput = discardOutput;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+            throws IOException
+        {
+            if (discardOutput) {
+                return new DiscardedOutput(className.replace('.', '/') + kind.extension, kind);
+            }
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+
+        @Override
+        public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling)
+            throws IOException
+        {
+            if (discardOutput) {
+                return new DiscardedOutput(packageName.replace('.', '/') + "/" + relativeName, JavaFileObject.Kind.OTHER);
+            }
+            return super.getFileForOutput(location, packageName, relativeName, sibling);
+        }
+    }
+
+    /**
+     * An output file whose content is thrown away.
+     */
+    private static class DiscardedOutput extends SimpleJavaFileObject
+    {
+        private DiscardedOutput(String path, Kind kind) throws IOException
+        {
+            super(makeURI(path), kind);
+        }
+
+        private static URI makeURI(String path) throws IOException
+        {
+            try {
+                return new URI("discarded", null, "/" + path, null);
+            }
+            catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public OutputStream openOutputStream()
+        {
+            return OutputStream.nullOutputStream();
+        }
+    }
+
     /**
      * Processes messages returned from the compiler. This just slightly adjusts the format of some
      * messages.
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2014  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2014,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,74 +21,51 @@
  */
 package bluej.compiler;
 
-import threadchecker.OnThread;
-import threadchecker.Tag;
-import bluej.Config;
-import bluej.utility.Queue;
+import bluej.compiler.CompileScheduler.PendingJob;
 
 /**
- * The compiler thread. BlueJ uses exactly one thread for compilation. Jobs are
- * queued, and this thread processes tham one by one. If there is no job, this
- * thread just sleeps.
- * 
- * @author Michael Cahill
- * @author Michael Kolling
+ * A thread which compiles jobs from the shared compile queue.  Each compiler thread
+ * has its own compiler, so that several jobs (for different projects) can be compiled
+ * at once.
  */
 class CompilerThread extends Thread
 {
-    private Queue jobs;
-    private boolean busy = true;
+    private final CompileScheduler scheduler;
+    private final Compiler compiler = new CompilerAPICompiler();
 
     /**
-     * Create a new compiler thread that holds its own job queue.
+     * Create a new compiler thread that takes jobs from the given queue.
      */
-    public CompilerThread()
+    public CompilerThread(CompileScheduler scheduler, String name)
     {
-        super(Config.getString("compiler.thread.title"));
-        jobs = new Queue();
+        super(name);
+        this.scheduler = scheduler;
     }
 
     /**
-     * Start running this thread. The compiler thread will run infinitely in a
-     * loop. It will compile jobs as long as there are any jobs pending, and
-     * then wait for new jobs to be scheduled. New jobs are scheduled using the
-     * addJob method.
+     * Start running this thread. The compiler thread will run in a loop until
+     * it is interrupted. It will compile jobs as long as there are any jobs
+     * pending, and then wait for new jobs to be scheduled. New jobs are
+     * scheduled using the scheduler's addJob method.
      */
     public void run()
     {
-        Job job;
         while (true) {
-            synchronized (this) {
-                while ((job = (Job) jobs.dequeue()) == null) {
-                    busy = false;
-                    notifyAll();
-                    try {
-                        wait();
-                    }
-                    catch (InterruptedException e) {}
-                }
+            PendingJob job;
+            try {
+                job = scheduler.takeJob();
+            }
+            catch (InterruptedException e) {
+                // Nothing is taken from the queue once interrupted, so this thread is done:
+                return;
             }
 
-            job.compile();
+            try {
+                job.getJob().compile(compiler);
+            }
+            finally {
+                scheduler.jobFinished(job);
+            }
         }
     }
-
-    /**
-     * Add a new job to this thread's job queue. The job will be processed by
-     * this thread some tim ein the near future. This method returns
-     * immediately.
-     */
-    @OnThread(Tag.Any)
-    public synchronized void addJob(Job job)
-    {
-        jobs.enqueue(job);
-        busy = true;
-        notifyAll();
-    }
-
-    @OnThread(Tag.Any)
-    public boolean isBusy()
-    {
-        return busy;
-    }
-}
\ No newline at end of file
+}
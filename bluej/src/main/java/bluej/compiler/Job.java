@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2016,2020,2022  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2016,2020,2022,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -32,12 +32,12 @@ import bluej.classmgr.BPClassLoader;
 
 /**
  * A compiler "job". A list of filenames to compile + parameters.
- * Jobs are held in a queue by the CompilerThread, which compiles them
- * by running the job's "compile" method.
+ * Jobs are held in a queue (the CompileScheduler) until a CompilerThread
+ * compiles them by running the job's "compile" method with its compiler.
  *
  * @author  Michael Cahill
  */
-record Job(CompileInputFile[] sources, Compiler compiler, CompileObserver observer, BPClassLoader bpClassLoader, File destDir,
+record Job(CompileInputFile[] sources, CompileObserver observer, BPClassLoader bpClassLoader, File destDir,
            boolean internal, // true for compiling shell files,
                              // or user files if we want to suppress
                              // "unchecked" warnings, false otherwise
@@ -51,9 +51,9 @@ record Job(CompileInputFile[] sources, Compiler compiler, CompileObserver observ
     private static final AtomicInteger nextCompilationSequence = new AtomicInteger(1);
 
     /**
-     * Compile this job
+     * Compile this job, using the given compiler
      */
-    public void compile()
+    public void compile(Compiler compiler)
     {
         int compilationSequence = nextCompilationSequence.getAndIncrement();
 
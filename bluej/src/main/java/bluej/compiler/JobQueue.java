@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2011,2012,2013,2016  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2011,2012,2013,2016,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -30,10 +30,15 @@ import bluej.Config;
 import bluej.classmgr.BPClassLoader;
 import bluej.utility.Debug;
 import bluej.utility.Utility;
+import threadchecker.OnThread;
+import threadchecker.Tag;
 
 /**
  * Reasonably generic interface between the BlueJ IDE and the Java compiler.
  * 
+ * <p>Jobs are compiled by a small pool of compiler threads; see CompileScheduler
+ * for the order in which they are run.
+ * 
  * @author Michael Cahill
  */
 public class JobQueue
@@ -50,23 +55,30 @@ public class JobQueue
 
     // ---- instance ----
 
-    private CompilerThread thread = null;
-    private Compiler compiler = null;
+    /**
+     * The maximum number of compiler threads.  Only one job runs at a time for each project,
+     * so more than one thread is only used when several projects are compiling.
+     */
+    private static final int MAX_COMPILER_THREADS = 2;
+
+    private final CompileScheduler scheduler = new CompileScheduler();
 
     /**
      * Construct the JobQueue. This is private; use getJobQueue() to get the job queue instance.
      */
     private JobQueue()
     {
-        compiler = new CompilerAPICompiler();
-        thread = new CompilerThread();
-
         // Lower priority to improve GUI response time during compilation
         int priority = Thread.currentThread().getPriority() - 1;
         priority = Math.max(priority, Thread.MIN_PRIORITY);
-        thread.setPriority(priority);
 
-        thread.start();
+        int threads = Math.max(1, Math.min(MAX_COMPILER_THREADS, Runtime.getRuntime().availableProcessors()));
+        for (int i = 0; i < threads; i++) {
+            String name = Config.getString("compiler.thread.title") + (i == 0 ? "" : " " + (i + 1));
+            CompilerThread thread = new CompilerThread(scheduler, name);
+            thread.setPriority(priority);
+            thread.start();
+        }
     }
 
     /**
@@ -86,7 +98,7 @@ public class JobQueue
         String optionString = Config.getPropString(Compiler.COMPILER_OPTIONS, "");
         options.addAll(Utility.dequoteCommandLine(optionString));
         
-        thread.addJob(new Job(sources, compiler, observer, bpClassLoader,
+        scheduler.addJob(new Job(sources, observer, bpClassLoader,
                 destDir, suppressUnchecked, options, fileCharset, type, reason));
     }
 
@@ -95,13 +107,39 @@ public class JobQueue
      */
     public void waitForEmptyQueue()
     {
-        synchronized (thread) {
-            while (thread.isBusy()) {
-                try {
-                    thread.wait();
-                }
-                catch (InterruptedException ex) {}
-            }
-        }
+        scheduler.waitForEmpty();
+    }
+
+    /**
+     * Get the number of compile jobs waiting to be run (not including any currently being compiled).
+     */
+    @OnThread(Tag.Any)
+    public int getQueueDepth()
+    {
+        return scheduler.getQueueDepth();
+    }
+
+    /**
+     * Get the timings of the most recently completed compile jobs, oldest first.
+     */
+    @OnThread(Tag.Any)
+    public List<JobTiming> getRecentJobTimings()
+    {
+        return scheduler.getRecentTimings();
+    }
+
+    /**
+     * The timing of a completed compile job.
+     *
+     * @param reason       The reason for the compilation
+     * @param type         The type of the compilation
+     * @param sourceCount  The number of source files compiled
+     * @param mergedJobs   The number of later identical jobs which were merged into this one
+     * @param waitMillis   The time the job waited in the queue before it was started
+     * @param compileMillis  The time taken to compile the job
+     */
+    public record JobTiming(CompileReason reason, CompileType type, int sourceCount, int mergedJobs,
+                            long waitMillis, long compileMillis)
+    {
     }
 }
@@ -253,6 +253,22 @@ public abstract class Debugger
     public abstract DebuggerResult instantiateClass(String className, String [] paramTypes,
             DebuggerObject [] args);
     
+    /**
+     * Call a method directly, without compiling a shell class.
+     * 
+     * @param className   The name of the class which declares the method
+     * @param methodName  The name of the method
+     * @param target      The object to call the method on, or null for a static method
+     * @param paramTypes  The formal parameter types (class or primitive type names)
+     * @param args        The arguments. Arguments for primitive parameters are string
+     *                    mirrors (see getMirror) of the value.
+     * @return   The result of the call, wrapped in an object in the same way as the
+     *           result of a shell class
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    public abstract DebuggerResult invokeMethod(String className, String methodName, DebuggerObject target,
+            String [] paramTypes, DebuggerObject [] args);
+    
     /**
      * Get a class from the virtual machine, using the current classloader.
      * 
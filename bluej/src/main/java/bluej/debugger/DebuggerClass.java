@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2010,2011,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -42,6 +42,16 @@ public abstract class DebuggerClass
      */
     public abstract List<DebuggerField> getStaticFields();
     
+    /**
+     * Get a list of static fields declared in this class, with the values of all
+     * the fields fetched together at the time of the call (see
+     * DebuggerObject.getFieldSnapshot()).
+     */
+    public List<DebuggerField> getStaticFieldSnapshot()
+    {
+        return getStaticFields();
+    }
+    
     /**
      * Get the static field specified by the given index.
      */
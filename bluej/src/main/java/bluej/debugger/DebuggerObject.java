@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2013,2018,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2013,2018,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -79,6 +79,17 @@ public abstract class DebuggerObject
      */
     public abstract List<DebuggerField> getFields();
     
+    /**
+     * Get all field/value pairs for the object, with the values of all the fields
+     * fetched together at the time of the call. The values of the returned fields
+     * are those in the snapshot, not the current values. This is cheaper than reading
+     * the values of the fields from getFields() one at a time.
+     */
+    public List<DebuggerField> getFieldSnapshot()
+    {
+        return getFields();
+    }
+    
     /**
      * Get a field/value pair, specified by index. 
      */
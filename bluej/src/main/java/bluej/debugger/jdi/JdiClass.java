@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2010,2011,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -23,6 +23,7 @@ package bluej.debugger.jdi;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import bluej.debugger.DebuggerClass;
 import bluej.debugger.DebuggerField;
@@ -32,6 +33,7 @@ import com.sun.jdi.ClassType;
 import com.sun.jdi.Field;
 import com.sun.jdi.InterfaceType;
 import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Value;
 
 /**
  * Represents an class running on the user (remote) machine.
@@ -72,10 +74,24 @@ public class JdiClass extends DebuggerClass
     @Override
     public List<DebuggerField> getStaticFields()
     {
-        List<Field> visibleFields = remoteClass.visibleFields();
+        JdiFieldLayout layout = JdiFieldLayout.forType(remoteClass);
         List<DebuggerField> rlist = new ArrayList<DebuggerField>(staticFields.size());
-        for (Field field : staticFields) {
-            rlist.add(new JdiField(field, null, ! visibleFields.contains(field)));
+        for (int i = 0; i < staticFields.size(); i++) {
+            rlist.add(new JdiField(staticFields.get(i), null, layout.isStaticFieldHidden(i)));
+        }
+        return rlist;
+    }
+
+    @Override
+    public List<DebuggerField> getStaticFieldSnapshot()
+    {
+        JdiFieldLayout layout = JdiFieldLayout.forType(remoteClass);
+        // One request for all the values, rather than one per field:
+        Map<Field, Value> values = remoteClass.getValues(staticFields);
+        List<DebuggerField> rlist = new ArrayList<DebuggerField>(staticFields.size());
+        for (int i = 0; i < staticFields.size(); i++) {
+            Field field = staticFields.get(i);
+            rlist.add(new JdiField(field, null, layout.isStaticFieldHidden(i), values.get(field)));
         }
         return rlist;
     }
@@ -106,17 +122,11 @@ public class JdiClass extends DebuggerClass
      */
     private void getRemoteFields()
     {
-        staticFields = new ArrayList<Field>();
-
         if (remoteClass != null) {
-            List<Field> allFields = remoteClass.allFields();
-            for (int i = 0; i < allFields.size(); i++) {
-                Field field = (Field) allFields.get(i);
-                if (field.isStatic())
-                    staticFields.add(field);
-            }
+            staticFields = JdiFieldLayout.forType(remoteClass).getStaticFields();
         }
         else {
+            staticFields = new ArrayList<Field>();
             Debug.reportError("cannot get fields for remote class");
         }
     }
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2014,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2014,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -24,6 +24,7 @@ package bluej.debugger.jdi;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -88,6 +89,21 @@ public class JdiDebugger extends Debugger
     // the thread that we spawn to load the current remote VM
     @OnThread(Tag.Any)
     private MachineLoaderThread machineLoader;
+
+    // Whether to keep a standby VM, launched in advance to replace the current VM on restart
+    @OnThread(Tag.Any)
+    private final boolean useStandbyVM = Config.getPropBoolean("bluej.vm.standby", false);
+
+    /**
+     * A spare remote VM, fully started with the current user libraries but not yet in
+     * use, or null if there is none. Protected by the JdiDebugger monitor.
+     */
+    @OnThread(Tag.Any)
+    private VMReference standbyVM;
+
+    // Whether a standby VM is currently being launched
+    @OnThread(Tag.Any)
+    private boolean standbyLaunching = false;
     
     /** An object to provide a lock for server thread execution */
     @OnThread(Tag.Any)
@@ -159,7 +175,19 @@ public class JdiDebugger extends Debugger
     @Override
     public void setUserLibraries(URL[] libraries)
     {
-        this.libraries = libraries;
+        VMReference discarded = null;
+        synchronized (this) {
+            if (!Arrays.equals(this.libraries, libraries)) {
+                // A standby VM has the old libraries on its classpath:
+                discarded = standbyVM;
+                standbyVM = null;
+            }
+            this.libraries = libraries;
+        }
+        if (discarded != null) {
+            discarded.close();
+            launchStandby();
+        }
     }
     
     /**
@@ -253,6 +281,82 @@ public class JdiDebugger extends Debugger
             selfRestart = false;
             machineLoader = null;
         }
+        
+        if (!restart && standbyVM != null) {
+            // Closing it only kills the process; it is safe to do while holding the lock:
+            standbyVM.close();
+            standbyVM = null;
+        }
+    }
+
+    /**
+     * Launch a standby VM in the background, if one is wanted and there is not already
+     * one running or being launched. When the current VM is restarted, the standby VM
+     * replaces it, avoiding the wait for a new VM to start.
+     */
+    @OnThread(Tag.Any)
+    private synchronized void launchStandby()
+    {
+        if (!useStandbyVM || !autoRestart || standbyVM != null || standbyLaunching) {
+            return;
+        }
+        
+        standbyLaunching = true;
+        URL[] standbyLibraries = libraries;
+        Thread loader = new Thread("Standby VM Loader") {
+            @Override
+            @OnThread(value = Tag.Worker, ignoreParent = true)
+            public void run()
+            {
+                VMReference newVM = null;
+                try {
+                    newVM = new VMReference(JdiDebugger.this, terminal, startingDirectory, standbyLibraries, true);
+                }
+                catch (JdiVmCreationException e) {
+                    Debug.message("Standby VM could not be launched");
+                }
+                
+                synchronized (JdiDebugger.this) {
+                    standbyLaunching = false;
+                    if (newVM != null && autoRestart && standbyVM == null && libraries == standbyLibraries) {
+                        standbyVM = newVM;
+                        return;
+                    }
+                }
+                
+                // No longer wanted:
+                if (newVM != null) {
+                    newVM.close();
+                }
+            }
+        };
+        // The standby VM is not urgent; leave the processor for the current VM and the GUI.
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Take the standby VM for use, if there is one. Returns null if there is none.
+     */
+    @OnThread(Tag.Any)
+    private synchronized VMReference takeStandbyVM()
+    {
+        VMReference vm = standbyVM;
+        standbyVM = null;
+        return vm;
+    }
+
+    /**
+     * Called by a standby VMReference when its machine disconnects before it has been
+     * put into use.
+     */
+    @OnThread(Tag.VMEventHandler)
+    synchronized void standbyVMDisconnected(VMReference vm)
+    {
+        if (standbyVM == vm) {
+            standbyVM = null;
+        }
     }
 
     /**
@@ -780,13 +884,7 @@ public class JdiDebugger extends Debugger
         
         VMReference vmr = getVM();
         if (vmr != null) {
-            // Convert the args array from DebuggerObject[] to ObjectReference[]
-            ObjectReference [] orArgs = new ObjectReference[args.length];
-            for (int i = 0; i < args.length; i++) {
-                JdiObject jdiObject = (JdiObject) args[i];
-                orArgs[i] = jdiObject.getObjectReference(); 
-            }
-            
+            ObjectReference [] orArgs = toObjectReferences(args);
             synchronized (serverThreadLock) {
                 return vmr.instantiateClass(className, paramTypes, orArgs);
             }
@@ -795,6 +893,42 @@ public class JdiDebugger extends Debugger
             return new DebuggerResult(Debugger.TERMINATED_BY_BLUEJ);
         }
     }
+
+    /*
+     * @see bluej.debugger.Debugger#invokeMethod(java.lang.String, java.lang.String, bluej.debugger.DebuggerObject, java.lang.String[], bluej.debugger.DebuggerObject[])
+     */
+    @Override
+    @OnThread(Tag.NOTVMEventHandler)
+    public DebuggerResult invokeMethod(String className, String methodName, DebuggerObject target,
+            String[] paramTypes, DebuggerObject[] args)
+    {
+        VMReference vmr = getVM();
+        if (vmr != null) {
+            ObjectReference orTarget = target == null ? null : ((JdiObject) target).getObjectReference();
+            ObjectReference [] orArgs = toObjectReferences(args);
+            synchronized (serverThreadLock) {
+                return vmr.invokeMethod(className, methodName, orTarget, paramTypes, orArgs);
+            }
+        }
+        else {
+            return new DebuggerResult(Debugger.TERMINATED_BY_BLUEJ);
+        }
+    }
+
+    /**
+     * Convert an array of DebuggerObject to the corresponding ObjectReferences
+     * (a null element maps to null).
+     */
+    @OnThread(Tag.Any)
+    private static ObjectReference [] toObjectReferences(DebuggerObject [] args)
+    {
+        ObjectReference [] orArgs = new ObjectReference[args.length];
+        for (int i = 0; i < args.length; i++) {
+            JdiObject jdiObject = (JdiObject) args[i];
+            orArgs[i] = jdiObject == null ? null : jdiObject.getObjectReference(); 
+        }
+        return orArgs;
+    }
     
     /*
      * @see bluej.debugger.Debugger#getClass(java.lang.String, boolean)
@@ -1056,11 +1190,13 @@ public class JdiDebugger extends Debugger
                 vmRef = null;
                 
                 raiseStateChangeEvent(Debugger.NOTREADY);
-
-                launch();
                 
+                // Clear these before launching, as a standby VM may report its threads
+                // straight away:
                 usedNames.clear();
                 threadListener.clearThreads();
+
+                launch();
             }
         }
     }
@@ -1144,7 +1280,10 @@ public class JdiDebugger extends Debugger
         public void run()
         {
             try {
-                VMReference newVM = new VMReference(JdiDebugger.this, terminal, startingDirectory, libraries);
+                VMReference newVM = activateStandbyVM();
+                if (newVM == null) {
+                    newVM = new VMReference(JdiDebugger.this, terminal, startingDirectory, libraries);
+                }
 
                 BPClassLoader lastLoader;
                 synchronized(JdiDebugger.this) {
@@ -1164,6 +1303,9 @@ public class JdiDebugger extends Debugger
                 synchronized(JdiDebugger.this) {
                     vmRef = newVM;
                 }
+                
+                // Prepare the next VM while this one is in use:
+                launchStandby();
             }
             catch (JdiVmCreationException e) {
                 launchFailed();
@@ -1176,6 +1318,29 @@ public class JdiDebugger extends Debugger
             }
         }
 
+        /**
+         * Put the standby VM into use, if there is one and it is still running.
+         * Returns null otherwise.
+         */
+        @OnThread(Tag.Worker)
+        private VMReference activateStandbyVM()
+        {
+            VMReference standby = takeStandbyVM();
+            if (standby == null) {
+                return null;
+            }
+            
+            try {
+                standby.activate();
+                Debug.message("Using standby VM (started in " + standby.getStartupMillis() + " ms)");
+                return standby;
+            }
+            catch (VMDisconnectedException e) {
+                standby.close();
+                return null;
+            }
+        }
+
         @OnThread(Tag.Any)
         @SuppressWarnings("threadchecker") // In case of failure, we have to run from this thread as VMEventHandler hasn't run.
         private void launchFailed()
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2011,2018,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 2011,2018,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -44,6 +44,11 @@ public class JdiField extends DebuggerField
     @OnThread(Tag.Any)
     private final JdiObject object;
     private boolean hidden;
+    // Whether the value was fetched when the field was created; if not, it is fetched on each use:
+    @OnThread(Tag.Any)
+    private final boolean isSnapshot;
+    @OnThread(Tag.Any)
+    private final Value snapshotValue;
     
     @OnThread(Tag.Any)
     public JdiField(Field field, JdiObject object, boolean hidden)
@@ -51,6 +56,22 @@ public class JdiField extends DebuggerField
         this.field = field;
         this.object = object;
         this.hidden = hidden;
+        this.isSnapshot = false;
+        this.snapshotValue = null;
+    }
+
+    /**
+     * Create a field whose value has already been fetched (as part of a snapshot
+     * of all the fields of an object or class).
+     */
+    @OnThread(Tag.Any)
+    JdiField(Field field, JdiObject object, boolean hidden, Value value)
+    {
+        this.field = field;
+        this.object = object;
+        this.hidden = hidden;
+        this.isSnapshot = true;
+        this.snapshotValue = value;
     }
 
     @Override
@@ -83,28 +104,14 @@ public class JdiField extends DebuggerField
     @SuppressWarnings("threadchecker")
     public String getValueString()
     {
-        Value value;
-        if (object != null) {
-            value = object.obj.getValue(field);
-        }
-        else {
-            value = field.declaringType().getValue(field);
-        }
-
-        return JdiUtils.getJdiUtils().getValueString(value);
+        return JdiUtils.getJdiUtils().getValueString(getValue());
     }
 
     @Override
     @OnThread(Tag.FXPlatform)
     public DebuggerObject getValueObject(JavaType expectedType)
     {
-        Value value;
-        if (object != null) {
-            value = object.obj.getValue(field);
-        }
-        else {
-            value = field.declaringType().getValue(field);
-        }
+        Value value = getValue();
         
         if (value == null) {
             return JdiObject.getDebuggerObject(null);
@@ -121,6 +128,24 @@ public class JdiField extends DebuggerField
         return null;
     }
 
+    /**
+     * Get the value of the field: the snapshot value if there is one, otherwise the
+     * current value from the remote VM.
+     */
+    @OnThread(Tag.Any)
+    private Value getValue()
+    {
+        if (isSnapshot) {
+            return snapshotValue;
+        }
+        else if (object != null) {
+            return object.obj.getValue(field);
+        }
+        else {
+            return field.declaringType().getValue(field);
+        }
+    }
+
     @Override
     public DebuggerClass getDeclaringClass()
     {
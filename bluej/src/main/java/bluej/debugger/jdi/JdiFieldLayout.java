@@ -0,0 +1,118 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * The fields of a remote class, as shown for objects of the class (all fields
+ * other than synthetic ones) and for the class itself (static fields), together
+ * with whether each field is hidden by another of the same name.
+ *
+ * <p>The layout of a class does not change once it is loaded, so it is worked out
+ * once and shared by all the objects of the class. The layouts are held by the
+ * VMReference of the VM, and are discarded when the VM disconnects.
+ */
+@OnThread(Tag.Any)
+class JdiFieldLayout
+{
+    private final List<Field> objectFields = new ArrayList<>();
+    private final boolean[] objectFieldsHidden;
+    private final List<Field> staticFields = new ArrayList<>();
+    private final boolean[] staticFieldsHidden;
+
+    JdiFieldLayout(ReferenceType type)
+    {
+        List<Field> allFields = type.allFields();
+        Set<Field> visibleFields = new HashSet<>(type.visibleFields());
+
+        for (Field field : allFields) {
+            if (field.name().indexOf('$') < 0) {
+                objectFields.add(field);
+            }
+            if (field.isStatic()) {
+                staticFields.add(field);
+            }
+        }
+
+        objectFieldsHidden = new boolean[objectFields.size()];
+        for (int i = 0; i < objectFieldsHidden.length; i++) {
+            objectFieldsHidden[i] = ! visibleFields.contains(objectFields.get(i));
+        }
+        staticFieldsHidden = new boolean[staticFields.size()];
+        for (int i = 0; i < staticFieldsHidden.length; i++) {
+            staticFieldsHidden[i] = ! visibleFields.contains(staticFields.get(i));
+        }
+    }
+
+    /**
+     * Get the field layout of the given class. If its VM has disconnected, the layout
+     * is worked out again each time rather than kept.
+     */
+    static JdiFieldLayout forType(ReferenceType type)
+    {
+        VMReference vmr = VMReference.getVmForMachine(type.virtualMachine());
+        return vmr == null ? new JdiFieldLayout(type) : vmr.getFieldLayout(type);
+    }
+
+    /**
+     * Get the fields shown for an object of the class, including inherited and
+     * static fields, in declaration order.
+     */
+    List<Field> getObjectFields()
+    {
+        return Collections.unmodifiableList(objectFields);
+    }
+
+    /**
+     * Check whether the object field at the given index is hidden.
+     */
+    boolean isObjectFieldHidden(int index)
+    {
+        return objectFieldsHidden[index];
+    }
+
+    /**
+     * Get the static fields of the class, including inherited ones.
+     */
+    List<Field> getStaticFields()
+    {
+        return Collections.unmodifiableList(staticFields);
+    }
+
+    /**
+     * Check whether the static field at the given index is hidden.
+     */
+    boolean isStaticFieldHidden(int index)
+    {
+        return staticFieldsHidden[index];
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2018,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2018,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -23,6 +23,7 @@ package bluej.debugger.jdi;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import bluej.debugger.DebuggerClass;
@@ -35,7 +36,7 @@ import bluej.debugger.gentype.Reflective;
 import com.sun.jdi.ArrayReference;
 import com.sun.jdi.Field;
 import com.sun.jdi.ObjectReference;
-import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Value;
 import threadchecker.OnThread;
 import threadchecker.Tag;
 
@@ -109,8 +110,6 @@ public class JdiObject extends DebuggerObject
     @OnThread(Tag.Any)
     protected ObjectReference obj;  // the remote object represented
     GenTypeClass genType = null; // the generic type, if known
-    @OnThread(Tag.Any)
-    private final List<Field> fields = new ArrayList<>();
     
     // used by JdiArray.
     protected JdiObject()
@@ -129,7 +128,6 @@ public class JdiObject extends DebuggerObject
         this.obj = obj;
         if (obj != null) {
             obj.disableCollection();
-            getRemoteFields();
         }
     }
 
@@ -139,7 +137,6 @@ public class JdiObject extends DebuggerObject
         this.obj = obj;
         if (obj != null) {
             obj.disableCollection();
-            getRemoteFields();
             Reflective reflective = new JdiReflective(obj.referenceType());
             if( expectedType.isGeneric() ) {
                 genType = expectedType.mapToDerived(reflective);
@@ -265,39 +262,29 @@ public class JdiObject extends DebuggerObject
     @OnThread(Tag.Any)
     public List<DebuggerField> getFields()
     {
-        List<Field> visibleFields = obj.referenceType().visibleFields();
+        JdiFieldLayout layout = JdiFieldLayout.forType(obj.referenceType());
+        List<Field> fields = layout.getObjectFields();
         List<DebuggerField> rlist = new ArrayList<DebuggerField>(fields.size());
-        for (Field field : fields) {
-            if (! checkIgnoreField(field)) {
-                boolean visible = visibleFields.remove(field);
-                rlist.add(new JdiField(field, this, !visible));
-            }
+        for (int i = 0; i < fields.size(); i++) {
+            rlist.add(new JdiField(fields.get(i), this, layout.isObjectFieldHidden(i)));
         }
         return rlist;
     }
 
+    @Override
     @OnThread(Tag.Any)
-    private static boolean checkIgnoreField(Field f)
-    {
-        return (f.name().indexOf('$') >= 0);
-    }
-
-    /**
-     *  Get the list of fields for this object.
-     */
-    @OnThread(Tag.Any)
-    protected void getRemoteFields()
+    public List<DebuggerField> getFieldSnapshot()
     {
-        if (obj != null) {
-            ReferenceType cls = obj.referenceType();
-            if (cls != null) {
-                fields.addAll(cls.allFields());
-                return;
-            }
+        JdiFieldLayout layout = JdiFieldLayout.forType(obj.referenceType());
+        List<Field> fields = layout.getObjectFields();
+        // One request for all the values, rather than one per field:
+        Map<Field, Value> values = obj.getValues(fields);
+        List<DebuggerField> rlist = new ArrayList<DebuggerField>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            rlist.add(new JdiField(field, this, layout.isObjectFieldHidden(i), values.get(field)));
         }
-        // either null object or unavailable fields
-        // lets give them an empty list of fields
-        fields.clear();
+        return rlist;
     }
 
     /**
@@ -0,0 +1,209 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+import bluej.runtime.ExecCommand;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * BlueJ's end of the command channel to the ExecServer in a debug VM (see ExecCommand).
+ *
+ * <p>The channel listens on a loopback port before the VM is launched. The port and a
+ * random key are written to a file which only the user can read, and the VM is told
+ * where the file is (the key is not put on the command line, where other users could
+ * see it). The first connection which presents the key is accepted.
+ *
+ * <p>Commands are sent one at a time, each waiting for its reply. If a reply does not
+ * come in time (the debug VM may be suspended at a breakpoint), the channel is no
+ * longer used, and the caller carries out the action through the debugger instead.
+ */
+@OnThread(Tag.Any)
+class VMCommandChannel
+{
+    // The longest time to wait for the reply to a command:
+    private static final int REPLY_TIMEOUT_MILLIS = 5000;
+
+    private final ServerSocket serverSocket;
+    private final String key;
+    private final Path keyFile;
+    // Volatile so that the channel can be closed while a command is waiting for its reply:
+    private volatile Socket socket;
+    // Set when a reply has not come in time. The socket is kept open, since the debug
+    // VM exits when it closes, but it is no longer used:
+    private volatile boolean abandoned;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    /**
+     * Start listening for a connection from a debug VM, and write the file which tells
+     * it how to connect.
+     */
+    VMCommandChannel() throws IOException
+    {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        byte [] keyBytes = new byte[16];
+        new SecureRandom().nextBytes(keyBytes);
+        key = HexFormat.of().formatHex(keyBytes);
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                keyFile = Files.createTempFile("bluej-channel", ".key",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+            else {
+                // Elsewhere (Windows), the temporary directory belongs to the user:
+                keyFile = Files.createTempFile("bluej-channel", ".key");
+            }
+            Files.writeString(keyFile, serverSocket.getLocalPort() + ":" + key, StandardCharsets.UTF_8);
+        }
+        catch (IOException ioe) {
+            serverSocket.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Get the VM argument which tells the ExecServer how to connect to this channel.
+     */
+    String getLaunchArgument()
+    {
+        return "-D" + ExecCommand.CHANNEL_PROPERTY + "=" + keyFile.toAbsolutePath();
+    }
+
+    /**
+     * Accept the connection from the debug VM. The ExecServer connects before it
+     * signals that it has started, so this should not need to wait.
+     *
+     * @param timeoutMillis  The longest time to wait for the connection
+     * @return  true if the connection was made; false if not, in which case the
+     *          channel is closed.
+     */
+    synchronized boolean accept(int timeoutMillis)
+    {
+        try {
+            serverSocket.setSoTimeout(timeoutMillis);
+            while (true) {
+                Socket s = serverSocket.accept();
+                DataInputStream sin = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                s.setSoTimeout(timeoutMillis);
+                if (key.equals(sin.readUTF())) {
+                    s.setSoTimeout(REPLY_TIMEOUT_MILLIS);
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    in = sin;
+                    out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    return true;
+                }
+                // Not our VM:
+                s.close();
+            }
+        }
+        catch (IOException ioe) {
+            close();
+            return false;
+        }
+        finally {
+            try {
+                serverSocket.close();
+            }
+            catch (IOException ioe) {}
+            deleteKeyFile();
+        }
+    }
+
+    /**
+     * Check whether the channel is connected (and has not failed since).
+     */
+    boolean isConnected()
+    {
+        return socket != null && ! abandoned;
+    }
+
+    /**
+     * Send a command and wait for the reply. If the channel fails, it is closed
+     * and the IOException is thrown; it is then no longer connected. If the reply
+     * does not come in time, a SocketTimeoutException is thrown and the channel is
+     * no longer used, but is left open until it is closed.
+     */
+    synchronized ExecCommand send(int code, String... strings) throws IOException
+    {
+        if (socket == null || abandoned) {
+            throw new IOException("Command channel is not connected");
+        }
+        try {
+            new ExecCommand(code, strings).write(out);
+            return ExecCommand.read(in);
+        }
+        catch (SocketTimeoutException ste) {
+            // The reply may still come, so the replies to any further commands could not
+            // be told apart from it:
+            abandoned = true;
+            throw ste;
+        }
+        catch (IOException ioe) {
+            close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Close the channel. When it sees the channel close, the debug VM exits.
+     */
+    void close()
+    {
+        Socket s = socket;
+        socket = null;
+        try {
+            serverSocket.close();
+            if (s != null) {
+                s.close();
+            }
+        }
+        catch (IOException ioe) {}
+        deleteKeyFile();
+    }
+
+    private void deleteKeyFile()
+    {
+        try {
+            Files.deleteIfExists(keyFile);
+        }
+        catch (IOException ioe) {}
+    }
+}
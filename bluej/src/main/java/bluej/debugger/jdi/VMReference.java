@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -34,11 +34,15 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import bluej.debugger.Debugger.EventHandlerRunnable;
 import bluej.debugger.RunOnThread;
@@ -56,6 +60,7 @@ import bluej.debugger.DebuggerTerminal;
 import bluej.debugger.ExceptionDescription;
 import bluej.debugger.SourceLocation;
 import bluej.prefmgr.PrefMgr;
+import bluej.runtime.ExecCommand;
 import bluej.runtime.ExecServer;
 import bluej.utility.Debug;
 import bluej.utility.Utility;
@@ -187,6 +192,40 @@ public class VMReference
     // the current class loader in the ExecServer
     private ClassLoaderReference currentLoader = null;
 
+    // the command channel to the ExecServer (null if it could not be set up)
+    @OnThread(Tag.Any)
+    private VMCommandChannel commandChannel = null;
+
+    // Whether this is a standby VM, launched ahead of time and not yet in use. A standby
+    // VM does not report threads or state changes to its owner, and is not connected to
+    // the terminal, until it is activated. Changed only on the VM event handler thread.
+    @OnThread(Tag.Any)
+    private volatile boolean standby;
+    // The process and stream encoding of a standby VM, for connecting its input to the
+    // terminal later:
+    @OnThread(Tag.Any)
+    private Process standbyProcess;
+    @OnThread(Tag.Any)
+    private String standbyStreamEncoding;
+    // Where the output of a standby VM is held until it is connected to the terminal:
+    @OnThread(Tag.Any)
+    private PendingWriter standbyOutput;
+    @OnThread(Tag.Any)
+    private PendingWriter standbyError;
+    // The thread reference of the server thread, once it has started:
+    private ThreadReference serverThreadReference = null;
+    // The threads reported to the owner when this VM was activated from standby:
+    @OnThread(Tag.VMEventHandler)
+    private List<ThreadReference> threadsAtActivation = Collections.emptyList();
+    // Completed when a standby VM has been activated, or has disconnected:
+    @OnThread(Tag.Any)
+    private volatile CompletableFuture<Void> activation;
+    @OnThread(Tag.Any)
+    private volatile boolean disconnected = false;
+    // The time taken from starting the launch until the VM was ready to use:
+    @OnThread(Tag.Any)
+    private long startupMillis;
+
     private int exitStatus;
     @OnThread(Tag.Any)
     private ExceptionDescription lastException;
@@ -194,6 +233,11 @@ public class VMReference
     // Boolean flag indicating if the VM is being closed by BlueJ internally.
     private boolean queuedForClose = false;
 
+    // The field layouts of the classes in the VM, worked out as they are needed.
+    // Cleared when the VM disconnects.
+    @OnThread(Tag.Any)
+    private final Map<ReferenceType, JdiFieldLayout> fieldLayouts = new HashMap<>();
+
     /**
      * Launch a remote debug VM using a TCP/IP socket.
      * 
@@ -258,6 +302,15 @@ public class VMReference
             paramList.add("-Dfile.encoding=" + streamEncoding);
         }
         
+        try {
+            commandChannel = new VMCommandChannel();
+            paramList.add(commandChannel.getLaunchArgument());
+        }
+        catch (IOException ioe) {
+            // We can do without it; all actions can be performed through the debugger.
+            Debug.log("Could not open command channel for debug VM: " + ioe);
+        }
+        
         paramList.add(SERVER_CLASSNAME);
         
         // set output encoding if specified, default is to use system default
@@ -340,7 +393,18 @@ public class VMReference
 
                         try {
                             machine = connector.accept(arguments);
-                            redirectToTerminal(term, remoteVMprocess, streamEncoding);
+                            if (standby) {
+                                // Connected to the terminal when the VM is activated. The output
+                                // is read from the start, so that the VM cannot block writing it:
+                                standbyProcess = remoteVMprocess;
+                                standbyStreamEncoding = streamEncoding;
+                                standbyOutput = new PendingWriter();
+                                standbyError = new PendingWriter();
+                                redirectOutput(remoteVMprocess, streamEncoding, standbyOutput, standbyError);
+                            }
+                            else {
+                                redirectToTerminal(term, remoteVMprocess, streamEncoding);
+                            }
                         }
                         catch (Throwable t) {
                             // failed to connect.
@@ -364,6 +428,12 @@ public class VMReference
                     Debug.log("Connected to debug VM via " + connector.transport().name() + " transport...");
                     setupEventHandling();
                     if (waitForStartup()) {
+                        if (commandChannel != null) {
+                            int timeout = Config.getPropInteger("bluej.vm.connect.timeout", 10000);
+                            if (! commandChannel.accept(timeout)) {
+                                Debug.log("Debug VM did not connect to command channel.");
+                            }
+                        }
                         Debug.log("Communication with debug VM fully established.");
                         return machine;
                     }
@@ -399,6 +469,9 @@ public class VMReference
 
         NetworkTest.doTest();
         
+        if (commandChannel != null) {
+            commandChannel.close();
+        }
         return null;
     }
     
@@ -514,28 +587,52 @@ public class VMReference
     @OnThread(Tag.Any)
     private void redirectToTerminal(DebuggerTerminal term, Process vmProcess, String streamEncoding) throws UnsupportedEncodingException
     {
-        // redirect standard streams from process to Terminal
+        redirectOutput(vmProcess, streamEncoding, term.getWriter(), term.getErrorWriter());
+        redirectInput(term, vmProcess, streamEncoding);
+    }
+
+    /**
+     * Redirect the output and error streams of the remote process to the given writers.
+     */
+    @OnThread(Tag.Any)
+    private void redirectOutput(Process vmProcess, String streamEncoding, Writer outWriter, Writer errorWriter)
+        throws UnsupportedEncodingException
+    {
         // error stream System.err
         Reader errorReader = null;
         // output stream System.out
         Reader outReader = null;
-        // input stream System.in
-        Writer inputWriter = null;
         
         if(streamEncoding == null) {
             errorReader = new InputStreamReader(vmProcess.getErrorStream());
             outReader = new InputStreamReader(vmProcess.getInputStream());
-            inputWriter = new OutputStreamWriter(vmProcess.getOutputStream());            
         }
         // if specified in bluej.defs
         else {
             errorReader = new InputStreamReader(vmProcess.getErrorStream(), streamEncoding); 
             outReader = new InputStreamReader(vmProcess.getInputStream(), streamEncoding);
+        }
+        
+        errorStreamRedirector = redirectIOStream(errorReader, errorWriter);
+        outputStreamRedirector = redirectIOStream(outReader, outWriter);
+    }
+
+    /**
+     * Redirect the terminal's input to the input stream (System.in) of the remote process.
+     */
+    @OnThread(Tag.Any)
+    private void redirectInput(DebuggerTerminal term, Process vmProcess, String streamEncoding)
+        throws UnsupportedEncodingException
+    {
+        Writer inputWriter;
+        if(streamEncoding == null) {
+            inputWriter = new OutputStreamWriter(vmProcess.getOutputStream());            
+        }
+        // if specified in bluej.defs
+        else {
             inputWriter = new OutputStreamWriter(vmProcess.getOutputStream(), streamEncoding);
         }
         
-        errorStreamRedirector = redirectIOStream(errorReader, term.getErrorWriter());
-        outputStreamRedirector = redirectIOStream(outReader, term.getWriter());
         inputStreamRedirector = redirectIOStream(term.getReader(), inputWriter);
     }
 
@@ -546,20 +643,103 @@ public class VMReference
     @OnThread(Tag.Any)
     public VMReference(JdiDebugger owner, DebuggerTerminal term, File initialDirectory, URL[] libraries)
         throws JdiVmCreationException
+    {
+        this(owner, term, initialDirectory, libraries, false);
+    }
+
+    /**
+     * Create the second virtual machine and start the execution server (class
+     * ExecServer) on that machine. A standby machine is fully started, but is not
+     * reported to the owner until it is activated (see activate()).
+     */
+    @OnThread(Tag.Any)
+    VMReference(JdiDebugger owner, DebuggerTerminal term, File initialDirectory, URL[] libraries, boolean standby)
+        throws JdiVmCreationException
     {
         this.owner = owner;
         this.term = term;
+        this.standby = standby;
         
+        long startTime = System.nanoTime();
         // machine will be suspended at startup
         machine = localhostSocketLaunch(initialDirectory, libraries, term, Bootstrap.virtualMachineManager());
         if (machine == null) {
             throw new JdiVmCreationException();
         }
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Debug.log("Debug VM" + (standby ? " (standby)" : "") + " ready after " + startupMillis + " ms");
         
         // Add our machine into the map
         vmToReferenceMap.put(machine, this);
     }
 
+    /**
+     * Get the time taken from the start of the launch of this VM until it was ready for use,
+     * in milliseconds.
+     */
+    @OnThread(Tag.Any)
+    public long getStartupMillis()
+    {
+        return startupMillis;
+    }
+
+    /**
+     * Bring a standby VM into use. Its threads and its state are reported to the owner,
+     * and it is connected to the terminal, as if it had just been launched.
+     * 
+     * @throws VMDisconnectedException  if the VM has terminated
+     */
+    @OnThread(Tag.Any)
+    void activate()
+    {
+        CompletableFuture<Void> activated = new CompletableFuture<>();
+        activation = activated;
+        // Done on the event handler thread so that no thread start or death is missed or
+        // reported twice:
+        eventHandler.queueRunnable(() -> {
+            try {
+                standby = false;
+                threadsAtActivation = machine.allThreads();
+                for (ThreadReference thread : threadsAtActivation) {
+                    owner.threadStart(thread);
+                }
+                synchronized (this) {
+                    serverThread = owner.findThread(serverThreadReference);
+                    if (serverThreadStarted) {
+                        owner.raiseStateChangeEvent(Debugger.IDLE);
+                    }
+                }
+                activated.complete(null);
+            }
+            catch (RuntimeException e) {
+                activated.completeExceptionally(e);
+            }
+        });
+        if (disconnected) {
+            // The event handler has stopped, and won't run the activation:
+            activated.completeExceptionally(new VMDisconnectedException());
+        }
+        
+        try {
+            standbyError.connect(term.getErrorWriter());
+            standbyOutput.connect(term.getWriter());
+            redirectInput(term, standbyProcess, standbyStreamEncoding);
+            activated.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof VMDisconnectedException) {
+                throw (VMDisconnectedException) e.getCause();
+            }
+            throw new VMDisconnectedException(e.getCause().toString());
+        }
+        catch (InterruptedException | IOException e) {
+            throw new VMDisconnectedException(e.toString());
+        }
+        standbyProcess = null;
+        standbyOutput = null;
+        standbyError = null;
+    }
+
     /**
      * Wait for all our virtual machine initialisation to occur.
      */
@@ -583,6 +763,9 @@ public class VMReference
         if (machine != null) {
             queuedForClose = true;
             closeIO();
+            if (commandChannel != null) {
+                commandChannel.close();
+            }
             // cause the debug VM to exit when disposed
             try {
                 setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.EXIT_VM));
@@ -717,7 +900,7 @@ public class VMReference
         // get our worker thread
         workerThread = (ThreadReference) getStaticFieldObject(serverClass, ExecServer.WORKER_THREAD_NAME);
 
-        if (serverThread == null || workerThread == null) {
+        if (serverThreadReference == null || workerThread == null) {
             Debug.reportError("Cannot find fields on remote VM");
             return false;
         }
@@ -739,17 +922,27 @@ public class VMReference
     @OnThread(Tag.Any)
     ClassLoaderReference newClassLoader(URL [] urls)
     {
+        StringBuffer newcpath = new StringBuffer(200);
+        for (int index = 0; index < urls.length; index++) {
+            newcpath.append ( urls[index].toString());
+            newcpath.append ('\n');
+        }
+        
+        if (hasCommandChannel()) {
+            try {
+                currentLoader = (ClassLoaderReference) commandWithReturn(ExecServer.NEW_LOADER, newcpath.toString());
+                return currentLoader;
+            }
+            catch (IOException ioe) {
+                // Fall back to the worker thread
+            }
+        }
+        
         synchronized(workerThread) {
             workerThreadReadyWait();
             workerThreadReserved = true;
             setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.NEW_LOADER));
             
-            StringBuffer newcpath = new StringBuffer(200);
-            for (int index = 0; index < urls.length; index++) {
-                newcpath.append ( urls[index].toString());
-                newcpath.append ('\n');
-            }
-            
             setStaticFieldObject(serverClass, ExecServer.CLASSPATH_NAME, newcpath.toString());
             
             workerThreadReady = false;
@@ -804,6 +997,16 @@ public class VMReference
     @OnThread(Tag.NOTVMEventHandler)
     ReferenceType loadClass(String className, ClassLoaderReference clr)
     {
+        if (clr == null && hasCommandChannel()) {
+            try {
+                ClassObjectReference robject = (ClassObjectReference) commandWithReturn(ExecServer.LOAD_CLASS, className);
+                return robject == null ? null : robject.reflectedType();
+            }
+            catch (IOException ioe) {
+                // Fall back to the worker thread
+            }
+        }
+        
         synchronized(workerThread) {
             workerThreadReadyWait();
             workerThreadReserved = true;
@@ -844,8 +1047,7 @@ public class VMReference
             serverThreadStartWait();
             
             // Store the class and method to call
-            setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.LOAD_INIT_CLASS));
+            setServerAction(ExecServer.LOAD_INIT_CLASS, className, null);
             
             // Resume the thread, wait for it to finish and the new thread to start
             serverThreadStarted = false;
@@ -853,12 +1055,13 @@ public class VMReference
             serverThreadStartWait();
             
             // Get return value
-            ClassObjectReference rval = (ClassObjectReference) getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
+            ObjectReference [] results = getServerResults();
+            ClassObjectReference rval = (ClassObjectReference) results[0];
             if (rval == null)
                 throw new ClassNotFoundException("Remote class not found: " + className);
             
             // check for and report exceptions which occurred during initialization
-            ObjectReference exception = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
+            ObjectReference exception = results[1];
             if (exception != null) {
                 exceptionEvent(new InvocationException(exception));
             }
@@ -889,8 +1092,7 @@ public class VMReference
             serverThreadStartWait();
             
             // Store the class and method to call
-            setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.EXEC_SHELL));
+            setServerAction(ExecServer.EXEC_SHELL, className, null);
             
             // Resume the thread, wait for it to finish and the new thread to start
             serverThreadStarted = false;
@@ -898,17 +1100,17 @@ public class VMReference
             serverThreadStartWait();
             
             // Get return value and check for exceptions
-            ObjectReference rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
+            ObjectReference [] results = getServerResults();
+            ObjectReference rval = results[0];
             if (rval == null) {
-                ObjectReference exception = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
+                ObjectReference exception = results[1];
                 if (exception != null) {
                     exceptionEvent(new InvocationException(exception));
                     return new DebuggerResult(lastException);
                 }
             }
             
-            ObjectReference objR = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
-            return new DebuggerResult(JdiObject.getDebuggerObject(objR));
+            return new DebuggerResult(JdiObject.getDebuggerObject(rval));
         }
         catch (VMDisconnectedException e) {
             exitStatus = getDebuggerExitStatus();
@@ -976,11 +1178,40 @@ public class VMReference
      */
     @OnThread(Tag.NOTVMEventHandler)
     public DebuggerResult instantiateClass(String className, String [] paramTypes, ObjectReference [] args)
+    {
+        return invokeWithArguments(ExecServer.INSTANTIATE_CLASS_ARGS, className, null, null, paramTypes, args);
+    }
+
+    /**
+     * Invoke a method with arguments, on the server thread. The parameter types
+     * of the method must be supplied (String[]) as well as the argument values
+     * (ObjectReference []). Arguments for primitive parameters are given as
+     * string mirrors of their values.
+     * 
+     * @param className  The name of the class which declares the method
+     * @param methodName The name of the method
+     * @param target     The object to call the method on, or null for a static method
+     * @param paramTypes The parameter types of the method (class or primitive type names)
+     * @param args       The argument values to use in the method call
+     * 
+     * @return  The result of the call, wrapped as the result of a shell class is wrapped
+     *          (the null object for a void method)
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    public DebuggerResult invokeMethod(String className, String methodName, ObjectReference target,
+            String [] paramTypes, ObjectReference [] args)
+    {
+        return invokeWithArguments(ExecServer.INVOKE_METHOD, className, methodName, target, paramTypes, args);
+    }
+
+    @OnThread(Tag.NOTVMEventHandler)
+    private DebuggerResult invokeWithArguments(int action, String className, String methodName,
+            ObjectReference target, String [] paramTypes, ObjectReference [] args)
     {
         ObjectReference obj = null;
         exitStatus = Debugger.NORMAL_EXIT;
         try {
-            obj = invokeConstructor(className, paramTypes, args);
+            obj = execWithArguments(action, className, methodName, target, paramTypes, args);
         }
         catch (VMDisconnectedException e) {
             exitStatus = getDebuggerExitStatus();
@@ -993,7 +1224,7 @@ public class VMReference
             exitStatus = Debugger.EXCEPTION;
             lastException = new ExceptionDescription("Internal BlueJ error: unexpected exception in remote VM\n" + e);
         }
-        if (obj == null) {
+        if (obj == null && (action != ExecServer.INVOKE_METHOD || exitStatus == Debugger.EXCEPTION)) {
             return new DebuggerResult(lastException);
         }
         else {
@@ -1034,11 +1265,23 @@ public class VMReference
     @OnThread(Tag.VMEventHandler)
     public void vmDisconnectEvent()
     {
+        disconnected = true;
+        CompletableFuture<Void> activated = activation;
+        if (activated != null) {
+            activated.completeExceptionally(new VMDisconnectedException());
+        }
+        if (standby) {
+            // Not in use, so the owner only needs to forget about it:
+            owner.standbyVMDisconnected(this);
+        }
+        
         synchronized (this) {
             // Do the owner disconnect first, because it is synchronized on
             // JdiDebugger. This allows machine loader thread to check the exit
             // status in a meaningful way.
-            owner.vmDisconnect();
+            if (! standby) {
+                owner.vmDisconnect();
+            }
             
             // If VM disconnect occurs during invocation, the server thread won't
             // restart in this VM; the method waiting for it to start will hang
@@ -1059,6 +1302,9 @@ public class VMReference
         synchronized (vmToReferenceMap) {
             vmToReferenceMap.remove(machine);
         }
+        synchronized (fieldLayouts) {
+            fieldLayouts.clear();
+        }
     }
 
     /**
@@ -1067,6 +1313,10 @@ public class VMReference
     @OnThread(Tag.VMEventHandler)
     public void threadStartEvent(ThreadStartEvent tse)
     {
+        if (standby || threadsAtActivation.contains(tse.thread())) {
+            // Reported on activation
+            return;
+        }
         owner.threadStart(tse.thread());
     }
 
@@ -1077,6 +1327,9 @@ public class VMReference
     public void threadDeathEvent(ThreadDeathEvent tde)
     {
         ThreadReference tr = tde.thread();
+        if (standby) {
+            return;
+        }
         owner.threadDeath(tr);
 
         // There appears to be a VM bug related to system.exit() being called
@@ -1220,8 +1473,11 @@ public class VMReference
             // wake up the waitForStartup() method
             synchronized (this) {
                 serverThreadStarted = true;
-                serverThread = owner.findThread(event.thread());
-                owner.raiseStateChangeEvent(Debugger.IDLE);
+                serverThreadReference = event.thread();
+                if (! standby) {
+                    serverThread = owner.findThread(event.thread());
+                    owner.raiseStateChangeEvent(Debugger.IDLE);
+                }
                 notifyAll();
             }
         }
@@ -1352,30 +1608,44 @@ public class VMReference
     private void buildNestedTypes(ReferenceType rootType, List<ReferenceType> l)
     {
         try {
-            synchronized(workerThread) {
-                workerThreadReadyWait();
-                workerThreadReserved = true;
-                setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.LOAD_ALL));
-                
-                // parameters
-                setStaticFieldObject(serverClass, ExecServer.CLASSNAME_NAME, rootType.name());
-                
-                workerThreadReady = false;
-                workerThread.resume();
-                
-                workerThreadFinishWait();
-                ObjectReference or = getStaticFieldObject(serverClass, ExecServer.WORKER_RETURN_NAME);
-                workerThreadReserved = false;
-                workerThread.notify();
-                
-                ArrayReference inners = (ArrayReference) or;
-                Iterator<Value> i = inners.getValues().iterator();
-                while (i.hasNext()) {
-                    ClassObjectReference cor = (ClassObjectReference) i.next();
-                    ReferenceType rt = cor.reflectedType();
-                    if (rt.isPrepared()) {
-                        l.add(rt);
-                    }
+            ObjectReference or = null;
+            boolean loaded = false;
+            if (hasCommandChannel()) {
+                try {
+                    or = commandWithReturn(ExecServer.LOAD_ALL, rootType.name());
+                    loaded = true;
+                }
+                catch (IOException ioe) {
+                    // Fall back to the worker thread
+                }
+            }
+            
+            if (! loaded) {
+                synchronized(workerThread) {
+                    workerThreadReadyWait();
+                    workerThreadReserved = true;
+                    setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.LOAD_ALL));
+                    
+                    // parameters
+                    setStaticFieldObject(serverClass, ExecServer.CLASSNAME_NAME, rootType.name());
+                    
+                    workerThreadReady = false;
+                    workerThread.resume();
+                    
+                    workerThreadFinishWait();
+                    or = getStaticFieldObject(serverClass, ExecServer.WORKER_RETURN_NAME);
+                    workerThreadReserved = false;
+                    workerThread.notify();
+                }
+            }
+            
+            ArrayReference inners = (ArrayReference) or;
+            Iterator<Value> i = inners.getValues().iterator();
+            while (i.hasNext()) {
+                ClassObjectReference cor = (ClassObjectReference) i.next();
+                ReferenceType rt = cor.reflectedType();
+                if (rt.isPrepared()) {
+                    l.add(rt);
                 }
             }
         }
@@ -1673,8 +1943,7 @@ public class VMReference
         serverThreadStartWait();
 
         // Store the class and method to call
-        setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-        setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.LAUNCH_FX_APP));
+        setServerAction(ExecServer.LAUNCH_FX_APP, className, null);
 
         // Resume the thread, wait for it to finish and the new thread to start
         serverThreadStarted = false;
@@ -1682,14 +1951,11 @@ public class VMReference
         serverThreadStartWait();
 
         // Get return value and check for exceptions
-        Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
-        if (rval == null) {
-            ObjectReference exception = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
-            if (exception != null) {
-                exceptionEvent(new InvocationException(exception));
-            }
+        ObjectReference [] results = getServerResults();
+        if (results[0] == null && results[1] != null) {
+            exceptionEvent(new InvocationException(results[1]));
         }
-        return (ObjectReference) rval;
+        return results[0];
     }
 
     /**
@@ -1703,8 +1969,7 @@ public class VMReference
         serverThreadStartWait();
 
         // Store the class and method to call
-        setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-        setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.INSTANTIATE_CLASS));
+        setServerAction(ExecServer.INSTANTIATE_CLASS, className, null);
         
         // Resume the thread, wait for it to finish and the new thread to start
         serverThreadStarted = false;
@@ -1712,29 +1977,34 @@ public class VMReference
         serverThreadStartWait();
         
         // Get return value and check for exceptions
-        Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
-        if (rval == null) {
-            ObjectReference exception = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
-            if (exception != null) {
-                exceptionEvent(new InvocationException(exception));
-            }
+        ObjectReference [] results = getServerResults();
+        if (results[0] == null && results[1] != null) {
+            exceptionEvent(new InvocationException(results[1]));
         }
-        return (ObjectReference) rval;
+        return results[0];
     }
     
     /**
-     * Invoke a particular constructor with arguments. The parameter types
-     * of the constructor must be supplied (String[]) as well as the
-     * argument values (ObjectReference []).
+     * Invoke a particular constructor or method with arguments, using the given
+     * server thread action (INSTANTIATE_CLASS_ARGS or INVOKE_METHOD). The parameter
+     * types must be supplied (String[]) as well as the argument values
+     * (ObjectReference []).
      * 
-     * @param className  The name of the class to construct an instance of
-     * @param paramTypes The parameter types of the constructor (class names)
-     * @param args      The argument values to use in the constructor call
+     * @param action     The server thread action
+     * @param className  The name of the class to construct an instance of, or
+     *                   which declares the method
+     * @param methodName The name of the method (ignored for a constructor)
+     * @param target     The object to call the method on (null for a constructor
+     *                   or static method)
+     * @param paramTypes The parameter types (class names)
+     * @param args      The argument values to use in the call
      * 
-     * @return  The newly constructed object
+     * @return  The newly constructed object, or the wrapped method result; null if
+     *          the call could not be made, in which case exitStatus is EXCEPTION
      */
     @OnThread(Tag.NOTVMEventHandler)
-    private ObjectReference invokeConstructor(String className, String [] paramTypes, ObjectReference [] args)
+    private ObjectReference execWithArguments(int action, String className, String methodName,
+            ObjectReference target, String [] paramTypes, ObjectReference [] args)
     {
         // Calls to this method are serialized via serverThreadLock in JdiDebugger
         
@@ -1747,10 +2017,14 @@ public class VMReference
                 throw new IllegalArgumentException();
             }
 
-            // Store the class, parameter types and arguments
+            // Store the class and method names and the parameter types, through
+            // the command channel if we can:
+            boolean sentAction = sendServerAction(action, className, methodName, paramTypes);
 
+            // The arguments and target are objects in the debug VM, so they are
+            // always set through the debugger.
             ArrayType objectArray = (ArrayType) loadClass("[Ljava.lang.Object;");
-            ArrayType stringArray = (ArrayType) loadClass("[Ljava.lang.String;");
+            ArrayType stringArray = sentAction ? null : (ArrayType) loadClass("[Ljava.lang.String;");
 
             // avoid problems with ObjectCollectedExceptions, see:
             // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4257193
@@ -1758,7 +2032,7 @@ public class VMReference
             machine.suspend();
             needsMachineResume = true;
             ArrayReference argsArray = objectArray.newInstance(length);
-            ArrayReference typesArray = stringArray.newInstance(length);
+            ArrayReference typesArray = sentAction ? null : stringArray.newInstance(length);
             
             // Even with a suspended virtual machine, these arrays have been known to be garbage collected.
             // Force them to remain uncollected:
@@ -1772,7 +2046,7 @@ public class VMReference
                 }
             }
             
-            while (true) {
+            while (typesArray != null) {
                 try {
                     typesArray.disableCollection();
                     break;
@@ -1782,20 +2056,30 @@ public class VMReference
                 }
             }
             
-            // Fill the arrays with the correct values
-            for (int i = 0; i < length; i++) {
-                StringReference s = machine.mirrorOf(paramTypes[i]);
-                typesArray.setValue(i, s);
-                argsArray.setValue(i, args[i]);
+            // Fill the arrays with the correct values, each with a single request
+            if (length != 0) {
+                argsArray.setValues(Arrays.asList(args));
+                if (typesArray != null) {
+                    List<StringReference> types = new ArrayList<>(length);
+                    for (String paramType : paramTypes) {
+                        types.add(machine.mirrorOf(paramType));
+                    }
+                    typesArray.setValues(types);
+                }
             }
             
-            setStaticFieldValue(serverClass, ExecServer.PARAMETER_TYPES_NAME, typesArray);
             setStaticFieldValue(serverClass, ExecServer.ARGUMENTS_NAME, argsArray);
-            typesArray.enableCollection();
             argsArray.enableCollection();
-
-            setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.INSTANTIATE_CLASS_ARGS));
+            if (target != null) {
+                setStaticFieldValue(serverClass, ExecServer.METHOD_TARGET_NAME, target);
+            }
+            if (! sentAction) {
+                setStaticFieldValue(serverClass, ExecServer.PARAMETER_TYPES_NAME, typesArray);
+                typesArray.enableCollection();
+                setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
+                setStaticFieldObject(serverClass, ExecServer.METHOD_TO_RUN_NAME, methodName);
+                setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(action));
+            }
             machine.resume();
             needsMachineResume = false;
             
@@ -1805,19 +2089,18 @@ public class VMReference
             serverThreadStartWait();
             
             // Get return value and check for exceptions
-            Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
-            if (rval == null) {
-                ObjectReference exception = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
-                if (exception != null) {
-                    exceptionEvent(new InvocationException(exception));
-                }
+            ObjectReference [] results = getServerResults();
+            if (results[0] == null && results[1] != null) {
+                exceptionEvent(new InvocationException(results[1]));
             }
-            return (ObjectReference) rval;
+            return results[0];
 
         }
-        catch (ClassNotFoundException cnfe) { }
-        catch (ClassNotLoadedException cnle) { }
-        catch (InvalidTypeException ite) { }
+        catch (ClassNotFoundException | ClassNotLoadedException | InvalidTypeException e) {
+            // The call could not be made. Say so, rather than returning null as a void method would:
+            exitStatus = Debugger.EXCEPTION;
+            lastException = new ExceptionDescription("Internal BlueJ error: unexpected exception in remote VM\n" + e);
+        }
         finally {
             if (needsMachineResume) {
                 machine.resume();
@@ -1835,8 +2118,7 @@ public class VMReference
         serverThreadStartWait();
         
         // Store the class and method to call
-        setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, cl);
-        setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.TEST_SETUP));
+        setServerAction(ExecServer.TEST_SETUP, cl, null);
         
         // Resume the thread, wait for it to finish and the new thread to start
         serverThreadStarted = false;
@@ -1844,9 +2126,10 @@ public class VMReference
         serverThreadStartWait();
         
         // Get return value and check for exceptions
-        Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
+        ObjectReference [] results = getServerResults();
+        Value rval = results[0];
         if (rval == null) {
-            ObjectReference e = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
+            ObjectReference e = results[1];
             if (e != null) {
                 exceptionEvent(new InvocationException(e));
                 throw new InvocationException(e);
@@ -1879,18 +2162,17 @@ public class VMReference
         serverThreadStartWait();
         
         // Store the class and method to call
-        setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, cl);
-        setStaticFieldObject(serverClass, ExecServer.METHOD_TO_RUN_NAME, method);
-        setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.TEST_RUN));
+        setServerAction(ExecServer.TEST_RUN, cl, method);
 
         // Resume the thread, wait for it to finish and the new thread to start
         serverThreadStarted = false;
         resumeServerThread();
         serverThreadStartWait();
         
-        Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
+        ObjectReference [] results = getServerResults();
+        Value rval = results[0];
         if (rval == null) {
-            ObjectReference e = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
+            ObjectReference e = results[1];
             if (e != null) {
                 exceptionEvent(new InvocationException(e));
                 throw new InvocationException(e);
@@ -1909,7 +2191,7 @@ public class VMReference
         serverThreadStartWait();
             
         // set the action to "dispose windows"
-        setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.DISPOSE_WINDOWS));
+        setServerAction(ExecServer.DISPOSE_WINDOWS, null, null);
         
         // Resume the thread, it then proceeds to remove open windows
         serverThreadStarted = false;
@@ -1948,6 +2230,16 @@ public class VMReference
      */
     void removeObject(String scopeId, String instanceName)
     {
+        if (hasCommandChannel()) {
+            try {
+                commandChannel.send(ExecServer.REMOVE_OBJECT, scopeId, instanceName);
+                return;
+            }
+            catch (IOException ioe) {
+                // Fall back to the worker thread
+            }
+        }
+        
         synchronized(workerThread) {
             try {
                 workerThreadReadyWait();
@@ -1964,6 +2256,91 @@ public class VMReference
         }
     }
 
+    /**
+     * Check whether the command channel to the ExecServer can be used.
+     */
+    @OnThread(Tag.Any)
+    private boolean hasCommandChannel()
+    {
+        return commandChannel != null && commandChannel.isConnected();
+    }
+    
+    /**
+     * Carry out an action using the command channel, and get the object which it returns
+     * (which the ExecServer leaves in a static field).
+     * 
+     * @return  The returned object, or null if the action failed.
+     * @throws IOException  if the command channel fails
+     */
+    @OnThread(Tag.Any)
+    private ObjectReference commandWithReturn(int action, String... strings) throws IOException
+    {
+        // Hold the channel until we have the result, so that no other command replaces it:
+        synchronized (commandChannel) {
+            ExecCommand reply = commandChannel.send(action, strings);
+            if (reply.getCode() != ExecCommand.REPLY_OK) {
+                return null;
+            }
+            return getStaticFieldObject(serverClass, ExecServer.COMMAND_RETURN_NAME);
+        }
+    }
+    
+    /**
+     * Set the server thread's next action, and its class and method names and parameter
+     * types, using the command channel. The server thread must be waiting.
+     * 
+     * @return  true if the action was set; false if the command channel is not available,
+     *          in which case the caller must set the action through the debugger.
+     */
+    private boolean sendServerAction(int action, String className, String methodName, String [] paramTypes)
+    {
+        if (hasCommandChannel()) {
+            String [] strings = new String[3 + paramTypes.length];
+            strings[0] = Integer.toString(action);
+            strings[1] = className;
+            strings[2] = methodName;
+            System.arraycopy(paramTypes, 0, strings, 3, paramTypes.length);
+            try {
+                return commandChannel.send(ExecCommand.SET_SERVER_ACTION, strings).getCode() == ExecCommand.REPLY_OK;
+            }
+            catch (IOException ioe) {
+                // Fall back to the debugger
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Set the server thread's next action, and the class and method (either may be null)
+     * it applies to. The server thread must be waiting.
+     */
+    private void setServerAction(int action, String className, String methodName)
+    {
+        if (! sendServerAction(action, className, methodName, new String[0])) {
+            if (className != null) {
+                setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
+            }
+            if (methodName != null) {
+                setStaticFieldObject(serverClass, ExecServer.METHOD_TO_RUN_NAME, methodName);
+            }
+            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(action));
+        }
+    }
+    
+    /**
+     * Get the results of the server thread's last action: the return value and the
+     * exception thrown (either may be null). Both are fetched with a single request.
+     */
+    private ObjectReference [] getServerResults()
+    {
+        Field returnField = serverClass.fieldByName(ExecServer.METHOD_RETURN_NAME);
+        Field exceptionField = serverClass.fieldByName(ExecServer.EXCEPTION_NAME);
+        Map<Field, Value> values = serverClass.getValues(Arrays.asList(returnField, exceptionField));
+        return new ObjectReference[] {
+            (ObjectReference) values.get(returnField), (ObjectReference) values.get(exceptionField)
+        };
+    }
+
     /**
      * Check whether a thread is sitting on the server thread breakpoint. 
      */
@@ -2169,6 +2546,56 @@ public class VMReference
         eventHandler.queueRunnable(runnable);
     }
 
+    /**
+     * A writer which holds what is written to it (up to a limit) until it is connected
+     * to another writer, and then passes everything on. This is for the output of a
+     * standby VM, which is shown only if the VM is brought into use.
+     */
+    @OnThread(Tag.Any)
+    private static class PendingWriter extends Writer
+    {
+        // The most output held; more than this is dropped:
+        private static final int MAX_PENDING = 64 * 1024;
+
+        private StringBuilder pending = new StringBuilder();
+        private Writer target;
+
+        /**
+         * Write out what has been held, and pass on everything written from now on.
+         */
+        synchronized void connect(Writer target) throws IOException
+        {
+            target.write(pending.toString());
+            target.flush();
+            pending = null;
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void write(char[] cbuf, int off, int len) throws IOException
+        {
+            if (target != null) {
+                target.write(cbuf, off, len);
+            }
+            else {
+                pending.append(cbuf, off, Math.min(len, MAX_PENDING - pending.length()));
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException
+        {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
     /**
      * The thread for retrieving output from the remote machine and redirecting
      * it to the terminal.
@@ -2219,6 +2646,18 @@ public class VMReference
         }
     }
 
+    /**
+     * Get the field layout of a class in this VM, working it out if this is the first
+     * time it is needed.
+     */
+    @OnThread(Tag.Any)
+    JdiFieldLayout getFieldLayout(ReferenceType type)
+    {
+        synchronized (fieldLayouts) {
+            return fieldLayouts.computeIfAbsent(type, JdiFieldLayout::new);
+        }
+    }
+
     /**
      * Find the VMReference which corresponds to the supplied VirtualMachine instance.
      */
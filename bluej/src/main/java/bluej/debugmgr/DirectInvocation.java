@@ -0,0 +1,620 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugmgr;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bluej.debugger.Debugger;
+import bluej.debugger.DebuggerObject;
+import bluej.debugger.DebuggerResult;
+import bluej.debugger.gentype.GenTypeClass;
+import bluej.debugger.gentype.GenTypeParameter;
+import bluej.debugger.gentype.JavaType;
+import bluej.debugmgr.objectbench.ObjectWrapper;
+import bluej.utility.JavaReflective;
+import bluej.views.CallableView;
+import bluej.views.MethodView;
+import bluej.views.View;
+import bluej.views.ViewFilter;
+import bluej.views.ViewFilter.StaticOrInstance;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A constructor or method call which can be executed directly in the debug VM, without
+ * writing and compiling a shell class. This is only possible when there is nothing for the
+ * compiler to do: every argument must be a literal (of a primitive type or String), null,
+ * or the name of an object on the object bench, and must be assignable to its parameter
+ * without any conversion other than a widening (or constant narrowing) of a primitive.
+ * Generic methods, varargs and anything else go via a shell class as before.
+ */
+@OnThread(Tag.FXPlatform)
+class DirectInvocation
+{
+    private static final JavaType STRING_TYPE = new GenTypeClass(new JavaReflective(String.class));
+
+    private final String className;
+    private final String methodName; // null for a constructor
+    private final DebuggerObject target; // null for a constructor or static method
+    private final String [] paramTypes;
+    private final Argument [] args;
+
+    private DirectInvocation(String className, String methodName, DebuggerObject target,
+            String [] paramTypes, Argument [] args)
+    {
+        this.className = className;
+        this.methodName = methodName;
+        this.target = target;
+        this.paramTypes = paramTypes;
+        this.args = args;
+    }
+
+    /**
+     * Check whether a call made from the object bench or the class menu can be made
+     * directly.
+     *
+     * @param member      The constructor or method to call
+     * @param args        The argument expressions (may be null if there are none)
+     * @param argTypes    The types of the parameters, with type parameters mapped
+     * @param typeParams  The type arguments given for a constructor of a generic class
+     * @param target      The object to call an instance method on
+     * @param benchVars   The objects on the object bench
+     * @param pkgName     The package from which the call is made
+     * @return  The direct invocation, or null if the call must go via a shell class.
+     */
+    static DirectInvocation forCall(CallableView member, String [] args, JavaType [] argTypes,
+            String [] typeParams, DebuggerObject target, ValueCollection benchVars, String pkgName)
+    {
+        if (member.isVarArgs() || !isAccessible(member, pkgName)) {
+            return null;
+        }
+        String methodName = null;
+        if (member.isConstructor()) {
+            if (typeParams != null && typeParams.length != 0) {
+                return null;
+            }
+        }
+        else {
+            if (member.isGeneric()) {
+                return null;
+            }
+            methodName = ((MethodView) member).getName();
+            if (member.isStatic()) {
+                target = null;
+            }
+            else if (target == null) {
+                return null;
+            }
+        }
+
+        int numArgs = args == null ? 0 : args.length;
+        if (numArgs != member.getParameterCount() || (numArgs != 0 && argTypes == null)) {
+            return null;
+        }
+        Argument [] arguments = new Argument[numArgs];
+        for (int i = 0; i < numArgs; i++) {
+            arguments[i] = argument(args[i], argTypes[i], benchVars, null);
+            if (arguments[i] == null) {
+                return null;
+            }
+        }
+        return new DirectInvocation(member.getClassName(), methodName, target,
+                paramTypeNames(member), arguments);
+    }
+
+    /**
+     * Check whether a free-form (codepad) command can be executed directly. Only a single
+     * call of a method on an object from the object bench, with simple arguments, is
+     * executed directly: {@code object.method(args)}, optionally followed by a semicolon.
+     *
+     * @param command    The command text
+     * @param hasResult  Whether a result is expected (i.e. whether the command is an
+     *                   expression rather than a statement)
+     * @param localVars  The codepad's local variables, which hide bench objects
+     * @param benchVars  The objects on the object bench
+     * @param pkgName    The package from which the call is made
+     * @param loader     The project class loader, used to load the object's class
+     * @return  The direct invocation, or null if the command must go via a shell class.
+     */
+    static DirectInvocation forCommand(String command, boolean hasResult, ValueCollection localVars,
+            ValueCollection benchVars, String pkgName, ClassLoader loader)
+    {
+        String [] parts = splitCall(command);
+        if (parts == null) {
+            return null;
+        }
+        String objName = parts[0];
+        String methodName = parts[1];
+        int numArgs = parts.length - 2;
+        if ((localVars != null && localVars.getNamedValue(objName) != null)
+                || !(benchVars.getNamedValue(objName) instanceof ObjectWrapper wrapper)) {
+            return null;
+        }
+        DebuggerObject target = wrapper.getObject();
+
+        Class<?> cl;
+        try {
+            cl = Class.forName(target.getClassName(), false, loader);
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+
+        // We leave overload resolution to the compiler:
+        MethodView method = null;
+        for (MethodView candidate : findMethods(cl, methodName, numArgs)) {
+            if (method != null) {
+                return null;
+            }
+            method = candidate;
+        }
+        if (method == null || method.isStatic() || method.isGeneric() || method.isVarArgs()
+                || !isAccessible(method, pkgName)) {
+            return null;
+        }
+
+        // The shell class would give the result the declared type of the expression; we
+        // wrap it as Object. That only makes a difference to the result if the type is generic:
+        if (hasResult == method.isVoid() || !(method.getMethod().getGenericReturnType() instanceof Class)) {
+            return null;
+        }
+
+        Map<String, GenTypeParameter> typeMap = null;
+        GenTypeClass objType = wrapper.getGenType().asClass();
+        if (objType != null) {
+            GenTypeClass superType = objType.mapToSuper(method.getClassName());
+            typeMap = superType == null ? null : superType.getMap();
+        }
+        JavaType [] paramTypes = method.getParamTypes(false);
+        Argument [] arguments = new Argument[numArgs];
+        for (int i = 0; i < numArgs; i++) {
+            JavaType paramType = paramTypes[i].mapTparsToTypes(typeMap).getUpperBound();
+            arguments[i] = argument(parts[i + 2], paramType, benchVars, localVars);
+            if (arguments[i] == null) {
+                return null;
+            }
+        }
+        return new DirectInvocation(method.getClassName(), methodName, target,
+                paramTypeNames(method), arguments);
+    }
+
+    /**
+     * Create the argument values in the debug VM. Must be called before invoke().
+     *
+     * @return  The argument values, or null if the values could not be created
+     *          (for instance, because the VM has terminated)
+     */
+    DebuggerObject [] makeArguments(Debugger debugger)
+    {
+        DebuggerObject [] values = new DebuggerObject[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].object != null) {
+                values[i] = args[i].object;
+            }
+            else if (args[i].value != null) {
+                values[i] = debugger.getMirror(args[i].value);
+                if (values[i] == null) {
+                    return null;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Make the call. This waits until the call has completed, and so must not be
+     * called on the FX thread.
+     */
+    @OnThread(Tag.Worker)
+    DebuggerResult invoke(Debugger debugger, DebuggerObject [] argValues)
+    {
+        if (methodName == null) {
+            return debugger.instantiateClass(className, paramTypes, argValues);
+        }
+        else {
+            return debugger.invokeMethod(className, methodName, target, paramTypes, argValues);
+        }
+    }
+
+    /**
+     * Check whether the callable could be called from the given package (where
+     * the shell class would be).
+     */
+    private static boolean isAccessible(CallableView member, String pkgName)
+    {
+        StaticOrInstance kind = member.isStatic() ? StaticOrInstance.STATIC : StaticOrInstance.INSTANCE;
+        return new ViewFilter(kind, pkgName).test(member);
+    }
+
+    private static String [] paramTypeNames(CallableView member)
+    {
+        Class<?> [] params = member.getParameters();
+        String [] names = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            names[i] = params[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Find the methods with the given name and number of parameters which a class
+     * declares or inherits. Overridden methods are only included once.
+     */
+    private static Collection<MethodView> findMethods(Class<?> cl, String name, int numParams)
+    {
+        Map<String, MethodView> methods = new LinkedHashMap<>();
+        List<Class<?>> types = new ArrayList<>();
+        types.add(cl);
+        // Breadth-first through the supertypes, so that an overriding method is seen first:
+        for (int i = 0; i < types.size(); i++) {
+            Class<?> type = types.get(i);
+            for (MethodView m : View.getView(type).getDeclaredMethods()) {
+                if (m.getName().equals(name) && m.getParameterCount() == numParams) {
+                    methods.putIfAbsent(m.getCallSignature(), m);
+                }
+            }
+            if (type.getSuperclass() != null) {
+                types.add(type.getSuperclass());
+            }
+            for (Class<?> iface : type.getInterfaces()) {
+                if (!types.contains(iface)) {
+                    types.add(iface);
+                }
+            }
+        }
+        return methods.values();
+    }
+
+    /**
+     * Split a command of the form "name.method(arg, arg...)", optionally followed by
+     * a semicolon, into the name, the method name and the argument expressions.
+     *
+     * @return  The parts, or null if the command is not of that form
+     */
+    static String [] splitCall(String command)
+    {
+        String s = command.trim();
+        if (s.endsWith(";")) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        int open = s.indexOf('(');
+        if (open == -1 || !s.endsWith(")")) {
+            return null;
+        }
+        String callee = s.substring(0, open).trim();
+        int dot = callee.indexOf('.');
+        if (dot == -1) {
+            return null;
+        }
+        String objName = callee.substring(0, dot).trim();
+        String methodName = callee.substring(dot + 1).trim();
+        if (!isIdentifier(objName) || !isIdentifier(methodName)) {
+            return null;
+        }
+
+        List<String> parts = new ArrayList<>();
+        parts.add(objName);
+        parts.add(methodName);
+        String argList = s.substring(open + 1, s.length() - 1);
+        if (argList.isBlank()) {
+            return parts.toArray(new String[0]);
+        }
+
+        // Split on commas which are not inside a string or character literal. Anything
+        // containing parentheses or braces is not simple enough:
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < argList.length(); i++) {
+            char c = argList.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                }
+                else if (c == quote) {
+                    quote = 0;
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == ',') {
+                parts.add(argList.substring(start, i).trim());
+                start = i + 1;
+            }
+            else if (c == '(' || c == ')' || c == '{' || c == '}') {
+                return null;
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        parts.add(argList.substring(start).trim());
+        return parts.toArray(new String[0]);
+    }
+
+    private static boolean isIdentifier(String s)
+    {
+        if (s.isEmpty() || !Character.isJavaIdentifierStart(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < s.length(); i++) {
+            if (!Character.isJavaIdentifierPart(s.charAt(i))) {
+                return false;
+            }
+        }
+        return !s.equals("new") && !s.equals("this") && !s.equals("super");
+    }
+
+    /**
+     * Work out the value of an argument expression for a parameter of the given type.
+     *
+     * @return the argument, or null if the expression is not a simple literal or bench
+     *         object assignable to the parameter type.
+     */
+    private static Argument argument(String expr, JavaType type, ValueCollection benchVars, ValueCollection localVars)
+    {
+        expr = expr.trim();
+        if (!type.isPrimitive() && isIdentifier(expr) && !expr.equals("null")
+                && (localVars == null || localVars.getNamedValue(expr) == null)) {
+            if (benchVars.getNamedValue(expr) instanceof ObjectWrapper wrapper
+                    && type.isAssignableFrom(wrapper.getGenType())) {
+                return new Argument(null, wrapper.getObject());
+            }
+            return null;
+        }
+        String value = literalValue(expr, type);
+        if (value == null) {
+            return null;
+        }
+        return new Argument(value == NULL_VALUE ? null : value, null);
+    }
+
+    // Returned by literalValue for the null literal:
+    static final String NULL_VALUE = new String("null");
+
+    /**
+     * Get the value of a literal, converted to the given parameter type, as a string:
+     * the string itself for a String literal, or the string representation of a
+     * primitive value (as understood by Integer.valueOf etc.).
+     *
+     * @return  The value, NULL_VALUE for the null literal, or null if the expression
+     *          is not a literal which can be assigned to the type without a cast or boxing
+     */
+    static String literalValue(String expr, JavaType type)
+    {
+        if (!type.isPrimitive()) {
+            if (expr.equals("null")) {
+                return NULL_VALUE;
+            }
+            if (expr.startsWith("\"") && type.isAssignableFrom(STRING_TYPE)) {
+                return stringLiteral(expr);
+            }
+            return null;
+        }
+
+        if (type.typeIs(JavaType.JT_BOOLEAN)) {
+            return expr.equals("true") || expr.equals("false") ? expr : null;
+        }
+        if (expr.startsWith("'")) {
+            String c = charLiteral(expr);
+            if (c == null) {
+                return null;
+            }
+            // A char can be widened to int, long, float, double:
+            return convertIntegral(c.charAt(0), false, type);
+        }
+
+        boolean negative = expr.startsWith("-");
+        String digits = negative ? expr.substring(1) : expr;
+        if (digits.isEmpty() || !(Character.isDigit(digits.charAt(0)) || digits.charAt(0) == '.')) {
+            return null;
+        }
+
+        boolean hex = digits.startsWith("0x") || digits.startsWith("0X");
+        char last = Character.toLowerCase(digits.charAt(digits.length() - 1));
+        if (!hex && (last == 'f' || last == 'd' || digits.contains(".") || digits.contains("e") || digits.contains("E"))) {
+            return floatingLiteral(expr, last, type);
+        }
+
+        boolean isLong = last == 'l';
+        if (isLong) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        BigInteger magnitude;
+        try {
+            if (hex) {
+                magnitude = new BigInteger(digits.substring(2), 16);
+                // Hex literals give the bit pattern, which may be negative:
+                if (magnitude.bitLength() > (isLong ? 64 : 32)) {
+                    return null;
+                }
+                magnitude = BigInteger.valueOf(isLong ? magnitude.longValue() : magnitude.intValue());
+            }
+            else {
+                if (digits.length() > 1 && digits.startsWith("0")) {
+                    return null; // octal, leave it to the compiler
+                }
+                magnitude = new BigInteger(digits);
+                BigInteger limit = BigInteger.ONE.shiftLeft(isLong ? 63 : 31);
+                int cmp = magnitude.compareTo(limit);
+                if (cmp > 0 || (cmp == 0 && !negative)) {
+                    return null;
+                }
+            }
+        }
+        catch (NumberFormatException nfe) {
+            // Includes underscores, signs etc.
+            return null;
+        }
+        long value = negative ? magnitude.negate().longValue() : magnitude.longValue();
+        return convertIntegral(value, isLong, type);
+    }
+
+    /**
+     * Convert an integral constant to the given primitive type, as allowed by
+     * assignment conversion.
+     */
+    private static String convertIntegral(long value, boolean isLong, JavaType type)
+    {
+        if (type.typeIs(JavaType.JT_LONG)) {
+            return Long.toString(value);
+        }
+        if (type.typeIs(JavaType.JT_FLOAT)) {
+            return Float.toString((float) value);
+        }
+        if (type.typeIs(JavaType.JT_DOUBLE)) {
+            return Double.toString((double) value);
+        }
+        if (isLong) {
+            return null;
+        }
+        // Constant int values may be narrowed if they fit:
+        if (type.typeIs(JavaType.JT_INT)) {
+            return Long.toString(value);
+        }
+        if (type.typeIs(JavaType.JT_SHORT) && value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return Long.toString(value);
+        }
+        if (type.typeIs(JavaType.JT_BYTE) && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return Long.toString(value);
+        }
+        if (type.typeIs(JavaType.JT_CHAR) && value >= Character.MIN_VALUE && value <= Character.MAX_VALUE) {
+            return String.valueOf((char) value);
+        }
+        return null;
+    }
+
+    private static String floatingLiteral(String expr, char suffix, JavaType type)
+    {
+        // Decimal floating point literals only, as the hex form is rarely typed:
+        if (!expr.matches("-?([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][+-]?[0-9]+)?[fFdD]?")) {
+            return null;
+        }
+        boolean isFloat = suffix == 'f';
+        double value;
+        if (isFloat) {
+            value = Float.parseFloat(expr);
+        }
+        else {
+            value = Double.parseDouble(expr);
+        }
+        // It's an error for a literal to be out of range, or to round to zero when it isn't:
+        String mantissa = expr.split("[eE]")[0];
+        if (Double.isInfinite(value) || (value == 0 && mantissa.matches(".*[1-9].*"))) {
+            return null;
+        }
+        if (type.typeIs(JavaType.JT_DOUBLE)) {
+            return Double.toString(value);
+        }
+        if (type.typeIs(JavaType.JT_FLOAT) && isFloat) {
+            return Float.toString((float) value);
+        }
+        return null;
+    }
+
+    private static String charLiteral(String expr)
+    {
+        if (expr.length() < 3 || !expr.endsWith("'")) {
+            return null;
+        }
+        String contents = unescape(expr.substring(1, expr.length() - 1), '\'');
+        return contents != null && contents.length() == 1 ? contents : null;
+    }
+
+    private static String stringLiteral(String expr)
+    {
+        if (expr.length() < 2 || !expr.endsWith("\"") || expr.startsWith("\"\"\"")) {
+            return null;
+        }
+        return unescape(expr.substring(1, expr.length() - 1), '"');
+    }
+
+    /**
+     * Process the escape sequences in the contents of a string or character literal.
+     *
+     * @return  The string value, or null if the contents are not valid (or contain a
+     *          unicode escape, which we leave to the compiler)
+     */
+    private static String unescape(String contents, char quote)
+    {
+        StringBuilder sb = new StringBuilder(contents.length());
+        for (int i = 0; i < contents.length(); i++) {
+            char c = contents.charAt(i);
+            if (c == quote || c == '\n' || c == '\r') {
+                return null;
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == contents.length()) {
+                return null;
+            }
+            c = contents.charAt(i);
+            switch (c) {
+                case 'b': sb.append('\b'); break;
+                case 't': sb.append('\t'); break;
+                case 'n': sb.append('\n'); break;
+                case 'f': sb.append('\f'); break;
+                case 'r': sb.append('\r'); break;
+                case 's': sb.append(' '); break;
+                case '"': case '\'': case '\\': sb.append(c); break;
+                default:
+                    if (c >= '0' && c <= '7') {
+                        // Octal escape: up to three digits, with a maximum value of \377
+                        int end = i + 1;
+                        int maxEnd = Math.min(contents.length(), c <= '3' ? i + 3 : i + 2);
+                        while (end < maxEnd && contents.charAt(end) >= '0' && contents.charAt(end) <= '7') {
+                            end++;
+                        }
+                        sb.append((char) Integer.parseInt(contents.substring(i, end), 8));
+                        i = end - 1;
+                    }
+                    else {
+                        return null;
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * An argument value: either a bench object, or a value (string or primitive) to
+     * mirror in the debug VM. If neither, the argument is null.
+     */
+    private static class Argument
+    {
+        final String value;
+        final DebuggerObject object;
+
+        Argument(String value, DebuggerObject object)
+        {
+            this.value = value;
+            this.object = object;
+        }
+    }
+}
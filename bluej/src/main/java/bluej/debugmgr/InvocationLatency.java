@@ -0,0 +1,94 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugmgr;
+
+import java.util.concurrent.TimeUnit;
+
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Latency figures for interactive invocations, from the start of the invocation
+ * (after any call dialog) until the result is available. Direct invocations and
+ * those which compile a shell class are recorded separately, and each invocation
+ * is written to the debug log along with the running figures for its path.
+ */
+@OnThread(Tag.Any)
+public enum InvocationLatency
+{
+    DIRECT("direct"), SHELL("shell class");
+
+    private final String description;
+    private int count;
+    private long totalNanos;
+    private long maxNanos;
+
+    private InvocationLatency(String description)
+    {
+        this.description = description;
+    }
+
+    /**
+     * Record an invocation which was started at the given time (from System.nanoTime()).
+     */
+    public synchronized void record(long startNanos)
+    {
+        long nanos = System.nanoTime() - startNanos;
+        count += 1;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        Debug.log("Invocation (" + description + ") took " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                + " ms; " + this);
+    }
+
+    /**
+     * Get the number of invocations recorded.
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Get the mean latency of the invocations recorded, in milliseconds.
+     */
+    public synchronized long getMeanMillis()
+    {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+    }
+
+    /**
+     * Get the greatest latency of the invocations recorded, in milliseconds.
+     */
+    public synchronized long getMaxMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return description + ": " + count + " invocations, mean " + getMeanMillis()
+                + " ms, max " + getMaxMillis() + " ms";
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2014,2015,2016,2018,2019,2020,2021,2023  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2014,2015,2016,2018,2019,2020,2021,2023,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -78,7 +78,8 @@ import java.util.Map;
 /**
  * Debugger class that arranges invocation of constructors or methods. This
  * class constructs a "shell" java source file, compiles it, then loads the
- * resulting class file and executes a method in a new thread.
+ * resulting class file and executes a method in a new thread. Simple calls
+ * (see DirectInvocation) are executed directly, without a shell class.
  * 
  * @author Michael Kolling
  */
@@ -125,6 +126,8 @@ public class Invoker
     
     /** Name of the target object to which the call is applied */
     private final String instanceName;
+    /** The target object to which the call is applied, if known */
+    private DebuggerObject instanceObject;
 
     @OnThread(Tag.FXPlatform)
     private CallDialog dialog;
@@ -136,6 +139,10 @@ public class Invoker
     /** Whether we've already seen an error from the compiler */
     private boolean gotError;
 
+    /** When the current invocation started (System.nanoTime()), and how it is being done */
+    private long invocationStart;
+    private InvocationLatency invocationPath;
+
     /**
      * Construct an invoker, specifying most attributes manually.
      */
@@ -262,6 +269,7 @@ public class Invoker
         
         this.watcher = watcher;
         this.shellName = getShellName();
+        this.instanceObject = debuggerObject;
         codepad = false;
 
         constructing = false;
@@ -428,16 +436,18 @@ public class Invoker
             }
         }
 
-        doInvocation(args, argTypeStrings, typeParams);
+        doInvocation(args, argTypes, argTypeStrings, typeParams);
     }
 
     /**
      * Workhorse doInvocation method which takes a string array for the
-     * argument types instead of a GenType array. This constructs the code strings,
-     * writes the invocation file, compiles it and eventually executes it.
+     * argument types as well as the GenType array. This constructs the code strings,
+     * writes the invocation file, compiles it and eventually executes it; or, if
+     * the call is simple enough, executes it directly.
      */
-    private void doInvocation(String[] args, String[] argTypes, String[] typeParams)
+    private void doInvocation(String[] args, JavaType[] argGenTypes, String[] argTypes, String[] typeParams)
     {
+        invocationStart = System.nanoTime();
         int numArgs = (args == null ? 0 : args.length);
         final String className = member.getClassName();
 
@@ -511,31 +521,17 @@ public class Invoker
             }
         }
 
-        if (constructing && member.getParameterCount() == 0 && (typeParams == null || typeParams.length == 0)) {
-            // Special case for construction of a class using the default constructor.
-            // We can do this without writing and compiling a shell file.
-            
+        // Calls with only literal and object bench arguments can be made without
+        // writing and compiling a shell file:
+        DirectInvocation direct = DirectInvocation.forCall(member, args, argGenTypes, typeParams,
+                instanceObject, objectBenchVars, pkgName);
+        DebuggerObject[] directArgs = direct == null ? null : direct.makeArguments(debugger);
+        if (directArgs != null) {
             commandString = command + actualArgString;
             watcher.beginCompile(); // there is no compile step, really
             watcher.beginExecution(ir);
-            
-            // We must however do so in a seperate thread. Otherwise a constructor which
-            // goes into an infinite loop can hang BlueJ.
-            new Thread("Invocation result") {
-                @OnThread(Tag.Worker)
-                public void run() {
-                    Platform.runLater(Invoker.this::closeCallDialog);
-                    
-                    DebuggerResult result = debugger.instantiateClass(className);
-
-                    Platform.runLater(() -> {
-                        // the execution is completed, get the result if there was one
-                        // (this could be either a construction or a function result)
-
-                        handleResult(result, false); // handles error situations
-                    });
-                }
-            }.start();
+            Platform.runLater(this::closeCallDialog);
+            startDirect(direct, directArgs);
         }
         else {
             if (isVoid)
@@ -642,6 +638,16 @@ public class Invoker
             ir = new StatementInvokerRecord(commandString);
         }
 
+        invocationStart = System.nanoTime();
+        DirectInvocation direct = DirectInvocation.forCommand(commandString, hasResult, localVars,
+                objectBenchVars, pkgName, pkg.getProject().getClassLoader());
+        DebuggerObject[] directArgs = direct == null ? null : direct.makeArguments(debugger);
+        if (directArgs != null) {
+            watcher.beginExecution(ir);
+            startDirect(direct, directArgs);
+            return true;
+        }
+
         File shell = writeInvocationFile("", commandString, !hasResult, resultType);
         if (shell != null) {
             compileInvocationFile(shell);
@@ -1044,6 +1050,7 @@ public class Invoker
      */
     private void compileInvocationFile(File shellFile)
     {
+        invocationPath = InvocationLatency.SHELL;
         File[] files = {shellFile};
         compiler.compile(files, new EventqueueCompileObserverAdapter(this));
     }
@@ -1205,6 +1212,31 @@ public class Invoker
         }.start();
     }
     
+    /**
+     * Execute a call directly, without a shell class. The arguments have already
+     * been created in the debug VM.
+     */
+    private void startDirect(DirectInvocation direct, DebuggerObject[] argValues)
+    {
+        invocationPath = InvocationLatency.DIRECT;
+
+        // We must do so in a separate thread. Otherwise a call which
+        // goes into an infinite loop can hang BlueJ.
+        new Thread("Invocation result") {
+            @OnThread(Tag.Worker)
+            public void run() {
+                DebuggerResult result = direct.invoke(debugger, argValues);
+
+                Platform.runLater(() -> {
+                    // the execution is completed, get the result if there was one
+                    // (this could be either a construction or a function result)
+
+                    handleResult(result, false); // handles error situations
+                });
+            }
+        }.start();
+    }
+
     /**
      * After an execution has finished, check whether there is a result (such as
      * a freshly created object, a function result or an exception) and make
@@ -1216,6 +1248,10 @@ public class Invoker
     @OnThread(Tag.FXPlatform)
     public void handleResult(DebuggerResult result, boolean unwrap)
     {
+        if (invocationPath != null) {
+            invocationPath.record(invocationStart);
+            invocationPath = null;
+        }
         try {
             // first, check whether we had an unexpected exit
             int status = result.getExitStatus();
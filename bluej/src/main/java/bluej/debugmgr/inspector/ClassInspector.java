@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2011,2013,2014,2016,2017,2018,2019  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2011,2013,2014,2016,2017,2018,2019,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -189,7 +189,7 @@ public class ClassInspector extends Inspector
     @OnThread(Tag.FXPlatform)
     protected List<FieldInfo> getListData()
     {
-        List<DebuggerField> fields = myClass.getStaticFields();
+        List<DebuggerField> fields = myClass.getStaticFieldSnapshot();
         List<FieldInfo> fieldInfos = new ArrayList<FieldInfo>(fields.size());
         for (DebuggerField field : fields) {
             String desc = Inspector.fieldToString(field);
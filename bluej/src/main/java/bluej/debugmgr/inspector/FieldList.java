@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2013,2016,2017,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2013,2016,2017,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -102,22 +102,37 @@ public class FieldList extends ScrollPane
 
     /**
      * Sets the new fields and values.  If this is identical, the update is skipped.
+     * If only values have changed, just the rows with changed values are updated.
      */
     public void setData(List<FieldInfo> listData)
     {
         if (listData.equals(curData))
             return;
         
+        if (hasSameDescriptions(listData))
+        {
+            // Same rows as before; only update the values which differ:
+            ObservableList<Node> children = content.getChildren();
+            for (int i = 0; i < listData.size(); i++)
+            {
+                String value = listData.get(i).getValue();
+                if (!value.equals(curData.get(i).getValue()))
+                {
+                    BorderPane wrapper = (BorderPane)children.get(i * 2 + 1);
+                    setValueText((Label)wrapper.getCenter(), value);
+                }
+            }
+            curData.clear();
+            curData.addAll(listData);
+            return;
+        }
+        
         List<Node> children = new ArrayList<>();
         for (int i = 0; i < listData.size(); i++)
         {
             FieldInfo field = listData.get(i);
-            Label valueLabel = new Label(field.getValue());
-            if (OBJECT_REFERENCE.equals(valueLabel.getText()))
-            {
-                valueLabel.setGraphic(new ImageView(objectrefIcon));
-                valueLabel.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
-            }
+            Label valueLabel = new Label();
+            setValueText(valueLabel, field.getValue());
             Pane wrapper = new BorderPane(valueLabel);
             JavaFXUtil.addStyleClass(wrapper, "inspector-field-value-wrapper");
             JavaFXUtil.addStyleClass(valueLabel, "inspector-field-value-label");
@@ -142,6 +157,41 @@ public class FieldList extends ScrollPane
         select(sel);
         requestLayout();
     }
+
+    /**
+     * Checks whether the given data has the same rows (the same field descriptions,
+     * in the same order) as the current data.
+     */
+    private boolean hasSameDescriptions(List<FieldInfo> listData)
+    {
+        if (listData.size() != curData.size())
+            return false;
+        
+        for (int i = 0; i < listData.size(); i++)
+        {
+            if (!listData.get(i).getDescription().equals(curData.get(i).getDescription()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the text of a value label, showing an icon in place of object references.
+     */
+    private static void setValueText(Label valueLabel, String value)
+    {
+        valueLabel.setText(value);
+        if (OBJECT_REFERENCE.equals(value))
+        {
+            valueLabel.setGraphic(new ImageView(objectrefIcon));
+            valueLabel.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        }
+        else
+        {
+            valueLabel.setGraphic(null);
+            valueLabel.setContentDisplay(ContentDisplay.LEFT);
+        }
+    }
     
     /**
      * Sets the text to show when the list is empty
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2010,2011,2013,2014,2016,2017,2018,2019,2021,2023  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2010,2011,2013,2014,2016,2017,2018,2019,2021,2023,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -247,7 +247,7 @@ public class ObjectInspector extends Inspector
             return compressArrayList(obj);
         }
         else {
-            List<DebuggerField> fields = obj.getFields();
+            List<DebuggerField> fields = obj.getFieldSnapshot();
             List<FieldInfo> fieldInfos = new ArrayList<FieldInfo>(fields.size());
             for (DebuggerField field : fields) {
                 if (! Modifier.isStatic(field.getModifiers())) {
@@ -0,0 +1,81 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.editor.flow;
+
+import bluej.Config;
+import bluej.extensions2.editor.DocumentListener;
+
+/**
+ * A document which can be displayed and edited in a FlowEditorPane.  As well as the
+ * Document operations, it supports line attributes, removing listeners, and finding the
+ * longest line.
+ */
+public interface EditorDocument extends Document
+{
+    /**
+     * The property which selects the document implementation used by the editor:
+     * "hole" for HoleDocument, or "tree" for TreeDocument.
+     */
+    public static final String IMPLEMENTATION_PROPERTY = "bluej.editor.document";
+
+    /**
+     * Checks whether the given (zero-based) line has an attribute with the given key.
+     */
+    boolean hasLineAttribute(int lineIndex, Object attributeKey);
+
+    /**
+     * Sets an attribute on the given (zero-based) line.  The attribute stays with the
+     * line if text is inserted or removed before it, but is lost if the line is removed.
+     */
+    void addLineAttribute(int lineIndex, Object key, Object value);
+
+    /**
+     * Removes the attribute with the given key from all lines.
+     */
+    void removeLineAttributeThroughout(Object key);
+
+    /**
+     * Removes a listener previously added by addListener.
+     */
+    void removeListener(DocumentListener listener);
+
+    /**
+     * Gets the content of the longest line in the document, as measured by number of chars.
+     */
+    String getLongestLine();
+
+    /**
+     * Creates a new, empty document for the editor, of the implementation selected by
+     * the {@link #IMPLEMENTATION_PROPERTY} property.
+     */
+    public static EditorDocument create()
+    {
+        if (Config.isInitialised() && Config.getPropString(IMPLEMENTATION_PROPERTY, "hole").equals("tree"))
+        {
+            return new TreeDocument();
+        }
+        else
+        {
+            return new HoleDocument();
+        }
+    }
+}
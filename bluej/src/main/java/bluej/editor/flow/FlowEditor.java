@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2019,2020,2021,2022,2023,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 2019,2020,2021,2022,2023,2024,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -167,7 +167,7 @@ public class FlowEditor extends ScopeColorsBorderPane implements TextEditor, Flo
     final static String ActionSuffix = "Action";
 
     private final FlowEditorPane flowEditorPane;
-    private final HoleDocument document;
+    private final EditorDocument document;
     private final JavaSyntaxView javaSyntaxView;
     private final FetchTabbedEditor fetchTabbedEditor;
     private final FlowFXTab fxTab;
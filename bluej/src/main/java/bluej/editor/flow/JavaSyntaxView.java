@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2011,2014,2015,2016,2017,2018,2019,2020,2021,2022,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2011,2014,2015,2016,2017,2018,2019,2020,2021,2022,2024,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -81,6 +81,10 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
 {
     /** Maximum amount of document to reparse in one hit (advisory) */
     private final static int MAX_PARSE_PIECE = 8000;
+    /** Minimum amount of document to reparse in one hit, when the parse runner is reducing the amount (advisory) */
+    private final static int MIN_PARSE_PIECE = 500;
+    /** Maximum time that the parse runner spends parsing before letting other work run */
+    private final static int PARSE_TIME_SLICE_MS = 6;
     
     /** (NaviView) Paint method inner scope? if false, whole method will be highlighted as a single block */
     private static final boolean PAINT_METHOD_INNER = false;
@@ -101,6 +105,7 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
             {1, 2, 2, 2}
     };
     protected final Document document;
+    private final ReparseableDocument.Element rootElement = new RootElement();
     private final MultilineStringTracker multilineStringTracker;
     private final EntityResolver parentResolver;
     private ParsedCUNode rootNode;
@@ -406,7 +411,11 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
                 {
                     scopeBackgrounds.linesAdded(document.getLineFromPosition(start), linesAdded);
                     fireInsertUpdate(start, newText.length());
-                }                
+                }
+                if (reparseRunner != null)
+                {
+                    reparseRunner.documentEdited();
+                }
                 scheduleReparseRunner();
             });
             
@@ -2177,83 +2186,84 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
 
     public ReparseableDocument.Element getDefaultRootElement()
     {
-        // This is a different kind of element, which is only there to return a wrapper for the paragraphs:
-        return new ReparseableDocument.Element()
+        return rootElement;
+    }
+
+    /**
+     * The root element, which is only there to return a wrapper for the paragraphs (lines).
+     * The line positions come straight from the document, which keeps its own index of line
+     * starts up to date as it is edited, so looking up a paragraph doesn't depend on the size
+     * of the document.
+     */
+    private class RootElement implements ReparseableDocument.Element
+    {
+        @Override
+        public ReparseableDocument.Element getElement(int index)
         {
-            @Override
-            public ReparseableDocument.Element getElement(int index)
+            int lineCount = document.getLineCount();
+            if (index >= lineCount)
+                return null;
+
+            boolean lastPara = index == lineCount - 1;
+            int pos = document.getLineStart(index);
+            int paraLength = lastPara ? (document.getLength() - pos) : document.getLineStart(index + 1) - pos;
+            return new ReparseableDocument.Element()
             {
-                int[] lineStarts = new int[document.getLineCount()];
-                for (int i = 0; i < lineStarts.length; i++)
+                @Override
+                public ReparseableDocument.Element getElement(int index)
                 {
-                    lineStarts[i] = document.getLineStart(i);
-                }
-                
-                if (index >= lineStarts.length)
                     return null;
+                }
 
-                boolean lastPara = index == lineStarts.length - 1;
-                int paraLength;
-                paraLength = lastPara ? (document.getLength() - lineStarts[index]) : lineStarts[index + 1] - lineStarts[index];
-                int pos = lineStarts[index];
-                return new ReparseableDocument.Element()
+                @Override
+                public int getStartOffset()
                 {
-                    @Override
-                    public ReparseableDocument.Element getElement(int index)
-                    {
-                        return null;
-                    }
-
-                    @Override
-                    public int getStartOffset()
-                    {
-                        return pos;
-                    }
+                    return pos;
+                }
 
-                    @Override
-                    public int getEndOffset()
-                    {
-                        return pos + paraLength;
-                    }
+                @Override
+                public int getEndOffset()
+                {
+                    return pos + paraLength;
+                }
 
-                    @Override
-                    public int getElementIndex(int offset)
-                    {
-                        return -1;
-                    }
+                @Override
+                public int getElementIndex(int offset)
+                {
+                    return -1;
+                }
 
-                    @Override
-                    public int getElementCount()
-                    {
-                        return 0;
-                    }
-                };
-            }
+                @Override
+                public int getElementCount()
+                {
+                    return 0;
+                }
+            };
+        }
 
-            @Override
-            public int getStartOffset()
-            {
-                return 0;
-            }
+        @Override
+        public int getStartOffset()
+        {
+            return 0;
+        }
 
-            @Override
-            public int getEndOffset()
-            {
-                return document.getLength();
-            }
+        @Override
+        public int getEndOffset()
+        {
+            return document.getLength();
+        }
 
-            @Override
-            public int getElementIndex(int offset)
-            {
-                return document.getLineFromPosition(offset);
-            }
+        @Override
+        public int getElementIndex(int offset)
+        {
+            return document.getLineFromPosition(offset);
+        }
 
-            @Override
-            public int getElementCount()
-            {
-                return document.getLineCount();
-            }
-        };
+        @Override
+        public int getElementCount()
+        {
+            return document.getLineCount();
+        }
     }
 
     @Override
@@ -2548,29 +2558,67 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
     /**
      * Process the document re-parse queue.
      * 
-     * <p>This is a Runnable which runs on the Swing/AWT event queue. It performs
+     * <p>This is a Runnable which runs on the FX thread. It performs
      * a small amount of re-parsing before re-queing itself, which allows input
      * to be processed in the meantime.
      * 
+     * <p>Each run parses for at most PARSE_TIME_SLICE_MS, and the amount of text given to
+     * each parse step is adjusted according to how long the previous step took, so that a
+     * single step doesn't overrun the time slice by much.  If the document is edited while
+     * parsing is in progress, the runner waits until after the next layout before continuing,
+     * so that the edit is shown without waiting for more of the parse.
+     * 
+     * <p>The parse is done on the FX thread, rather than on a worker thread against a snapshot
+     * of the document, because the parser builds the node tree in place and resolves types
+     * through the project's entity resolver, both of which are confined to the FX thread.  So
+     * an edit may still wait for the rest of the current slice (and the step which overruns
+     * it), though not for the whole parse.  A step can't be interrupted, and the amount given
+     * to it is advisory (the parser carries on to a suitable stopping point), so a single very
+     * large construct can still make one step overrun the slice.
+     * 
      * @author Davin McCall
      */
     @OnThread(value = Tag.FXPlatform, ignoreParent = true)
     private class FlowReparseRunner implements FXPlatformRunnable
     {
-        private int procTime; //the time allowed for the incremental parsing before re-queueing
-        
-        public FlowReparseRunner()
+        // The amount of document (approximately) to parse in each step:
+        private int parsePiece = MAX_PARSE_PIECE;
+        // Set when the document is edited, to let the display catch up before we continue:
+        private boolean editPending = false;
+
+        /**
+         * Notify the runner that the document has been edited.
+         */
+        public void documentEdited()
         {
-            this.procTime = 15;
+            editPending = true;
         }
-        
+
         public void run()
         {
-            long begin = System.currentTimeMillis();
-            if (document != null && pollReparseQueue()) {
+            if (editPending && display != null && display.sceneProperty().get() != null)
+            {
+                // Let the edit be laid out and painted before we carry on:
+                editPending = false;
+                JavaFXUtil.runAfterNextLayout(display.sceneProperty().get(), this);
+                display.requestLayout();
+                return;
+            }
+
+            long begin = System.nanoTime();
+            long deadline = begin + PARSE_TIME_SLICE_MS * 1_000_000L;
+            boolean more = document != null && pollReparseQueue(parsePiece);
+            if (more) {
                 // Continue processing
-                while (System.currentTimeMillis() - begin < this.procTime) {
-                    if (! pollReparseQueue()) {
+                long stepBegin = begin;
+                while (true) {
+                    long now = System.nanoTime();
+                    adjustParsePiece(now - stepBegin);
+                    if (now >= deadline) {
+                        break;
+                    }
+                    stepBegin = now;
+                    if (! pollReparseQueue(parsePiece)) {
                         break;
                     }
                 }
@@ -2583,6 +2631,23 @@ public class JavaSyntaxView implements ReparseableDocument, LineDisplayListener
                 reparseRunner = null;
             }
         }
+
+        /**
+         * Adjust the parse piece size, given the time taken to parse the last piece.
+         * We aim for a step to take no more than about a quarter of the time slice.
+         */
+        private void adjustParsePiece(long stepNanos)
+        {
+            long targetNanos = PARSE_TIME_SLICE_MS * 1_000_000L / 4;
+            if (stepNanos > targetNanos)
+            {
+                parsePiece = Math.max(MIN_PARSE_PIECE, parsePiece / 2);
+            }
+            else if (stepNanos < targetNanos / 4)
+            {
+                parsePiece = Math.min(MAX_PARSE_PIECE, parsePiece * 2);
+            }
+        }
     }
 
     /*
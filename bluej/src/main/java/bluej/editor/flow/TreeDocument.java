@@ -0,0 +1,910 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.editor.flow;
+
+import bluej.extensions2.editor.DocumentListener;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A document which keeps its lines in a balanced binary tree (a treap), with one line per node.
+ * Each node records the number of lines and characters in its subtree, so that edits, and
+ * conversions between positions and line numbers, take time logarithmic in the number of lines
+ * (plus time proportional to the size of the edit).
+ *
+ * Tracked positions are held relative to the start of their line.  An edit only needs to update
+ * the positions on the lines which it changes; other positions move with their lines, and their
+ * position in the document is calculated when asked for.
+ *
+ * Compare HoleDocument, which must update the start of every line, and every tracked position,
+ * on each edit.
+ */
+public class TreeDocument implements EditorDocument
+{
+    // Used for the node priorities, which keep the tree balanced:
+    private final Random random = new Random();
+    // The document always has at least one line, so this is never null:
+    private LineNode root;
+    private final List<DocumentListener> listeners = new ArrayList<>();
+
+    public TreeDocument()
+    {
+        root = new LineNode("", random.nextInt());
+    }
+
+    @Override
+    public void replaceText(int startCharIncl, int endCharExcl, String text)
+    {
+        LineNode startLine = nodeAtPosition(startCharIncl);
+        int startLineOffset = offsetOf(startLine);
+        int startColumn = startCharIncl - startLineOffset;
+        LineNode endLine = nodeAtPosition(endCharExcl);
+        int endColumn = endCharExcl - offsetOf(endLine);
+        int startIndex = indexOf(startLine);
+        int linesRemoved = indexOf(endLine) - startIndex;
+
+        String replaced = getContent(startCharIncl, endCharExcl);
+
+        // Take the tracked positions from all the affected lines, and work out where they go
+        // (following the rules in TrackedPosition.updateTrackedPosition).  Positions before or in
+        // the replaced range end up on the start line; positions after it end up on the last line
+        // of the new text, so for now we store their column relative to the end of the range:
+        List<LinePosition> startLinePositions = new ArrayList<>();
+        List<LinePosition> lastLinePositions = new ArrayList<>();
+        int lineOffset = startLineOffset;
+        for (LineNode line = startLine; ; line = successor(line))
+        {
+            if (line.positions != null)
+            {
+                for (WeakReference<LinePosition> ref : line.positions)
+                {
+                    LinePosition trackedPosition = ref.get();
+                    if (trackedPosition == null)
+                    {
+                        continue;
+                    }
+                    int position = lineOffset + trackedPosition.column;
+                    if (position < startCharIncl || (position == startCharIncl && trackedPosition.bias != Bias.FORWARD))
+                    {
+                        // Before the range; the start line keeps this content:
+                        startLinePositions.add(trackedPosition);
+                    }
+                    else if (position < endCharExcl || (position == endCharExcl && trackedPosition.bias != Bias.FORWARD))
+                    {
+                        // In the replaced range, so moves to its start:
+                        trackedPosition.column = startColumn;
+                        startLinePositions.add(trackedPosition);
+                    }
+                    else
+                    {
+                        trackedPosition.column -= endColumn;
+                        lastLinePositions.add(trackedPosition);
+                    }
+                }
+                line.positions = null;
+            }
+            if (line == endLine)
+            {
+                break;
+            }
+            lineOffset += line.text.length() + 1;
+        }
+
+        // Now alter the text.  The start line is kept (along with its attributes) and holds the
+        // text before the range and up to the first inserted newline.  Each subsequent inserted
+        // line gets a new node, and the text after the range goes on the last line:
+        String suffix = endLine.text.substring(endColumn);
+        startLine.text.setLength(startColumn);
+        LineNode newLines = null;
+        LineNode lastLine;
+        int lastLinePrefixLength;
+        int linesAdded = 0;
+        int lineBreak = text.indexOf('\n');
+        if (lineBreak == -1)
+        {
+            startLine.text.append(text);
+            lastLine = startLine;
+        }
+        else
+        {
+            startLine.text.append(text, 0, lineBreak);
+            linesAdded = 1;
+            int nextLineBreak;
+            while ((nextLineBreak = text.indexOf('\n', lineBreak + 1)) != -1)
+            {
+                newLines = merge(newLines, new LineNode(text.substring(lineBreak + 1, nextLineBreak), random.nextInt()));
+                lineBreak = nextLineBreak;
+                linesAdded += 1;
+            }
+            lastLine = new LineNode(text.substring(lineBreak + 1), random.nextInt());
+        }
+        lastLinePrefixLength = lastLine.text.length();
+        lastLine.text.append(suffix);
+
+        if (linesRemoved == 0 && linesAdded == 0)
+        {
+            // Only the start line has changed, so the tree structure stays the same:
+            updateToRoot(startLine);
+        }
+        else
+        {
+            // Replace the affected lines with the start line and the new lines:
+            LineNode[] parts = new LineNode[2];
+            split(root, startIndex, parts);
+            LineNode before = parts[0];
+            split(parts[1], linesRemoved + 1, parts);
+            LineNode after = parts[1];
+            startLine.left = null;
+            startLine.right = null;
+            update(startLine);
+            if (lastLine != startLine)
+            {
+                // Its totals were calculated before the suffix was added:
+                update(lastLine);
+                newLines = merge(newLines, lastLine);
+            }
+            root = merge(merge(before, startLine), merge(newLines, after));
+            root.parent = null;
+        }
+
+        for (LinePosition trackedPosition : startLinePositions)
+        {
+            trackedPosition.line = startLine;
+            addPosition(trackedPosition);
+        }
+        for (LinePosition trackedPosition : lastLinePositions)
+        {
+            trackedPosition.line = lastLine;
+            trackedPosition.column += lastLinePrefixLength;
+            addPosition(trackedPosition);
+        }
+
+        // Take a copy in case one of the listeners removes themselves
+        // (would lead to a concurrent modification exception if we iterated over the original list):
+        List<DocumentListener> listenersCopy = new ArrayList<>(this.listeners);
+        for (DocumentListener listener : listenersCopy)
+        {
+            listener.textReplaced(startCharIncl, replaced, text, linesRemoved, linesAdded);
+        }
+    }
+
+    @Override
+    public String getFullContent()
+    {
+        return getContent(0, getLength());
+    }
+
+    @Override
+    public int getLength()
+    {
+        // Every line is counted with a terminating newline, but the last line has none:
+        return root.charCount - 1;
+    }
+
+    @Override
+    public int getLineFromPosition(int position)
+    {
+        return indexOf(nodeAtPosition(position));
+    }
+
+    @Override
+    public int getColumnFromPosition(int position)
+    {
+        return position - offsetOf(nodeAtPosition(position));
+    }
+
+    @Override
+    public int getLineStart(int lineNumber)
+    {
+        return offsetOf(nodeAtLine(lineNumber));
+    }
+
+    @Override
+    public int getLineEnd(int lineNumber)
+    {
+        LineNode line = nodeAtLine(lineNumber);
+        return offsetOf(line) + line.text.length();
+    }
+
+    @Override
+    public int getLineCount()
+    {
+        return root.lineCount;
+    }
+
+    @Override
+    public int getLineLength(int lineIndex)
+    {
+        // Includes the newline, except on the last line:
+        int length = nodeAtLine(lineIndex).text.length();
+        return lineIndex == root.lineCount - 1 ? length : length + 1;
+    }
+
+    @Override
+    public List<CharSequence> getLines()
+    {
+        return new AbstractList<CharSequence>()
+        {
+            @Override
+            public CharSequence get(int lineIndex)
+            {
+                StringBuilder text = nodeAtLine(lineIndex).text;
+                return new TextView(text, 0, text.length());
+            }
+
+            @Override
+            public int size()
+            {
+                return root.lineCount;
+            }
+        };
+    }
+
+    @Override
+    public TrackedPosition trackPosition(int position, Bias bias)
+    {
+        LineNode line = nodeAtPosition(position);
+        LinePosition trackedPosition = new LinePosition(line, position - offsetOf(line), bias);
+        addPosition(trackedPosition);
+        return trackedPosition;
+    }
+
+    @Override
+    public void addListener(boolean atStart, DocumentListener listener)
+    {
+        if (atStart)
+            listeners.add(0, listener);
+        else
+            listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(DocumentListener listener)
+    {
+        // Remove all by reference equality, as in HoleDocument:
+        listeners.removeIf(l -> l == listener);
+    }
+
+    @Override
+    public String getContent(int startCharIncl, int endCharExcl)
+    {
+        StringBuilder content = new StringBuilder(endCharExcl - startCharIncl);
+        LineNode line = nodeAtPosition(startCharIncl);
+        int column = startCharIncl - offsetOf(line);
+        int remaining = endCharExcl - startCharIncl;
+        while (remaining > 0)
+        {
+            int amount = Math.min(remaining, line.text.length() - column);
+            content.append(line.text, column, column + amount);
+            remaining -= amount;
+            if (remaining > 0)
+            {
+                content.append('\n');
+                remaining -= 1;
+                line = successor(line);
+                column = 0;
+            }
+        }
+        return content.toString();
+    }
+
+    @Override
+    public Reader makeReader(int startPos, int endPos)
+    {
+        return new TreeReader(startPos, endPos);
+    }
+
+    @Override
+    public boolean hasLineAttribute(int lineIndex, Object attributeKey)
+    {
+        if (lineIndex >= 0 && lineIndex < root.lineCount)
+        {
+            HashMap<Object, Object> lineAttributes = nodeAtLine(lineIndex).lineAttributes;
+            return lineAttributes != null && lineAttributes.containsKey(attributeKey);
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public void addLineAttribute(int lineIndex, Object key, Object value)
+    {
+        if (lineIndex >= 0 && lineIndex < root.lineCount)
+        {
+            LineNode line = nodeAtLine(lineIndex);
+            if (line.lineAttributes == null)
+            {
+                line.lineAttributes = new HashMap<>();
+            }
+            line.lineAttributes.put(key, value);
+        }
+    }
+
+    @Override
+    public void removeLineAttributeThroughout(Object key)
+    {
+        for (LineNode line = firstLine(); line != null; line = successor(line))
+        {
+            if (line.lineAttributes != null)
+            {
+                line.lineAttributes.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public String getLongestLine()
+    {
+        // Find the first line with the maximum length:
+        int longest = root.maxLineLength;
+        LineNode line = root;
+        while (true)
+        {
+            if (line.left != null && line.left.maxLineLength == longest)
+            {
+                line = line.left;
+            }
+            else if (line.text.length() == longest)
+            {
+                return line.text.toString();
+            }
+            else
+            {
+                line = line.right;
+            }
+        }
+    }
+
+    /**
+     * Register a tracked position with its line, so that it is updated when the line is edited.
+     */
+    private static void addPosition(LinePosition trackedPosition)
+    {
+        LineNode line = trackedPosition.line;
+        if (line.positions == null)
+        {
+            line.positions = new ArrayList<>();
+        }
+        line.positions.add(new WeakReference<>(trackedPosition));
+    }
+
+    /**
+     * Deregister a tracked position from its line.  Also gets rid of any positions on
+     * the line which are no longer referenced.
+     */
+    private static void removePosition(LinePosition trackedPosition)
+    {
+        for (Iterator<WeakReference<LinePosition>> iterator = trackedPosition.line.positions.iterator(); iterator.hasNext(); )
+        {
+            LinePosition p = iterator.next().get();
+            if (p == null || p == trackedPosition)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    // ------------------------------- Tree operations -------------------------------
+
+    private static int lineCount(LineNode node)
+    {
+        return node == null ? 0 : node.lineCount;
+    }
+
+    private static int charCount(LineNode node)
+    {
+        return node == null ? 0 : node.charCount;
+    }
+
+    /**
+     * Recalculate the subtree totals of the given node, from its own text and its children.
+     */
+    private static void update(LineNode node)
+    {
+        node.lineCount = 1;
+        node.charCount = node.text.length() + 1;
+        node.maxLineLength = node.text.length();
+        if (node.left != null)
+        {
+            node.left.parent = node;
+            node.lineCount += node.left.lineCount;
+            node.charCount += node.left.charCount;
+            node.maxLineLength = Math.max(node.maxLineLength, node.left.maxLineLength);
+        }
+        if (node.right != null)
+        {
+            node.right.parent = node;
+            node.lineCount += node.right.lineCount;
+            node.charCount += node.right.charCount;
+            node.maxLineLength = Math.max(node.maxLineLength, node.right.maxLineLength);
+        }
+    }
+
+    private static void updateToRoot(LineNode node)
+    {
+        for (; node != null; node = node.parent)
+        {
+            update(node);
+        }
+    }
+
+    /**
+     * Join two trees, with all the lines of the first before those of the second.
+     * Either may be null.  The parent of the returned root is not updated.
+     */
+    private static LineNode merge(LineNode first, LineNode second)
+    {
+        if (first == null)
+        {
+            return second;
+        }
+        if (second == null)
+        {
+            return first;
+        }
+        if (first.priority > second.priority)
+        {
+            first.right = merge(first.right, second);
+            update(first);
+            return first;
+        }
+        else
+        {
+            second.left = merge(first, second.left);
+            update(second);
+            return second;
+        }
+    }
+
+    /**
+     * Split a tree into its first lines and the rest, which are stored in result[0] and result[1]
+     * respectively (either may be null).  The parents of the results are not updated.
+     */
+    private static void split(LineNode node, int lines, LineNode[] result)
+    {
+        if (node == null)
+        {
+            result[0] = null;
+            result[1] = null;
+        }
+        else if (lineCount(node.left) >= lines)
+        {
+            split(node.left, lines, result);
+            node.left = result[1];
+            update(node);
+            result[1] = node;
+        }
+        else
+        {
+            split(node.right, lines - lineCount(node.left) - 1, result);
+            node.right = result[0];
+            update(node);
+            result[0] = node;
+        }
+    }
+
+    /**
+     * Find the line containing the given position.  A position at the end of a line (i.e. at
+     * its newline) is in that line.
+     */
+    private LineNode nodeAtPosition(int position)
+    {
+        LineNode node = root;
+        while (true)
+        {
+            int leftChars = charCount(node.left);
+            if (position < leftChars)
+            {
+                node = node.left;
+            }
+            else
+            {
+                position -= leftChars;
+                if (position <= node.text.length() || node.right == null)
+                {
+                    return node;
+                }
+                position -= node.text.length() + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private LineNode nodeAtLine(int lineIndex)
+    {
+        if (lineIndex < 0 || lineIndex >= root.lineCount)
+        {
+            throw new IndexOutOfBoundsException("Line " + lineIndex + " of " + root.lineCount);
+        }
+        LineNode node = root;
+        while (true)
+        {
+            int leftLines = lineCount(node.left);
+            if (lineIndex < leftLines)
+            {
+                node = node.left;
+            }
+            else if (lineIndex == leftLines)
+            {
+                return node;
+            }
+            else
+            {
+                lineIndex -= leftLines + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Get the (zero-based) index of a line.
+     */
+    private static int indexOf(LineNode node)
+    {
+        int index = lineCount(node.left);
+        for (; node.parent != null; node = node.parent)
+        {
+            if (node == node.parent.right)
+            {
+                index += lineCount(node.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the position in the document of the start of a line.
+     */
+    private static int offsetOf(LineNode node)
+    {
+        int offset = charCount(node.left);
+        for (; node.parent != null; node = node.parent)
+        {
+            if (node == node.parent.right)
+            {
+                offset += charCount(node.parent.left) + node.parent.text.length() + 1;
+            }
+        }
+        return offset;
+    }
+
+    private LineNode firstLine()
+    {
+        LineNode node = root;
+        while (node.left != null)
+        {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Get the line following the given line, or null if it is the last line.
+     */
+    private static LineNode successor(LineNode node)
+    {
+        if (node.right != null)
+        {
+            node = node.right;
+            while (node.left != null)
+            {
+                node = node.left;
+            }
+            return node;
+        }
+        while (node.parent != null && node == node.parent.right)
+        {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    /**
+     * A line in the document, which is also a node in the tree.
+     */
+    private static class LineNode
+    {
+        // The content of the line, without the terminating newline:
+        private final StringBuilder text;
+        // The treap priority; a node's priority is greater than that of its children:
+        private final int priority;
+        private LineNode left;
+        private LineNode right;
+        private LineNode parent;
+        // Totals for the subtree rooted at this node (see update()).  The character
+        // count includes a newline for every line.
+        private int lineCount;
+        private int charCount;
+        private int maxLineLength;
+        // Created when needed:
+        private HashMap<Object, Object> lineAttributes;
+        // The tracked positions on this line (as in HoleDocument, weak references so
+        // that we don't retain them).  Created when needed:
+        private ArrayList<WeakReference<LinePosition>> positions;
+
+        private LineNode(String text, int priority)
+        {
+            this.text = new StringBuilder(text);
+            this.priority = priority;
+            update(this);
+        }
+    }
+
+    /**
+     * A tracked position, which stores its line and the column within that line.
+     * The superclass's position field is not used.
+     */
+    private class LinePosition extends TrackedPosition
+    {
+        private LineNode line;
+        private int column;
+
+        private LinePosition(LineNode line, int column, Bias bias)
+        {
+            super(TreeDocument.this, 0, bias);
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public int getPosition()
+        {
+            return offsetOf(line) + column;
+        }
+
+        @Override
+        public int getLine()
+        {
+            return indexOf(line);
+        }
+
+        @Override
+        public int getColumn()
+        {
+            return column;
+        }
+
+        @Override
+        public void moveBy(int amount)
+        {
+            int target = Math.max(0, Math.min(getPosition() + amount, getLength()));
+            LineNode targetLine = nodeAtPosition(target);
+            if (targetLine != line)
+            {
+                removePosition(this);
+                line = targetLine;
+                addPosition(this);
+            }
+            column = target - offsetOf(targetLine);
+        }
+
+        @Override
+        public void moveTo(int target)
+        {
+            moveBy(target - getPosition());
+        }
+    }
+
+    /**
+     * A read-only view of part of a line's text.  Only valid while the line doesn't change.
+     */
+    @OnThread(value = Tag.FXPlatform, ignoreParent = true)
+    private static class TextView implements CharSequence
+    {
+        private final StringBuilder text;
+        private final int start;
+        private final int end;
+
+        private TextView(StringBuilder text, int start, int end)
+        {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length()
+        {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd)
+        {
+            return new TextView(text, start + subStart, start + subEnd);
+        }
+
+        @Override
+        public String toString()
+        {
+            return text.substring(start, end);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return toString().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof CharSequence)
+            {
+                CharSequence cs = (CharSequence) obj;
+                if (length() != cs.length())
+                    return false;
+                for (int i = 0; i < length(); i++)
+                {
+                    if (charAt(i) != cs.charAt(i))
+                        return false;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // Adapted from HoleDocument.HoleReader
+    @OnThread(value = Tag.FXPlatform, ignoreParent = true)
+    private class TreeReader extends Reader
+    {
+        private int next;
+        private int mark = 0;
+        private final int end;
+        // The line containing next, and its start position; found when needed:
+        private LineNode line;
+        private int lineStart;
+
+        private TreeReader(int start, int end)
+        {
+            this.next = start;
+            this.end = end;
+        }
+
+        /**
+         * Make sure that line is the line containing next.
+         */
+        private void findLine()
+        {
+            if (line != null && next == lineStart + line.text.length() + 1)
+            {
+                // The common case, reading on to the next line:
+                lineStart = next;
+                line = successor(line);
+            }
+            else if (line == null || next < lineStart || next > lineStart + line.text.length())
+            {
+                line = nodeAtPosition(next);
+                lineStart = offsetOf(line);
+            }
+        }
+
+        public int read()
+        {
+            if (next >= end)
+            {
+                return -1;
+            }
+            findLine();
+            int column = next - lineStart;
+            next += 1;
+            return column < line.text.length() ? line.text.charAt(column) : '\n';
+        }
+
+        public int read(char cbuf[], int off, int len)
+        {
+            if ((off < 0) || (off > cbuf.length) || (len < 0) ||
+                    ((off + len) > cbuf.length) || ((off + len) < 0))
+            {
+                throw new IndexOutOfBoundsException();
+            }
+            else if (len == 0)
+            {
+                return 0;
+            }
+            else if (next >= end)
+            {
+                return -1;
+            }
+
+            int total = Math.min(end - next, len);
+            int remaining = total;
+            while (remaining > 0)
+            {
+                findLine();
+                int column = next - lineStart;
+                int amount = Math.min(remaining, line.text.length() - column);
+                line.text.getChars(column, column + amount, cbuf, off);
+                off += amount;
+                next += amount;
+                remaining -= amount;
+                if (remaining > 0)
+                {
+                    // We must be at the end of the line:
+                    cbuf[off++] = '\n';
+                    next += 1;
+                    remaining -= 1;
+                }
+            }
+            return total;
+        }
+
+        public long skip(long ns)
+        {
+            if (next >= end)
+            {
+                return 0;
+            }
+            // Bound skip by beginning and end of the source
+            long n = Math.min(end - next, ns);
+            n = Math.max(-next, n);
+            next += n;
+            return n;
+        }
+
+        public boolean ready()
+        {
+            return true;
+        }
+
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        public void mark(int readAheadLimit)
+        {
+            if (readAheadLimit < 0)
+            {
+                throw new IllegalArgumentException("Read-ahead limit < 0");
+            }
+            mark = next;
+        }
+
+        public void reset()
+        {
+            next = mark;
+        }
+
+        public void close()
+        {
+        }
+    }
+}
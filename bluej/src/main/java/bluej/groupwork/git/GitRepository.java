@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2015,2016,2017,2019,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2015,2016,2017,2019,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -63,6 +63,9 @@ public class GitRepository implements Repository
     private final String yourEmail;
     private final String branch;
 
+    // Local status kept between refreshes, for incremental status checks:
+    private final GitStatusCache statusCache = new GitStatusCache();
+
     /**
      * Create a Git repository when all fields are known. Usually when cloning a
      * repository.
@@ -230,6 +233,14 @@ public class GitRepository implements Repository
         return this.projectPath;
     }
 
+    /**
+     * Get the local status kept from previous status checks of this repository.
+     */
+    GitStatusCache getStatusCache()
+    {
+        return statusCache;
+    }
+
     public String getBranch(){
         return branch;
     }
@@ -0,0 +1,259 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.groupwork.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Keeps the local (working tree) status of a Git repository between status refreshes,
+ * so that a refresh need only ask Git about the files which have changed since the
+ * previous one.
+ *
+ * <p>The working tree is walked with JGit's working tree iterator to record the
+ * modification time and length of each file. On the next refresh, if HEAD, the index
+ * and the exclude file are unchanged and no file has been added or removed, the status
+ * is only recomputed for files whose time or length differ. Anything else causes a
+ * full status check.
+ */
+@OnThread(Tag.Any)
+class GitStatusCache
+{
+    // More changed files than this, and we just do a full status check:
+    private static final int MAX_PARTIAL_PATHS = 1000;
+    // A file modified this soon before the working tree was walked might be modified
+    // again without its time changing, so it is always checked:
+    private static final long RACY_MILLIS = 3000;
+
+    private ObjectId headId;
+    private long indexModified;
+    private long indexLength;
+    private long excludeModified;
+
+    // Modification time and length of each working tree file, when last walked:
+    private Map<String, long[]> stamps;
+    private long stampTime;
+
+    private LocalStatus status;
+
+    private int fullChecks;
+    private int partialChecks;
+
+    /**
+     * The local status of a repository, as reported by JGit's status command.
+     * All paths are relative to the working tree, with '/' as the separator.
+     */
+    @OnThread(Tag.Any)
+    static class LocalStatus
+    {
+        final Set<String> missing = new LinkedHashSet<>();
+        final Set<String> removed = new LinkedHashSet<>();
+        final Set<String> uncommitted = new LinkedHashSet<>();
+        final Set<String> untracked = new LinkedHashSet<>();
+        final Set<String> untrackedFolders = new LinkedHashSet<>();
+        final Set<String> conflicting = new LinkedHashSet<>();
+        final Map<String, IndexDiff.StageState> conflictingStageState = new HashMap<>();
+
+        LocalStatus(org.eclipse.jgit.api.Status s)
+        {
+            missing.addAll(s.getMissing());
+            removed.addAll(s.getRemoved());
+            uncommitted.addAll(s.getUncommittedChanges());
+            untracked.addAll(s.getUntracked());
+            untrackedFolders.addAll(s.getUntrackedFolders());
+            conflicting.addAll(s.getConflicting());
+            conflictingStageState.putAll(s.getConflictingStageState());
+        }
+
+        LocalStatus(LocalStatus other)
+        {
+            missing.addAll(other.missing);
+            removed.addAll(other.removed);
+            uncommitted.addAll(other.uncommitted);
+            untracked.addAll(other.untracked);
+            untrackedFolders.addAll(other.untrackedFolders);
+            conflicting.addAll(other.conflicting);
+            conflictingStageState.putAll(other.conflictingStageState);
+        }
+
+        /**
+         * Replace the status of the given files with that in the given status, which
+         * should have been obtained for those files only. Untracked folders are left
+         * as they are, since they cannot change without files being added or removed.
+         */
+        void update(Collection<String> paths, LocalStatus changed)
+        {
+            missing.removeAll(paths);
+            removed.removeAll(paths);
+            uncommitted.removeAll(paths);
+            untracked.removeAll(paths);
+            conflicting.removeAll(paths);
+            conflictingStageState.keySet().removeAll(paths);
+
+            missing.addAll(changed.missing);
+            removed.addAll(changed.removed);
+            uncommitted.addAll(changed.uncommitted);
+            untracked.addAll(changed.untracked);
+            conflicting.addAll(changed.conflicting);
+            conflictingStageState.putAll(changed.conflictingStageState);
+        }
+    }
+
+    /**
+     * Get the local status of the repository, re-using as much as possible of the
+     * status found by the previous call. The result is not changed by later calls.
+     */
+    synchronized LocalStatus getStatus(Git repo) throws IOException, GitAPIException
+    {
+        org.eclipse.jgit.lib.Repository repository = repo.getRepository();
+        ObjectId newHeadId = repository.resolve(Constants.HEAD);
+        File indexFile = repository.getIndexFile();
+        long newIndexModified = indexFile.lastModified();
+        long newIndexLength = indexFile.length();
+        long newExcludeModified = new File(repository.getDirectory(), "info/exclude").lastModified();
+
+        long newStampTime = System.currentTimeMillis();
+        Map<String, long[]> newStamps = walkWorkingTree(repo);
+
+        List<String> changed = null;
+        if (status != null && Objects.equals(newHeadId, headId) && newIndexModified == indexModified
+                && newIndexLength == indexLength && newExcludeModified == excludeModified) {
+            changed = findChangedPaths(newStamps);
+        }
+
+        if (changed == null) {
+            status = new LocalStatus(repo.status().call());
+            fullChecks++;
+        }
+        else if (! changed.isEmpty()) {
+            StatusCommand command = repo.status();
+            for (String path : changed) {
+                command.addPath(path);
+            }
+            status.update(changed, new LocalStatus(command.call()));
+            partialChecks++;
+        }
+
+        headId = newHeadId;
+        indexModified = newIndexModified;
+        indexLength = newIndexLength;
+        excludeModified = newExcludeModified;
+        stamps = newStamps;
+        stampTime = newStampTime;
+        return new LocalStatus(status);
+    }
+
+    /**
+     * Forget the stored status, so that the next call to getStatus does a full check.
+     */
+    synchronized void clear()
+    {
+        status = null;
+        stamps = null;
+    }
+
+    /**
+     * Get the number of full status checks done.
+     */
+    synchronized int getFullCheckCount()
+    {
+        return fullChecks;
+    }
+
+    /**
+     * Get the number of status checks done for only the changed files.
+     */
+    synchronized int getPartialCheckCount()
+    {
+        return partialChecks;
+    }
+
+    /**
+     * Find the files which have changed since the working tree was last walked. Returns
+     * null if a full status check is needed instead: if files have been added or removed,
+     * if an ignore file has changed, or if there are too many changes.
+     */
+    private List<String> findChangedPaths(Map<String, long[]> newStamps)
+    {
+        if (newStamps.size() != stamps.size()) {
+            return null;
+        }
+
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : newStamps.entrySet()) {
+            long[] oldStamp = stamps.get(entry.getKey());
+            if (oldStamp == null) {
+                return null;
+            }
+            long[] newStamp = entry.getValue();
+            if (newStamp[0] != oldStamp[0] || newStamp[1] != oldStamp[1]
+                    || oldStamp[0] >= stampTime - RACY_MILLIS) {
+                String path = entry.getKey();
+                if (path.equals(Constants.DOT_GIT_IGNORE) || path.endsWith("/" + Constants.DOT_GIT_IGNORE)
+                        || changed.size() == MAX_PARTIAL_PATHS) {
+                    return null;
+                }
+                changed.add(path);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Record the modification time and length of every file in the working tree.
+     */
+    private static Map<String, long[]> walkWorkingTree(Git repo) throws IOException
+    {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        try (TreeWalk walk = new TreeWalk(repo.getRepository())) {
+            walk.addTree(new FileTreeIterator(repo.getRepository()));
+            walk.setRecursive(true);
+            while (walk.next()) {
+                FileTreeIterator file = walk.getTree(0, FileTreeIterator.class);
+                result.put(walk.getPathString(), new long[] {
+                        file.getEntryLastModifiedInstant().toEpochMilli(), file.getEntryLength()});
+            }
+        }
+        return result;
+    }
+}
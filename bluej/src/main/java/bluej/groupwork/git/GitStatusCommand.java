@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2015,2016,2017,2018,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2015,2016,2017,2018,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -33,13 +33,18 @@ import static bluej.groupwork.git.GitUtilities.getFileNameFromDiff;
 import static bluej.groupwork.git.GitUtilities.isAheadOnly;
 import bluej.utility.Debug;
 
+import bluej.Config;
+import bluej.groupwork.git.GitStatusCache.LocalStatus;
+
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -61,6 +66,8 @@ public class GitStatusCommand extends GitCommand
     StatusListener listener;
     FileFilter filter;
     boolean includeRemote;
+    // Whether to re-use the local status found by the previous check where possible:
+    private final boolean useIncrementalStatus = Config.getPropBoolean("bluej.teamwork.git.incrementalStatus", true);
 
     public GitStatusCommand(GitRepository repository, StatusListener listener, FileFilter filter, boolean includeRemote)
     {
@@ -75,91 +82,28 @@ public class GitStatusCommand extends GitCommand
     public TeamworkCommandResult getResult()
     {
         boolean didFilesChange = true;
-        LinkedList<TeamStatusInfo> returnInfo = new LinkedList<>();
+        // Status of each file, with its path relative to the project, in the order found:
+        StatusEntries returnInfo = new StatusEntries();
         File gitPath = this.getRepository().getProjectPath();
+        // Each path which passes the filter, mapped to its file (or null if filtered out):
+        Map<String, File> acceptedFiles = new HashMap<>();
+        Function<String, File> accept = item -> acceptedFiles.computeIfAbsent(item, p -> {
+            File f = new File(gitPath, p);
+            return filter.accept(f) ? f : null;
+        });
 
         try (Git repo = Git.open(this.getRepository().getProjectPath()))
         {
             //check local status
-            org.eclipse.jgit.api.Status s = repo.status().call();
-
-            // A file which has had changes merged as a result of a pull will be in a "unmerged"
-            // state, and will appear in "uncommitted changes" as well as "conflicting" (with
-            // BOTH_MODIFIED or one of the other "stages").
-            
-            s.getMissing().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> {
-                        TeamStatusInfo teamInfo = new TeamStatusInfo(new File(gitPath, item), "", null, Status.DELETED);
-                        returnInfo.add(teamInfo);
-                    });
-
-            // "removed" files have been staged for removal ("git rm")
-            s.getRemoved().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> {
-                        // Note this status might get altered below, if the file has been re-created
-                        // in the meantime:
-                        returnInfo.add(new TeamStatusInfo(new File(gitPath, item), "", null,
-                                Status.DELETED));
-                    });
-            
-            s.getUncommittedChanges().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> {
-                        TeamStatusInfo teamInfo = new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_COMMIT);
-                        TeamStatusInfo existingStatusInfo = getTeamStatusInfo(returnInfo, teamInfo.getFile());
-                        if (existingStatusInfo == null) {
-                            //add this new entry to the returnInfo.
-                            returnInfo.add(teamInfo);
-                        }
-                    });
-
-            s.getUntracked().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> returnInfo.add(new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_ADD)));
-
-            s.getUntrackedFolders().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> returnInfo.add(new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_ADD)));
+            LocalStatus s;
+            if (useIncrementalStatus) {
+                s = getRepository().getStatusCache().getStatus(repo);
+            }
+            else {
+                s = new LocalStatus(repo.status().call());
+            }
 
-            Map<String, IndexDiff.StageState> conflictsMap = s.getConflictingStageState();
-            s.getConflicting().stream()
-                    .filter(p -> filter.accept(new File(gitPath, p)))
-                    .forEach(item -> {
-                        TeamStatusInfo teamInfo = getTeamStatusInfo(returnInfo, new File(gitPath, item));
-                        if (teamInfo == null)
-                        {
-                            Debug.message("Git unexpected status: file is "
-                                    + "conflicting but not otherwise noted? (" + item + ")");
-                            teamInfo = new TeamStatusInfo(new File(gitPath, item), "", null, Status.NEEDS_MERGE);
-                            returnInfo.add(teamInfo);
-                        }
-                        else
-                        {
-                            IndexDiff.StageState sstate = conflictsMap.get(item);
-                            // Note: for local status, NEEDS_MERGE actually means "needs commit to
-                            // resolve merge".
-                            switch (sstate)
-                            {
-                                case DELETED_BY_THEM:
-                                    teamInfo.setStatus(Status.CONFLICT_LMRD);
-                                    break;
-                                case DELETED_BY_US:
-                                    teamInfo.setStatus(Status.CONFLICT_LDRM);
-                                    break;
-                                case BOTH_ADDED:
-                                    teamInfo.setStatus(Status.CONFLICT_ADD);
-                                    break;
-                                case BOTH_MODIFIED:
-                                    teamInfo.setStatus(Status.NEEDS_MERGE);
-                                    break;
-                                default:
-                                    Debug.message("Git status, unknown/unhandled conflict state: " + sstate + " (" + item + ")");
-                                    teamInfo.setStatus(Status.NEEDS_MERGE);
-                            }
-                        }
-                    });
+            addLocalStatus(returnInfo, s, accept);
 
             // check for files to push to remote repository.
             List<DiffEntry> listOfDiffsLocal, listOfDiffsRemote;
@@ -189,10 +133,9 @@ public class GitStatusCommand extends GitCommand
 
             if (listener != null) {
                 // Git does not show any add up-to-date file. We need to add them manually to returnInfo.
-                addUpToDateFiles(returnInfo, gitPath);
+                addUpToDateFiles(returnInfo, gitPath, "");
                 
-                while (!returnInfo.isEmpty()) {
-                    TeamStatusInfo teamInfo = returnInfo.removeFirst();
+                for (TeamStatusInfo teamInfo : returnInfo.getAll()) {
                     listener.gotStatus(teamInfo);
                 }
                 listener.statusComplete(new GitStatusHandle(getRepository(), didFilesChange && isAheadOnly(repo), didFilesChange && getBehindCount(repo) > 0));
@@ -200,6 +143,8 @@ public class GitStatusCommand extends GitCommand
         }
         catch (IOException | GitAPIException | NoWorkTreeException | GitTreeException ex)
         {
+            // Don't rely on the kept status next time:
+            getRepository().getStatusCache().clear();
             Debug.reportError("Git status command exception", ex);
             return new TeamworkCommandError(ex.getMessage(), ex.getLocalizedMessage());
         }
@@ -207,154 +152,263 @@ public class GitStatusCommand extends GitCommand
         return new TeamworkCommandResult();
     }
 
+    /**
+     * Add the status of each changed file, from the local status of the repository.
+     *
+     * @param returnInfo  the status entries to add to
+     * @param s           the local status
+     * @param accept      gives the file for a path relative to the project, or null if
+     *                    the file is filtered out
+     */
+    static void addLocalStatus(StatusEntries returnInfo, LocalStatus s, Function<String, File> accept)
+    {
+        // A file which has had changes merged as a result of a pull will be in a "unmerged"
+        // state, and will appear in "uncommitted changes" as well as "conflicting" (with
+        // BOTH_MODIFIED or one of the other "stages").
+        
+        for (String item : s.missing) {
+            File file = accept.apply(item);
+            if (file != null) {
+                returnInfo.add(item, new TeamStatusInfo(file, "", null, Status.DELETED));
+            }
+        }
+
+        // "removed" files have been staged for removal ("git rm")
+        for (String item : s.removed) {
+            File file = accept.apply(item);
+            if (file != null) {
+                // Note this status might get altered below, if the file has been re-created
+                // in the meantime:
+                returnInfo.add(item, new TeamStatusInfo(file, "", null, Status.DELETED));
+            }
+        }
+        
+        for (String item : s.uncommitted) {
+            File file = accept.apply(item);
+            if (file != null && returnInfo.get(item) == null) {
+                returnInfo.add(item, new TeamStatusInfo(file, "", null, Status.NEEDS_COMMIT));
+            }
+        }
+
+        // An untracked file may already have an entry (a file staged for removal and then
+        // re-created is both "removed" and "untracked"); it gets a NEEDS_ADD entry as well:
+        for (String item : s.untracked) {
+            File file = accept.apply(item);
+            if (file != null) {
+                returnInfo.add(item, new TeamStatusInfo(file, "", null, Status.NEEDS_ADD));
+            }
+        }
+
+        for (String item : s.untrackedFolders) {
+            File file = accept.apply(item);
+            if (file != null) {
+                returnInfo.add(item, new TeamStatusInfo(file, "", null, Status.NEEDS_ADD));
+            }
+        }
+
+        Map<String, IndexDiff.StageState> conflictsMap = s.conflictingStageState;
+        for (String item : s.conflicting) {
+            File file = accept.apply(item);
+            if (file == null) {
+                continue;
+            }
+            TeamStatusInfo teamInfo = returnInfo.get(item);
+            if (teamInfo == null)
+            {
+                Debug.message("Git unexpected status: file is "
+                        + "conflicting but not otherwise noted? (" + item + ")");
+                teamInfo = new TeamStatusInfo(file, "", null, Status.NEEDS_MERGE);
+                returnInfo.add(item, teamInfo);
+            }
+            else
+            {
+                IndexDiff.StageState sstate = conflictsMap.get(item);
+                // Note: for local status, NEEDS_MERGE actually means "needs commit to
+                // resolve merge".
+                switch (sstate)
+                {
+                    case DELETED_BY_THEM:
+                        teamInfo.setStatus(Status.CONFLICT_LMRD);
+                        break;
+                    case DELETED_BY_US:
+                        teamInfo.setStatus(Status.CONFLICT_LDRM);
+                        break;
+                    case BOTH_ADDED:
+                        teamInfo.setStatus(Status.CONFLICT_ADD);
+                        break;
+                    case BOTH_MODIFIED:
+                        teamInfo.setStatus(Status.NEEDS_MERGE);
+                        break;
+                    default:
+                        Debug.message("Git status, unknown/unhandled conflict state: " + sstate + " (" + item + ")");
+                        teamInfo.setStatus(Status.NEEDS_MERGE);
+                }
+            }
+        }
+    }
+
     /**
      * Search a directory (recursively). For all files with no status currently recorded, add an
      * "unchanged" status entry.
      * 
-     * @param returnInfo  list of file status
+     * @param returnInfo  file status entries
      * @param path        path to search
+     * @param relPath     the path to search relative to the project, with a trailing '/'
+     *                    unless it is the project itself
      */
-    private void addUpToDateFiles(LinkedList<TeamStatusInfo> returnInfo, File path)
+    private void addUpToDateFiles(StatusEntries returnInfo, File path, String relPath)
     {
-        if(!path.isDirectory())
+        File[] items = path.listFiles();
+        if (items == null)
             return;
         
-        for (File item : path.listFiles()) {
+        for (File item : items) {
             if (filter.accept(item)) {
+                String itemPath = relPath + item.getName();
                 if (item.isDirectory()) {
-                    addUpToDateFiles(returnInfo, item);
+                    addUpToDateFiles(returnInfo, item, itemPath + "/");
                 }
-                else {
-                    TeamStatusInfo itemStatus = getTeamStatusInfo(returnInfo, item);
-                    if (itemStatus == null) {
-                        //file does not exist in the list, therefore it is up-to-date.
-                        returnInfo.add(new TeamStatusInfo(item, "", null,
-                                Status.UP_TO_DATE, Status.UP_TO_DATE));
-                    }
+                else if (returnInfo.get(itemPath) == null) {
+                    //file does not have an entry, therefore it is up-to-date.
+                    returnInfo.add(itemPath, new TeamStatusInfo(item, "", null,
+                            Status.UP_TO_DATE, Status.UP_TO_DATE));
                 }
             }
         }
     }
 
-    /**
-     * checks if a file already has an entry on returnInfo
-     *
-     * @param returnInfo list of TeamStatusInfo to be checked
-     * @param file file to check
-     * @return null if there is no entry of that file. The entry if it exists.
-     */
-    private TeamStatusInfo getTeamStatusInfo(LinkedList<TeamStatusInfo> returnInfo, File file)
-    {
-        try {
-            return returnInfo.stream().filter(entry -> entry.getFile().getPath().contains(file.getPath())).findFirst().get();
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-
-    private Optional<DiffEntry> getDiffFromList(List<DiffEntry> list, DiffEntry entry)
-    {
-        Optional<DiffEntry> result;
-        String entryFileName = getFileNameFromDiff(entry);
-        result = list.stream().filter(p -> getFileNameFromDiff(p).equals(entryFileName)).findFirst();
-        return result;
-    }
-
-    private void updateRemoteStatus(LinkedList<TeamStatusInfo> returnInfo, File file, Status remoteStatus)
+    private void updateRemoteStatus(StatusEntries returnInfo, String path, File file, Status remoteStatus)
     {
-        TeamStatusInfo entry = getTeamStatusInfo(returnInfo, file);
+        TeamStatusInfo entry = returnInfo.get(path);
         if (entry != null) {
             entry.setRemoteStatus(remoteStatus);
         } else {
             //needs to create an entry.
             entry = new TeamStatusInfo(file, "", null, Status.UP_TO_DATE, remoteStatus);
-            returnInfo.add(entry);
+            returnInfo.add(path, entry);
         }
     }
 
-    private void updateRemoteStatus(File gitPath, List<DiffEntry> listOfDiffsLocal, List<DiffEntry> listOfDiffsRemote, LinkedList<TeamStatusInfo> returnInfo)
+    private void updateRemoteStatus(File gitPath, List<DiffEntry> listOfDiffsLocal, List<DiffEntry> listOfDiffsRemote, StatusEntries returnInfo)
     {
+        Map<String, DiffEntry> localDiffs = new HashMap<>();
         //first check local changes that does not appear in the remote list.
         for (DiffEntry localDiffItem : listOfDiffsLocal) {
-            File file = new File(gitPath, getFileNameFromDiff(localDiffItem));
+            String path = getFileNameFromDiff(localDiffItem);
+            localDiffs.putIfAbsent(path, localDiffItem);
+            File file = new File(gitPath, path);
             switch (localDiffItem.getChangeType()) {
                 case MODIFY:
-                    updateRemoteStatus(returnInfo, file, Status.NEEDS_COMMIT);
+                    updateRemoteStatus(returnInfo, path, file, Status.NEEDS_COMMIT);
                     break;
                 case DELETE:
-                    updateRemoteStatus(returnInfo, file, Status.DELETED);
+                    updateRemoteStatus(returnInfo, path, file, Status.DELETED);
                     break;
                 case ADD:
-                    updateRemoteStatus(returnInfo, file, Status.NEEDS_ADD);
+                    updateRemoteStatus(returnInfo, path, file, Status.NEEDS_ADD);
                     break;
             }
         }
 
         //now check for changes between the remote and local.
         for (DiffEntry remoteDiffItem : listOfDiffsRemote) {
-            Optional<DiffEntry> localDiffItem = getDiffFromList(listOfDiffsLocal, remoteDiffItem);
-            File file = new File(gitPath, getFileNameFromDiff(remoteDiffItem));
+            String path = getFileNameFromDiff(remoteDiffItem);
+            Optional<DiffEntry> localDiffItem = Optional.ofNullable(localDiffs.get(path));
+            File file = new File(gitPath, path);
             switch (remoteDiffItem.getChangeType()) {
                 case MODIFY:
                     if (localDiffItem.isPresent()) {
-                        TeamStatusInfo entry = getTeamStatusInfo(returnInfo, file);
+                        TeamStatusInfo entry = returnInfo.get(path);
                         switch (localDiffItem.get().getChangeType()) {
                             case MODIFY:
                                 if (entry == null){
                                     //this file was in need of a merge, however, since it does not appears 
                                     //in the local status, the merge was committed and needs to be pushed.
-                                    updateRemoteStatus(returnInfo, file, Status.NEEDS_PUSH);
+                                    updateRemoteStatus(returnInfo, path, file, Status.NEEDS_PUSH);
                                 } else {
-                                    updateRemoteStatus(returnInfo, file, Status.NEEDS_MERGE);
+                                    updateRemoteStatus(returnInfo, path, file, Status.NEEDS_MERGE);
                                 }
                                 break;
                             case DELETE:
-                                updateRemoteStatus(returnInfo, file, Status.CONFLICT_LDRM);
+                                updateRemoteStatus(returnInfo, path, file, Status.CONFLICT_LDRM);
                                 break;
                             case ADD:
-                                updateRemoteStatus(returnInfo, file, Status.CONFLICT_ADD);
+                                updateRemoteStatus(returnInfo, path, file, Status.CONFLICT_ADD);
                                 break;
                         }
                     } else {
                         //there is no localDiffItem. this means its status is unchanged.
-                        updateRemoteStatus(returnInfo, file, Status.NEEDS_UPDATE);
+                        updateRemoteStatus(returnInfo, path, file, Status.NEEDS_UPDATE);
                     }
                     break;
                 case DELETE:
                     if (localDiffItem.isPresent()) {
                         switch (localDiffItem.get().getChangeType()) {
                             case MODIFY:
-                                updateRemoteStatus(returnInfo, file, Status.CONFLICT_LMRD);
+                                updateRemoteStatus(returnInfo, path, file, Status.CONFLICT_LMRD);
                                 break;
                             case DELETE:
-                                updateRemoteStatus(returnInfo, file, Status.DELETED);
+                                updateRemoteStatus(returnInfo, path, file, Status.DELETED);
                                 break;
                             case ADD:
-                                updateRemoteStatus(returnInfo, file, Status.NEEDS_COMMIT);
+                                updateRemoteStatus(returnInfo, path, file, Status.NEEDS_COMMIT);
                                 break;
                         }
                     } else {
                         //no localDiffItem. Its status is unchanged (up to date).
-                        updateRemoteStatus(returnInfo, file, Status.REMOVED);
+                        updateRemoteStatus(returnInfo, path, file, Status.REMOVED);
                     }
                     break;
                 case ADD:
                     if (localDiffItem.isPresent()) {
                         switch (localDiffItem.get().getChangeType()) {
                             case ADD:
-                                updateRemoteStatus(returnInfo, file, Status.CONFLICT_ADD);
+                                updateRemoteStatus(returnInfo, path, file, Status.CONFLICT_ADD);
                                 break;
                         }
                     } else {
-                        updateRemoteStatus(returnInfo, file, Status.NEEDS_CHECKOUT);
+                        updateRemoteStatus(returnInfo, path, file, Status.NEEDS_CHECKOUT);
                         if (!file.exists()){
                             //this file will be added, but does not exist in the local repository.
-                            TeamStatusInfo tsi = getTeamStatusInfo(returnInfo, file);
+                            TeamStatusInfo tsi = returnInfo.get(path);
                             tsi.setStatus(Status.NEEDS_CHECKOUT);
                         }
                     }
             }
         }
     }
+
+    /**
+     * The status entries found for files, in the order found. There may be more than one
+     * entry for a path; looking up a path gives its first entry.
+     */
+    static class StatusEntries
+    {
+        private final List<TeamStatusInfo> entries = new ArrayList<>();
+        private final Map<String, TeamStatusInfo> firstByPath = new HashMap<>();
+
+        void add(String path, TeamStatusInfo info)
+        {
+            entries.add(info);
+            firstByPath.putIfAbsent(path, info);
+        }
+
+        /**
+         * Get the first entry for a path (relative to the project), or null if there is none.
+         */
+        TeamStatusInfo get(String path)
+        {
+            return firstByPath.get(path);
+        }
+
+        boolean isEmpty()
+        {
+            return entries.isEmpty();
+        }
+
+        List<TeamStatusInfo> getAll()
+        {
+            return entries;
+        }
+    }
 }
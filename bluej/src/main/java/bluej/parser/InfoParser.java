@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2013,2014,2016,2023  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2010,2011,2013,2014,2016,2023,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -172,11 +172,8 @@ public class InfoParser extends EditorParser
     public static ClassInfo parseWithPkg(File f, Package pkg) throws FileNotFoundException
     {
         FileInputStream fis = new FileInputStream(f);
-        EntityResolver resolver = new PackageResolver(pkg.getProject().getEntityResolver(),
-                pkg.getQualifiedName());
         Reader reader = new InputStreamReader(fis, pkg.getProject().getProjectCharset());
-        reader = new BufferedReader(reader);
-        ClassInfo info = parse(reader, resolver, pkg.getQualifiedName());
+        ClassInfo info = parseWithPkg(new BufferedReader(reader), pkg);
         try {
             fis.close();
         }
@@ -184,6 +181,18 @@ public class InfoParser extends EditorParser
         return info;
     }
 
+    /**
+     * Attempt to parse the source read from the given reader, and resolve references via
+     * the specified package (and its project). Returns null if the source could not be parsed.
+     */
+    @OnThread(Tag.FXPlatform)
+    public static ClassInfo parseWithPkg(Reader reader, Package pkg)
+    {
+        EntityResolver resolver = new PackageResolver(pkg.getProject().getEntityResolver(),
+                pkg.getQualifiedName());
+        return parse(reader, resolver, pkg.getQualifiedName());
+    }
+
     /**
      * Attempt to parse the specified source file, and resolve references via the specified
      * resolver. The source should be assumed to reside in the specified package.
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ Copyright (C) 2010,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -31,6 +31,8 @@ import bluej.debugger.gentype.Reflective;
 public class ClassLoaderResolver implements EntityResolver
 {
     private ClassLoader classLoader;
+    // The class loader doesn't change, so lookups need never be cleared:
+    private final ClassLookupCache cache = new ClassLookupCache();
     
     public ClassLoaderResolver(ClassLoader classLoader)
     {
@@ -38,15 +40,28 @@ public class ClassLoaderResolver implements EntityResolver
     }
     
     public TypeEntity resolveQualifiedClass(String name)
+    {
+        // Try as a fully-qualified name 
+        Class<?> cl = cache.loadClass(name, this::loadClass);
+        return cl != null ? new TypeEntity(cl) : null;
+    }
+    
+    private Class<?> loadClass(String name)
     {
         try {
-            // Try as a fully-qualified name 
-            Class<?> cl = classLoader.loadClass(name);
-            return new TypeEntity(cl);
+            return classLoader.loadClass(name);
+        }
+        catch (Exception e) {
+            return null;
         }
-        catch (Exception e) {}
-        
-        return null;
+    }
+    
+    /**
+     * Get the cache of class lookups, for its hit counts.
+     */
+    public ClassLookupCache getLookupCache()
+    {
+        return cache;
     }
     
     public PackageOrClass resolvePackageOrClass(String name, Reflective querySource)
@@ -0,0 +1,139 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.parser.entity;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A cache of class lookups by name, for entity resolvers. Both classes found and
+ * names not found are cached, since the parser asks for the same names repeatedly
+ * and many of them (package names, variable names) are not classes at all.
+ *
+ * <p>The cache must be cleared whenever the set of classes it looks in may change.
+ * Counts of hits and misses are kept (across clears) to help with tuning.
+ */
+@OnThread(Tag.Any)
+public class ClassLookupCache
+{
+    private final Map<String, Optional<Class<?>>> entries = new ConcurrentHashMap<>();
+
+    // Incremented on each clear, so that a lookup which started before a clear does
+    // not put its (possibly stale) result into the cache afterwards.
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Look up a class by name, using the cache if possible.
+     *
+     * @param name    the binary name of the class
+     * @param lookup  a function to find the class if it is not cached; it should return
+     *                null if there is no such class.
+     * @return  the class, or null if there is no such class.
+     */
+    public Class<?> loadClass(String name, Function<String, Class<?>> lookup)
+    {
+        Optional<Class<?>> entry = entries.get(name);
+        if (entry != null) {
+            if (entry.isPresent()) {
+                hits.incrementAndGet();
+            }
+            else {
+                negativeHits.incrementAndGet();
+            }
+            return entry.orElse(null);
+        }
+
+        misses.incrementAndGet();
+        int startGeneration = generation.get();
+        Class<?> cl = lookup.apply(name);
+        synchronized (generation) {
+            if (generation.get() == startGeneration) {
+                entries.put(name, Optional.ofNullable(cl));
+            }
+        }
+        return cl;
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear()
+    {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get the number of lookups which were answered by a cached class.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups which were answered by a cached "not found" entry.
+     */
+    public long getNegativeHitCount()
+    {
+        return negativeHits.get();
+    }
+
+    /**
+     * Get the number of lookups which were not in the cache.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Get the proportion of lookups answered from the cache (positive or negative),
+     * between 0 and 1. Returns 0 if there have been no lookups.
+     */
+    public double getHitRate()
+    {
+        long cached = hits.get() + negativeHits.get();
+        long total = cached + misses.get();
+        return total == 0 ? 0 : (double) cached / total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ClassLookupCache[" + entries.size() + " entries, hits=" + hits.get()
+                + ", negative hits=" + negativeHits.get() + ", misses=" + misses.get() + "]";
+    }
+}
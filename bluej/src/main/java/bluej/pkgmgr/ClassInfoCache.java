@@ -0,0 +1,316 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bluej.Config;
+import bluej.parser.symtab.ClassInfo;
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * An on-disk cache of the information found by parsing source files (see InfoParser),
+ * so that the unchanged sources of a project need not be parsed again each time the
+ * project is opened.
+ *
+ * <p>Entries are kept outside the project, so that they are not shared, exported or copied
+ * along with it: each project has a directory of its own, named by a hash of the project's
+ * path, under a cache root in the user's configuration directory. There is one entry per
+ * source file. An entry is only used if both the contents of the source file (compared by hash) and the parse
+ * context match those stored with it. The context describes everything else that the
+ * result of parsing depends on, such as the names of the other classes in the package.
+ */
+@OnThread(Tag.Any)
+final class ClassInfoCache
+{
+    /** The name of the cache root, in the user's configuration directory. */
+    static final String DIR_NAME = "class-info-cache";
+
+    private static final int MAGIC = 0x424A5049;
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".info";
+
+    private final Path projectDir;
+    private final File cacheDir;
+
+    // Sources read by prefetch(), waiting to be used:
+    private final Map<File, Source> prefetched = new ConcurrentHashMap<>();
+    // Only report the first failure to write, rather than one per file:
+    private volatile boolean reportedWriteFailure = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The contents of a source file, together with the cached information for it
+     * if there is any.
+     */
+    @OnThread(Tag.Any)
+    static final class Source
+    {
+        private final File file;
+        private final byte[] contents;
+        private final byte[] hash;
+        private final String context;
+        private final ClassInfo info;
+
+        private Source(File file, byte[] contents, byte[] hash, String context, ClassInfo info)
+        {
+            this.file = file;
+            this.contents = contents;
+            this.hash = hash;
+            this.context = context;
+            this.info = info;
+        }
+
+        /**
+         * Get the contents of the file, as read.
+         */
+        byte[] getContents()
+        {
+            return contents;
+        }
+
+        /**
+         * Get the cached information for the file, or null if there is none which is
+         * up to date.
+         */
+        ClassInfo getCachedInfo()
+        {
+            return info;
+        }
+    }
+
+    /**
+     * Create a cache for the given project directory, kept in the user's configuration
+     * directory. Nothing is read or written until the cache is used.
+     */
+    ClassInfoCache(File projectDir)
+    {
+        this(projectDir, new File(Config.getUserConfigDir(), DIR_NAME));
+    }
+
+    /**
+     * Create a cache for the given project directory, kept under the given cache root.
+     * Nothing is read or written until the cache is used.
+     */
+    ClassInfoCache(File projectDir, File cacheRoot)
+    {
+        this.projectDir = projectDir.getAbsoluteFile().toPath();
+        byte[] pathHash = hash(this.projectDir.toString().getBytes(StandardCharsets.UTF_8));
+        this.cacheDir = new File(cacheRoot, HexFormat.of().formatHex(pathHash, 0, 16));
+    }
+
+    /**
+     * Read a source file, and look up the cached information for it.
+     *
+     * @param sourceFile  the source file
+     * @param context     the current parse context for the file
+     * @throws IOException  if the source file could not be read
+     */
+    Source read(File sourceFile, String context) throws IOException
+    {
+        Source source = prefetched.remove(sourceFile);
+        if (source == null || ! source.context.equals(context)) {
+            source = load(sourceFile, context);
+        }
+        if (source.info != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return source;
+    }
+
+    /**
+     * Read the given source files and their cached information, ready for subsequent
+     * calls to read(). The work is spread across several threads; this method returns
+     * when it is complete. Files which cannot be read are skipped.
+     */
+    void prefetch(Collection<File> sourceFiles, String context)
+    {
+        sourceFiles.parallelStream().forEach(f -> {
+            try {
+                prefetched.put(f, load(f, context));
+            }
+            catch (IOException ioe) {
+                // read() will try again
+            }
+        });
+    }
+
+    /**
+     * Discard anything read by prefetch() and not yet used.
+     */
+    void discardPrefetched()
+    {
+        prefetched.clear();
+    }
+
+    /**
+     * Store the information obtained by parsing a source, replacing any previous entry
+     * for the same file. Failure to write is not an error, but means the source will be
+     * parsed again next time.
+     */
+    void store(Source source, ClassInfo info)
+    {
+        File entry = getEntryFile(source.file);
+        if (entry == null) {
+            return;
+        }
+
+        File temp = new File(entry.getPath() + ".tmp");
+        try {
+            File dir = entry.getParentFile();
+            if (! dir.isDirectory() && ! dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(source.hash.length);
+                out.write(source.hash);
+                byte[] context = source.context.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(context.length);
+                out.write(context);
+                info.writeTo(out);
+            }
+            entry.delete();
+            if (! temp.renameTo(entry)) {
+                throw new IOException("Could not rename " + temp + " to " + entry);
+            }
+        }
+        catch (IOException ioe) {
+            temp.delete();
+            if (! reportedWriteFailure) {
+                reportedWriteFailure = true;
+                Debug.message("Could not write class information cache: " + ioe);
+            }
+        }
+    }
+
+    /**
+     * Get the number of reads which found up-to-date cached information.
+     */
+    long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of reads which found no up-to-date cached information.
+     */
+    long getMissCount()
+    {
+        return misses.get();
+    }
+
+    private Source load(File sourceFile, String context) throws IOException
+    {
+        byte[] contents;
+        try (InputStream in = new FileInputStream(sourceFile)) {
+            contents = in.readAllBytes();
+        }
+        byte[] hash = hash(contents);
+        return new Source(sourceFile, contents, hash, context, readEntry(sourceFile, hash, context));
+    }
+
+    /**
+     * Read the cached information for a file, if it matches the given hash and context.
+     * Returns null if there is no matching entry, or it could not be read.
+     */
+    private ClassInfo readEntry(File sourceFile, byte[] hash, String context)
+    {
+        File entry = getEntryFile(sourceFile);
+        if (entry == null || ! entry.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            byte[] entryHash = new byte[in.readInt()];
+            in.readFully(entryHash);
+            if (! Arrays.equals(entryHash, hash)) {
+                return null;
+            }
+            byte[] entryContext = new byte[in.readInt()];
+            in.readFully(entryContext);
+            if (! context.equals(new String(entryContext, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            return ClassInfo.readFrom(in);
+        }
+        catch (IOException | RuntimeException e) {
+            // Treat a damaged entry as missing; it will be replaced.
+            return null;
+        }
+    }
+
+    /**
+     * Get the entry file for a source file, or null if the source file is not
+     * inside the project.
+     */
+    private File getEntryFile(File sourceFile)
+    {
+        Path path = sourceFile.getAbsoluteFile().toPath();
+        if (! path.startsWith(projectDir)) {
+            return null;
+        }
+        return new File(cacheDir, projectDir.relativize(path) + ENTRY_SUFFIX);
+    }
+
+    private static byte[] hash(byte[] contents)
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -27,14 +27,34 @@ import bluej.utility.GeneralCache;
 
 /**
  * A cache for class comments (javadoc/parameter names). Adding new entries to the cache
- * will purge old entries, if there are too many.
+ * will purge old entries, if there are too many, or if the comments cached add up to
+ * too much text.
  * 
  * @author Davin McCall
  */
 public class CommentCache extends GeneralCache<String,Properties>
 {
+    private static final int MAX_CLASSES = 100;
+    // The maximum total length of the cached comment text, in characters:
+    private static final long MAX_TEXT = 4_000_000;
+
     public CommentCache()
     {
-        super(20);
+        super(MAX_CLASSES, MAX_TEXT, CommentCache::getTextLength);
+    }
+
+    /**
+     * Get the total length of the keys and values of the given comments.
+     */
+    private static long getTextLength(Properties comments)
+    {
+        if (comments == null) {
+            return 0;
+        }
+        long length = 0;
+        for (String name : comments.stringPropertyNames()) {
+            length += name.length() + comments.getProperty(name).length();
+        }
+        return length;
     }
 }
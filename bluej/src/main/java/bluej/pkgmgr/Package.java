@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2023,2024 Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2023,2024,2026 Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -985,7 +985,7 @@ public final class Package
                 if (target instanceof ClassTarget) {
                     ClassTarget ct = (ClassTarget) target;
                     if (ct.isCompiled() && !ct.upToDate()) {
-                        ct.setState(State.NEEDS_COMPILE);
+                        ct.markNeedsCompile(false);
                         invalidated.add(ct);
                     }
                 }
@@ -998,13 +998,21 @@ public final class Package
                     if (dt instanceof ClassTarget) {
                         ClassTarget dep = (ClassTarget) dt;
                         if (dep.isCompiled() && dep.hasSourceCode()) {
-                            dep.setState(State.NEEDS_COMPILE);
+                            dep.markNeedsCompile(true);
                             invalidated.add(dep);
                         }
                     }
                 }
             }
 
+            List<ClassTarget> toAnalyse = new ArrayList<>();
+            for (Target target : targetsCopy) {
+                if (target instanceof ClassTarget && ! ((ClassTarget) target).isCompiled()) {
+                    toAnalyse.add((ClassTarget) target);
+                }
+            }
+            prefetchSourceInfo(toAnalyse);
+
             // Update class roles
             for (Target target : targetsCopy) {
 
@@ -1031,6 +1039,7 @@ public final class Package
                     }
                 }
             }
+            finishPrefetch();
 
             // our associations are based on name so we mustn't deal with
             // them until all classes/packages have been loaded
@@ -1175,13 +1184,19 @@ public final class Package
             targetsCopy = targets.toList();
         }
 
+        List<ClassTarget> toAnalyse = new ArrayList<>();
         for (Target target : targetsCopy)
         {
             if (target instanceof ClassTarget) {
-                ClassTarget ct = (ClassTarget) target;
-                ct.analyseSource();
+                toAnalyse.add((ClassTarget) target);
             }
         }
+        prefetchSourceInfo(toAnalyse);
+        for (ClassTarget ct : toAnalyse)
+        {
+            ct.analyseSource();
+        }
+        finishPrefetch();
 
         //Update class roles, and their state
         for (Target target : targetsCopy)
@@ -1751,14 +1766,48 @@ public final class Package
     /**
      * Compile every Target in 'targetList'. Every compilation goes through this method.
      * All targets in the list should have been saved beforehand.
+     *
+     * <p>When the classes are to be kept, targets which need compiling only because a class they
+     * depend on was modified are not compiled straight away.  They are handed to the observer, which
+     * recompiles them only if the ABI of a class they depend on has changed once it has been compiled.
      */
-    private void doCompile(Collection<ClassTarget> targetList, FXCompileObserver edtObserver, CompileReason reason, CompileType type)
+    private void doCompile(Collection<ClassTarget> targetList, QuietPackageCompileObserver edtObserver, CompileReason reason, CompileType type)
     {
-        CompileObserver observer = new EventqueueCompileObserverAdapter(new DataCollectionCompileObserverWrapper(project, edtObserver));
         if (targetList.isEmpty()) {
             return;
         }
 
+        if (type.keepClasses())
+        {
+            List<ClassTarget> deferred = new ArrayList<>();
+            for (ClassTarget ct : targetList)
+            {
+                if (ct.isInvalidatedByDependency())
+                {
+                    deferred.add(ct);
+                }
+            }
+            if (!deferred.isEmpty())
+            {
+                Debug.message("Incremental compile: deferring " + Utility.mapList(deferred, ClassTarget::getQualifiedName)
+                        + " until the ABI of their dependencies is known");
+                edtObserver.deferDependents(deferred, reason);
+                targetList = new ArrayList<>(targetList);
+                targetList.removeAll(deferred);
+                if (targetList.isEmpty())
+                {
+                    // Nothing has been modified in a way that needs compiling; the observer can
+                    // decide straight away whether the deferred targets need compiling.  Start an
+                    // empty compilation, so that its observers see a start for the end:
+                    edtObserver.startCompile(new CompileInputFile[0], reason, type, -1);
+                    edtObserver.endCompile(new CompileInputFile[0], true, type, -1);
+                    return;
+                }
+            }
+        }
+
+        CompileObserver observer = new EventqueueCompileObserverAdapter(new DataCollectionCompileObserverWrapper(project, edtObserver));
+
         List<CompileInputFile> srcFiles = Utility.mapList(targetList, ClassTarget::getCompileInputFile);
         if (srcFiles.size() > 0 && srcFiles.stream().allMatch(CompileInputFile::isValid))
         {
@@ -1916,6 +1965,8 @@ public final class Package
             throw new IllegalArgumentException();
 
         targets.add(t.getIdentifierName(), t);
+        // A class may now be found which was not before:
+        getProject().getResolutionCache().clear();
         fireChangedEvent();
     }
 
@@ -1923,6 +1974,7 @@ public final class Package
     {
         targets.remove(t.getIdentifierName());
         t.setRemoved();
+        getProject().getResolutionCache().clear();
         fireChangedEvent();
     }
 
@@ -1939,6 +1991,7 @@ public final class Package
         }
         targets.remove(oldIdentifier);
         targets.add(newIdentifier, t);
+        getProject().getResolutionCache().clear();
     }
 
     /**
@@ -2101,6 +2154,47 @@ public final class Package
         return Utility.mapList(getClassTargets(), ClassTarget::getBaseName);
     }
 
+    /**
+     * Get a description of everything besides a source file's own contents which
+     * affects the result of parsing it in this package: the project settings, the
+     * package name, and the names of the classes in the package (references to which
+     * are recorded as dependencies). Cached parse information is only used if it was
+     * obtained in the same context.
+     */
+    String getParseContext()
+    {
+        List<String> classNames = new ArrayList<>(getAllClassnames());
+        Collections.sort(classNames);
+        return getProject().getParseContext() + "\n" + getQualifiedName() + "\n"
+                + String.join(",", classNames);
+    }
+
+    /**
+     * Read the sources of the given classes, and any cached parse information for them,
+     * ahead of analysing the classes. The reading is spread across several threads; any
+     * sources which then need to be parsed are parsed when they are analysed. Call
+     * finishPrefetch() after analysing the classes.
+     */
+    private void prefetchSourceInfo(List<ClassTarget> classTargets)
+    {
+        List<File> sourceFiles = new ArrayList<>();
+        for (ClassTarget ct : classTargets) {
+            File sourceFile = ct.getJavaSourceFile();
+            if (sourceFile != null) {
+                sourceFiles.add(sourceFile);
+            }
+        }
+        getProject().getClassInfoCache().prefetch(sourceFiles, getParseContext());
+    }
+
+    /**
+     * Discard anything read by prefetchSourceInfo() which was not used.
+     */
+    private void finishPrefetch()
+    {
+        getProject().getClassInfoCache().discardPrefetched();
+    }
+
     /**
      * Return a List of Strings with names of all classes in this package that
      * has accompanying source.
@@ -2598,6 +2692,17 @@ public final class Package
     {
         protected List<FXCompileObserver> chainedObservers;
 
+        // Targets which need compiling only because a class they depend on was modified,
+        // and which will be compiled only if the ABI of such a class has changed:
+        private final Set<ClassTarget> deferredTargets = new HashSet<>();
+        private CompileReason deferredReason;
+        // The sources of the compilations so far, while there are deferred targets to compile:
+        private final List<CompileInputFile> compiledSources = new ArrayList<>();
+        private boolean allSuccessful = true;
+        // Whether the chained observers have been told that a compilation has started, and
+        // not yet that it has ended.  Compiling deferred targets does not start a new one:
+        private boolean chainedStarted = false;
+
         /**
          * Construct a new QuietPackageCompileObserver. The chained observers (if
          * non-empty list) are notified about each event.
@@ -2607,6 +2712,101 @@ public final class Package
             this.chainedObservers = new ArrayList<>(chainedObservers);
         }
 
+        /**
+         * Add targets which need compiling only because a class they depend on was modified.
+         * They are compiled, or marked as compiled again, when the current compilation ends.
+         */
+        public void deferDependents(Collection<ClassTarget> targets, CompileReason reason)
+        {
+            deferredTargets.addAll(targets);
+            deferredReason = reason;
+        }
+
+        /**
+         * Decide what to do with the deferred targets after a compilation.  A target is marked
+         * as compiled again once all the classes it depends on, directly or indirectly, are compiled
+         * with an unchanged ABI.
+         * If there is nothing more to compile, targets which depend only on each other (or on
+         * compiled classes) are marked as compiled too.  Targets which depend on a class which
+         * could not be compiled are left needing compilation.
+         *
+         * @return the deferred targets which must now be compiled
+         */
+        private List<ClassTarget> resolveDeferredTargets()
+        {
+            List<ClassTarget> toCompile = new ArrayList<>();
+            boolean progress = true;
+            while (progress)
+            {
+                progress = false;
+                for (Iterator<ClassTarget> i = deferredTargets.iterator(); i.hasNext(); )
+                {
+                    ClassTarget ct = i.next();
+                    if (!ct.isInvalidatedByDependency())
+                    {
+                        i.remove();
+                        if (ct.getState() == State.NEEDS_COMPILE)
+                        {
+                            toCompile.add(ct);
+                        }
+                        else
+                        {
+                            ct.setQueued(false);
+                        }
+                    }
+                    else if (ct.dependencies().stream().allMatch(d -> !(d instanceof ClassTarget dep) || dep == ct || dep.isCompiled() || !dep.hasSourceCode()))
+                    {
+                        i.remove();
+                        if (ct.restoreCompiledState())
+                        {
+                            ct.setQueued(false);
+                            progress = true;
+                        }
+                        else
+                        {
+                            toCompile.add(ct);
+                        }
+                    }
+                }
+            }
+
+            if (toCompile.isEmpty() && !deferredTargets.isEmpty())
+            {
+                // Find the targets which (perhaps indirectly) depend on a class which is not compiled
+                // and which is not itself deferred; the rest only wait on each other.
+                Set<ClassTarget> blocked = new HashSet<>();
+                boolean changed = true;
+                while (changed)
+                {
+                    changed = false;
+                    for (ClassTarget ct : deferredTargets)
+                    {
+                        if (!blocked.contains(ct) && ct.dependencies().stream().anyMatch(d -> d instanceof ClassTarget dep
+                                && dep.hasSourceCode() && !dep.isCompiled()
+                                && (!deferredTargets.contains(dep) || blocked.contains(dep))))
+                        {
+                            blocked.add(ct);
+                            changed = true;
+                        }
+                    }
+                }
+
+                for (ClassTarget ct : deferredTargets)
+                {
+                    if (blocked.contains(ct) || ct.restoreCompiledState())
+                    {
+                        ct.setQueued(false);
+                    }
+                    else
+                    {
+                        toCompile.add(ct);
+                    }
+                }
+                deferredTargets.clear();
+            }
+            return toCompile;
+        }
+
         private void markAsCompiling(CompileInputFile[] sources, int compilationSequence)
         {
             for (int i = 0; i < sources.length; i++) {
@@ -2660,9 +2860,13 @@ public final class Package
             // Change view of source classes.
             markAsCompiling(sources, compilationSequence);
 
-            for (FXCompileObserver chainedObserver : chainedObservers)
+            if (!chainedStarted)
             {
-                chainedObserver.startCompile(sources, reason, type, compilationSequence);
+                chainedStarted = true;
+                for (FXCompileObserver chainedObserver : chainedObservers)
+                {
+                    chainedObserver.startCompile(sources, reason, type, compilationSequence);
+                }
             }
         }
 
@@ -2732,6 +2936,10 @@ public final class Package
                 if (t.getState() == State.COMPILED)
                 {
                     targetsToAnalyse.add(t);
+                    if (type.keepClasses() && t.updateAbiFingerprint())
+                    {
+                        t.abiChanged();
+                    }
                 }
                 else if (!successful)
                 {
@@ -2789,6 +2997,27 @@ public final class Package
             // Compile the classes that have no direct/indirect dependencies that have compile errors
             doCompile(readyToCompileList, this, CompileReason.USER, CompileType.EXPLICIT_USER_COMPILE);
 
+            // Compile (only) those dependents of the classes just compiled which depend, perhaps indirectly,
+            // on a class whose ABI has changed.
+            // Chained observers are only told that the compilation has ended once they have been compiled too.
+            List<ClassTarget> dependentsToCompile = new ArrayList<>();
+            if (!deferredTargets.isEmpty())
+            {
+                for (ClassTarget ct : resolveDeferredTargets())
+                {
+                    try
+                    {
+                        ct.ensureSaved();
+                        dependentsToCompile.add(ct);
+                    }
+                    catch (IOException ioe)
+                    {
+                        Debug.log("Failed to save source before compile; " + ioe.getLocalizedMessage());
+                        ct.setQueued(false);
+                    }
+                }
+            }
+
             for (ClassTarget classTarget : targetsToAnalyse)
             {
                 classTarget.analyseAfterCompile();
@@ -2805,9 +3034,22 @@ public final class Package
             CompileEvent aCompileEvent = new CompileEvent(eventType, type.keepClasses(), Utility.mapList(Arrays.asList(sources), CompileInputFile::getJavaCompileInputFile).toArray(new File[0]));
             ExtensionsManager.getInstance().delegateEvent(aCompileEvent);
 
+            allSuccessful &= successful;
+            compiledSources.addAll(Arrays.asList(sources));
+            if (!dependentsToCompile.isEmpty())
+            {
+                doCompile(dependentsToCompile, this, deferredReason, type);
+                return;
+            }
+            CompileInputFile[] allSources = compiledSources.toArray(new CompileInputFile[0]);
+            boolean allSucceeded = allSuccessful;
+            compiledSources.clear();
+            allSuccessful = true;
+            chainedStarted = false;
+
             for (FXCompileObserver chainedObserver : chainedObservers)
             {
-                chainedObserver.endCompile(sources, successful, type, compilationSequence);
+                chainedObserver.endCompile(allSources, allSucceeded, type, compilationSequence);
             }
         }
     }
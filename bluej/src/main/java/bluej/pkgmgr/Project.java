@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -50,6 +50,7 @@ import bluej.groupwork.ui.CommitAndPushFrame;
 import bluej.groupwork.ui.StatusFrame;
 import bluej.groupwork.ui.TeamSettingsDialog;
 import bluej.groupwork.ui.UpdateFilesFrame;
+import bluej.parser.entity.ClassLookupCache;
 import bluej.parser.entity.EntityResolver;
 import bluej.pkgmgr.target.ClassTarget;
 import bluej.pkgmgr.target.Target;
@@ -161,6 +162,13 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
     @OnThread(value = Tag.Any, requireSynchronized = true)
     private boolean inTestMode = false;
     private BPClassLoader currentClassLoader;
+    // Class lookups made by entity resolvers, cleared when the class loader is
+    // replaced or the set of classes in the project changes:
+    @OnThread(Tag.Any)
+    private final ClassLookupCache resolutionCache = new ClassLookupCache();
+    // Information from parsing the project's sources, kept between sessions:
+    @OnThread(Tag.Any)
+    private final ClassInfoCache classInfoCache;
     private List<URL> libraryUrls;
     // the TeamSettingsController for this project
     private TeamSettingsController teamSettingsController = null;
@@ -307,6 +315,7 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
         
 
         this.projectDir = projectDir;
+        classInfoCache = new ClassInfoCache(projectDir);
         libraryUrls = getLibrariesClasspath();
         inspectors = new HashMap<Object,Inspector>();
         packages = new TreeMap<String, Package>();
@@ -1683,6 +1692,7 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
         }
 
         currentClassLoader = null;
+        resolutionCache.clear();
     }
 
     /**
@@ -1853,6 +1863,7 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
         // as parent.
         currentClassLoader = new BPClassLoader( newUrls,
                 Boot.getInstance().getBootClassLoader());
+        resolutionCache.clear();
 
         return currentClassLoader;
     }
@@ -1891,6 +1902,36 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
         return new ProjectEntityResolver(this);
     }
 
+    /**
+     * Get the cache of class lookups made by this project's entity resolvers. Its hit
+     * counts can be used to check how effective it is.
+     */
+    @OnThread(Tag.Any)
+    public ClassLookupCache getResolutionCache()
+    {
+        return resolutionCache;
+    }
+
+    /**
+     * Get the cache of information from parsing this project's sources.
+     */
+    @OnThread(Tag.Any)
+    ClassInfoCache getClassInfoCache()
+    {
+        return classInfoCache;
+    }
+
+    /**
+     * Get a description of the project-wide settings which affect the result of parsing
+     * a source file: the Java version, the source character set and the libraries.
+     * See Package.getParseContext().
+     */
+    String getParseContext()
+    {
+        return System.getProperty("java.version") + "\n" + getProjectCharset().name()
+                + "\n" + libraryUrls;
+    }
+
     /**
      * Get a javadoc resolver, which can be used to retrieve comments for methods.
      */
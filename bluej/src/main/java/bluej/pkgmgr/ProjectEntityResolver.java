@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2010,2014  Michael Kolling and John Rosenberg 
+ Copyright (C) 2010,2014,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -58,7 +58,7 @@ public class ProjectEntityResolver implements EntityResolver
     public PackageOrClass resolvePackageOrClass(String name, Reflective querySource)
     {
         // Try in java.lang
-        Class<?> cl = project.loadClass("java.lang." + name);
+        Class<?> cl = loadClass("java.lang." + name);
         if (cl != null) {
             return new TypeEntity(cl);
         }
@@ -85,12 +85,20 @@ public class ProjectEntityResolver implements EntityResolver
         }
 
         // Try as a class which might be external to the project 
-        Class<?> cl = project.loadClass(name);
+        Class<?> cl = loadClass(name);
         if (cl != null) {
             return new TypeEntity(cl);
         }
         
         return null;
     }
+    
+    /**
+     * Load a class using the project's class loader, via the project's resolution cache.
+     */
+    private Class<?> loadClass(String name)
+    {
+        return project.getResolutionCache().loadClass(name, project::loadClass);
+    }
 
 }
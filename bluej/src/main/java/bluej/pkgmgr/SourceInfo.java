@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2014,2016  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2014,2016,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,8 +21,12 @@
  */
 package bluej.pkgmgr;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import bluej.parser.InfoParser;
 import bluej.parser.symtab.ClassInfo;
@@ -49,15 +53,33 @@ public final class SourceInfo
         info = null;
     }
 
+    /**
+     * Get the information for the given source file, parsing it if necessary. Information
+     * stored in the project's class information cache is used if the file is unchanged
+     * since it was stored; otherwise the information from parsing is stored there.
+     * Returns null if the file could not be read or parsed.
+     */
     public ClassInfo getInfo(File sourceFile, Package pkg)
     {
         if(info == null)
         {
+            ClassInfoCache cache = pkg.getProject().getClassInfoCache();
             try
             {
-                info = InfoParser.parseWithPkg(sourceFile, pkg);
+                ClassInfoCache.Source source = cache.read(sourceFile, pkg.getParseContext());
+                info = source.getCachedInfo();
+                if (info == null)
+                {
+                    Reader reader = new InputStreamReader(new ByteArrayInputStream(source.getContents()),
+                            pkg.getProject().getProjectCharset());
+                    info = InfoParser.parseWithPkg(new BufferedReader(reader), pkg);
+                    if (info != null)
+                    {
+                        cache.store(source, info);
+                    }
+                }
             }
-            catch (FileNotFoundException fnfe)
+            catch (IOException ioe)
             {
                 // info remains null
             }
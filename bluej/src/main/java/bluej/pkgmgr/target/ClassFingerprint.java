@@ -0,0 +1,384 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr.target;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A fingerprint of the part of a compiled class that other classes can be compiled against
+ * (its "ABI"): the class's modifiers, supertypes and generic signature, and the signatures of
+ * its non-private fields, methods and member classes, including the values of constant fields
+ * (which the compiler copies into the classes that use them).  Method bodies and private
+ * members do not contribute, so a change to them leaves the fingerprint unchanged.
+ *
+ * <p>Package-private members are included: the classes which depend on a class target are
+ * in the same package, so they may use them.
+ *
+ * <p>The fingerprint is calculated by reading the class files directly, so that the class is
+ * not loaded or initialised.
+ */
+@OnThread(Tag.Any)
+public final class ClassFingerprint
+{
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Integer = 3;
+    private static final int CONSTANT_Float = 4;
+    private static final int CONSTANT_Long = 5;
+    private static final int CONSTANT_Double = 6;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_String = 8;
+    private static final int CONSTANT_MethodHandle = 15;
+    private static final int CONSTANT_MethodType = 16;
+    private static final int CONSTANT_Module = 19;
+    private static final int CONSTANT_Package = 20;
+
+    private final byte[] digest;
+
+    private ClassFingerprint(byte[] digest)
+    {
+        this.digest = digest;
+    }
+
+    /**
+     * Calculate the fingerprint of a class from its class file and the class files of its
+     * nested classes.  Local and anonymous classes are ignored, since they cannot be referred
+     * to from other classes.
+     *
+     * @param classFile   the class file of the top-level class
+     * @param innerClassFiles  the class files of the nested classes (may be null)
+     * @return  the fingerprint, or null if the class file does not exist or cannot be read
+     */
+    public static ClassFingerprint of(File classFile, File[] innerClassFiles)
+    {
+        List<File> files = new ArrayList<>();
+        files.add(classFile);
+        if (innerClassFiles != null)
+        {
+            List<File> inner = new ArrayList<>(Arrays.asList(innerClassFiles));
+            inner.removeIf(f -> isLocalOrAnonymous(f.getName()));
+            inner.sort(Comparator.comparing(File::getName));
+            files.addAll(inner);
+        }
+
+        MessageDigest md = newDigest();
+        for (File file : files)
+        {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(file)))
+            {
+                addClass(md, is);
+            }
+            catch (IOException ioe)
+            {
+                return null;
+            }
+        }
+        return new ClassFingerprint(md.digest());
+    }
+
+    /**
+     * Calculate the fingerprint of a single class file.
+     */
+    static ClassFingerprint of(InputStream classFile) throws IOException
+    {
+        MessageDigest md = newDigest();
+        addClass(md, classFile);
+        return new ClassFingerprint(md.digest());
+    }
+
+    private static void addClass(MessageDigest md, InputStream classFile) throws IOException
+    {
+        for (String line : readAbi(classFile))
+        {
+            md.update(line.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256:
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Check whether a class file name (such as "Foo$1.class" or "Foo$Bar.class") is that of a
+     * local or anonymous class; the compiler gives these a name which starts with a digit.
+     */
+    private static boolean isLocalOrAnonymous(String fileName)
+    {
+        for (String part : fileName.split("\\$"))
+        {
+            if (!part.isEmpty() && Character.isDigit(part.charAt(0)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read a class file, and return a canonical description of its ABI, one line per item.
+     * The members are sorted so that re-ordering declarations does not change the result.
+     */
+    private static List<String> readAbi(InputStream is) throws IOException
+    {
+        DataInputStream in = new DataInputStream(is);
+        if (in.readInt() != 0xCAFEBABE)
+        {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        ConstantPool cp = new ConstantPool(in);
+
+        List<String> header = new ArrayList<>();
+        int classFlags = in.readUnsignedShort();
+        String thisClass = cp.className(in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        header.add("class " + Integer.toHexString(classFlags) + " " + thisClass
+                + " extends " + (superIndex == 0 ? "" : cp.className(superIndex)));
+        int interfaceCount = in.readUnsignedShort();
+        for (int i = 0; i < interfaceCount; i++)
+        {
+            header.add("implements " + cp.className(in.readUnsignedShort()));
+        }
+
+        List<String> members = new ArrayList<>();
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++)
+        {
+            readMember(in, cp, "field", members);
+        }
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++)
+        {
+            readMember(in, cp, "method", members);
+        }
+
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++)
+        {
+            String name = cp.utf8(in.readUnsignedShort());
+            int length = in.readInt();
+            switch (name)
+            {
+                case "Signature" -> header.add("signature " + cp.utf8(in.readUnsignedShort()));
+                case "InnerClasses" -> {
+                    int count = in.readUnsignedShort();
+                    for (int j = 0; j < count; j++)
+                    {
+                        int innerIndex = in.readUnsignedShort();
+                        int outerIndex = in.readUnsignedShort();
+                        in.readUnsignedShort(); // simple name
+                        int innerFlags = in.readUnsignedShort();
+                        // Only our own member classes; the attribute also lists every
+                        // nested class that we merely refer to.
+                        if (outerIndex != 0 && cp.className(outerIndex).equals(thisClass)
+                                && (innerFlags & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0)
+                        {
+                            members.add("member " + Integer.toHexString(innerFlags) + " " + cp.className(innerIndex));
+                        }
+                    }
+                }
+                case "PermittedSubclasses" -> {
+                    int count = in.readUnsignedShort();
+                    for (int j = 0; j < count; j++)
+                    {
+                        members.add("permits " + cp.className(in.readUnsignedShort()));
+                    }
+                }
+                default -> in.skipNBytes(length);
+            }
+        }
+
+        Collections.sort(members);
+        header.addAll(members);
+        return header;
+    }
+
+    /**
+     * Read a field_info or method_info structure, and add its description to the list
+     * unless it is private or synthetic.
+     */
+    private static void readMember(DataInputStream in, ConstantPool cp, String kind, List<String> members)
+            throws IOException
+    {
+        int flags = in.readUnsignedShort();
+        StringBuilder sb = new StringBuilder(kind).append(' ').append(Integer.toHexString(flags))
+                .append(' ').append(cp.utf8(in.readUnsignedShort()))
+                .append(' ').append(cp.utf8(in.readUnsignedShort()));
+
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++)
+        {
+            String name = cp.utf8(in.readUnsignedShort());
+            int length = in.readInt();
+            switch (name)
+            {
+                case "Signature" -> sb.append(" signature ").append(cp.utf8(in.readUnsignedShort()));
+                case "ConstantValue" -> sb.append(" = ").append(cp.constant(in.readUnsignedShort()));
+                case "Exceptions" -> {
+                    int count = in.readUnsignedShort();
+                    List<String> thrown = new ArrayList<>();
+                    for (int j = 0; j < count; j++)
+                    {
+                        thrown.add(cp.className(in.readUnsignedShort()));
+                    }
+                    Collections.sort(thrown);
+                    sb.append(" throws ").append(String.join(",", thrown));
+                }
+                // An annotation element's default is used by code which applies the annotation:
+                case "AnnotationDefault" -> {
+                    byte[] value = in.readNBytes(length);
+                    sb.append(" default ").append(HexFormat.of().formatHex(value));
+                }
+                default -> in.skipNBytes(length);
+            }
+        }
+
+        if ((flags & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0)
+        {
+            members.add(sb.toString());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o instanceof ClassFingerprint other && Arrays.equals(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(digest);
+    }
+
+    /**
+     * A short hexadecimal form of the fingerprint, for the debug log.
+     */
+    @Override
+    public String toString()
+    {
+        return HexFormat.of().formatHex(digest, 0, 6);
+    }
+
+    /**
+     * The constant pool of a class file.  Only the entries needed to describe the ABI are kept.
+     */
+    @OnThread(Tag.Any)
+    private static class ConstantPool
+    {
+        private final String[] utf8;
+        private final int[] refs;
+        private final Object[] values;
+
+        ConstantPool(DataInputStream in) throws IOException
+        {
+            int count = in.readUnsignedShort();
+            utf8 = new String[count];
+            refs = new int[count];
+            values = new Object[count];
+            for (int i = 1; i < count; i++)
+            {
+                int tag = in.readUnsignedByte();
+                switch (tag)
+                {
+                    case CONSTANT_Utf8 -> utf8[i] = in.readUTF();
+                    case CONSTANT_Integer -> values[i] = in.readInt();
+                    case CONSTANT_Float -> values[i] = in.readFloat();
+                    case CONSTANT_Long -> {
+                        values[i] = in.readLong();
+                        i++; // Takes two entries
+                    }
+                    case CONSTANT_Double -> {
+                        values[i] = in.readDouble();
+                        i++; // Takes two entries
+                    }
+                    case CONSTANT_Class, CONSTANT_String, CONSTANT_MethodType, CONSTANT_Module, CONSTANT_Package ->
+                        refs[i] = in.readUnsignedShort();
+                    case CONSTANT_MethodHandle -> in.skipNBytes(3);
+                    // Field/method/interface-method refs, NameAndType, Dynamic and InvokeDynamic:
+                    case 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                    default -> throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        String utf8(int index) throws IOException
+        {
+            if (index <= 0 || index >= utf8.length || utf8[index] == null)
+            {
+                throw new IOException("Bad constant pool index " + index);
+            }
+            return utf8[index];
+        }
+
+        String className(int index) throws IOException
+        {
+            if (index <= 0 || index >= refs.length)
+            {
+                throw new IOException("Bad constant pool index " + index);
+            }
+            return utf8(refs[index]);
+        }
+
+        String constant(int index) throws IOException
+        {
+            if (index <= 0 || index >= values.length)
+            {
+                throw new IOException("Bad constant pool index " + index);
+            }
+            // A String constant refers to a Utf8 entry; the numeric constants are held directly.
+            // The type is part of the field descriptor, so the value alone is enough.
+            return values[index] != null ? values[index].toString() : '"' + utf8(refs[index]) + '"';
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2022,2023,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2022,2023,2024,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -109,6 +109,7 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.lang.ClassNotFoundException;
 
@@ -174,6 +175,14 @@ public class ClassTarget extends DependentTarget
     // Whether the current compilation is invalid due to edits since compilation began
     private boolean compilationInvalid = false;
 
+    // The fingerprint of the class's ABI as of the last time it was compiled, or null if not known.
+    // Used to decide whether classes which depend on this one need to be recompiled.
+    private ClassFingerprint abiFingerprint;
+
+    // Whether this class needs compiling only because a class it depends on was modified.  Such a class
+    // need not be recompiled if the ABI of its dependencies turns out to be unchanged.
+    private boolean invalidatedByDependency = false;
+
     private SourceType sourceAvailable;
     // Part of keeping track of number of editors opened, for Greenfoot phone home:
     private boolean hasBeenOpened = false;
@@ -981,7 +990,7 @@ public class ClassTarget extends DependentTarget
      */
     public void invalidate()
     {
-        invalidateInclDependents(new ArrayList<>());
+        invalidateInclDependents(new ArrayList<>(), false);
     }
 
     /**
@@ -989,15 +998,16 @@ public class ClassTarget extends DependentTarget
      * as we traverse the dependency graph to prevent an infinite loop (in the case where
      * A depends on B which depends on A).
      * @param alreadyInvalidated The list of already invalidated targets in this call tree (will be modified)
+     * @param byDependency Whether this class is being invalidated only because a class it depends on was modified
      */
-    private void invalidateInclDependents(ArrayList<ClassTarget> alreadyInvalidated)
+    private void invalidateInclDependents(ArrayList<ClassTarget> alreadyInvalidated, boolean byDependency)
     {
         // Mark any current compilation as stale:
         compilationInvalid = true;
         
         if (hasSourceCode())
         {
-            setState(State.NEEDS_COMPILE);
+            markNeedsCompile(byDependency);
             if (editor != null)
             {
                 // Need to run later because we might be notified mid-edit event:
@@ -1015,11 +1025,136 @@ public class ClassTarget extends DependentTarget
             {
                 // Invalidate the dependent only if it is not already invalidated. 
                 // Will avoid going into an infinite circular loop.
-                dependent.invalidateInclDependents(alreadyInvalidated);
+                dependent.invalidateInclDependents(alreadyInvalidated, true);
+            }
+        }
+    }
+
+    /**
+     * Mark this class as needing a compile, either because its own source has been modified
+     * or because a class that it depends on has been modified.  In the latter case, the class
+     * will only be recompiled if the ABI of a class it depends on actually changes.
+     *
+     * <p>If the class is currently compiled, the fingerprint of its ABI is recorded first, so that it
+     * can be compared with the result of the next compilation.
+     *
+     * @param byDependency  true if the class is marked only because a class it depends on was modified
+     */
+    public void markNeedsCompile(boolean byDependency)
+    {
+        if (getState() == State.COMPILED)
+        {
+            if (abiFingerprint == null)
+            {
+                abiFingerprint = ClassFingerprint.of(getClassFile(), getInnerClassFiles());
+            }
+            invalidatedByDependency = byDependency;
+        }
+        else if (!byDependency)
+        {
+            invalidatedByDependency = false;
+        }
+        setState(State.NEEDS_COMPILE);
+    }
+
+    /**
+     * Mark the class as needing a compile (if it is not marked thus already).  It will be compiled
+     * even if it was previously invalidated only by a dependency.
+     */
+    @Override
+    public void markModified()
+    {
+        invalidatedByDependency = false;
+        super.markModified();
+    }
+
+    /**
+     * Check whether this class needs a compile only because a class that it depends on was modified,
+     * and so may not need recompiling at all.
+     */
+    public boolean isInvalidatedByDependency()
+    {
+        return invalidatedByDependency && getState() == State.NEEDS_COMPILE;
+    }
+
+    /**
+     * Notify the classes which depend on this one, directly or indirectly, that its ABI has
+     * changed, so that they must be recompiled.  Indirect dependents are included because
+     * a class may use members of this class which it reaches through another, for instance
+     * by inheriting them through a subclass whose own ABI is unchanged.
+     */
+    public void abiChanged()
+    {
+        for (DependentTarget d : collectDependents(this, DependentTarget::dependents))
+        {
+            if (d instanceof ClassTarget dependent && dependent.invalidatedByDependency)
+            {
+                Debug.message("Incremental compile: " + dependent.getQualifiedName() + " must be recompiled");
+                dependent.invalidatedByDependency = false;
             }
         }
     }
 
+    /**
+     * Find the targets which depend on the given target, directly or indirectly (not including
+     * the target itself, unless it depends on itself through a cycle).
+     *
+     * @param dependents  gives the targets which depend directly on a target
+     */
+    static <T> Set<T> collectDependents(T target, Function<? super T, ? extends Collection<? extends T>> dependents)
+    {
+        Set<T> found = new LinkedHashSet<>();
+        Deque<T> toVisit = new ArrayDeque<>(dependents.apply(target));
+        while (!toVisit.isEmpty())
+        {
+            T t = toVisit.remove();
+            if (found.add(t))
+            {
+                toVisit.addAll(dependents.apply(t));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Mark a class which was invalidated only by a dependency as compiled again, without
+     * recompiling it, because the ABI of the classes it depends on has not changed.
+     *
+     * @return true if the class is now compiled; false if its class file is not up to date
+     *         and so it must be recompiled after all.
+     */
+    public boolean restoreCompiledState()
+    {
+        if (!isInvalidatedByDependency() || !upToDate())
+        {
+            return false;
+        }
+        Debug.message("Incremental compile: " + getQualifiedName() + " not recompiled, dependencies' ABI unchanged");
+        invalidatedByDependency = false;
+        setState(State.COMPILED);
+        if (editor != null)
+        {
+            editor.setCompiled(true);
+        }
+        return true;
+    }
+
+    /**
+     * Recalculate the fingerprint of this class's ABI after it has been compiled, and compare it
+     * with the fingerprint from before.  If it was not previously known it is treated as changed.
+     *
+     * @return true if the classes which depend on this one need to be recompiled
+     */
+    public boolean updateAbiFingerprint()
+    {
+        ClassFingerprint previous = abiFingerprint;
+        abiFingerprint = ClassFingerprint.of(getClassFile(), getInnerClassFiles());
+        boolean changed = abiFingerprint == null || !abiFingerprint.equals(previous);
+        Debug.message("Incremental compile: ABI of " + getQualifiedName()
+                + (changed ? " changed (" + previous + " -> " + abiFingerprint + ")" : " unchanged (" + abiFingerprint + ")"));
+        return changed;
+    }
+
     /**
      * Verify whether this class target is an interface class
      * 
@@ -1151,6 +1286,7 @@ public class ClassTarget extends DependentTarget
             newCompiledState &= !hasKnownError();
             if (newCompiledState)
             {
+                invalidatedByDependency = false;
                 setState(State.COMPILED);
             }
         }
@@ -0,0 +1,120 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A command sent to the ExecServer over the command channel, or the reply to one.
+ * A message is a code (the action, or the reply status) and a list of strings,
+ * any of which may be null.
+ *
+ * <p>The command channel is a socket connection from the ExecServer in the debug VM
+ * to BlueJ, carrying the parameters of an action in a single message rather than
+ * as a series of JDI field assignments. Values which only exist in the debug VM
+ * (loaded classes, objects) are still passed through static fields of ExecServer.
+ */
+public final class ExecCommand
+{
+    /**
+     * The system property, set when the debug VM is launched, which gives the path of
+     * a file holding the port to connect to and the key to send, as "port:key".
+     */
+    public static final String CHANNEL_PROPERTY = "bluej.commandChannel";
+
+    // Commands (other than the worker thread actions, which are also used):
+    /** Set the action and parameters for the server thread's next action. */
+    public static final int SET_SERVER_ACTION = 100;
+
+    // Reply codes:
+    public static final int REPLY_OK = 0;
+    public static final int REPLY_FAILED = 1;
+
+    private final int code;
+    private final String [] strings;
+
+    public ExecCommand(int code, String... strings)
+    {
+        this.code = code;
+        this.strings = strings;
+    }
+
+    /**
+     * Get the action or reply code.
+     */
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Get the string parameters.
+     */
+    public String [] getStrings()
+    {
+        return strings;
+    }
+
+    /**
+     * Write this message to the given stream, and flush it.
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(code);
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            if (s == null) {
+                out.writeInt(-1);
+            }
+            else {
+                byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a message from the given stream.
+     *
+     * @throws java.io.EOFException  if the stream ends before a complete message
+     */
+    public static ExecCommand read(DataInputStream in) throws IOException
+    {
+        int code = in.readInt();
+        int count = in.readInt();
+        String [] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length >= 0) {
+                byte [] bytes = new byte[length];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return new ExecCommand(code, strings);
+    }
+}
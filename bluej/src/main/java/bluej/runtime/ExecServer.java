@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2016,2017,2018,2019,2021,2023  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2016,2017,2018,2019,2021,2023,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -26,6 +26,10 @@ import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.event.AWTEventListener;
 import java.awt.event.WindowEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
@@ -35,9 +39,14 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -112,7 +121,10 @@ public class ExecServer
     public static String methodToRun;
     public static String [] parameterTypes;
     public static Object [] arguments;
-    public static int execAction = -1;   // EXEC_SHELL, TEST_SETUP or TEST_RUN
+    public static Object methodTarget;
+    // Volatile, so that the parameters above are visible to the server thread when
+    // they are set by the command thread:
+    public static volatile int execAction = -1;   // EXEC_SHELL, TEST_SETUP or TEST_RUN
     
     public static Object methodReturn;
     public static Class<?> executedClass;
@@ -124,6 +136,7 @@ public class ExecServer
     public static final String METHOD_TO_RUN_NAME = "methodToRun";
     public static final String PARAMETER_TYPES_NAME = "parameterTypes";
     public static final String ARGUMENTS_NAME = "arguments";
+    public static final String METHOD_TARGET_NAME = "methodTarget";
     public static final String EXEC_ACTION_NAME = "execAction";
     public static final String METHOD_RETURN_NAME = "methodReturn";
     public static final String EXCEPTION_NAME = "exception";
@@ -140,6 +153,8 @@ public class ExecServer
     public static final int INSTANTIATE_CLASS_ARGS = 7; // use constructor
         // with specified parameter types and arguments
     public static final int LAUNCH_FX_APP = 8;
+    public static final int INVOKE_METHOD = 9; // call a method with specified
+        // parameter types and arguments, on methodTarget (null for static)
 
     // Parameter for worker thread actions
     public static int workerAction = EXIT_VM;
@@ -170,6 +185,10 @@ public class ExecServer
     // EXIT_VM ( = 4) is also used in the worker thread
     public static final int LOAD_ALL      = 5; // load class and inner classes
 
+    // The result of the last command channel action
+    public static volatile Object commandReturn;
+    public static final String COMMAND_RETURN_NAME = "commandReturn";
+
     // the current class loader
     private static ClassLoader currentLoader;
 
@@ -292,6 +311,10 @@ public class ExecServer
 
         toolkit.addAWTEventListener(listener, AWTEvent.WINDOW_EVENT_MASK);
         
+        // Connect the command channel before signalling startup, so that the
+        // connection is waiting when BlueJ looks for it.
+        startCommandThread();
+        
         // signal with a breakpoint that we have performed our VM
         // initialization, at the same time, create the initial server thread.
         newThread();
@@ -303,6 +326,112 @@ public class ExecServer
         workerThread.start();
     }
 
+    /**
+     * Connect to BlueJ's command channel, if one was given, and start the thread which
+     * carries out the commands received on it. If the channel cannot be connected,
+     * BlueJ carries out all actions through the debugger instead.
+     */
+    private static void startCommandThread()
+    {
+        String channel = System.getProperty(ExecCommand.CHANNEL_PROPERTY);
+        if (channel == null) {
+            return;
+        }
+        // User code has no business with it:
+        System.clearProperty(ExecCommand.CHANNEL_PROPERTY);
+        
+        final DataInputStream in;
+        final DataOutputStream out;
+        try {
+            // The property names a file, readable only by the user, which holds the
+            // port and key:
+            channel = new String(Files.readAllBytes(Paths.get(channel)), StandardCharsets.UTF_8).trim();
+            int colon = channel.indexOf(':');
+            int port = Integer.parseInt(channel.substring(0, colon));
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(channel.substring(colon + 1));
+            out.flush();
+        }
+        catch (IOException | RuntimeException e) {
+            return;
+        }
+        
+        // Like the worker thread, the command thread must not execute user code.
+        Thread commandThread = new Thread("BlueJ command thread")
+        {
+            public void run()
+            {
+                try {
+                    while (true) {
+                        ExecCommand command = ExecCommand.read(in);
+                        ExecCommand reply;
+                        try {
+                            reply = performCommand(command);
+                        }
+                        catch (RuntimeException e) {
+                            reply = new ExecCommand(ExecCommand.REPLY_FAILED);
+                        }
+                        reply.write(out);
+                    }
+                }
+                catch (IOException ioe) {
+                    // The connection to the primary VM has been lost, so we exit, as
+                    // the worker thread would.
+                    System.exit(0);
+                }
+            }
+        };
+        commandThread.setDaemon(true);
+        commandThread.setPriority(Thread.MAX_PRIORITY);
+        commandThread.start();
+    }
+    
+    /**
+     * Carry out a command received on the command channel, and return the reply.
+     */
+    private static ExecCommand performCommand(ExecCommand command)
+    {
+        String [] strings = command.getStrings();
+        commandReturn = null;
+        switch (command.getCode()) {
+            case LOAD_CLASS:
+                try {
+                    Class<?> c = Class.forName(strings[0], false, currentLoader);
+                    // Prepare the class, as for the worker thread's LOAD_CLASS:
+                    c.getFields();
+                    commandReturn = c;
+                }
+                catch (Throwable t) {
+                    return new ExecCommand(ExecCommand.REPLY_FAILED);
+                }
+                break;
+            case NEW_LOADER:
+                commandReturn = newLoader(strings[0]);
+                break;
+            case LOAD_ALL:
+                commandReturn = loadAllClasses(strings[0]);
+                break;
+            case REMOVE_OBJECT:
+                removeObject(strings[0], strings[1]);
+                break;
+            case ExecCommand.SET_SERVER_ACTION:
+                classToRun = strings[1];
+                methodToRun = strings[2];
+                parameterTypes = Arrays.copyOfRange(strings, 3, strings.length);
+                // Last, since the server thread reads it first:
+                execAction = Integer.parseInt(strings[0]);
+                break;
+            case EXIT_VM:
+                System.exit(0);
+            default:
+                return new ExecCommand(ExecCommand.REPLY_FAILED);
+        }
+        return new ExecCommand(ExecCommand.REPLY_OK);
+    }
+
     /**
      * This method is used to suspend the execution of the
      * machine to indicate that everything is up and running.
@@ -903,18 +1032,37 @@ public class ExecServer
                             // types and arguments
                             clearInputBuffer();
                             Class<?> c = currentLoader.loadClass(classToRun);
-                            Class<?> [] paramClasses = new Class[parameterTypes.length];
-                            for (int i = 0; i < parameterTypes.length; i++) {
-                                if (classLoader == null)
-                                    classLoader = currentLoader;
-                                
-                                paramClasses[i] = Class.forName(parameterTypes[i], false, currentLoader);
-                            }
+                            if (classLoader == null)
+                                classLoader = currentLoader;
+                            Class<?> [] paramClasses = loadParameterClasses();
+                            Object [] args = convertArguments(paramClasses, arguments);
                             Constructor<?> cons = c.getDeclaredConstructor(paramClasses);
                             cons.setAccessible(true);
                             runOnTargetThread(() -> {
                                 try {
-                                    methodReturn = cons.newInstance(arguments);
+                                    methodReturn = cons.newInstance(args);
+                                }
+                                catch (InvocationTargetException ite) {
+                                    throw ite.getCause();
+                                }
+                            });
+                            break;
+                        }
+                        case INVOKE_METHOD:
+                        {
+                            // Call a method directly (without a shell class). The
+                            // result is wrapped as a shell class would wrap it.
+                            clearInputBuffer();
+                            Object target = methodTarget;
+                            methodTarget = null;
+                            Class<?> c = currentLoader.loadClass(classToRun);
+                            Class<?> [] paramClasses = loadParameterClasses();
+                            Object [] args = convertArguments(paramClasses, arguments);
+                            Method m = findMethod(c, methodToRun, paramClasses);
+                            m.setAccessible(true);
+                            runOnTargetThread(() -> {
+                                try {
+                                    methodReturn = wrapResult(m.getReturnType(), m.invoke(target, args));
                                 }
                                 catch (InvocationTargetException ite) {
                                     throw ite.getCause();
@@ -981,6 +1129,106 @@ public class ExecServer
         mainThread.start();
     }
 
+    /**
+     * Load the classes named in parameterTypes, which may include primitive types.
+     */
+    private static Class<?> [] loadParameterClasses() throws ClassNotFoundException
+    {
+        Class<?> [] paramClasses = new Class[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            paramClasses[i] = switch (parameterTypes[i]) {
+                case "boolean" -> boolean.class;
+                case "byte" -> byte.class;
+                case "char" -> char.class;
+                case "short" -> short.class;
+                case "int" -> int.class;
+                case "long" -> long.class;
+                case "float" -> float.class;
+                case "double" -> double.class;
+                default -> Class.forName(parameterTypes[i], false, currentLoader);
+            };
+        }
+        return paramClasses;
+    }
+
+    /**
+     * Convert arguments for primitive parameters, which are passed as their string
+     * representation, to the (boxed) primitive values. Other arguments are unchanged.
+     */
+    private static Object [] convertArguments(Class<?> [] paramClasses, Object [] args)
+    {
+        Object [] converted = args.clone();
+        for (int i = 0; i < paramClasses.length; i++) {
+            if (paramClasses[i].isPrimitive() && args[i] instanceof String s) {
+                Class<?> p = paramClasses[i];
+                if (p == boolean.class)
+                    converted[i] = Boolean.valueOf(s);
+                else if (p == byte.class)
+                    converted[i] = Byte.valueOf(s);
+                else if (p == char.class)
+                    converted[i] = Character.valueOf(s.charAt(0));
+                else if (p == short.class)
+                    converted[i] = Short.valueOf(s);
+                else if (p == int.class)
+                    converted[i] = Integer.valueOf(s);
+                else if (p == long.class)
+                    converted[i] = Long.valueOf(s);
+                else if (p == float.class)
+                    converted[i] = Float.valueOf(s);
+                else if (p == double.class)
+                    converted[i] = Double.valueOf(s);
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Find a method with the given name and parameter types, declared in the given
+     * class or inherited by it.
+     */
+    private static Method findMethod(Class<?> c, String name, Class<?> [] paramClasses)
+        throws NoSuchMethodException
+    {
+        for (Class<?> sc = c; sc != null; sc = sc.getSuperclass()) {
+            try {
+                return sc.getDeclaredMethod(name, paramClasses);
+            }
+            catch (NoSuchMethodException nsme) { }
+        }
+        // Might be a default method from an interface:
+        return c.getMethod(name, paramClasses);
+    }
+
+    /**
+     * Wrap the result of a method call in an object with a single "result" field,
+     * in the same way as a shell class wraps the result of an invocation.
+     */
+    private static Object wrapResult(Class<?> returnType, Object value)
+    {
+        if (returnType == void.class)
+            return null;
+        else if (returnType == boolean.class)
+            return Shell.makeObj((boolean) (Boolean) value);
+        else if (returnType == byte.class)
+            return Shell.makeObj((byte) (Byte) value);
+        else if (returnType == char.class)
+            return Shell.makeObj((char) (Character) value);
+        else if (returnType == short.class)
+            return Shell.makeObj((short) (Short) value);
+        else if (returnType == int.class)
+            return Shell.makeObj((int) (Integer) value);
+        else if (returnType == long.class)
+            return Shell.makeObj((long) (Long) value);
+        else if (returnType == float.class)
+            return Shell.makeObj((float) (Float) value);
+        else if (returnType == double.class)
+            return Shell.makeObj((double) (Double) value);
+        else if (returnType == String.class)
+            return Shell.makeObj((String) value);
+        else
+            return Shell.makeObj(value);
+    }
+
     private static void runOnTargetThread(RunnableThrows runnable) throws Throwable
     {
         int theThreadToRunOn;
@@ -1046,14 +1294,29 @@ public class ExecServer
         StackTraceElement [] stackTrace = t.getStackTrace();
         int i;
         for(i = 0; i < stackTrace.length; i++) {
-            if(stackTrace[i].getClassName().startsWith("__SHELL"))
+            String className = stackTrace[i].getClassName();
+            if(className.startsWith("__SHELL"))
                 break;
+            if(className.startsWith(ExecServer.class.getName())) {
+                // Called directly rather than via a shell class; drop the
+                // reflection frames between the user code and ourselves too
+                while(i > 0 && isReflectionFrame(stackTrace[i - 1]))
+                    i--;
+                break;
+            }
         }
         StackTraceElement [] newStackTrace = new StackTraceElement[i];
         System.arraycopy(stackTrace, 0, newStackTrace, 0, i);
         t.setStackTrace(newStackTrace);
         t.printStackTrace();
     }
+
+    private static boolean isReflectionFrame(StackTraceElement element)
+    {
+        String className = element.getClassName();
+        return className.startsWith("java.lang.reflect.") || className.startsWith("jdk.internal.reflect.")
+                || className.startsWith("java.lang.invoke.");
+    }
     
 
     /**
@@ -0,0 +1,119 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The lines of a terminal pane, held in a circular array so that lines can be added at the end
+ * and removed from the start (when trimming old output) without moving the other lines.
+ * Lines are accessed by index, where zero is the oldest line still held.
+ */
+class ContentLineStore
+{
+    private ContentLine[] lines = new ContentLine[64];
+    // The array index of line zero:
+    private int head = 0;
+    private int size = 0;
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public ContentLine get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+        }
+        return lines[(head + index) & (lines.length - 1)];
+    }
+
+    public void set(int index, ContentLine line)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+        }
+        lines[(head + index) & (lines.length - 1)] = line;
+    }
+
+    public ContentLine getLast()
+    {
+        return get(size - 1);
+    }
+
+    public void add(ContentLine line)
+    {
+        if (size == lines.length)
+        {
+            // Grow, unwrapping the lines so that line zero is at the start of the new array:
+            ContentLine[] bigger = new ContentLine[lines.length * 2];
+            int firstPart = lines.length - head;
+            System.arraycopy(lines, head, bigger, 0, firstPart);
+            System.arraycopy(lines, 0, bigger, firstPart, head);
+            lines = bigger;
+            head = 0;
+        }
+        lines[(head + size) & (lines.length - 1)] = line;
+        size += 1;
+    }
+
+    /**
+     * Remove the given number of lines from the start.  The time taken depends only on the
+     * number of lines removed, not on the number remaining.
+     */
+    public void removeFirst(int count)
+    {
+        if (count < 0 || count > size)
+        {
+            throw new IndexOutOfBoundsException("Removing " + count + " of " + size + " lines");
+        }
+        for (int i = 0; i < count; i++)
+        {
+            // Allow the removed lines to be garbage collected:
+            lines[(head + i) & (lines.length - 1)] = null;
+        }
+        head = (head + count) & (lines.length - 1);
+        size -= count;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(lines, null);
+        head = 0;
+        size = 0;
+    }
+
+    public Stream<ContentLine> stream()
+    {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+}
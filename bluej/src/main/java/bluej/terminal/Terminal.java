@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2013,2014,2015,2016,2017,2018,2019,2021,2022,2023,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2013,2014,2015,2016,2017,2018,2019,2021,2022,2023,2024,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -49,6 +49,7 @@ import bluej.utility.FileUtility;
 import bluej.utility.JavaNames;
 import bluej.utility.Utility;
 import bluej.utility.javafx.JavaFXUtil;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ReadOnlyDoubleWrapper;
@@ -84,11 +85,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -104,6 +100,9 @@ public final class Terminal
     implements BlueJEventListener, DebuggerTerminal
 {
     private static final int MAX_BUFFER_LINES = 200;
+    // The number of characters of output which may be waiting to be shown before the
+    // program writing it has to wait:
+    private static final int OUTPUT_BUFFER_CHARS = 256 * 1024;
 
     // The style for text in the stdout pane: was it output by the program, or input by the user?
     // Or third option: details about method recording
@@ -114,6 +113,9 @@ public final class Terminal
     private static final List<String> STDERR_LINKED_STACK_TRACE = Collections.singletonList("terminal-stack-link");
     private static final List<String> STDERR_FOREIGN_STACK_TRACE = Collections.singletonList("terminal-stack-foreign");
 
+    private static final String JAVAFX_STARTUP_LOG = "com.sun.javafx.application.PlatformImpl startup";
+    private static final String JAVAFX_CONFIGURATION_WARNING = "Unsupported JavaFX configuration: classes were loaded from";
+
     private static final String WINDOWTITLE = Config.getApplicationName() + ": " + Config.getString("terminal.title");
 
     private static final String RECORDMETHODCALLSPROPNAME = "bluej.terminal.recordcalls";
@@ -143,8 +145,25 @@ public final class Terminal
     private final BooleanProperty showingProperty = new SimpleBooleanProperty(false);
 
     @OnThread(Tag.Any) private final Reader in = new TerminalReader();
-    @OnThread(Tag.Any) private final TerminalWriter out = new TerminalWriter(false);
-    @OnThread(Tag.Any) private final Writer err = new TerminalWriter(true);
+    @OnThread(Tag.Any) private final TerminalWriter out = new TerminalWriter();
+    @OnThread(Tag.Any) private final TerminalWriter err = new TerminalWriter();
+
+    // Shows the output waiting in the writers, once per pulse while there is output:
+    private final AnimationTimer outputTimer = new AnimationTimer()
+    {
+        @Override
+        @OnThread(Tag.FXPlatform)
+        public void handle(long now)
+        {
+            if (!showPendingOutput())
+            {
+                stop();
+            }
+        }
+    };
+    // The number of lines at the start of the error pane which have been scanned for stack traces
+    // (the last of these may since have had more output added to it):
+    private int stackTraceScannedLines = 0;
 
     private Stage window;
 
@@ -293,6 +312,9 @@ public final class Terminal
 
     private void sendInput(boolean eof)
     {
+        // Show any output which came before the input:
+        showPendingOutput();
+
         String inputString = this.input.getText() + (eof ? "" : "\n");
         buffer.putString(inputString);
         if (eof)
@@ -444,6 +466,38 @@ public final class Terminal
 
     enum PaneType { STDOUT, STDERR }
 
+    /**
+     * Show the output which the program has written since this was last called.
+     * All the output from each stream is shown at once, to keep up with programs
+     * which write large amounts of output.
+     *
+     * @return true if there was any output to show
+     */
+    private boolean showPendingOutput()
+    {
+        boolean shown = false;
+        try
+        {
+            String s = out.takeOutput();
+            if (s != null)
+            {
+                writeToPane(PaneType.STDOUT, s, STDOUT_OUTPUT);
+                shown = true;
+            }
+            s = err.takeOutput();
+            if (s != null)
+            {
+                writeToPane(PaneType.STDERR, s, STDERR_NORMAL);
+                shown = true;
+            }
+        }
+        catch (Throwable t)
+        {
+            Debug.reportError(t);
+        }
+        return shown;
+    }
+
     /**
      * Write some text to the terminal.
      */
@@ -455,19 +509,21 @@ public final class Terminal
             clear();
             s = s.substring(n + 1);
         }
-        // Split up into lines for filtering:
-        ArrayList<String> lines = new ArrayList<>(Arrays.asList(s.split("\n")));
         // Try to remove lines like these two:
         //     Jan 23, 2023 12:09:30 PM com.sun.javafx.application.PlatformImpl startup
         //     WARNING: Unsupported JavaFX configuration: classes were loaded from 'unnamed module @18be7add'
         //     WARNUNG: Unsupported JavaFX configuration: classes were loaded from 'unnamed module @28f3d2a1'
-        if (paneType == PaneType.STDERR && lines.removeIf(l -> l.trim().endsWith("com.sun.javafx.application.PlatformImpl startup") ||
-            l.contains("Unsupported JavaFX configuration: classes were loaded from")))
+        // Only split up into lines for filtering if there may be such a line:
+        if (paneType == PaneType.STDERR && (s.contains(JAVAFX_STARTUP_LOG) || s.contains(JAVAFX_CONFIGURATION_WARNING)))
         {
-            // No need to continue (and thus show the terminal window) if there's no new output to add:
-            if (lines.isEmpty())
-                return;
-            s = String.join("\n", lines);
+            ArrayList<String> lines = new ArrayList<>(Arrays.asList(s.split("\n")));
+            if (lines.removeIf(l -> l.trim().endsWith(JAVAFX_STARTUP_LOG) || l.contains(JAVAFX_CONFIGURATION_WARNING)))
+            {
+                // No need to continue (and thus show the terminal window) if there's no new output to add:
+                if (lines.isEmpty())
+                    return;
+                s = String.join("\n", lines);
+            }
         }
         // Only show the error pane once we know there's something to add:
         if (paneType == PaneType.STDERR)
@@ -512,6 +568,8 @@ public final class Terminal
      */
     private void methodCall(String callString)
     {
+        // Output from the previous call belongs before the new section:
+        showPendingOutput();
         newMethodCall = false;
         if(clearOnMethodCall.get()) {
             clear();
@@ -535,6 +593,8 @@ public final class Terminal
 
     private void constructorCall(InvokerRecord ir)
     {
+        // Output from the previous call belongs before the new section:
+        showPendingOutput();
         newMethodCall = false;
         if(clearOnMethodCall.get()) {
             clear();
@@ -597,7 +657,11 @@ public final class Terminal
     private void scanForStackTrace()
     {
         try {
-            List<String> allLines = errorText.getLines();
+            int lineCount = errorText.getLineCount();
+            // Only new lines need scanning, plus the last line scanned before, in case more output
+            // was added to it.  If there are fewer lines than before, the pane has been cleared.
+            int firstLine = lineCount < stackTraceScannedLines ? 0 : Math.max(0, stackTraceScannedLines - 1);
+            stackTraceScannedLines = lineCount;
 
             Pattern fileAndLine = java.util.regex.Pattern.compile("at (\\S+)\\((\\S+)\\.java:(\\d+)\\)");
             Pattern noSource = java.util.regex.Pattern.compile("at \\S+\\((Native Method|Unknown Source)\\)");
@@ -605,9 +669,9 @@ public final class Terminal
             // Matches things like:
             // at greenfoot.localdebugger.LocalDebugger$QueuedExecution.run(LocalDebugger.java:267)
             //    ^--------------------group 1----------------------------^ ^--group 2--^      ^3^
-            for (int i = 0; i < allLines.size(); i++)
+            for (int i = firstLine; i < lineCount; i++)
             {
-                String line = allLines.get(i);
+                String line = errorText.getLineText(i);
                 Matcher m = fileAndLine.matcher(line);
                 
                 while (m.find())
@@ -748,7 +812,7 @@ public final class Terminal
     @OnThread(Tag.FXPlatform)
     private void endSectionWhenNoPendingWrites()
     {
-        if (out.pendingWrites.get() > 0)
+        if (out.hasPendingOutput())
         {
             JavaFXUtil.runAfterCurrent(() -> endSectionWhenNoPendingWrites());
         }
@@ -797,6 +861,7 @@ public final class Terminal
                 }
             });
             errorText.addTextChangeListener(this::scanForStackTrace);
+            stackTraceScannedLines = 0;
         }
         splitPane.getItems().add(errorText);
         Config.rememberDividerPosition(window, splitPane, "bluej.terminal.dividerpos");
@@ -912,63 +977,44 @@ public final class Terminal
     }
 
     /**
-     * A writer which writes to the terminal. It can be flagged for error output.
-     * The idea is that error output could be presented differently from standard
-     * output.
+     * A writer which writes to the terminal, for either standard or error output.
+     * Output is added to a buffer, which is shown in the terminal once per pulse by
+     * the FX thread.  The writer only waits if the buffer is full, which limits the
+     * output to the speed at which the terminal can show it, so that the UI still
+     * responds to user input even if the output is really gushing.
      */
     @OnThread(Tag.Any)
     private class TerminalWriter extends Writer
     {
-        private boolean isErrorOut;
-        // The number of pending writes (content that has been received on the
-        // IO thread, but not yet displayed in the terminal via the FX thread)
-        private AtomicInteger pendingWrites = new AtomicInteger(0);
-        
-        TerminalWriter(boolean isError)
-        {
-            super();
-            isErrorOut = isError;
-        }
+        private final TerminalOutputBuffer output = new TerminalOutputBuffer(OUTPUT_BUFFER_CHARS,
+                () -> Platform.runLater(outputTimer::start));
 
+        @Override
         public void write(final char[] cbuf, final int off, final int len)
         {
-            try {
-                pendingWrites.incrementAndGet();
-                // We use a wait so that terminal output is limited to
-                // the processing speed of the event queue. This means the UI
-                // will still respond to user input even if the output is really
-                // gushing.
-                CompletableFuture<Boolean> written = new CompletableFuture<>();
-                Platform.runLater(() -> {
-                    try
-                    {
-                        String s = new String(cbuf, off, len);
-                        if (isErrorOut)
-                        {
-                            writeToPane(PaneType.STDERR, s, STDERR_NORMAL);
-                        }
-                        else
-                            writeToPane(PaneType.STDOUT, s, STDOUT_OUTPUT);
-                    }
-                    catch (Throwable t)
-                    {
-                        Debug.reportError(t);
-                    }
-                    finally
-                    {
-                        written.complete(true);
-                        pendingWrites.decrementAndGet();
-                    }
-                });
-                // Timeout in case something goes wrong with the printing:
-                written.get(2000, TimeUnit.MILLISECONDS);
-            }
-            catch (InterruptedException | ExecutionException | TimeoutException ie)
+            synchronized (lock)
             {
-                Debug.reportError(ie);
+                output.write(cbuf, off, len);
             }
         }
 
+        /**
+         * Take the output written since the last call, or null if there is none.
+         */
+        @OnThread(Tag.FXPlatform)
+        String takeOutput()
+        {
+            return output.drain();
+        }
+
+        /**
+         * Check whether there is output which has not yet been shown in the terminal.
+         */
+        boolean hasPendingOutput()
+        {
+            return output.hasPendingOutput();
+        }
+
         public void flush() { }
 
         public void close() { }
@@ -0,0 +1,166 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A bounded ring buffer of characters, which carries program output from the thread which
+ * reads it from the debug VM to the FX thread which displays it.
+ *
+ * <p>There is a single writer and a single reader, and they do not lock: each only advances its
+ * own index.  The writer only waits when the buffer is full (that is, when the reader has fallen
+ * behind by the whole capacity); otherwise output is accepted immediately and the reader takes
+ * everything that has accumulated in one go.
+ *
+ * <p>When output arrives in an empty buffer which the reader is not already going to drain, the
+ * "output available" action given to the constructor is run, so that the reader can schedule a
+ * drain.  The reader must call {@link #drain()} until it returns null; at that point the action
+ * will be run again for the next output.
+ */
+@OnThread(Tag.Any)
+final class TerminalOutputBuffer
+{
+    // How long the writer waits at most before re-checking for space, in case it misses a wake-up:
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final char[] buffer;
+    private final int mask;
+    // Total number of characters ever written and read.  The writer only updates writeCount,
+    // the reader only updates readCount, so the difference is the number of characters waiting.
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    // Whether a drain has been requested (by running outputAvailable) and not yet found the buffer empty:
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private final Runnable outputAvailable;
+    // The writer, if it is waiting for space:
+    private volatile Thread waitingWriter;
+
+    /**
+     * Create a buffer.
+     *
+     * @param capacity  the number of characters which may be waiting before the writer has to wait.
+     *                  Rounded up to a power of two.
+     * @param outputAvailable  run (on the writer's thread) when output is written and no drain is pending.
+     */
+    TerminalOutputBuffer(int capacity, Runnable outputAvailable)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        this.buffer = new char[size];
+        this.mask = size - 1;
+        this.outputAvailable = outputAvailable;
+    }
+
+    /**
+     * Add characters to the buffer, waiting for the reader to make space if necessary.
+     * Only one thread may write at a time.
+     */
+    void write(char[] cbuf, int off, int len)
+    {
+        while (len > 0)
+        {
+            long written = writeCount.get();
+            int space = buffer.length - (int)(written - readCount.get());
+            if (space == 0)
+            {
+                waitForSpace();
+                continue;
+            }
+            int count = Math.min(len, space);
+            int start = (int)(written & mask);
+            int firstPart = Math.min(count, buffer.length - start);
+            System.arraycopy(cbuf, off, buffer, start, firstPart);
+            System.arraycopy(cbuf, off + firstPart, buffer, 0, count - firstPart);
+            // Publishes the characters to the reader:
+            writeCount.set(written + count);
+            off += count;
+            len -= count;
+
+            if (drainPending.compareAndSet(false, true))
+            {
+                outputAvailable.run();
+            }
+        }
+    }
+
+    private void waitForSpace()
+    {
+        waitingWriter = Thread.currentThread();
+        // Re-check after registering, in case the reader drained just before:
+        if (writeCount.get() - readCount.get() == buffer.length)
+        {
+            LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+        }
+        waitingWriter = null;
+    }
+
+    /**
+     * Take all the characters currently in the buffer.
+     *
+     * @return the characters, or null if the buffer is empty.  Once null has been returned, the
+     *         "output available" action will be run when more output is written.
+     */
+    String drain()
+    {
+        long read = readCount.get();
+        long written = writeCount.get();
+        if (read == written)
+        {
+            drainPending.set(false);
+            // Output may have been written between reading the count and clearing the flag; if so
+            // the writer may have seen the flag still set, so we must carry on draining:
+            if (writeCount.get() == written || !drainPending.compareAndSet(false, true))
+            {
+                return null;
+            }
+            written = writeCount.get();
+        }
+        int count = (int)(written - read);
+        int start = (int)(read & mask);
+        int firstPart = Math.min(count, buffer.length - start);
+        StringBuilder sb = new StringBuilder(count);
+        sb.append(buffer, start, firstPart);
+        sb.append(buffer, 0, count - firstPart);
+        readCount.set(written);
+
+        Thread writer = waitingWriter;
+        if (writer != null)
+        {
+            LockSupport.unpark(writer);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Check whether there is output which has been written but not yet taken by the reader.
+     */
+    boolean hasPendingOutput()
+    {
+        return drainPending.get() || writeCount.get() != readCount.get();
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2021,2022,2023,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 2021,2022,2023,2024,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -75,8 +75,8 @@ import java.util.stream.Collectors;
  */
 public abstract class TerminalTextPane extends BaseEditorPane
 {
-    // One list entry per line of content.  Will always be at least one entry:
-    private final ArrayList<ContentLine> content = new ArrayList<>();
+    // One entry per line of content.  Will always be at least one entry:
+    private final ContentLineStore content = new ContentLineStore();
     // Listeners to call when the content of the pane changes
     private final ArrayList<FXPlatformRunnable> contentListeners = new ArrayList<>();
 
@@ -512,9 +512,10 @@ public abstract class TerminalTextPane extends BaseEditorPane
     {
         if (content.size() > numLines)
         {
-            // Important to take a copy, as content will be blanked during the set:
             int linesToSubtract = content.size() - numLines;
-            setContent(new ArrayList<>(content.subList(linesToSubtract, content.size())));
+            content.removeFirst(linesToSubtract);
+            refreshDisplay();
+            contentChanged();
             // Adjust caret and anchor positions upwards by the trimmed lines:
             int newCaretLine = Math.max(0, caretPos.getLine() - linesToSubtract);
             caretPos = makePosition(
@@ -546,7 +547,7 @@ public abstract class TerminalTextPane extends BaseEditorPane
     private void setContent(List<ContentLine> lines)
     {
         content.clear();
-        content.addAll(lines);
+        lines.forEach(content::add);
         refreshDisplay();
         contentChanged();
     }
@@ -587,6 +588,14 @@ public abstract class TerminalTextPane extends BaseEditorPane
         return content.stream().map(line -> line.getText()).collect(Collectors.toList());
     }
 
+    /**
+     * Get the text content of a single line, without any newline character.
+     */
+    public String getLineText(int lineIndex)
+    {
+        return content.get(lineIndex).getText();
+    }
+
     @Override
     protected int getLineLength(int lineIndex)
     {
@@ -635,23 +644,29 @@ public abstract class TerminalTextPane extends BaseEditorPane
      */
     public void append(StyledSegment styledSegment)
     {
-        // Append, accounting for newlines:
-        String remainder = styledSegment.getText().replaceAll("\r", "");
-        while (!remainder.isEmpty())
+        // Append, accounting for newlines.  The text may be a large batch of output, so we
+        // take each line in turn rather than repeatedly copying the remainder:
+        String text = styledSegment.getText();
+        if (text.indexOf('\r') != -1)
+        {
+            text = text.replace("\r", "");
+        }
+        int lineStart = 0;
+        while (lineStart < text.length())
         {
-            int newlineIndex = remainder.indexOf('\n');
+            int newlineIndex = text.indexOf('\n', lineStart);
             if (newlineIndex == -1)
             {
                 // No newline, just append it:
-                content.get(content.size() - 1).append(new StyledSegment(styledSegment.getStyleClasses(), remainder));
-                remainder = "";
+                content.getLast().append(new StyledSegment(styledSegment.getStyleClasses(), text.substring(lineStart)));
+                lineStart = text.length();
             }
             else
             {
-                String beforeNewline = remainder.substring(0, newlineIndex);
-                content.get(content.size() - 1).append(new StyledSegment(styledSegment.getStyleClasses(), beforeNewline));
+                String beforeNewline = text.substring(lineStart, newlineIndex);
+                content.getLast().append(new StyledSegment(styledSegment.getStyleClasses(), beforeNewline));
                 content.add(new ContentLine(new ArrayList<>()));
-                remainder = remainder.substring(newlineIndex + 1);
+                lineStart = newlineIndex + 1;
             }
         }
         refreshDisplay();
@@ -0,0 +1,500 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bluej.Config;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * An index, kept on disk, of the types found in each classpath element (a jar, a jmod,
+ * or the JDK's module image).  It lets the ImportScanner skip scanning elements which
+ * have not changed since they were last scanned, by this or any other project.
+ *
+ * <p>Each element is keyed by its canonical path, and is only used if the file's
+ * modification time and size still match.  Elements are stored as separate blocks,
+ * so updating one element copies the others across unchanged.
+ *
+ * <p>The index is written to a new, numbered file each time it is saved, and other
+ * index files are deleted when possible.  This means that an index file is never replaced
+ * while it is memory-mapped (which Windows does not allow), and that BlueJ instances
+ * sharing the index always see a complete file.
+ */
+@OnThread(Tag.Any)
+public class ClasspathIndex
+{
+    private static final int MAGIC = 0x424A4349; // "BJCI"
+    // Increase if the format of the index changes:
+    private static final int FORMAT_VERSION = 1;
+    private static final String PREFIX = "index-";
+    private static final String SUFFIX = ".dat";
+
+    private static ClasspathIndex shared;
+
+    /**
+     * A type found in a classpath element.
+     */
+    public static class IndexedType
+    {
+        private final String name;
+        private final int modifiers;
+        private final String module;
+
+        /**
+         * @param name  The fully qualified binary name, e.g. "java.util.Map$Entry"
+         * @param modifiers  The class modifiers, as given by java.lang.reflect.Modifier
+         * @param module  The name of the module containing the type, or null if it is
+         *                not in a named module.  The Javadoc for JDK types is organised
+         *                by module.
+         */
+        public IndexedType(String name, int modifiers, String module)
+        {
+            this.name = name;
+            this.modifiers = modifiers;
+            this.module = module;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getModifiers()
+        {
+            return modifiers;
+        }
+
+        public String getModule()
+        {
+            return module;
+        }
+    }
+
+    // An element read from the index file: where its types are, and what it was keyed by.
+    private static class StoredEntry
+    {
+        private final long lastModified;
+        private final long size;
+        private final int offset;
+        private final int length;
+
+        private StoredEntry(long lastModified, long size, int offset, int length)
+        {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // An element scanned in this session and not yet saved.
+    private static class NewEntry
+    {
+        private final long lastModified;
+        private final long size;
+        private final byte[] data;
+
+        private NewEntry(long lastModified, long size, byte[] data)
+        {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    private final File directory;
+    // The mapped index file, or null if there was none (or it was not valid):
+    private ByteBuffer mapped;
+    // The start of the type data within the mapped file:
+    private int dataStart;
+    private final Map<String, StoredEntry> stored = new HashMap<>();
+    private final Map<String, NewEntry> added = new HashMap<>();
+
+    /**
+     * Open the index kept in the given directory: the most recently saved index file
+     * which can be read. If there is none, the index starts out empty.
+     */
+    public ClasspathIndex(File directory)
+    {
+        this.directory = directory;
+        for (File file : listIndexFiles())
+        {
+            try
+            {
+                load(file);
+                return;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                Debug.message("Could not read classpath index " + file + ": " + e);
+                mapped = null;
+                stored.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the index shared by all projects, kept in the user's configuration directory.
+     */
+    public static synchronized ClasspathIndex getShared()
+    {
+        if (shared == null)
+        {
+            shared = new ClasspathIndex(new File(Config.getUserConfigDir(), "classpath-index"));
+        }
+        return shared;
+    }
+
+    /**
+     * Get the types in the given classpath element, if they are in the index and the
+     * element has not changed since. Returns null otherwise.
+     */
+    public synchronized List<IndexedType> get(File element)
+    {
+        String key = getKey(element);
+        NewEntry newEntry = added.get(key);
+        if (newEntry != null)
+        {
+            if (isCurrent(element, newEntry.lastModified, newEntry.size))
+            {
+                return decode(ByteBuffer.wrap(newEntry.data));
+            }
+            return null;
+        }
+
+        StoredEntry entry = stored.get(key);
+        if (entry == null || !isCurrent(element, entry.lastModified, entry.size))
+        {
+            return null;
+        }
+        try
+        {
+            return decode(mapped.slice(dataStart + entry.offset, entry.length));
+        }
+        catch (RuntimeException e)
+        {
+            // Corrupt entry; treat as missing, so it will be scanned and replaced:
+            stored.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Record the types in the given classpath element, as it is now. The index must be
+     * saved for the change to be kept.
+     */
+    public synchronized void put(File element, List<IndexedType> types)
+    {
+        added.put(getKey(element), new NewEntry(element.lastModified(), element.length(), encode(types)));
+    }
+
+    /**
+     * Save the index, if anything has been added since it was read or last saved.
+     * Entries for files which no longer exist are dropped.
+     */
+    public synchronized void save()
+    {
+        if (added.isEmpty())
+        {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<long[]> stamps = new ArrayList<>();
+        List<byte[]> blocks = new ArrayList<>();
+        added.forEach((key, entry) -> {
+            keys.add(key);
+            stamps.add(new long[] {entry.lastModified, entry.size});
+            blocks.add(entry.data);
+        });
+        stored.forEach((key, entry) -> {
+            if (!added.containsKey(key) && new File(key).exists())
+            {
+                byte[] data = new byte[entry.length];
+                mapped.get(dataStart + entry.offset, data);
+                keys.add(key);
+                stamps.add(new long[] {entry.lastModified, entry.size});
+                blocks.add(data);
+            }
+        });
+
+        directory.mkdirs();
+        long generation = System.currentTimeMillis();
+        File file;
+        do
+        {
+            file = new File(directory, PREFIX + generation++ + SUFFIX);
+        }
+        while (file.exists());
+        File temp = new File(directory, file.getName() + ".tmp");
+
+        try
+        {
+            ByteArrayOutputStream dirBytes = new ByteArrayOutputStream();
+            DataOutputStream dir = new DataOutputStream(dirBytes);
+            dir.writeInt(keys.size());
+            int offset = 0;
+            for (int i = 0; i < keys.size(); i++)
+            {
+                writeString(dir, keys.get(i));
+                dir.writeLong(stamps.get(i)[0]);
+                dir.writeLong(stamps.get(i)[1]);
+                dir.writeInt(offset);
+                dir.writeInt(blocks.get(i).length);
+                offset += blocks.get(i).length;
+            }
+            dir.flush();
+
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp)))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(dirBytes.size());
+                dirBytes.writeTo(out);
+                for (byte[] block : blocks)
+                {
+                    out.write(block);
+                }
+            }
+            if (!temp.renameTo(file))
+            {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+        }
+        catch (IOException e)
+        {
+            Debug.message("Could not save classpath index: " + e);
+            temp.delete();
+            return;
+        }
+
+        try
+        {
+            load(file);
+            added.clear();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Keep the entries in memory; they will be saved again next time.
+            Debug.message("Could not read back classpath index " + file + ": " + e);
+        }
+        deleteAllExcept(file);
+    }
+
+    /**
+     * Get the key for a file: its canonical path, so that different paths to the same
+     * file share an entry.
+     */
+    private static String getKey(File element)
+    {
+        try
+        {
+            return element.getCanonicalPath();
+        }
+        catch (IOException e)
+        {
+            return element.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Check whether the file still has the given modification time and size.
+     */
+    private static boolean isCurrent(File element, long lastModified, long size)
+    {
+        return element.lastModified() == lastModified && element.length() == size;
+    }
+
+    /**
+     * List the index files, most recently saved first.
+     */
+    private List<File> listIndexFiles()
+    {
+        List<File> indexFiles = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                if (getGeneration(f) >= 0)
+                {
+                    indexFiles.add(f);
+                }
+            }
+        }
+        indexFiles.sort(Comparator.comparingLong(ClasspathIndex::getGeneration).reversed());
+        return indexFiles;
+    }
+
+    /**
+     * Get the generation number of an index file, or -1 if it is not an index file.
+     */
+    private static long getGeneration(File f)
+    {
+        String name = f.getName();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX))
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Delete index files (and any left-over temporary files) other than the given one.
+     * Files still mapped by another BlueJ may fail to delete; they are tried again next time.
+     */
+    private void deleteAllExcept(File current)
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                if (!f.equals(current) && (getGeneration(f) >= 0 || f.getName().endsWith(SUFFIX + ".tmp")))
+                {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Map the given index file and read its directory of entries.
+     */
+    private void load(File file) throws IOException
+    {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+        {
+            throw new IOException("Not a classpath index, or an older version");
+        }
+        int dirLength = buffer.getInt();
+        int start = buffer.position() + dirLength;
+        Map<String, StoredEntry> entries = new HashMap<>();
+        try
+        {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++)
+            {
+                String key = readString(buffer);
+                long lastModified = buffer.getLong();
+                long size = buffer.getLong();
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+                if (offset < 0 || length < 0 || (long)start + offset + length > buffer.limit())
+                {
+                    throw new IOException("Classpath index is truncated");
+                }
+                entries.put(key, new StoredEntry(lastModified, size, offset, length));
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("Classpath index is truncated");
+        }
+
+        mapped = buffer;
+        dataStart = start;
+        stored.clear();
+        stored.putAll(entries);
+    }
+
+    private static byte[] encode(List<IndexedType> types)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(types.size());
+            for (IndexedType type : types)
+            {
+                writeString(out, type.name);
+                out.writeInt(type.modifiers);
+                writeString(out, type.module == null ? "" : type.module);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            // Can't happen when writing to a byte array:
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<IndexedType> decode(ByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+        List<IndexedType> types = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String name = readString(buffer);
+            int modifiers = buffer.getInt();
+            String module = readString(buffer);
+            types.add(new IndexedType(name, modifiers, module.isEmpty() ? null : module));
+        }
+        return Collections.unmodifiableList(types);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,32 +21,86 @@
  */
 package bluej.utility;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
 
 /**
- * A general cache, which caches a fixed number of key/value combinations, and which
- * uses a recently-used strategy to determine which entries to keep.
- * 
+ * A general cache, which caches a limited number of key/value combinations, and which
+ * uses a recently-used strategy to determine which entries to keep. Optionally the
+ * total weight of the cached values can also be limited.
+ *
+ * <p>Lookups and insertions take constant time. The cache may be used from several threads:
+ * lookups do not wait for each other or for updates, though a lookup which coincides
+ * with another operation may not mark its entry as recently used. Keys must not be null;
+ * values may be.
+ *
  * @author Davin McCall
  */
+@OnThread(Tag.Any)
 public class GeneralCache<K,V>
 {
-    private Map<K,V> cacheMap = new HashMap<K,V>();
-    private List<K> cachedKeys = new LinkedList<K>();
-    private int cacheSize;
-    
+    // An entry, in a doubly-linked list ordered from least to most recently used.
+    private static class Node<K,V>
+    {
+        private final K key;
+        private final V value;
+        private final long weight;
+        // Guarded by the cache lock; both null once the node has been removed:
+        private Node<K,V> prev;
+        private Node<K,V> next;
+
+        private Node(K key, V value, long weight)
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final Map<K,Node<K,V>> cacheMap = new ConcurrentHashMap<>();
+    // Protects the list, and the size and weight totals:
+    private final ReentrantLock lock = new ReentrantLock();
+    // Sentinel: head.next is the least recently used entry, head.prev the most recent.
+    private final Node<K,V> head = new Node<>(null, null, 0);
+    private int size;
+    private long totalWeight;
+
+    private final int cacheSize;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
     /**
      * Construct a cache to cache the given number of items.
      */
     public GeneralCache(int cacheSize)
+    {
+        this(cacheSize, Long.MAX_VALUE, v -> 0);
+    }
+
+    /**
+     * Construct a cache to cache the given number of items, whose total weight (as given
+     * by the weigher function) is at most maxWeight. An item which on its own weighs
+     * more than maxWeight is not kept.
+     */
+    public GeneralCache(int cacheSize, long maxWeight, ToLongFunction<? super V> weigher)
     {
         this.cacheSize = cacheSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        head.prev = head;
+        head.next = head;
     }
-    
+
     /**
      * Retrieve an entry from the cache. If no value for the given key is cached,
      * the return is null. To determine if a null return was due to a null value
@@ -54,21 +108,29 @@ public class GeneralCache<K,V>
      */
     public V get(K key)
     {
-        V rval = cacheMap.get(key);
-        if (rval != null) {
-            // Mark the retrieved key as recently used
-            for (Iterator<K> i = cachedKeys.iterator(); ; ) {
-                K k = i.next();
-                if (k.equals(key)) {
-                    i.remove();
-                    cachedKeys.add(key);
-                    break;
+        Node<K,V> node = cacheMap.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        // Mark the retrieved key as recently used, unless someone else is busy with
+        // the cache; we don't want to hold up lookups for the sake of exact ordering.
+        if (lock.tryLock()) {
+            try {
+                if (node.prev != null) {
+                    unlink(node);
+                    linkLast(node);
                 }
             }
+            finally {
+                lock.unlock();
+            }
         }
-        return rval;
+        return node.value;
     }
-    
+
     /**
      * Check whether a value for the given key is currently cached.
      */
@@ -76,27 +138,131 @@ public class GeneralCache<K,V>
     {
         return cacheMap.containsKey(key);
     }
-    
+
     /**
-     * Put an item in the cache. The given key must not already have a cached value.
+     * Put an item in the cache, replacing any value already cached for the key.
+     * Least recently used items are removed as necessary to keep within the limits.
      */
     public void put(K key, V value)
     {
-        if (cachedKeys.size() >= cacheSize) {
-            K toRemove = cachedKeys.remove(0);
-            cacheMap.remove(toRemove);
+        Node<K,V> node = new Node<>(key, value, weigher.applyAsLong(value));
+        lock.lock();
+        try {
+            if (node.weight > maxWeight) {
+                // Too heavy to keep; it would push out everything else, and then itself.
+                // Any value cached for the key is now out of date, though:
+                Node<K,V> old = cacheMap.remove(key);
+                if (old != null) {
+                    remove(old);
+                }
+                return;
+            }
+
+            Node<K,V> old = cacheMap.put(key, node);
+            if (old != null) {
+                remove(old);
+            }
+            linkLast(node);
+            size++;
+            totalWeight += node.weight;
+
+            while ((size > cacheSize || totalWeight > maxWeight) && head.next != head) {
+                Node<K,V> eldest = head.next;
+                cacheMap.remove(eldest.key, eldest);
+                remove(eldest);
+                evictions.increment();
+            }
+        }
+        finally {
+            lock.unlock();
         }
-        
-        cacheMap.put(key, value);
-        cachedKeys.add(key);
     }
-    
+
     /**
      * Remove all cache entries.
      */
     public void clear()
     {
-        cacheMap.clear();
-        cachedKeys.clear();
+        lock.lock();
+        try {
+            cacheMap.clear();
+            for (Node<K,V> n = head.next; n != head; ) {
+                Node<K,V> next = n.next;
+                n.prev = null;
+                n.next = null;
+                n = next;
+            }
+            head.prev = head;
+            head.next = head;
+            size = 0;
+            totalWeight = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of calls to get() which found a cached value.
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of calls to get() which found no cached value.
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries removed to keep within the size and weight limits.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of entries currently cached.
+     */
+    public int size()
+    {
+        lock.lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // Remove a node from the list and the totals. Must hold the lock.
+    private void remove(Node<K,V> node)
+    {
+        unlink(node);
+        size--;
+        totalWeight -= node.weight;
+    }
+
+    // Must hold the lock.
+    private void unlink(Node<K,V> node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    // Add a node as the most recently used. Must hold the lock.
+    private void linkLast(Node<K,V> node)
+    {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
     }
 }
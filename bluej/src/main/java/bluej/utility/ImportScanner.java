@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2014,2015,2016,2017,2019,2020,2021,2024  Michael Kolling and John Rosenberg
+ Copyright (C) 2014,2015,2016,2017,2019,2020,2021,2024,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -31,14 +31,18 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import bluej.Config;
+import bluej.utility.ClasspathIndex.IndexedType;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ModuleRef;
 import io.github.classgraph.ScanResult;
 import javafx.application.Platform;
 import nu.xom.Attribute;
@@ -318,13 +322,11 @@ public class ImportScanner
     }
 
     /**
-     * Gets a list of ClassGraph items which can be used to find available classes.
-     * 
-     * Because of the way ClassGraph works, one item is not enough for all classes;
-     * we use one for system classes and one for user classes.
+     * Gets the ClassGraph configuration for user code libraries: the project's class
+     * loader, plus the BlueJ user libraries.
      */
     @OnThread(Tag.Worker)
-    private List<ClassGraph> getClassloaderConfig()
+    private ClassGraph getUserClassGraph()
     {
         // When you override the class loaders in ClassGraph's config, it no longer
         // loads the JDK classes.  So we have one ClassGraph for user code libraries
@@ -347,27 +349,33 @@ public class ImportScanner
         cl.add(new URLClassLoader(Boot.getInstance().getRuntimeUserClassPath()));
 
         // We hide bluej.* classes as users shouldn't be accessing them:
-        ClassGraph userClassGraph = new ClassGraph()
+        return new ClassGraph()
                 .overrideClassLoaders(cl.toArray(new ClassLoader[0]))
                 .rejectPackages("bluej.*");
-        
-        // We have a separate class graph for system libraries (java.*, javafx.*), from which
-        // we only take public packages, thus avoiding all the com.sun classes and so on:
-        // This has to be separate because enableSystemPackages() doesn't work alongside 
-        // overrideClassLoaders():
-        ClassGraph systemClassGraph = new ClassGraph()
+    }
+
+    /**
+     * Gets the ClassGraph configuration for system libraries (java.*, javafx.*), from which
+     * we only take public packages, thus avoiding all the com.sun classes and so on.
+     * 
+     * This has to be separate from the user configuration because enableSystemPackages()
+     * doesn't work alongside overrideClassLoaders().
+     */
+    @OnThread(Tag.Any)
+    private static ClassGraph getSystemClassGraph()
+    {
+        return new ClassGraph()
             .enableSystemJarsAndModules()
             .acceptPackages("java.*", "javax.*", "javafx.*");
-
-        return List.of(
-            userClassGraph.enableClassInfo(),
-            systemClassGraph.enableClassInfo()
-        );
     }
 
     /**
      * Gets a package-tree structure which includes all packages and class-names
-     * on the current class-path (by scanning all JARs and class-files on the path).
+     * on the current class-path.
+     * 
+     * Each JAR and module on the path is looked up in the shared classpath index,
+     * and only those which are not there (or have changed) are scanned.  Directories
+     * are always scanned.
      *
      * @return A package-tree structure with all class names present, but not any further
      * details about the classes.
@@ -375,31 +383,185 @@ public class ImportScanner
     @OnThread(Tag.Worker)
     private RootPackageInfo findAllTypes()
     {
-        List<ClassGraph> classGraphs = getClassloaderConfig();
         RootPackageInfo r = new RootPackageInfo();
+        ClasspathIndex index = ClasspathIndex.getShared();
         
-        if (classGraphs != null)
+        // Special case -- ClassGraph library (deliberately) doesn't return Object in its list
+        // so we must add it ourselves to avoid problems like "Unknown type: Object" messages.
+        r.addClass("java.lang.Object");
+        try
         {
-            // Special case -- ClassGraph library (deliberately) doesn't return Object in its list
-            // so we must add it ourselves to avoid problems like "Unknown type: Object" messages.
-            r.addClass("java.lang.Object");
-            final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-            for (ClassGraph classGraph : classGraphs)
+            findUserTypes(r, index);
+        }
+        catch (Throwable t)
+        {
+            Debug.reportError(t);
+        }
+        try
+        {
+            findSystemTypes(r, index);
+        }
+        catch (Throwable t)
+        {
+            Debug.reportError(t);
+        }
+        index.save();
+        return r;
+    }
+
+    /**
+     * Adds the types from the user classpath to the given root package, using the index
+     * for unchanged JARs and scanning the rest.
+     */
+    @OnThread(Tag.Worker)
+    private void findUserTypes(RootPackageInfo r, ClasspathIndex index)
+    {
+        List<File> toScan = new ArrayList<>();
+        for (File element : getUserClassGraph().getClasspathFiles())
+        {
+            List<IndexedType> types = element.isFile() ? index.get(element) : null;
+            if (types != null)
+            {
+                types.forEach(t -> r.addClass(t.getName()));
+            }
+            else
+            {
+                toScan.add(element);
+            }
+        }
+        if (toScan.isEmpty())
+        {
+            return;
+        }
+
+        // Scan just the elements which were not indexed, recording which element each
+        // type came from so that the JARs can be indexed:
+        Map<String, List<IndexedType>> found = new LinkedHashMap<>();
+        toScan.stream().filter(File::isFile).forEach(f -> found.put(getCanonicalPath(f), new ArrayList<>()));
+        ClassGraph classGraph = new ClassGraph()
+                .overrideClasspath(toScan)
+                .rejectPackages("bluej.*")
+                .enableClassInfo();
+        try (ScanResult result = classGraph.scan(getScanThreads()))
+        {
+            for (ClassInfo c : result.getAllClasses())
             {
-                try (ScanResult result = classGraph.scan(threads))
+                r.addClass(c.getName());
+                File element = c.getClasspathElementFile();
+                List<IndexedType> types = element == null ? null : found.get(getCanonicalPath(element));
+                if (types != null)
                 {
-                    for (ClassInfo c : result.getAllClasses())
-                    {
-                        r.addClass(c.getName());
-                    }
+                    types.add(new IndexedType(c.getName(), c.getModifiers(), null));
                 }
-                catch (Throwable t)
+            }
+        }
+        // An empty list may mean the types were attributed to a different path for the
+        // same file; it's cheap to scan an empty JAR again, so don't index those:
+        found.forEach((path, types) -> {
+            if (!types.isEmpty())
+            {
+                index.put(new File(path), types);
+            }
+        });
+    }
+
+    /**
+     * Adds the types from the JDK and the JavaFX modules to the given root package, using
+     * the index for unchanged modules and scanning the rest.  The modules in the JDK's
+     * runtime image are indexed together, keyed by the image file.
+     */
+    @OnThread(Tag.Worker)
+    private void findSystemTypes(RootPackageInfo r, ClasspathIndex index)
+    {
+        File runtimeImage = new File(System.getProperty("java.home"), "lib" + File.separator + "modules");
+        // For each indexable file, the names of the modules it contains:
+        Map<File, List<String>> moduleFiles = new LinkedHashMap<>();
+        List<String> unindexed = new ArrayList<>();
+        for (ModuleRef module : getSystemClassGraph().getModules())
+        {
+            File location = module.getLocationFile();
+            if (location == null && runtimeImage.isFile())
+            {
+                location = runtimeImage;
+            }
+            if (location != null && location.isFile())
+            {
+                moduleFiles.computeIfAbsent(location, f -> new ArrayList<>()).add(module.getName());
+            }
+            else
+            {
+                unindexed.add(module.getName());
+            }
+        }
+
+        List<String> toScan = new ArrayList<>(unindexed);
+        Map<File, List<IndexedType>> found = new LinkedHashMap<>();
+        moduleFiles.forEach((file, moduleNames) -> {
+            List<IndexedType> types = index.get(file);
+            if (types != null)
+            {
+                types.forEach(t -> r.addClass(t.getName()));
+            }
+            else
+            {
+                toScan.addAll(moduleNames);
+                found.put(file, new ArrayList<>());
+            }
+        });
+        if (toScan.isEmpty())
+        {
+            return;
+        }
+
+        // Which file each module to be scanned is in, so its types can be indexed:
+        Map<String, List<IndexedType>> foundByModule = new HashMap<>();
+        moduleFiles.forEach((file, moduleNames) -> {
+            if (found.containsKey(file))
+            {
+                moduleNames.forEach(m -> foundByModule.put(m, found.get(file)));
+            }
+        });
+        ClassGraph classGraph = getSystemClassGraph()
+                .acceptModules(toScan.toArray(new String[0]))
+                .enableClassInfo();
+        try (ScanResult result = classGraph.scan(getScanThreads()))
+        {
+            for (ClassInfo c : result.getAllClasses())
+            {
+                r.addClass(c.getName());
+                ModuleRef module = c.getModuleRef();
+                List<IndexedType> types = module == null ? null : foundByModule.get(module.getName());
+                if (types != null)
                 {
-                    Debug.reportError(t);
+                    types.add(new IndexedType(c.getName(), c.getModifiers(), module.getName()));
                 }
             }
         }
-        return r;
+        found.forEach((file, types) -> {
+            if (!types.isEmpty())
+            {
+                index.put(file, types);
+            }
+        });
+    }
+
+    @OnThread(Tag.Any)
+    private static int getScanThreads()
+    {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    @OnThread(Tag.Any)
+    private static String getCanonicalPath(File f)
+    {
+        try
+        {
+            return f.getCanonicalPath();
+        }
+        catch (IOException e)
+        {
+            return f.getAbsolutePath();
+        }
     }
 
     /**
@@ -0,0 +1,194 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import bluej.compiler.CompileScheduler.PendingJob;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the order in which the CompileScheduler runs jobs, and the merging of error-check jobs.
+ */
+public class CompileSchedulerTest
+{
+    private static final File PROJECT_A = new File("projectA");
+    private static final File PROJECT_B = new File("projectB");
+
+    private final CompileScheduler scheduler = new CompileScheduler();
+
+    private static Job job(File project, CompileReason reason, CompileType type, CompileObserver observer, String... files)
+    {
+        CompileInputFile[] sources = new CompileInputFile[files.length];
+        for (int i = 0; i < files.length; i++)
+        {
+            File f = new File(project, files[i]);
+            sources[i] = new CompileInputFile(f, f);
+        }
+        return new Job(sources, observer, null, project, false, Collections.emptyList(), StandardCharsets.UTF_8, type, reason);
+    }
+
+    private static Job job(File project, CompileReason reason, String... files)
+    {
+        return job(project, reason, CompileType.EXPLICIT_USER_COMPILE, null, files);
+    }
+
+    private Job take() throws InterruptedException
+    {
+        PendingJob p = scheduler.takeJob();
+        scheduler.jobFinished(p);
+        return p.getJob();
+    }
+
+    @Test
+    public void testInteractiveJobsFirst() throws InterruptedException
+    {
+        Job rebuild = job(PROJECT_A, CompileReason.REBUILD, "A.java", "B.java");
+        Job loaded = job(PROJECT_A, CompileReason.LOADED, "C.java");
+        Job check = job(PROJECT_A, CompileReason.MODIFIED, CompileType.ERROR_CHECK_ONLY, null, "D.java");
+        Job otherProject = job(PROJECT_B, CompileReason.MODIFIED, "E.java");
+        scheduler.addJob(rebuild);
+        scheduler.addJob(loaded);
+        scheduler.addJob(check);
+        scheduler.addJob(otherProject);
+
+        assertSame(check, take());
+        assertSame(otherProject, take());
+        assertSame(rebuild, take());
+        assertSame(loaded, take());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testNoOvertakingWhenKeepingClasses() throws InterruptedException
+    {
+        // D.java may use classes from A.java, so it must not be compiled before them:
+        Job rebuild = job(PROJECT_A, CompileReason.REBUILD, "A.java", "B.java");
+        Job modified = job(PROJECT_A, CompileReason.MODIFIED, "D.java");
+        scheduler.addJob(rebuild);
+        scheduler.addJob(modified);
+
+        assertSame(rebuild, take());
+        assertSame(modified, take());
+    }
+
+    @Test
+    public void testNoOvertakingOnSameFile() throws InterruptedException
+    {
+        Job rebuild = job(PROJECT_A, CompileReason.REBUILD, "A.java", "B.java");
+        Job modified = job(PROJECT_A, CompileReason.MODIFIED, "B.java");
+        Job otherProject = job(PROJECT_B, CompileReason.MODIFIED, "B.java");
+        scheduler.addJob(rebuild);
+        scheduler.addJob(modified);
+        scheduler.addJob(otherProject);
+
+        // The job for the other project can overtake, but the job for B.java in project A can't:
+        assertSame(otherProject, take());
+        assertSame(rebuild, take());
+        assertSame(modified, take());
+    }
+
+    @Test
+    public void testOneJobPerProject() throws InterruptedException
+    {
+        Job a1 = job(PROJECT_A, CompileReason.USER, "A.java");
+        Job a2 = job(PROJECT_A, CompileReason.USER, "B.java");
+        Job b1 = job(PROJECT_B, CompileReason.REBUILD, "A.java");
+        scheduler.addJob(a1);
+        scheduler.addJob(a2);
+        scheduler.addJob(b1);
+
+        // While a1 is running, the next job must come from project B:
+        PendingJob first = scheduler.takeJob();
+        assertSame(a1, first.getJob());
+        PendingJob second = scheduler.takeJob();
+        assertSame(b1, second.getJob());
+        scheduler.jobFinished(first);
+        PendingJob third = scheduler.takeJob();
+        assertSame(a2, third.getJob());
+        scheduler.jobFinished(second);
+        scheduler.jobFinished(third);
+
+        List<JobQueue.JobTiming> timings = scheduler.getRecentTimings();
+        assertEquals(3, timings.size());
+        assertEquals(CompileReason.USER, timings.get(0).reason());
+        assertEquals(CompileReason.REBUILD, timings.get(1).reason());
+    }
+
+    @Test
+    public void testErrorChecksMerged() throws InterruptedException
+    {
+        RecordingObserver first = new RecordingObserver();
+        RecordingObserver second = new RecordingObserver();
+        RecordingObserver third = new RecordingObserver();
+        scheduler.addJob(job(PROJECT_A, CompileReason.MODIFIED, CompileType.ERROR_CHECK_ONLY, first, "A.java", "B.java"));
+        scheduler.addJob(job(PROJECT_A, CompileReason.MODIFIED, CompileType.ERROR_CHECK_ONLY, second, "B.java", "A.java"));
+        // Different files, so not merged:
+        scheduler.addJob(job(PROJECT_A, CompileReason.MODIFIED, CompileType.ERROR_CHECK_ONLY, third, "A.java"));
+        assertEquals(2, scheduler.getQueueDepth());
+
+        Job merged = take();
+        merged.observer().startCompile(merged.sources(), merged.reason(), merged.type(), 1);
+        merged.observer().endCompile(merged.sources(), true, merged.type(), 1);
+        assertEquals(List.of("start", "end"), first.events);
+        assertEquals(List.of("start", "end"), second.events);
+        assertTrue(third.events.isEmpty());
+        assertEquals(1, scheduler.getRecentTimings().get(0).mergedJobs());
+    }
+
+    @Test
+    public void testKeepClassesNotMerged()
+    {
+        scheduler.addJob(job(PROJECT_A, CompileReason.USER, "A.java"));
+        scheduler.addJob(job(PROJECT_A, CompileReason.USER, "A.java"));
+        assertEquals(2, scheduler.getQueueDepth());
+    }
+
+    private static class RecordingObserver implements CompileObserver
+    {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startCompile(CompileInputFile[] sources, CompileReason reason, CompileType type, int compilationSequence)
+        {
+            events.add("start");
+        }
+
+        @Override
+        public void compilerMessage(Diagnostic diagnostic, CompileType type)
+        {
+            events.add("message");
+        }
+
+        @Override
+        public void endCompile(CompileInputFile[] sources, boolean succesful, CompileType type, int compilationSequence)
+        {
+            events.add("end");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.VirtualMachine;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the fields which JdiFieldLayout shows for objects and classes, and which of
+ * them it marks as hidden. The JDI mirrors are stand-ins, answering only the
+ * methods which the layout uses.
+ */
+public class JdiFieldLayoutTest
+{
+    private final VirtualMachine machine = mirror(VirtualMachine.class, new HashMap<>());
+
+    /**
+     * Make a stand-in for a JDI mirror, which answers the named methods with the given
+     * values. Mirrors are equal only to themselves.
+     */
+    private static <T> T mirror(Class<T> mirrorClass, Map<String, Object> answers)
+    {
+        Object proxy = Proxy.newProxyInstance(JdiFieldLayoutTest.class.getClassLoader(), new Class<?>[] {mirrorClass},
+            (p, method, args) -> {
+                switch (method.getName()) {
+                    case "equals": return p == args[0];
+                    case "hashCode": return System.identityHashCode(p);
+                    case "toString": return String.valueOf(answers.get("name"));
+                }
+                if (!answers.containsKey(method.getName())) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return answers.get(method.getName());
+            });
+        return mirrorClass.cast(proxy);
+    }
+
+    private Field field(String name, boolean isStatic)
+    {
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("name", name);
+        answers.put("isStatic", isStatic);
+        answers.put("virtualMachine", machine);
+        return mirror(Field.class, answers);
+    }
+
+    private ReferenceType type(List<Field> allFields, List<Field> visibleFields)
+    {
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("name", "Test");
+        answers.put("allFields", allFields);
+        answers.put("visibleFields", visibleFields);
+        answers.put("virtualMachine", machine);
+        return mirror(ReferenceType.class, answers);
+    }
+
+    @Test
+    public void testObjectAndStaticFields()
+    {
+        Field a = field("a", false);
+        Field count = field("count", true);
+        Field outer = field("this$0", false);
+        Field assertions = field("$assertionsDisabled", true);
+        Field b = field("b", false);
+        List<Field> all = Arrays.asList(a, count, outer, assertions, b);
+        JdiFieldLayout layout = JdiFieldLayout.forType(type(all, all));
+
+        // Synthetic fields are not shown for objects, but static ones are:
+        assertEquals(Arrays.asList(a, count, b), layout.getObjectFields());
+        assertEquals(Arrays.asList(count, assertions), layout.getStaticFields());
+        for (int i = 0; i < layout.getObjectFields().size(); i++) {
+            assertFalse(layout.isObjectFieldHidden(i));
+        }
+        for (int i = 0; i < layout.getStaticFields().size(); i++) {
+            assertFalse(layout.isStaticFieldHidden(i));
+        }
+    }
+
+    @Test
+    public void testHiddenFields()
+    {
+        // A subclass field "x" hides the superclass field "x", and likewise for the
+        // static field "s". Only the subclass fields are visible:
+        Field subX = field("x", false);
+        Field subS = field("s", true);
+        Field superX = field("x", false);
+        Field superS = field("s", true);
+        Field superY = field("y", false);
+        List<Field> all = Arrays.asList(subX, subS, superX, superS, superY);
+        List<Field> visible = Arrays.asList(subX, subS, superY);
+        JdiFieldLayout layout = JdiFieldLayout.forType(type(all, visible));
+
+        assertEquals(all, layout.getObjectFields());
+        boolean[] expectedHidden = {false, false, true, true, false};
+        for (int i = 0; i < expectedHidden.length; i++) {
+            assertEquals(all.get(i).name(), expectedHidden[i], layout.isObjectFieldHidden(i));
+        }
+
+        assertEquals(Arrays.asList(subS, superS), layout.getStaticFields());
+        assertFalse(layout.isStaticFieldHidden(0));
+        assertTrue(layout.isStaticFieldHidden(1));
+    }
+
+    @Test
+    public void testNoFields()
+    {
+        JdiFieldLayout layout = JdiFieldLayout.forType(type(Arrays.asList(), Arrays.asList()));
+        assertTrue(layout.getObjectFields().isEmpty());
+        assertTrue(layout.getStaticFields().isEmpty());
+    }
+
+    @Test
+    public void testNotKeptWithoutVM()
+    {
+        // The stand-in machine has no VMReference (as for a VM which has disconnected),
+        // so nothing may hold on to the layout:
+        ReferenceType type = type(Arrays.asList(field("a", false)), Arrays.asList());
+        assertNull(VMReference.getVmForMachine(machine));
+        assertNotSame(JdiFieldLayout.forType(type), JdiFieldLayout.forType(type));
+    }
+}
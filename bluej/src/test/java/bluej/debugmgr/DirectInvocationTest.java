@@ -0,0 +1,128 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugmgr;
+
+import bluej.debugger.gentype.GenTypeClass;
+import bluej.debugger.gentype.JavaPrimitiveType;
+import bluej.debugger.gentype.JavaType;
+import bluej.utility.JavaReflective;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that DirectInvocation only accepts arguments which the compiler would accept
+ * without any conversion, and gives them the value the compiler would.
+ */
+public class DirectInvocationTest
+{
+    private static final JavaType STRING = new GenTypeClass(new JavaReflective(String.class));
+    private static final JavaType OBJECT = new GenTypeClass(new JavaReflective(Object.class));
+    private static final JavaType INTEGER = new GenTypeClass(new JavaReflective(Integer.class));
+
+    @Test
+    public void testIntegerLiterals()
+    {
+        JavaType i = JavaPrimitiveType.getInt();
+        assertEquals("42", DirectInvocation.literalValue("42", i));
+        assertEquals("0", DirectInvocation.literalValue("0", i));
+        assertEquals("-2147483648", DirectInvocation.literalValue("-2147483648", i));
+        assertNull(DirectInvocation.literalValue("2147483648", i));
+        assertEquals("-1", DirectInvocation.literalValue("0xFFFFFFFF", i));
+        assertNull(DirectInvocation.literalValue("0x1FFFFFFFF", i));
+        assertNull(DirectInvocation.literalValue("3L", i));
+        // Left to the compiler:
+        assertNull(DirectInvocation.literalValue("010", i));
+        assertNull(DirectInvocation.literalValue("1_000", i));
+        assertNull(DirectInvocation.literalValue("1 + 2", i));
+        assertNull(DirectInvocation.literalValue("x", i));
+        assertNull(DirectInvocation.literalValue("3.0", i));
+
+        assertEquals("3", DirectInvocation.literalValue("3L", JavaPrimitiveType.getLong()));
+        assertEquals("9223372036854775807", DirectInvocation.literalValue("9223372036854775807L", JavaPrimitiveType.getLong()));
+    }
+
+    @Test
+    public void testNarrowingAndWidening()
+    {
+        assertEquals("-128", DirectInvocation.literalValue("-128", JavaPrimitiveType.getByte()));
+        assertNull(DirectInvocation.literalValue("128", JavaPrimitiveType.getByte()));
+        assertEquals("A", DirectInvocation.literalValue("65", JavaPrimitiveType.getChar()));
+        assertNull(DirectInvocation.literalValue("-1", JavaPrimitiveType.getChar()));
+        assertEquals("65", DirectInvocation.literalValue("'A'", JavaPrimitiveType.getInt()));
+        assertEquals("3.0", DirectInvocation.literalValue("3", JavaPrimitiveType.getDouble()));
+        assertEquals("3.0", DirectInvocation.literalValue("3", JavaPrimitiveType.getFloat()));
+    }
+
+    @Test
+    public void testFloatingLiterals()
+    {
+        JavaType d = JavaPrimitiveType.getDouble();
+        JavaType f = JavaPrimitiveType.getFloat();
+        assertEquals("3.5", DirectInvocation.literalValue("3.5", d));
+        assertEquals("0.5", DirectInvocation.literalValue(".5", d));
+        assertEquals("1000.0", DirectInvocation.literalValue("1e3", d));
+        assertEquals("2.0", DirectInvocation.literalValue("2d", d));
+        // A float literal widened to double keeps the float's value:
+        assertEquals(Double.toString(0.1f), DirectInvocation.literalValue("0.1f", d));
+        assertEquals("3.5", DirectInvocation.literalValue("3.5f", f));
+        assertNull(DirectInvocation.literalValue("3.5", f));
+        // Out of range, or rounding to zero, is a compile error:
+        assertNull(DirectInvocation.literalValue("1e400", d));
+        assertNull(DirectInvocation.literalValue("1e-400", d));
+        assertEquals("0.0", DirectInvocation.literalValue("0e5", d));
+    }
+
+    @Test
+    public void testOtherLiterals()
+    {
+        assertEquals("true", DirectInvocation.literalValue("true", JavaPrimitiveType.getBoolean()));
+        assertNull(DirectInvocation.literalValue("1", JavaPrimitiveType.getBoolean()));
+        assertEquals("\n", DirectInvocation.literalValue("'\\n'", JavaPrimitiveType.getChar()));
+        assertNull(DirectInvocation.literalValue("'ab'", JavaPrimitiveType.getChar()));
+
+        assertEquals("hi, there", DirectInvocation.literalValue("\"hi, there\"", STRING));
+        assertEquals("a\tb", DirectInvocation.literalValue("\"a\\tb\"", STRING));
+        assertEquals("aA", DirectInvocation.literalValue("\"a\\101\"", STRING));
+        assertEquals("x", DirectInvocation.literalValue("\"x\"", OBJECT));
+        assertNull(DirectInvocation.literalValue("\"x\"", INTEGER));
+        assertNull(DirectInvocation.literalValue("\"a\\u0041\"", STRING));
+        assertNull(DirectInvocation.literalValue("\"a\"b\"", STRING));
+
+        assertSame(DirectInvocation.NULL_VALUE, DirectInvocation.literalValue("null", STRING));
+        assertNull(DirectInvocation.literalValue("null", JavaPrimitiveType.getInt()));
+        // No boxing:
+        assertNull(DirectInvocation.literalValue("5", INTEGER));
+    }
+
+    @Test
+    public void testSplitCall()
+    {
+        assertArrayEquals(new String[] {"counter", "increment"}, DirectInvocation.splitCall("counter.increment()"));
+        assertArrayEquals(new String[] {"c", "add", "1", "\"a,b)\"", "'x'"},
+                DirectInvocation.splitCall(" c . add(1, \"a,b)\" ,'x');"));
+        assertNull(DirectInvocation.splitCall("c.add(f(1))"));
+        assertNull(DirectInvocation.splitCall("increment()"));
+        assertNull(DirectInvocation.splitCall("a.b.c(1)"));
+        assertNull(DirectInvocation.splitCall("c.add(new int[] {1})"));
+    }
+}
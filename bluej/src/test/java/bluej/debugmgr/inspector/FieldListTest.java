@@ -0,0 +1,113 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugmgr.inspector;
+
+import java.util.Arrays;
+import java.util.List;
+
+import bluej.JavaFXThreadingRule;
+import bluej.parser.InitConfig;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static bluej.debugger.DebuggerObject.OBJECT_REFERENCE;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that FieldList updates just the values of its rows when only the values
+ * have changed, and rebuilds the rows when the fields have changed.
+ */
+public class FieldListTest
+{
+    @Rule
+    public JavaFXThreadingRule javafxRule = new JavaFXThreadingRule();
+
+    @BeforeClass
+    public static void initConfig()
+    {
+        InitConfig.init();
+    }
+
+    /**
+     * Get the nodes of the rows in the list: a description label and a value wrapper
+     * for each row.
+     */
+    private static List<Node> getRowNodes(FieldList list)
+    {
+        Parent content = (Parent)((StackPane)list.getContent()).getChildren().get(0);
+        return content.getChildrenUnmodifiable();
+    }
+
+    private static Label getValueLabel(FieldList list, int row)
+    {
+        return (Label)((BorderPane)getRowNodes(list).get(row * 2 + 1)).getCenter();
+    }
+
+    @Test
+    public void testValuesUpdatedInPlace()
+    {
+        FieldList list = new FieldList();
+        list.setData(Arrays.asList(new FieldInfo("private int a", "1"), new FieldInfo("private String s", "\"x\""),
+                new FieldInfo("private Object o", "null")));
+        List<Node> before = List.copyOf(getRowNodes(list));
+        assertEquals(6, before.size());
+
+        list.setData(Arrays.asList(new FieldInfo("private int a", "2"), new FieldInfo("private String s", "\"x\""),
+                new FieldInfo("private Object o", OBJECT_REFERENCE)));
+        // The same rows, with the new values:
+        assertEquals(before, getRowNodes(list));
+        assertEquals("2", getValueLabel(list, 0).getText());
+        assertEquals("\"x\"", getValueLabel(list, 1).getText());
+        assertNotNull(getValueLabel(list, 2).getGraphic());
+
+        // And back from an object reference to a plain value:
+        list.setData(Arrays.asList(new FieldInfo("private int a", "2"), new FieldInfo("private String s", "\"x\""),
+                new FieldInfo("private Object o", "null")));
+        assertEquals(before, getRowNodes(list));
+        assertEquals("null", getValueLabel(list, 2).getText());
+        assertNull(getValueLabel(list, 2).getGraphic());
+    }
+
+    @Test
+    public void testRowsRebuiltWhenFieldsChange()
+    {
+        FieldList list = new FieldList();
+        list.setData(Arrays.asList(new FieldInfo("private int a", "1"), new FieldInfo("private int b", "2")));
+        List<Node> before = List.copyOf(getRowNodes(list));
+
+        list.setData(Arrays.asList(new FieldInfo("private int a", "1"), new FieldInfo("private int c", "2")));
+        List<Node> after = getRowNodes(list);
+        assertEquals(4, after.size());
+        assertNotSame(before.get(2), after.get(2));
+        assertEquals("private int c", ((Label)after.get(2)).getText());
+
+        list.setData(Arrays.asList(new FieldInfo("private int a", "1")));
+        assertEquals(2, getRowNodes(list).size());
+        assertEquals("1", getValueLabel(list, 0).getText());
+    }
+}
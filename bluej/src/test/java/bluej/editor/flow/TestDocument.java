@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2019,2022  Michael Kolling and John Rosenberg
+ Copyright (C) 2019,2022,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -77,9 +77,9 @@ public class TestDocument
     public void propDocumentStringReplace(@From(GenRandom.class) Random r)
     {
         // Documents with identical content to test alongside each other:
-        Document[] documents = new Document[] { new SlowDocument(), new HoleDocument() };
+        Document[] documents = new Document[] { new SlowDocument(), new HoleDocument(), new TreeDocument() };
         // Keep an undo stack for each:
-        DocumentUndoStack[] undoStacks = new DocumentUndoStack[] { new DocumentUndoStack(documents[0]), new DocumentUndoStack(documents[1])}; 
+        DocumentUndoStack[] undoStacks = Arrays.stream(documents).map(DocumentUndoStack::new).toArray(DocumentUndoStack[]::new);
         String curContent = "";
         GenString stringMaker = new GenString();
         
@@ -260,8 +260,11 @@ public class TestDocument
             }
             
             // Try some undo/redo:
-            assertEquals(undoStacks[0].canUndoCount(), undoStacks[1].canUndoCount());
-            assertEquals(undoStacks[0].canRedoCount(), undoStacks[1].canRedoCount());
+            for (int doc = 1; doc < undoStacks.length; doc++)
+            {
+                assertEquals(undoStacks[0].canUndoCount(), undoStacks[doc].canUndoCount());
+                assertEquals(undoStacks[0].canRedoCount(), undoStacks[doc].canRedoCount());
+            }
             MatcherAssert.assertThat(undoStacks[0].canUndoCount(), Matchers.lessThanOrEqualTo(prevContent.size()));
             // No redo since we're on latest:
             assertEquals(undoStacks[0].canRedoCount(), 0);
@@ -300,7 +303,7 @@ public class TestDocument
                 {
                     for (TrackedPosition position : entry.getKey().onePosPerDoc)
                     {
-                        position.position = entry.getValue();
+                        position.moveTo(entry.getValue());
                     }
                 }
             }
@@ -313,7 +316,7 @@ public class TestDocument
 
         for (Pos pos : trackedPositions)
         {
-            positions.put(pos, pos.onePosPerDoc.get(0).position);
+            positions.put(pos, pos.onePosPerDoc.get(0).getPosition());
         }
         
         return positions;
@@ -323,10 +326,8 @@ public class TestDocument
     public void propDocumentTripleQuotes(@From(GenRandom.class) Random r)
     {
         // Documents with identical content to test alongside each other:
-        Document[] documents = new Document[]{new SlowDocument(), new HoleDocument()};
-        MultilineStringTracker[] trackers = new MultilineStringTracker[]{
-                new MultilineStringTracker(documents[0], () -> {}), new MultilineStringTracker(documents[1], () -> {})
-        };
+        Document[] documents = new Document[]{new SlowDocument(), new HoleDocument(), new TreeDocument()};
+        MultilineStringTracker[] trackers = Arrays.stream(documents).map(d -> new MultilineStringTracker(d, () -> {})).toArray(MultilineStringTracker[]::new);
 
         GenString stringMaker = new GenString();
         String curContent = "";
@@ -402,6 +403,54 @@ public class TestDocument
         }
     }
 
+    @Property(trials = 20, shrink = false)
+    public void propDocumentLineAttributes(@From(GenRandom.class) Random r)
+    {
+        // SlowDocument doesn't support line attributes, so we compare the two editor documents:
+        EditorDocument[] documents = new EditorDocument[]{new HoleDocument(), new TreeDocument()};
+        GenString stringMaker = new GenString();
+
+        for (int i = 0; i < 100; i++)
+        {
+            int length = documents[0].getLength();
+            int start = r.nextInt(length + 1);
+            int end = r.nextInt(2) == 1 || start == length ? start : start + r.nextInt(length - start);
+            String newContent = stringMaker.generate(new SourceOfRandomness(r), null);
+            for (EditorDocument document : documents)
+            {
+                document.replaceText(start, end, newContent);
+            }
+
+            // Mark a random line or two, and occasionally clear one of the attributes:
+            int lineCount = documents[0].getLineCount();
+            for (int j = 0; j < 2; j++)
+            {
+                int line = r.nextInt(lineCount);
+                String key = "attr" + r.nextInt(3);
+                for (EditorDocument document : documents)
+                {
+                    document.addLineAttribute(line, key, Boolean.TRUE);
+                }
+            }
+            if (r.nextInt(10) == 1)
+            {
+                String key = "attr" + r.nextInt(3);
+                for (EditorDocument document : documents)
+                {
+                    document.removeLineAttributeThroughout(key);
+                }
+            }
+
+            for (int line = 0; line < lineCount; line++)
+            {
+                for (int k = 0; k < 3; k++)
+                {
+                    assertEquals(documents[0].hasLineAttribute(line, "attr" + k), documents[1].hasLineAttribute(line, "attr" + k));
+                }
+            }
+        }
+    }
+
     private String makeQuotes(int num)
     {
         char[] cs = new char[num];
@@ -0,0 +1,181 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.groupwork.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+
+import bluej.groupwork.git.GitStatusCache.LocalStatus;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the status kept between checks matches a full status check.
+ */
+public class GitStatusCacheTest
+{
+    private File dir;
+    private Git git;
+    private GitStatusCache cache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("gitstatus").toFile();
+        git = Git.init().setDirectory(dir).call();
+        write("A.java", "class A { }");
+        write("B.java", "class B { }");
+        write("sub/C.java", "class C { }");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial").setAuthor("test", "test@example.com")
+                .setCommitter("test", "test@example.com").call();
+        cache = new GitStatusCache();
+        // Make sure the files are not considered to have been modified recently:
+        setAllModified(System.currentTimeMillis() - 60000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        git.close();
+        deleteAll(dir);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception
+    {
+        cache.getStatus(git);
+        LocalStatus status = cache.getStatus(git);
+        assertTrue(status.uncommitted.isEmpty());
+        assertEquals(1, cache.getFullCheckCount());
+        assertEquals(0, cache.getPartialCheckCount());
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception
+    {
+        cache.getStatus(git);
+        write("B.java", "class B { int x; }");
+        LocalStatus status = cache.getStatus(git);
+        assertEquals(Set.of("B.java"), status.uncommitted);
+        assertEquals(1, cache.getPartialCheckCount());
+        assertStatusMatchesFull(status);
+
+        // Changing it back:
+        write("B.java", "class B { }");
+        status = cache.getStatus(git);
+        assertTrue(status.uncommitted.isEmpty());
+        assertStatusMatchesFull(status);
+    }
+
+    @Test
+    public void testAddedAndStagedFiles() throws Exception
+    {
+        cache.getStatus(git);
+        write("sub/D.java", "class D { }");
+        LocalStatus status = cache.getStatus(git);
+        assertEquals(Set.of("sub/D.java"), status.untracked);
+        assertEquals(2, cache.getFullCheckCount());
+        assertStatusMatchesFull(status);
+
+        git.add().addFilepattern("sub/D.java").call();
+        status = cache.getStatus(git);
+        assertTrue(status.untracked.isEmpty());
+        assertEquals(Set.of("sub/D.java"), status.uncommitted);
+        assertEquals(3, cache.getFullCheckCount());
+    }
+
+    @Test
+    public void testIgnoreFileChange() throws Exception
+    {
+        write("notes.txt", "x");
+        cache.getStatus(git);
+        setAllModified(System.currentTimeMillis() - 60000);
+        write(".gitignore", "*.txt\n");
+        setAllModified(System.currentTimeMillis() - 60000);
+        assertFalse(cache.getStatus(git).untracked.contains("notes.txt"));
+        write(".gitignore", "*.md\n");
+        LocalStatus status = cache.getStatus(git);
+        assertTrue(status.untracked.contains("notes.txt"));
+        assertStatusMatchesFull(status);
+    }
+
+    private void assertStatusMatchesFull(LocalStatus status) throws Exception
+    {
+        LocalStatus full = new LocalStatus(git.status().call());
+        assertEquals(full.missing, status.missing);
+        assertEquals(full.removed, status.removed);
+        assertEquals(full.uncommitted, status.uncommitted);
+        assertEquals(full.untracked, status.untracked);
+        assertEquals(full.untrackedFolders, status.untrackedFolders);
+        assertEquals(full.conflicting, status.conflicting);
+    }
+
+    private void write(String path, String contents) throws IOException
+    {
+        File f = new File(dir, path);
+        f.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void setAllModified(long time)
+    {
+        setAllModified(dir, time);
+    }
+
+    private static void setAllModified(File f, long time)
+    {
+        if (f.getName().equals(".git")) {
+            return;
+        }
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                setAllModified(child, time);
+            }
+        }
+        else {
+            f.setLastModified(time);
+        }
+    }
+
+    private static void deleteAll(File f)
+    {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.groupwork.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import bluej.groupwork.TeamStatusInfo;
+import bluej.groupwork.TeamStatusInfo.Status;
+import bluej.groupwork.git.GitStatusCache.LocalStatus;
+import bluej.groupwork.git.GitStatusCommand.StatusEntries;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the status entries which GitStatusCommand makes from the local status of a
+ * repository.
+ */
+public class GitStatusCommandTest
+{
+    private File dir;
+    private Git git;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("gitstatus").toFile();
+        git = Git.init().setDirectory(dir).call();
+        write("A.java", "class A { }");
+        write("B.java", "class B { }");
+        write("C.java", "class C { }");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial").setAuthor("test", "test@example.com")
+                .setCommitter("test", "test@example.com").call();
+    }
+
+    @After
+    public void tearDown()
+    {
+        git.close();
+        deleteAll(dir);
+    }
+
+    private StatusEntries getLocalStatus() throws Exception
+    {
+        StatusEntries entries = new StatusEntries();
+        GitStatusCommand.addLocalStatus(entries, new LocalStatus(git.status().call()), p -> new File(dir, p));
+        return entries;
+    }
+
+    /**
+     * Get the statuses of all the entries for a path, in order.
+     */
+    private List<Status> getStatuses(StatusEntries entries, String path)
+    {
+        List<Status> statuses = new ArrayList<>();
+        for (TeamStatusInfo info : entries.getAll()) {
+            if (info.getFile().equals(new File(dir, path))) {
+                statuses.add(info.getStatus());
+            }
+        }
+        return statuses;
+    }
+
+    @Test
+    public void testChanges() throws Exception
+    {
+        write("A.java", "class A { int x; }");
+        new File(dir, "B.java").delete();
+        write("D.java", "class D { }");
+        StatusEntries entries = getLocalStatus();
+
+        assertEquals(List.of(Status.NEEDS_COMMIT), getStatuses(entries, "A.java"));
+        assertEquals(List.of(Status.DELETED), getStatuses(entries, "B.java"));
+        assertEquals(List.of(), getStatuses(entries, "C.java"));
+        assertEquals(List.of(Status.NEEDS_ADD), getStatuses(entries, "D.java"));
+        assertEquals(Status.NEEDS_ADD, entries.get("D.java").getStatus());
+        assertNull(entries.get("C.java"));
+    }
+
+    @Test
+    public void testRemovedAndRecreated() throws Exception
+    {
+        // Staged for removal, then re-created: the file is both removed and untracked,
+        // and has an entry for each:
+        git.rm().addFilepattern("B.java").call();
+        write("B.java", "class B { int y; }");
+        StatusEntries entries = getLocalStatus();
+
+        assertEquals(List.of(Status.DELETED, Status.NEEDS_ADD), getStatuses(entries, "B.java"));
+        // Looking up the path gives the first entry:
+        assertEquals(Status.DELETED, entries.get("B.java").getStatus());
+    }
+
+    private void write(String path, String contents) throws IOException
+    {
+        File f = new File(dir, path);
+        f.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void deleteAll(File f)
+    {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.parser.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the class lookup cache used by entity resolvers.
+ */
+public class ClassLookupCacheTest
+{
+    private final List<String> lookups = new ArrayList<>();
+
+    private final Function<String, Class<?>> lookup = name -> {
+        lookups.add(name);
+        return name.equals("java.lang.String") ? String.class : null;
+    };
+
+    @Test
+    public void testPositiveAndNegativeEntries()
+    {
+        ClassLookupCache cache = new ClassLookupCache();
+        assertSame(String.class, cache.loadClass("java.lang.String", lookup));
+        assertNull(cache.loadClass("java.lang.foo", lookup));
+        assertSame(String.class, cache.loadClass("java.lang.String", lookup));
+        assertNull(cache.loadClass("java.lang.foo", lookup));
+        assertNull(cache.loadClass("java.lang.foo", lookup));
+
+        // Each name is only looked up once:
+        assertEquals(List.of("java.lang.String", "java.lang.foo"), lookups);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getNegativeHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.6, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testClear()
+    {
+        ClassLookupCache cache = new ClassLookupCache();
+        assertEquals(0.0, cache.getHitRate(), 0.0);
+        cache.loadClass("java.lang.foo", lookup);
+        cache.clear();
+        cache.loadClass("java.lang.foo", lookup);
+        assertEquals(List.of("java.lang.foo", "java.lang.foo"), lookups);
+        // Counts are kept across a clear:
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testClearDuringLookup()
+    {
+        ClassLookupCache cache = new ClassLookupCache();
+        // A lookup which overlaps a clear must not leave its result behind:
+        assertNull(cache.loadClass("Foo", name -> {
+            cache.clear();
+            return null;
+        }));
+        assertSame(String.class, cache.loadClass("Foo", name -> String.class));
+    }
+
+    @Test
+    public void testClassLoaderResolver()
+    {
+        ClassLoaderResolver resolver = new ClassLoaderResolver(getClass().getClassLoader());
+        assertNotNull(resolver.resolveQualifiedClass("java.util.List"));
+        assertNull(resolver.resolveQualifiedClass("java.util.NoSuchClass"));
+        assertNotNull(resolver.resolveQualifiedClass("java.util.List"));
+        assertNull(resolver.resolveQualifiedClass("java.util.NoSuchClass"));
+        assertEquals(2, resolver.getLookupCache().getMissCount());
+        assertEquals(1, resolver.getLookupCache().getHitCount());
+        assertEquals(1, resolver.getLookupCache().getNegativeHitCount());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import bluej.parser.symtab.ClassInfo;
+import bluej.parser.symtab.Selection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the on-disk cache of class information.
+ */
+public class ClassInfoCacheTest
+{
+    private File projectDir;
+    private File cacheRoot;
+    private File source;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        projectDir = Files.createTempDirectory("classinfo").toFile();
+        cacheRoot = Files.createTempDirectory("classinfo-cache").toFile();
+        File pkgDir = new File(projectDir, "shapes");
+        pkgDir.mkdir();
+        source = new File(pkgDir, "Circle.java");
+        writeSource("package shapes; public class Circle extends Shape { }");
+    }
+
+    @After
+    public void tearDown()
+    {
+        deleteAll(projectDir);
+        deleteAll(cacheRoot);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        ClassInfoCache.Source src = cache.read(source, "ctx");
+        assertNull(src.getCachedInfo());
+        cache.store(src, makeInfo());
+
+        ClassInfo info = new ClassInfoCache(projectDir, cacheRoot).read(source, "ctx").getCachedInfo();
+        assertNotNull(info);
+        assertEquals("Circle", info.getName());
+        assertTrue(info.foundPublicClass());
+        assertEquals("Shape", info.getSuperclass());
+        assertEquals(List.of("Drawable", "Comparable"), info.getImplements());
+        assertEquals(List.of("Canvas"), info.getUsed());
+        assertEquals(List.of("T extends Number"), info.getTypeParameterTexts());
+        assertTrue(info.hasTypeParameter());
+        assertTrue(info.isAbstract());
+        assertFalse(info.isInterface());
+        assertEquals("shapes", info.getPackage());
+        assertTrue(info.hasPackageStatement());
+        assertEquals(16, info.getPackageSemiSelection().getColumn());
+        assertNull(info.getExtendsInsertSelection());
+
+        List<ClassInfo.SavedComment> comments = info.getCommentsAsList();
+        assertEquals(2, comments.size());
+        assertEquals("void draw(int)", comments.get(1).target);
+        assertEquals("size", comments.get(1).paramnames);
+        assertEquals(comments.get(0).comment, makeInfo().getCommentsAsList().get(0).comment);
+
+        List<Selection> selections = info.getInterfaceSelections();
+        assertEquals(2, selections.size());
+        assertEquals(3, selections.get(1).getLine());
+        assertEquals(40, selections.get(1).getEndColumn());
+    }
+
+    @Test
+    public void testChangedSourceIsParsedAgain() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        cache.store(cache.read(source, "ctx"), makeInfo());
+
+        writeSource("package shapes; public class Circle extends Ellipse { }");
+        ClassInfoCache.Source src = cache.read(source, "ctx");
+        assertNull(src.getCachedInfo());
+        assertTrue(new String(src.getContents(), StandardCharsets.UTF_8).contains("Ellipse"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // Only one entry is kept per file, so changing back means parsing again:
+        ClassInfo other = new ClassInfo();
+        other.setName("Circle", true);
+        other.setSuperclass("Ellipse");
+        cache.store(src, other);
+        assertEquals("Ellipse", cache.read(source, "ctx").getCachedInfo().getSuperclass());
+        writeSource("package shapes; public class Circle extends Shape { }");
+        assertNull(cache.read(source, "ctx").getCachedInfo());
+    }
+
+    @Test
+    public void testChangedContextIsParsedAgain() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        cache.store(cache.read(source, "ctx"), makeInfo());
+        assertNull(cache.read(source, "ctx2").getCachedInfo());
+        assertNotNull(cache.read(source, "ctx").getCachedInfo());
+    }
+
+    @Test
+    public void testPrefetch() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        cache.store(cache.read(source, "ctx"), makeInfo());
+
+        File missing = new File(source.getParentFile(), "Square.java");
+        cache.prefetch(List.of(source, missing), "ctx");
+        // The prefetched contents are used, even though the file has since changed:
+        writeSource("class Nothing { }");
+        assertNotNull(cache.read(source, "ctx").getCachedInfo());
+        // ... but only once:
+        assertNull(cache.read(source, "ctx").getCachedInfo());
+
+        try {
+            cache.read(missing, "ctx");
+            fail("Expected an exception for a missing file");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDamagedEntryIsIgnored() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        ClassInfoCache.Source src = cache.read(source, "ctx");
+        cache.store(src, makeInfo());
+
+        File[] dirs = cacheRoot.listFiles();
+        assertEquals(1, dirs.length);
+        File entry = new File(dirs[0], "shapes/Circle.java.info");
+        assertTrue(entry.isFile());
+        byte[] contents = Files.readAllBytes(entry.toPath());
+        Files.write(entry.toPath(), Arrays.copyOf(contents, contents.length - 10));
+        assertNull(cache.read(source, "ctx").getCachedInfo());
+
+        cache.store(src, makeInfo());
+        assertNotNull(cache.read(source, "ctx").getCachedInfo());
+    }
+
+    @Test
+    public void testNothingWrittenToProject() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(projectDir, cacheRoot);
+        cache.store(cache.read(source, "ctx"), makeInfo());
+        assertEquals(List.of("shapes"), Arrays.asList(projectDir.list()));
+
+        // A copy of the project has a cache of its own:
+        File copyDir = Files.createTempDirectory("classinfo-copy").toFile();
+        try {
+            File copy = new File(copyDir, "shapes/Circle.java");
+            copy.getParentFile().mkdir();
+            Files.copy(source.toPath(), copy.toPath());
+            assertNull(new ClassInfoCache(copyDir, cacheRoot).read(copy, "ctx").getCachedInfo());
+            assertNotNull(new ClassInfoCache(projectDir, cacheRoot).read(source, "ctx").getCachedInfo());
+        }
+        finally {
+            deleteAll(copyDir);
+        }
+    }
+
+    private static ClassInfo makeInfo()
+    {
+        ClassInfo info = new ClassInfo();
+        info.setName("Circle", true);
+        info.setSuperclass("Shape");
+        info.addImplements("Drawable");
+        info.addImplements("Comparable");
+        info.addUsed("Canvas");
+        info.setAbstract(true);
+        info.addTypeParameterText("T extends Number");
+        info.setTypeParametersSelection(new Selection(3, 20, 18));
+        info.addComment("Circle", "/**\n * A circle.\n */", null);
+        info.addComment("void draw(int)", null, "size");
+        info.setPackageSelections(new Selection(1, 1, 7), new Selection(1, 9, 6), "shapes",
+                new Selection(1, 16, 1));
+        info.setInterfaceSelections(List.of(new Selection(3, 10, 10), new Selection(3, 21, 19)));
+        return info;
+    }
+
+    private void writeSource(String text) throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void deleteAll(File f)
+    {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        f.delete();
+    }
+}
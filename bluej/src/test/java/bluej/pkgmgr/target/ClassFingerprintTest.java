@@ -0,0 +1,201 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr.target;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the ClassFingerprint changes exactly when the ABI of a class changes, and that
+ * a change is passed on to the classes which depend on the class indirectly.
+ */
+public class ClassFingerprintTest
+{
+    /**
+     * Compile a single class called "A" and return the fingerprint of its class file.
+     */
+    private static ClassFingerprint fingerprint(String source) throws IOException
+    {
+        return fingerprints(Map.of("A", source)).get("A");
+    }
+
+    /**
+     * Compile some classes together, given the source of each by class name, and return the
+     * fingerprint of each class file by class name.
+     */
+    private static Map<String, ClassFingerprint> fingerprints(Map<String, String> sources) throws IOException
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Map<String, ByteArrayOutputStream> output = new HashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard)
+        {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+            {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className + ".class"), kind)
+                {
+                    @Override
+                    public OutputStream openOutputStream()
+                    {
+                        return output.computeIfAbsent(className, n -> new ByteArrayOutputStream());
+                    }
+                };
+            }
+        };
+        List<JavaFileObject> inputs = new ArrayList<>();
+        sources.forEach((name, source) -> inputs.add(
+            new SimpleJavaFileObject(URI.create("string:///" + name + ".java"), JavaFileObject.Kind.SOURCE)
+            {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors)
+                {
+                    return source;
+                }
+            }));
+        assertTrue(compiler.getTask(null, fileManager, null, null, null, inputs).call());
+        Map<String, ClassFingerprint> result = new HashMap<>();
+        for (String name : sources.keySet())
+        {
+            result.put(name, ClassFingerprint.of(new ByteArrayInputStream(output.get(name).toByteArray())));
+        }
+        return result;
+    }
+
+    @Test
+    public void testBodyChangeKeepsFingerprint() throws IOException
+    {
+        assertEquals(
+                fingerprint("public class A { public int f(int x) { return x + 1; } }"),
+                fingerprint("public class A { public int f(int x) { int y = x * 2; return y - x; } }"));
+    }
+
+    @Test
+    public void testPrivateMembersIgnored() throws IOException
+    {
+        assertEquals(
+                fingerprint("public class A { public void f() { } }"),
+                fingerprint("public class A { private int count; public void f() { g(); } private void g() { count++; } }"));
+    }
+
+    @Test
+    public void testMemberOrderIgnored() throws IOException
+    {
+        assertEquals(
+                fingerprint("public class A { public void f() { } public int x; public void g() { } }"),
+                fingerprint("public class A { public void g() { } public void f() { } public int x; }"));
+    }
+
+    @Test
+    public void testSignatureChanges() throws IOException
+    {
+        ClassFingerprint original = fingerprint("public class A { public void f(int x) { } }");
+        // Parameter type:
+        assertNotEquals(original, fingerprint("public class A { public void f(long x) { } }"));
+        // New method:
+        assertNotEquals(original, fingerprint("public class A { public void f(int x) { } public void g() { } }"));
+        // Modifiers:
+        assertNotEquals(original, fingerprint("public class A { public static void f(int x) { } }"));
+        // Checked exceptions:
+        assertNotEquals(original, fingerprint("public class A { public void f(int x) throws Exception { } }"));
+        // Superclass:
+        assertNotEquals(original, fingerprint("public class A extends Thread { public void f(int x) { } }"));
+        // Generic signature:
+        assertNotEquals(
+                fingerprint("public class A { public java.util.List<String> f() { return null; } }"),
+                fingerprint("public class A { public java.util.List<Integer> f() { return null; } }"));
+    }
+
+    @Test
+    public void testPackagePrivateMembersIncluded() throws IOException
+    {
+        assertNotEquals(
+                fingerprint("public class A { int count; }"),
+                fingerprint("public class A { long count; }"));
+    }
+
+    @Test
+    public void testConstantValues() throws IOException
+    {
+        // Constants are copied into the classes that use them, so a change of value is an ABI change:
+        assertNotEquals(
+                fingerprint("public class A { public static final int SIZE = 10; }"),
+                fingerprint("public class A { public static final int SIZE = 20; }"));
+        assertNotEquals(
+                fingerprint("public class A { public static final String NAME = \"a\"; }"),
+                fingerprint("public class A { public static final String NAME = \"b\"; }"));
+        // ...but the initial value of a non-constant field is not:
+        assertEquals(
+                fingerprint("public class A { public int size = 10; }"),
+                fingerprint("public class A { public int size = 20; }"));
+    }
+
+    @Test
+    public void testChangeInheritedThroughUnchangedClass() throws IOException
+    {
+        // A calls a method it inherits from C through B, without naming C:
+        String a = "public class A extends B { void g() { foo(1); } }";
+        String b = "public class B extends C { }";
+        Map<String, ClassFingerprint> before = fingerprints(Map.of("A", a, "B", b,
+                "C", "public class C { public void foo(int x) { } }"));
+        Map<String, ClassFingerprint> after = fingerprints(Map.of("A", a, "B", b,
+                "C", "public class C { public void foo(long x) { } }"));
+
+        // Only C's own ABI changes, although A must be recompiled:
+        assertNotEquals(before.get("C"), after.get("C"));
+        assertEquals(before.get("B"), after.get("B"));
+        assertEquals(before.get("A"), after.get("A"));
+
+        // ...so the change to C must be passed on to A as well as B:
+        Map<String, List<String>> dependents = Map.of("C", List.of("B"), "B", List.of("A"), "A", List.of());
+        assertEquals(Set.of("A", "B"), ClassTarget.collectDependents("C", dependents::get));
+    }
+
+    @Test
+    public void testCollectDependentsWithCycle()
+    {
+        Map<String, List<String>> dependents = Map.of("A", List.of("B"), "B", List.of("C", "A"), "C", List.of("B"), "D", List.of("A"));
+        assertEquals(Set.of("A", "B", "C"), ClassTarget.collectDependents("A", dependents::get));
+        assertEquals(Set.of("A", "B", "C"), ClassTarget.collectDependents("D", dependents::get));
+    }
+}
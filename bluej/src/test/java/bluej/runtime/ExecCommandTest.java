@@ -0,0 +1,76 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the encoding of command channel messages.
+ */
+public class ExecCommandTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        char [] longChars = new char[100_000];
+        Arrays.fill(longChars, '\u00e9');
+        String longString = new String(longChars);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new ExecCommand(ExecCommand.SET_SERVER_ACTION, "7", "Foo", null, "int", "java.lang.String").write(out);
+        new ExecCommand(ExecCommand.REPLY_OK).write(out);
+        new ExecCommand(ExecServer.NEW_LOADER, longString, "").write(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ExecCommand first = ExecCommand.read(in);
+        assertEquals(ExecCommand.SET_SERVER_ACTION, first.getCode());
+        assertArrayEquals(new String[] {"7", "Foo", null, "int", "java.lang.String"}, first.getStrings());
+
+        ExecCommand second = ExecCommand.read(in);
+        assertEquals(ExecCommand.REPLY_OK, second.getCode());
+        assertEquals(0, second.getStrings().length);
+
+        ExecCommand third = ExecCommand.read(in);
+        assertEquals(ExecServer.NEW_LOADER, third.getCode());
+        assertArrayEquals(new String[] {longString, ""}, third.getStrings());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedMessage() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ExecCommand(ExecServer.LOAD_CLASS, "java.lang.Object").write(new DataOutputStream(bytes));
+        byte [] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+        ExecCommand.read(new DataInputStream(new ByteArrayInputStream(truncated)));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the ring buffer which carries program output to the terminal.
+ */
+public class TerminalOutputBufferTest
+{
+    private static void write(TerminalOutputBuffer buffer, String s)
+    {
+        buffer.write(s.toCharArray(), 0, s.length());
+    }
+
+    @Test
+    public void testDrainTakesEverything()
+    {
+        AtomicInteger notified = new AtomicInteger();
+        TerminalOutputBuffer buffer = new TerminalOutputBuffer(64, notified::incrementAndGet);
+        assertNull(buffer.drain());
+
+        write(buffer, "Hello\n");
+        write(buffer, "World\n");
+        // Only the first write into an idle buffer asks for a drain:
+        assertEquals(1, notified.get());
+        assertTrue(buffer.hasPendingOutput());
+        assertEquals("Hello\nWorld\n", buffer.drain());
+        assertNull(buffer.drain());
+        assertFalse(buffer.hasPendingOutput());
+
+        // Once drained to empty, the next write asks again:
+        write(buffer, "Again");
+        assertEquals(2, notified.get());
+        assertEquals("Again", buffer.drain());
+    }
+
+    @Test
+    public void testWrapAround()
+    {
+        TerminalOutputBuffer buffer = new TerminalOutputBuffer(16, () -> {});
+        StringBuilder expected = new StringBuilder();
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            String s = "abcdefghijk".substring(0, 1 + i % 11);
+            write(buffer, s);
+            expected.append(s);
+            actual.append(buffer.drain());
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testWriterWaitsForReader() throws InterruptedException
+    {
+        // The reader only drains when told there is output, as the terminal does:
+        Semaphore drainRequests = new Semaphore(0);
+        TerminalOutputBuffer buffer = new TerminalOutputBuffer(32, drainRequests::release);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+        {
+            expected.append("Line ").append(i).append('\n');
+        }
+
+        Thread writer = new Thread(() -> {
+            // Write in pieces larger than the buffer, so the writer must wait:
+            for (int i = 0; i < expected.length(); i += 100)
+            {
+                String s = expected.substring(i, Math.min(expected.length(), i + 100));
+                write(buffer, s);
+            }
+        });
+        writer.start();
+
+        StringBuilder actual = new StringBuilder();
+        while (actual.length() < expected.length())
+        {
+            assertTrue("Timed out waiting for output", drainRequests.tryAcquire(10, TimeUnit.SECONDS));
+            // Drain until empty, which re-arms the request:
+            for (String s = buffer.drain(); s != null; s = buffer.drain())
+            {
+                assertTrue(s.length() <= 32);
+                actual.append(s);
+            }
+        }
+        writer.join();
+        assertEquals(expected.toString(), actual.toString());
+    }
+}
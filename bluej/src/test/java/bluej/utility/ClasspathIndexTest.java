@@ -0,0 +1,182 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.util.List;
+
+import bluej.utility.ClasspathIndex.IndexedType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the on-disk classpath index.
+ */
+public class ClasspathIndexTest
+{
+    private File dir;
+    private File indexDir;
+    private File jarA;
+    private File jarB;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("cpindex").toFile();
+        indexDir = new File(dir, "index");
+        jarA = writeFile("a.jar", 100);
+        jarB = writeFile("b.jar", 200);
+    }
+
+    @After
+    public void tearDown()
+    {
+        deleteAll(dir);
+    }
+
+    @Test
+    public void testSaveAndReload()
+    {
+        ClasspathIndex index = new ClasspathIndex(indexDir);
+        assertNull(index.get(jarA));
+        index.put(jarA, List.of(new IndexedType("a.Foo", Modifier.PUBLIC, null),
+                new IndexedType("a.Foo$Inner", Modifier.PUBLIC | Modifier.STATIC, null)));
+        index.put(jarB, List.of(new IndexedType("java.lang.String", Modifier.PUBLIC | Modifier.FINAL, "java.base")));
+        index.save();
+
+        ClasspathIndex reloaded = new ClasspathIndex(indexDir);
+        List<IndexedType> a = reloaded.get(jarA);
+        assertNotNull(a);
+        assertEquals(2, a.size());
+        assertEquals("a.Foo", a.get(0).getName());
+        assertEquals(Modifier.PUBLIC, a.get(0).getModifiers());
+        assertNull(a.get(0).getModule());
+        assertEquals("a.Foo$Inner", a.get(1).getName());
+
+        List<IndexedType> b = reloaded.get(jarB);
+        assertEquals(1, b.size());
+        assertEquals("java.base", b.get(0).getModule());
+        assertEquals(Modifier.PUBLIC | Modifier.FINAL, b.get(0).getModifiers());
+    }
+
+    @Test
+    public void testChangedFileIsNotUsed() throws IOException
+    {
+        ClasspathIndex index = new ClasspathIndex(indexDir);
+        index.put(jarA, List.of(new IndexedType("a.Foo", Modifier.PUBLIC, null)));
+        index.put(jarB, List.of(new IndexedType("b.Bar", Modifier.PUBLIC, null)));
+        index.save();
+
+        // Different size, so changed even if the modification time is the same:
+        writeFile("a.jar", 150);
+        ClasspathIndex reloaded = new ClasspathIndex(indexDir);
+        assertNull(reloaded.get(jarA));
+        assertNotNull(reloaded.get(jarB));
+
+        // Updating one element keeps the other:
+        reloaded.put(jarA, List.of(new IndexedType("a.Baz", Modifier.PUBLIC, null)));
+        reloaded.save();
+        ClasspathIndex again = new ClasspathIndex(indexDir);
+        assertEquals("a.Baz", again.get(jarA).get(0).getName());
+        assertEquals("b.Bar", again.get(jarB).get(0).getName());
+
+        // Only the latest index file is kept:
+        assertEquals(1, indexDir.listFiles().length);
+    }
+
+    @Test
+    public void testDeletedFileIsDropped()
+    {
+        ClasspathIndex index = new ClasspathIndex(indexDir);
+        index.put(jarA, List.of(new IndexedType("a.Foo", Modifier.PUBLIC, null)));
+        index.put(jarB, List.of(new IndexedType("b.Bar", Modifier.PUBLIC, null)));
+        index.save();
+
+        assertTrue(jarB.delete());
+        ClasspathIndex reloaded = new ClasspathIndex(indexDir);
+        reloaded.put(jarA, List.of(new IndexedType("a.Foo", Modifier.PUBLIC, null)));
+        reloaded.save();
+
+        // Recreate b.jar with the same size; its old entry should have gone:
+        jarB = writeFile("b.jar", 200);
+        ClasspathIndex again = new ClasspathIndex(indexDir);
+        assertNotNull(again.get(jarA));
+        assertNull(again.get(jarB));
+    }
+
+    @Test
+    public void testCorruptIndexIsIgnored() throws IOException
+    {
+        ClasspathIndex index = new ClasspathIndex(indexDir);
+        index.put(jarA, List.of(new IndexedType("a.Foo", Modifier.PUBLIC, null)));
+        index.save();
+
+        // A later index file which is not valid; the earlier one is used instead:
+        File corrupt = new File(indexDir, "index-" + Long.MAX_VALUE + ".dat");
+        try (FileOutputStream out = new FileOutputStream(corrupt))
+        {
+            out.write(new byte[] {1, 2, 3});
+        }
+        ClasspathIndex reloaded = new ClasspathIndex(indexDir);
+        assertEquals("a.Foo", reloaded.get(jarA).get(0).getName());
+
+        // And the corrupt one is removed on the next save:
+        reloaded.put(jarB, List.of(new IndexedType("b.Bar", Modifier.PUBLIC, null)));
+        reloaded.save();
+        assertFalse(corrupt.exists());
+        assertNotNull(new ClasspathIndex(indexDir).get(jarB));
+    }
+
+    private File writeFile(String name, int size)
+    {
+        File f = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(f))
+        {
+            out.write(new byte[size]);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return f;
+    }
+
+    private static void deleteAll(File f)
+    {
+        File[] children = f.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteAll(child);
+            }
+        }
+        f.delete();
+    }
+}
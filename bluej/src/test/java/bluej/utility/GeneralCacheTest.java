@@ -0,0 +1,185 @@
+/*
+ This file is part of the BlueJ program.
+ Copyright (C) 2026  Michael Kolling and John Rosenberg
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of GeneralCache.
+ */
+public class GeneralCacheTest
+{
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+    {
+        GeneralCache<String, Integer> cache = new GeneralCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // Use "a", so "b" is now the least recently used:
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("a"));
+        assertTrue(cache.containsKey("c"));
+        assertTrue(cache.containsKey("d"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testNullValues()
+    {
+        GeneralCache<String, Integer> cache = new GeneralCache<>(2);
+        cache.put("a", null);
+        assertNull(cache.get("a"));
+        assertTrue(cache.containsKey("a"));
+        assertNull(cache.get("b"));
+        assertFalse(cache.containsKey("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testReplace()
+    {
+        GeneralCache<String, Integer> cache = new GeneralCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("a", 3);
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(3), cache.get("a"));
+        // "b" is now the least recently used:
+        cache.put("c", 4);
+        assertFalse(cache.containsKey("b"));
+        assertEquals(Integer.valueOf(3), cache.get("a"));
+    }
+
+    @Test
+    public void testWeightLimit()
+    {
+        GeneralCache<String, String> cache = new GeneralCache<>(10, 10, String::length);
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.put("c", "12");
+        // Over the weight limit, so "a" goes:
+        assertFalse(cache.containsKey("a"));
+        assertTrue(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+
+        // Too heavy to keep at all:
+        cache.put("d", "12345678901");
+        assertFalse(cache.containsKey("d"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testOversizedValueKeepsOtherEntries()
+    {
+        GeneralCache<String, String> cache = new GeneralCache<>(10, 10, String::length);
+        cache.put("a", "1234");
+        cache.put("b", "123");
+        cache.put("c", "12");
+
+        cache.put("d", "12345678901");
+        assertFalse(cache.containsKey("d"));
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+
+        // The old value for the key is out of date, so it goes, but only it:
+        cache.put("b", "12345678901");
+        assertFalse(cache.containsKey("b"));
+        assertEquals("1234", cache.get("a"));
+        assertEquals("12", cache.get("c"));
+        assertEquals(2, cache.size());
+
+        // The weight of the removed entry no longer counts against the limit:
+        cache.put("e", "1234");
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testClear()
+    {
+        GeneralCache<String, Integer> cache = new GeneralCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(cache.containsKey("a"));
+        cache.put("c", 3);
+        cache.put("d", 4);
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testConcurrentUse() throws InterruptedException
+    {
+        GeneralCache<Integer, Integer> cache = new GeneralCache<>(50);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+        {
+            threads.add(new Thread(() -> {
+                try
+                {
+                    for (int i = 0; i < 100_000; i++)
+                    {
+                        int key = ThreadLocalRandom.current().nextInt(200);
+                        Integer value = cache.get(key);
+                        if (value == null)
+                        {
+                            cache.put(key, key);
+                        }
+                        else if (value != key)
+                        {
+                            throw new AssertionError("Wrong value " + value + " for " + key);
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    synchronized (failures)
+                    {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        assertTrue(cache.size() <= 50);
+        assertEquals(4 * 100_000, cache.getHitCount() + cache.getMissCount());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures the throughput of small drawing operations on a GreenfootImage, as made by a
+ * scenario drawing a HUD: each frame, the image is cleared, 500 small primitives are drawn
+ * on it, and it is drawn to a world image (as the world renderer would). This is not run
+ * as part of the tests; run it with the benchmark task in build.gradle.
+ */
+public class DrawingBenchmark
+{
+    private static final int PRIMITIVES = 500;
+    private static final int FRAMES = 400;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        GreenfootImage hud = new GreenfootImage(400, 300);
+        BufferedImage world = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        Color[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.WHITE};
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                hud.clear();
+                for (int i = 0; i < PRIMITIVES; i++) {
+                    int x = (i * 37) % 390;
+                    int y = (i * 53) % 290;
+                    switch (i % 4) {
+                        case 0:
+                            hud.setColor(colors[(i / 4) % colors.length]);
+                            hud.fillRect(x, y, 4, 4);
+                            break;
+                        case 1:
+                            hud.drawLine(x, y, x + 8, y + 3);
+                            break;
+                        case 2:
+                            hud.fillOval(x, y, 6, 6);
+                            break;
+                        default:
+                            hud.drawRect(x, y, 5, 5);
+                    }
+                }
+                ImageVisitor.flushGraphics(hud);
+                ImageVisitor.drawImage(hud, world.createGraphics(), 0, 0, null, true);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d draw calls in %.1f ms: %.0f calls/ms%n", FRAMES * PRIMITIVES,
+                    elapsed / 1e6, FRAMES * PRIMITIVES / (elapsed / 1e6));
+        }
+    }
+}
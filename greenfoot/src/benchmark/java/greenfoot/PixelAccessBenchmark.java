@@ -0,0 +1,88 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.GreenfootUtil;
+
+/**
+ * Times a typical per-pixel scenario operation (inverting the colors of every pixel of a
+ * 640x480 image) done with getColorAt/setColorAt, with getPixels/setPixels, and with a
+ * PixelBuffer. This is not run as part of the tests; run it with the benchmark task in
+ * build.gradle.
+ */
+public class PixelAccessBenchmark
+{
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        GreenfootImage image = new GreenfootImage(WIDTH, HEIGHT);
+        image.setColor(Color.ORANGE);
+        image.fill();
+
+        time("getColorAt/setColorAt", () -> {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    Color c = image.getColorAt(x, y);
+                    image.setColorAt(x, y, new Color(255 - c.getRed(), 255 - c.getGreen(),
+                            255 - c.getBlue(), c.getAlpha()));
+                }
+            }
+        });
+
+        int[] pixels = new int[WIDTH * HEIGHT];
+        time("getPixels/setPixels", () -> {
+            image.getPixels(0, 0, WIDTH, HEIGHT, pixels, 0, WIDTH);
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] ^= 0x00ffffff;
+            }
+            image.setPixels(0, 0, WIDTH, HEIGHT, pixels, 0, WIDTH);
+        });
+
+        time("PixelBuffer", () -> {
+            PixelBuffer buffer = image.getPixelBuffer();
+            int[] data = buffer.getData();
+            for (int y = 0; y < HEIGHT; y++) {
+                int index = buffer.getOffset() + y * buffer.getStride();
+                for (int x = 0; x < WIDTH; x++) {
+                    data[index + x] ^= 0x00ffffff;
+                }
+            }
+        });
+    }
+
+    private static void time(String name, Runnable task)
+    {
+        for (int i = 0; i < 3; i++) {
+            task.run(); // warm up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            task.run();
+        }
+        long elapsed = (System.nanoTime() - start) / RUNS;
+        System.out.printf("%-25s %8.2f ms%n", name, elapsed / 1e6);
+    }
+}
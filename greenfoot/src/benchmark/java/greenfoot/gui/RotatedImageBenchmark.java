@@ -0,0 +1,102 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.TestUtilDelegate;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Times drawing 400 rotating 40x40 sprites (as in an asteroids scenario) into an
+ * 800x600 world image, through a rotated graphics (as WorldRenderer used to) and
+ * through the RotatedImageCache. Each sprite turns 3 degrees per frame. This is not run
+ * as part of the tests; run it with the benchmark task in build.gradle.
+ */
+public class RotatedImageBenchmark
+{
+    private static final int SPRITES = 400;
+    private static final int FRAMES = 240;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        GreenfootImage sprite = new GreenfootImage(40, 40);
+        sprite.setColor(Color.GRAY);
+        sprite.fillOval(0, 0, 40, 40);
+        sprite.setColor(Color.DARK_GRAY);
+        sprite.fillOval(8, 10, 12, 9);
+        ImageVisitor.flushGraphics(sprite);
+
+        Random random = new Random(1);
+        int[] xs = new int[SPRITES];
+        int[] ys = new int[SPRITES];
+        int[] rotations = new int[SPRITES];
+        for (int i = 0; i < SPRITES; i++) {
+            xs[i] = random.nextInt(800);
+            ys[i] = random.nextInt(600);
+            rotations[i] = random.nextInt(360);
+        }
+        BufferedImage world = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB);
+        RotatedImageCache cache = new RotatedImageCache();
+
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                Graphics2D g = world.createGraphics();
+                for (int i = 0; i < SPRITES; i++) {
+                    int rotation = (rotations[i] + frame * 3) % 360;
+                    AffineTransform oldTx = g.getTransform();
+                    g.rotate(Math.toRadians(rotation), xs[i] + 0.5, ys[i] + 0.5);
+                    ImageVisitor.drawImage(sprite, g, xs[i] - 20, ys[i] - 20, null, true);
+                    g.setTransform(oldTx);
+                }
+                g.dispose();
+            }
+            report("Rotated graphics", start);
+
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                Graphics2D g = world.createGraphics();
+                for (int i = 0; i < SPRITES; i++) {
+                    int rotation = (rotations[i] + frame * 3) % 360;
+                    cache.drawRotated(g, sprite, rotation, xs[i] + 0.5, ys[i] + 0.5);
+                }
+                g.dispose();
+            }
+            report("RotatedImageCache", start);
+        }
+        System.out.printf("Cache hits: %d, misses: %d%n", cache.getHitCount(), cache.getMissCount());
+    }
+
+    private static void report(String name, long start)
+    {
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-20s %7.2f ms/frame%n", name, millis / FRAMES);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times rendering a 1600x1200 world with 3000 actors (a quarter of them unrotated, the
+ * rest turning 5 degrees per frame) serially and in parallel bands. The parallel
+ * renderer only paints in bands if there is more than one processor. This is not run
+ * as part of the tests; run it with the benchmark task in build.gradle.
+ */
+public class WorldRendererBandsBenchmark
+{
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1200;
+    private static final int ACTORS = 3000;
+    private static final int FRAMES = 100;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        World world = new World(WIDTH, HEIGHT, 1) {};
+        Random random = new Random(1);
+        List<TestObject> turning = new ArrayList<TestObject>();
+        for (int i = 0; i < ACTORS; i++) {
+            TestObject actor = new TestObject(10 + random.nextInt(40), 10 + random.nextInt(40));
+            GreenfootImage image = actor.getImage();
+            image.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            image.fillOval(0, 0, image.getWidth(), image.getHeight());
+            world.addObject(actor, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            if (i % 4 != 0) {
+                actor.setRotation(random.nextInt(360));
+                turning.add(actor);
+            }
+        }
+        BufferedImage worldImage = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+
+        WorldRenderer[] renderers = {new WorldRenderer(), new WorldRenderer(true)};
+        for (int run = 0; run < 2; run++) {
+            for (WorldRenderer renderer : renderers) {
+                long start = System.nanoTime();
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    for (TestObject actor : turning) {
+                        actor.turn(5);
+                    }
+                    renderer.renderWorld(world, worldImage);
+                }
+                double millis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%-8s %7.2f ms/frame%n", renderer == renderers[0] ? "Serial" : "Bands",
+                        millis / FRAMES);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+
+/**
+ * A micro-benchmark of the inter-VM communication, comparing the lock-free protocol (as used
+ * by VMCommsMain and VMCommsSimulation) with the file-lock handoff it replaced. This is not
+ * run as part of the tests; run it with the benchmark task in build.gradle. It starts a second
+ * process to play the part of the debug VM (file locks are held per-process, so the old
+ * protocol cannot be measured within one process), and reports:
+ *
+ * <ul>
+ * <li>the round-trip latency, from the server writing a command until it receives a frame
+ *     acknowledging that command, and
+ * <li>the number of frames per second which the server receives.
+ * </ul>
+ *
+ * Each is measured with frames containing no image (to show the protocol overhead), and with
+ * frames containing a full 640x480 world image.
+ *
+ * Unlike the real server VM, the server side here is not paced by the animation timer.
+ */
+public class SharedMemoryBenchmark
+{
+    private static final int MAX_IMAGE_INTS = 640 * 480;
+    private static final int FILE_SIZE = (VMCommsMain.USER_AREA_OFFSET + MAX_IMAGE_INTS + 16) * 4;
+    private static final long DURATION_NANOS = 3_000_000_000L;
+    private static final int STOP = -1;
+
+    // Layout for the lock protocol: sync area, then server area, then debug VM area.
+    private static final int SYNC_AREA_OFFSET_BYTES = 0;
+    private static final int SYNC_AREA_SIZE_BYTES = 4;
+    private static final int SERVER_AREA_OFFSET_BYTES = 4;
+    private static final int SERVER_AREA_SIZE_BYTES = VMCommsMain.USER_AREA_OFFSET_BYTES - SERVER_AREA_OFFSET_BYTES;
+    private static final int USER_AREA_SIZE_BYTES = FILE_SIZE - VMCommsMain.USER_AREA_OFFSET_BYTES;
+
+    // In the debug VM area, for both protocols: frame sequence, acknowledged command, image
+    private static final int FRAME_SEQ_POS = VMCommsMain.USER_AREA_OFFSET;
+    private static final int FRAME_ACK_COMMAND_POS = VMCommsMain.USER_AREA_OFFSET + 1;
+    private static final int FRAME_IMAGE_POS = VMCommsMain.USER_AREA_OFFSET + 2;
+    // In the server area, for the lock protocol: command
+    private static final int LOCK_COMMAND_POS = 1;
+
+    private final MappedByteBuffer buffer;
+    private final IntBuffer ints;
+    private final FileChannel channel;
+
+    private SharedMemoryBenchmark(File file) throws IOException
+    {
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        ints = buffer.asIntBuffer();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 4 && args[0].equals("child"))
+        {
+            SharedMemoryBenchmark child = new SharedMemoryBenchmark(new File(args[2]));
+            int[] image = new int[Integer.parseInt(args[3])];
+            if (args[1].equals("locks"))
+            {
+                child.runLocksDebugVM(image);
+            }
+            else
+            {
+                child.runRingDebugVM(image);
+            }
+            return;
+        }
+
+        for (int imageInts : new int[] {0, MAX_IMAGE_INTS})
+        {
+            for (String mode : new String[] {"locks", "ring", "locks", "ring"})
+            {
+                File file = File.createTempFile("greenfoot", "shmbench");
+                file.deleteOnExit();
+                SharedMemoryBenchmark server = new SharedMemoryBenchmark(file);
+                server.run(mode, file, imageInts);
+                server.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Run the server side of the benchmark for the given protocol, and print the results.
+     */
+    private void run(String mode, File file, int imageInts) throws Exception
+    {
+        FileLock[] locks = null;
+        if (mode.equals("locks"))
+        {
+            // The server holds A (server area) and C (sync area) to begin with:
+            locks = new FileLock[] {
+                channel.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false),
+                channel.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false)
+            };
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SharedMemoryBenchmark.class.getName(), "child", mode, file.getPath(),
+                Integer.toString(imageInts)).inheritIO().start();
+
+        SharedMemoryRing ring = new SharedMemoryRing(buffer, VMCommsMain.COMMAND_HEAD_POS,
+                VMCommsMain.COMMAND_TAIL_POS, VMCommsMain.COMMAND_RING_POS, VMCommsMain.COMMAND_RING_CAPACITY);
+        long[] latencies = new long[1000000];
+        int roundTrips = 0;
+        int frames = 0;
+        int lastFrameSeq = 0;
+        int command = 1;
+        boolean commandPending = false;
+        long commandSent = 0;
+        // Let the child get started before timing:
+        long warmupEnd = System.nanoTime() + DURATION_NANOS / 3;
+        long start = 0;
+        long end = Long.MAX_VALUE;
+        int attempt = 0;
+
+        while (System.nanoTime() < end)
+        {
+            if (start == 0 && System.nanoTime() > warmupEnd)
+            {
+                start = System.nanoTime();
+                end = start + DURATION_NANOS;
+                frames = 0;
+                roundTrips = 0;
+            }
+            if (!commandPending)
+            {
+                commandPending = true;
+                commandSent = System.nanoTime();
+                if (locks == null)
+                {
+                    ring.put(command);
+                    ring.publish();
+                }
+                else
+                {
+                    ints.put(LOCK_COMMAND_POS, command);
+                }
+            }
+
+            int frameSeq;
+            int ackCommand;
+            if (locks == null)
+            {
+                frameSeq = SharedMemoryRing.getAcquire(buffer, FRAME_SEQ_POS);
+                ackCommand = ints.get(FRAME_ACK_COMMAND_POS);
+                if (frameSeq != lastFrameSeq)
+                {
+                    SharedMemoryRing.setRelease(buffer, VMCommsMain.FRAME_ACK_POS, frameSeq);
+                    attempt = 0;
+                }
+                else
+                {
+                    SharedMemoryRing.backOff(attempt++);
+                }
+            }
+            else
+            {
+                // The handoff from VMCommsMain.checkIO, before it was made lock-free:
+                locks[0].release();
+                FileLock userLock = channel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES, USER_AREA_SIZE_BYTES, false);
+                locks[1].release();
+                frameSeq = ints.get(FRAME_SEQ_POS);
+                ackCommand = ints.get(FRAME_ACK_COMMAND_POS);
+                locks[0] = channel.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
+                userLock.release();
+                locks[1] = channel.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+            }
+
+            if (frameSeq != lastFrameSeq)
+            {
+                lastFrameSeq = frameSeq;
+                frames++;
+                if (ackCommand == command)
+                {
+                    if (roundTrips < latencies.length)
+                    {
+                        latencies[roundTrips] = System.nanoTime() - commandSent;
+                    }
+                    roundTrips++;
+                    command++;
+                    commandPending = false;
+                }
+            }
+        }
+
+        // Tell the child to stop:
+        if (locks == null)
+        {
+            ring.put(STOP);
+            ring.publish();
+        }
+        else
+        {
+            ints.put(LOCK_COMMAND_POS, STOP);
+            locks[0].release();
+            locks[1].release();
+        }
+        child.waitFor();
+
+        double seconds = (end - start) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, Math.min(roundTrips, latencies.length));
+        Arrays.sort(sorted);
+        System.out.printf("%-6s image ints: %6d   frames/sec: %8.1f   round trips/sec: %8.1f   latency (us) median: %8.1f  99%%: %8.1f%n",
+                mode, imageInts, frames / seconds, roundTrips / seconds,
+                sorted.length == 0 ? 0 : sorted[sorted.length / 2] / 1000.0,
+                sorted.length == 0 ? 0 : sorted[sorted.length * 99 / 100] / 1000.0);
+    }
+
+    /**
+     * Run the debug VM side of the lock protocol, as in VMCommsSimulation.doInterVMComms before
+     * it was made lock-free.
+     */
+    private void runLocksDebugVM(int[] image) throws IOException
+    {
+        FileLock putLock = channel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES, USER_AREA_SIZE_BYTES, false);
+        for (int seq = 1; ; seq++)
+        {
+            FileLock serverLock = channel.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
+            int command = ints.get(LOCK_COMMAND_POS);
+            if (command == STOP)
+            {
+                return;
+            }
+            writeFrame(image, seq, command);
+            ints.put(FRAME_SEQ_POS, seq);
+            putLock.release();
+            FileLock syncLock = channel.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+            serverLock.release();
+            putLock = channel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES, USER_AREA_SIZE_BYTES, false);
+            syncLock.release();
+        }
+    }
+
+    /**
+     * Run the debug VM side of the lock-free protocol, as in VMCommsSimulation.
+     */
+    private void runRingDebugVM(int[] image)
+    {
+        SharedMemoryRing ring = new SharedMemoryRing(buffer, VMCommsMain.COMMAND_HEAD_POS,
+                VMCommsMain.COMMAND_TAIL_POS, VMCommsMain.COMMAND_RING_POS, VMCommsMain.COMMAND_RING_CAPACITY);
+        int lastCommand = 0;
+        int lastSentSeq = 0;
+        for (int seq = 1; ; seq++)
+        {
+            // Wait until our last frame is acknowledged, or there are commands:
+            boolean canSendFrame;
+            for (int attempt = 0; ; attempt++)
+            {
+                canSendFrame = lastSentSeq == 0
+                        || SharedMemoryRing.getAcquire(buffer, VMCommsMain.FRAME_ACK_POS) == lastSentSeq;
+                if (canSendFrame || ring.available() > 0)
+                {
+                    break;
+                }
+                SharedMemoryRing.backOff(attempt);
+            }
+            while (ring.available() > 0)
+            {
+                lastCommand = ring.get();
+                if (lastCommand == STOP)
+                {
+                    return;
+                }
+            }
+            ring.release();
+            if (canSendFrame)
+            {
+                writeFrame(image, seq, lastCommand);
+                SharedMemoryRing.setRelease(buffer, FRAME_SEQ_POS, seq);
+                lastSentSeq = seq;
+            }
+        }
+    }
+
+    /**
+     * Write a frame's contents; the caller writes the frame sequence afterwards.
+     */
+    private void writeFrame(int[] image, int seq, int ackCommand)
+    {
+        ints.put(FRAME_ACK_COMMAND_POS, ackCommand);
+        if (image.length != 0)
+        {
+            image[seq % image.length] = seq;
+        }
+        ints.position(FRAME_IMAGE_POS);
+        ints.put(image);
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2018,2019,2021,2022,2023  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2018,2019,2021,2022,2023,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -917,6 +917,32 @@ public abstract class Actor
         return world.getNeighbours(this, distance, diagonal, cls);
     }
     
+    /**
+     * Find the neighbours to this object within a given distance, and store
+     * them in the given list. This is the same as
+     * {@link #getNeighbours(int, boolean, Class)}, except that a list supplied
+     * by the caller is used instead of a new one being created each time. This
+     * is useful in scenarios with very many actors, where creating a new list
+     * for each call can slow the scenario down.
+     * <p>
+     * 
+     * The list is cleared before the neighbours are added to it.
+     *
+     * @param <A> The class of the object to look for.
+     * @param distance Distance (in cells) in which to look for other objects.
+     * @param diagonal If true, include diagonal steps.
+     * @param cls Class of objects to look for (passing 'null' will find all
+     *            objects).
+     * @param result The list in which to store the neighbours found.
+     * @since 3.9.1
+     */
+    protected <A> void getNeighbours(int distance, boolean diagonal, Class<A> cls, List<? super A> result)
+    {
+        failIfNotInWorld();
+        result.clear();
+        world.getNeighbours(this, distance, diagonal, cls, result);
+    }
+    
     /**
      * Return all objects that intersect the center of the given location (relative to
      * this object's location). <br>
@@ -970,6 +996,27 @@ public abstract class Actor
         inRange.remove(this);
         return inRange;
     }
+    
+    /**
+     * Find all objects within range 'radius' around this object, and store
+     * them in the given list. This is the same as
+     * {@link #getObjectsInRange(int, Class)}, except that a list supplied by
+     * the caller is used instead of a new one being created each time. The
+     * list is cleared before the objects are added to it.
+     *
+     * @param <A> The class of the object to look for.
+     * @param radius Radius of the circle (in cells)
+     * @param cls Class of objects to look for (passing 'null' will find all objects).
+     * @param result The list in which to store the objects found.
+     * @since 3.9.1
+     */
+    protected <A> void getObjectsInRange(int radius, Class<A> cls, List<? super A> result)
+    {
+        failIfNotInWorld();
+        result.clear();
+        world.getObjectsInRange(x, y, radius, cls, result);
+        result.remove(this);
+    }
 
     /**
      * Return all the objects that intersect this object. This takes the
@@ -987,6 +1034,26 @@ public abstract class Actor
         return l;
     }
     
+    /**
+     * Find all the objects that intersect this object, and store them in the
+     * given list. This is the same as {@link #getIntersectingObjects(Class)},
+     * except that a list supplied by the caller is used instead of a new one
+     * being created each time. The list is cleared before the objects are
+     * added to it.
+     *
+     * @param <A> The class of the object to look for.
+     * @param cls Class of objects to look for (passing 'null' will find all objects).
+     * @param result The list in which to store the objects found.
+     * @since 3.9.1
+     */
+    protected <A> void getIntersectingObjects(Class<A> cls, List<? super A> result)
+    {
+        failIfNotInWorld();
+        result.clear();
+        world.getIntersectingObjects(this, cls, result);
+        result.remove(this);
+    }
+    
     /**
      * Return an object that intersects this object. This takes the
      * graphical extent of objects into consideration. <br>
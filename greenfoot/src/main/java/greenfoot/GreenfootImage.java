@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2017,2019  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2017,2019,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -38,11 +38,15 @@ import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.ImageObserver;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.VolatileImage;
+import java.awt.image.WritableRaster;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 
 
 /**
@@ -82,6 +86,20 @@ public class GreenfootImage
      * Value from 0 to 255, with 0 being completely transparent and 255 being opaque.
      */
     private int transparency = 255;
+    
+    /**
+     * Incremented whenever the image content or transparency may have changed,
+     * so that the world renderer can tell which parts of the world need repainting.
+     */
+    private int version;
+
+    /**
+     * The graphics used for drawing on the image, kept between drawing operations
+     * (creating and initialising a new one for each is relatively slow). Null if
+     * there is none yet, or it has been flushed. It always has the current color
+     * and font, and draws on the current image.
+     */
+    private Graphics2D graphics;
 
     /**
      * Create an image from an image file. Supported file formats are JPEG, GIF
@@ -140,7 +158,7 @@ public class GreenfootImage
     {
         if (! image.copyOnWrite) {
             setImage(GraphicsUtilities.createCompatibleTranslucentImage(image.getWidth(), image.getHeight()));
-            Graphics2D g = getGraphics();
+            Graphics2D g = this.image.createGraphics();
             g.setComposite(AlphaComposite.Src);
             g.drawImage(image.getAwtImage(), 0, 0, null);
             g.dispose();
@@ -241,6 +259,18 @@ public class GreenfootImage
         
         return clone;
     }
+
+    /**
+     * Get a copy of this image which will not change, and which can be drawn on
+     * another thread. The copy shares the image data with this image, which becomes
+     * copy-on-write, so this is cheap unless this image is changed afterwards.
+     */
+    GreenfootImage getSnapshot()
+    {
+        flushGraphics();
+        copyOnWrite = true;
+        return getCopyOnWriteClone();
+    }
     
     /**
      * Creates a copy of the cached image
@@ -313,8 +343,10 @@ public class GreenfootImage
         if (image == null) {
             throw new IllegalArgumentException("Image must not be null.");
         }
+        flushGraphics();
         this.image = getBufferedImage(image);
         copyOnWrite = false;
+        version++;
     }
 
 
@@ -328,22 +360,43 @@ public class GreenfootImage
     public BufferedImage getAwtImage()
     {
         ensureWritableImage();
+        flushGraphics();
+        // The caller may modify the returned image:
+        version++;
         return image;
     }
     
     /**
-     * Remember to call dispose() when no longer using the graphics object.
+     * Get the graphics for drawing on this image. It is kept for later drawing
+     * operations, so it must not be disposed, and any changes to its state (other
+     * than color and font, which are managed by this class) must be undone before
+     * returning.
      */
     private Graphics2D getGraphics()
     {
-        if (copyOnWrite) {
         ensureWritableImage();
+        if (graphics == null) {
+            graphics = image.createGraphics();
+            initGraphics(graphics);
         }
-        Graphics2D graphics = image.createGraphics();
-        initGraphics(graphics);
+        version++;
         return graphics;
     }
 
+    /**
+     * Dispose the retained graphics, if any. This must be done whenever the image is
+     * replaced, and is done before the image is handed out to be drawn elsewhere, so
+     * that all drawing operations are complete. Once flushed, the image can be drawn
+     * from several threads at once, as long as it is not changed meanwhile.
+     */
+    void flushGraphics()
+    {
+        if (graphics != null) {
+            graphics.dispose();
+            graphics = null;
+        }
+    }
+
     /**
      * Initialises the graphics. Should be called whenever we have created a
      * graphics for this image.
@@ -356,6 +409,7 @@ public class GreenfootImage
             if(currentFont != null) {
                 graphics.setFont(currentFont.getFontObject());
             }
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         }
     }
 
@@ -442,9 +496,7 @@ public class GreenfootImage
      */
     public void fill()
     {
-        Graphics g = getGraphics();
-        g.fillRect(0, 0, getWidth(), getHeight());
-        g.dispose();
+        getGraphics().fillRect(0, 0, getWidth(), getHeight());
     }
 
     /**
@@ -456,13 +508,17 @@ public class GreenfootImage
      */
     public void drawImage(GreenfootImage image, int x, int y)
     {
-        Graphics2D g = getGraphics();
-        image.drawImage(g, x, y, null, true);
-        g.dispose();
+        if (image != this) {
+            image.flushGraphics();
+        }
+        image.drawImage(getGraphics(), x, y, null, true);
     }
 
     /**
-     * Draws this image onto the given Graphics object.
+     * Draws this image onto the given Graphics object. This does not change the
+     * image, so it may be called on any thread, but any drawing on the image must
+     * have been completed first with {@link #flushGraphics()} (unless the Graphics
+     * is this image's own).
      * 
      * @param useTransparency Whether the transparency value should be used when
      *            drawing the image.
@@ -495,6 +551,13 @@ public class GreenfootImage
     public void setFont(greenfoot.Font f)
     {
         currentFont = f;
+        if (f == null) {
+            // A new graphics will have the default font:
+            flushGraphics();
+        }
+        else if (graphics != null) {
+            graphics.setFont(f.getFontObject());
+        }
     }
     
     /**
@@ -521,6 +584,9 @@ public class GreenfootImage
         if (color == null)
             throw new NullPointerException("Cannot set color of GreenfootImage to null");
         currentColor = color;
+        if (graphics != null) {
+            graphics.setColor(color.getColorObject());
+        }
     }
 
     /**
@@ -559,6 +625,172 @@ public class GreenfootImage
         setRGBAt(x, y, color.getColorObject().getRGB());
     }
 
+    /**
+     * Copy the colors of a rectangle of pixels into an array, one int per pixel in
+     * ARGB format (as returned by {@link java.awt.Color#getRGB()}). This is much faster
+     * than calling getColorAt for each pixel.
+     *
+     * @param x The horizontal coordinate of the top-left pixel of the rectangle.
+     * @param y The vertical coordinate of the top-left pixel of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param pixels The array to copy the colors into.
+     * @param offset The index in the array for the top-left pixel.
+     * @param scanSize The distance in the array between a pixel and the one below it.
+     * @throws IndexOutOfBoundsException If the rectangle is not within the image bounds,
+     *             or the array is too small.
+     * @since 3.9.1
+     */
+    public void getPixels(int x, int y, int width, int height, int[] pixels, int offset, int scanSize)
+    {
+        checkRegion(x, y, width, height);
+        checkArray(pixels, offset, scanSize, width, height);
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            image.getRGB(x, y, width, height, pixels, offset, scanSize);
+            return;
+        }
+
+        // For the usual type of image, we can copy whole rows without converting
+        // the pixels, and without taking the array from the raster:
+        WritableRaster raster = image.getRaster();
+        int[] row = new int[width];
+        for (int i = 0; i < height; i++) {
+            raster.getDataElements(x, y + i, width, 1, row);
+            System.arraycopy(row, 0, pixels, offset + i * scanSize, width);
+        }
+    }
+
+    /**
+     * Set the colors of a rectangle of pixels from an array, one int per pixel in
+     * ARGB format (as returned by {@link java.awt.Color#getRGB()}). This is much faster
+     * than calling setColorAt for each pixel.
+     *
+     * @param x The horizontal coordinate of the top-left pixel of the rectangle.
+     * @param y The vertical coordinate of the top-left pixel of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param pixels The array holding the colors.
+     * @param offset The index in the array for the top-left pixel.
+     * @param scanSize The distance in the array between a pixel and the one below it.
+     * @throws IndexOutOfBoundsException If the rectangle is not within the image bounds,
+     *             or the array is too small.
+     * @since 3.9.1
+     */
+    public void setPixels(int x, int y, int width, int height, int[] pixels, int offset, int scanSize)
+    {
+        checkRegion(x, y, width, height);
+        checkArray(pixels, offset, scanSize, width, height);
+        ensureWritableImage();
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            image.setRGB(x, y, width, height, pixels, offset, scanSize);
+        }
+        else {
+            WritableRaster raster = image.getRaster();
+            int[] row = new int[width];
+            for (int i = 0; i < height; i++) {
+                System.arraycopy(pixels, offset + i * scanSize, row, 0, width);
+                raster.setDataElements(x, y + i, width, 1, row);
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Set all the pixels in a rectangle to the same color. Unlike fillRect, this
+     * replaces the pixels (including their transparency) rather than drawing over them.
+     *
+     * @param x The horizontal coordinate of the top-left pixel of the rectangle.
+     * @param y The vertical coordinate of the top-left pixel of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param argb The color, in ARGB format (as returned by {@link java.awt.Color#getRGB()}).
+     * @throws IndexOutOfBoundsException If the rectangle is not within the image bounds.
+     * @since 3.9.1
+     */
+    public void fillPixels(int x, int y, int width, int height, int argb)
+    {
+        checkRegion(x, y, width, height);
+        int[] row = new int[width];
+        Arrays.fill(row, argb);
+        ensureWritableImage();
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            for (int i = 0; i < height; i++) {
+                image.setRGB(x, y + i, width, 1, row, 0, width);
+            }
+        }
+        else {
+            WritableRaster raster = image.getRaster();
+            for (int i = 0; i < height; i++) {
+                raster.setDataElements(x, y + i, width, 1, row);
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Copy a rectangle of pixels from an image (which may be this image) into this
+     * image. Unlike drawImage, this replaces the pixels (including their transparency)
+     * rather than drawing over them, and the transparency of the source image is not
+     * used. The source and destination rectangles may overlap.
+     *
+     * @param source The image to copy the pixels from.
+     * @param sourceX The horizontal coordinate of the top-left pixel to copy.
+     * @param sourceY The vertical coordinate of the top-left pixel to copy.
+     * @param width The width of the rectangle to copy.
+     * @param height The height of the rectangle to copy.
+     * @param x The horizontal coordinate in this image to copy the top-left pixel to.
+     * @param y The vertical coordinate in this image to copy the top-left pixel to.
+     * @throws IndexOutOfBoundsException If either rectangle is not within the image bounds.
+     * @since 3.9.1
+     */
+    public void copyPixels(GreenfootImage source, int sourceX, int sourceY, int width, int height, int x, int y)
+    {
+        source.checkRegion(sourceX, sourceY, width, height);
+        checkRegion(x, y, width, height);
+        // Copying via an array means that it doesn't matter if the rectangles overlap:
+        int[] pixels = new int[width * height];
+        source.getPixels(sourceX, sourceY, width, height, pixels, 0, width);
+        setPixels(x, y, width, height, pixels, 0, width);
+    }
+
+    /**
+     * Get direct access to the array holding the pixels of this image. This is the
+     * fastest way to read or change many pixels, but see {@link PixelBuffer} for how the
+     * buffer should be used: in particular, this method must be called again each time
+     * before changing the pixels, so that Greenfoot knows that the image has changed.
+     *
+     * <p>Once the array has been taken from an image, Java is no longer able to use the
+     * graphics card to speed up drawing the image, so it is best to use getPixels and
+     * setPixels instead for images which only change occasionally.
+     *
+     * @return A buffer for the pixels of this image.
+     * @since 3.9.1
+     */
+    public PixelBuffer getPixelBuffer()
+    {
+        ensureWritableImage();
+        flushGraphics();
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = argbImage.createGraphics();
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            image = argbImage;
+        }
+        // The caller may modify the pixels:
+        version++;
+
+        WritableRaster raster = image.getRaster();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int offset = dataBuffer.getOffset() + sampleModel.getOffset(
+                raster.getMinX() - raster.getSampleModelTranslateX(),
+                raster.getMinY() - raster.getSampleModelTranslateY());
+        return new PixelBuffer(dataBuffer.getData(), offset, sampleModel.getScanlineStride(),
+                image.getWidth(), image.getHeight());
+    }
+
     /**
      * Set the transparency of the image.
      * 
@@ -571,7 +803,10 @@ public class GreenfootImage
             throw new IllegalArgumentException("The transparency value has to be in the range 0 to 255. It was: " + t);
         }
 
-        this.transparency = t;
+        if (t != transparency) {
+            this.transparency = t;
+            version++;
+        }
     }
 
     /**
@@ -585,6 +820,37 @@ public class GreenfootImage
         return transparency;
     }    
     
+    /**
+     * Get the version of this image, which changes whenever the image content or
+     * transparency may have changed.
+     */
+    int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Get an object identifying the pixels of this image, for use (along with
+     * {@link #getContentVersion()}) as a key for things derived from them, such as
+     * rotated copies. A copy-on-write image is identified by the image data it
+     * shares, which is not changed, so that all copies of an image share the key.
+     * Other images are identified by themselves.
+     */
+    Object getContentSource()
+    {
+        return copyOnWrite ? image : this;
+    }
+
+    /**
+     * Get the version of the pixels of the object returned by getContentSource(). For an
+     * image which is not copy-on-write, this is the image version, so it also changes
+     * when the transparency changes.
+     */
+    int getContentVersion()
+    {
+        return copyOnWrite ? 0 : version;
+    }
+    
     private int getRGBAt(int x, int y)
     {
         if (x >= getWidth()) {
@@ -628,6 +894,38 @@ public class GreenfootImage
 
         ensureWritableImage();
         image.setRGB(x,y,rgb);
+        version++;
+    }
+
+    /**
+     * Check that the given rectangle lies within the image.
+     */
+    private void checkRegion(int x, int y, int width, int height)
+    {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("The width and height must not be negative. They were: "
+                    + width + " and " + height);
+        }
+        if (x < 0 || y < 0 || x > getWidth() - width || y > getHeight() - height) {
+            throw new IndexOutOfBoundsException("The rectangle at (" + x + ", " + y + ") of size "
+                    + width + "x" + height + " is not within the image of size "
+                    + getWidth() + "x" + getHeight());
+        }
+    }
+
+    /**
+     * Check that the given array is large enough for a rectangle of pixels.
+     */
+    private static void checkArray(int[] pixels, int offset, int scanSize, int width, int height)
+    {
+        if (scanSize < width) {
+            throw new IllegalArgumentException("The scan size must be at least the width. It was: " + scanSize
+                    + " and the width was: " + width);
+        }
+        if (offset < 0 || (height > 0 && (long) offset + (long) (height - 1) * scanSize + width > pixels.length)) {
+            throw new IndexOutOfBoundsException("The array of length " + pixels.length
+                    + " is too small for " + height + " rows of " + scanSize + " pixels from index " + offset);
+        }
     }
  
     /**
@@ -647,9 +945,7 @@ public class GreenfootImage
      */
     public void fillRect(int x, int y, int width, int height)
     {
-        Graphics2D g = getGraphics();
-        g.fillRect(x, y, width, height);
-        g.dispose();
+        getGraphics().fillRect(x, y, width, height);
     }
 
     /**
@@ -657,9 +953,7 @@ public class GreenfootImage
      */
     public void clear()
     {
-        Graphics2D g = getGraphics();
-        g.clearRect(0, 0, getWidth(), getHeight());
-        g.dispose();
+        getGraphics().clearRect(0, 0, getWidth(), getHeight());
     }
 
     /**
@@ -676,9 +970,7 @@ public class GreenfootImage
      */
     public void drawRect(int x, int y, int width, int height)
     {
-        Graphics2D g = getGraphics();
-        g.drawRect(x, y, width, height);
-        g.dispose();
+        getGraphics().drawRect(x, y, width, height);
     }
 
     /**
@@ -693,15 +985,12 @@ public class GreenfootImage
     public void drawString(String string, int x, int y)
     {
         Graphics2D g = getGraphics();
-        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         int height = g.getFontMetrics(g.getFont()).getHeight();
         
         String[] lines = GraphicsUtilities.splitLines(string);
         for (int i = 0; i < lines.length; i++) {
             g.drawString(lines[i], x, y + (i * height));
         }
-        
-        g.dispose();
     }
 
     /**
@@ -712,9 +1001,7 @@ public class GreenfootImage
      */
     public void drawShape(Shape shape)
     {
-        Graphics2D g = getGraphics();
-        g.draw(shape);
-        g.dispose();
+        getGraphics().draw(shape);
     }
 
 
@@ -731,9 +1018,7 @@ public class GreenfootImage
      */
     public void fillOval(int x, int y, int width, int height)
     {
-        Graphics2D g = getGraphics();
-        g.fillOval(x, y, width, height);
-        g.dispose();
+        getGraphics().fillOval(x, y, width, height);
     }
 
     /**
@@ -749,9 +1034,7 @@ public class GreenfootImage
      */
     public void drawOval(int x, int y, int width, int height)
     {
-        Graphics2D g = getGraphics();
-        g.drawOval(x, y, width, height);
-        g.dispose();
+        getGraphics().drawOval(x, y, width, height);
     }
 
     /**
@@ -776,9 +1059,7 @@ public class GreenfootImage
      */
     public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints)
     {
-        Graphics2D g = getGraphics();
-        g.fillPolygon(xPoints, yPoints, nPoints);
-        g.dispose();
+        getGraphics().fillPolygon(xPoints, yPoints, nPoints);
     }
 
     /**
@@ -800,9 +1081,7 @@ public class GreenfootImage
      */
     public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints)
     {
-        Graphics2D g = getGraphics();
-        g.drawPolygon(xPoints, yPoints, nPoints);
-        g.dispose();
+        getGraphics().drawPolygon(xPoints, yPoints, nPoints);
     }
 
     /**
@@ -816,9 +1095,7 @@ public class GreenfootImage
      */
     public void drawLine(int x1, int y1, int x2, int y2)
     {
-        Graphics2D g = getGraphics();
-        g.drawLine(x1, y1, x2, y2);
-        g.dispose();
+        getGraphics().drawLine(x1, y1, x2, y2);
     }
 
     /**
@@ -857,9 +1134,11 @@ public class GreenfootImage
             Graphics2D graphics = bImage.createGraphics();
             initGraphics(graphics);
             graphics.drawImage(image, 0, 0, null);
+            flushGraphics();
             image = bImage;
             copyOnWrite = false;
-            graphics.dispose();
+            // Keep the graphics, since we are probably about to draw on the image:
+            this.graphics = graphics;
         }
     }
     
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -36,6 +36,10 @@ import java.awt.image.ImageObserver;
  */
 public class ImageVisitor
 {
+    /**
+     * Draw an image. Any drawing on the image must have been completed first (see
+     * {@link #flushGraphics(GreenfootImage)}).
+     */
     public static void drawImage(GreenfootImage image, Graphics2D g, int x, int y, ImageObserver observer, boolean useTranparency)
     {
         image.drawImage(g, x, y, observer, useTranparency);
@@ -45,4 +49,48 @@ public class ImageVisitor
     {
         return GreenfootImage.equal(image1, image2);
     }
+    
+    /**
+     * Get the version of an image, which changes whenever the image content
+     * may have changed.
+     */
+    public static int getVersion(GreenfootImage image)
+    {
+        return image.getVersion();
+    }
+
+    /**
+     * Get an object identifying the pixels (but not the transparency) of an image.
+     * Images with the same content source and content version have the same pixels.
+     */
+    public static Object getContentSource(GreenfootImage image)
+    {
+        return image.getContentSource();
+    }
+
+    /**
+     * Get the version of the pixels of an image's content source.
+     */
+    public static int getContentVersion(GreenfootImage image)
+    {
+        return image.getContentVersion();
+    }
+
+    /**
+     * Complete any drawing on an image, so that it can then be drawn from several
+     * threads at once (as long as it is not changed meanwhile).
+     */
+    public static void flushGraphics(GreenfootImage image)
+    {
+        image.flushGraphics();
+    }
+
+    /**
+     * Get a copy of an image which will not change, for drawing on another thread.
+     * The copy is cheap to make, as it shares the image data until the image changes.
+     */
+    public static GreenfootImage getSnapshot(GreenfootImage image)
+    {
+        return image.getSnapshot();
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import java.nio.IntBuffer;
+
+/**
+ * Direct access to the pixels of a GreenfootImage, for programs which read or change
+ * very many pixels at a time (such as cellular automata or fractal drawings), and for
+ * which getColorAt and setColorAt are too slow. Get one with
+ * {@link GreenfootImage#getPixelBuffer()}.
+ *
+ * <p>The pixels are held in an int array, one int per pixel, in ARGB format: the
+ * alpha (opacity) in the top 8 bits, followed by red, green and blue. This is the same
+ * format as used by {@link java.awt.Color#getRGB()}. The pixel at (x, y) is at index
+ * <code>getOffset() + y * getStride() + x</code> of the array. Changing the array
+ * changes the image.
+ *
+ * <p>A pixel buffer should be used straight away and not kept: call getPixelBuffer()
+ * again whenever you are going to change the pixels (for instance, once each act), so
+ * that Greenfoot knows to show the changes. A buffer is no longer connected to its image
+ * once the image has been rotated, scaled or mirrored.
+ *
+ * @since 3.9.1
+ */
+public final class PixelBuffer
+{
+    private final int[] data;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+
+    PixelBuffer(int[] data, int offset, int stride, int width, int height)
+    {
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Get the array holding the pixels. It may contain values other than the pixels
+     * of this image, before the offset or beyond the width of each row.
+     */
+    public int[] getData()
+    {
+        return data;
+    }
+
+    /**
+     * Get the index of the top-left pixel in the array.
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Get the distance in the array between a pixel and the pixel below it.
+     */
+    public int getStride()
+    {
+        return stride;
+    }
+
+    /**
+     * Get the width of the image, in pixels.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Get the height of the image, in pixels.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Get the index in the array of the pixel at the given position.
+     *
+     * @throws IndexOutOfBoundsException If the position is not within the image.
+     */
+    public int getIndex(int x, int y)
+    {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y + ") is outside the "
+                    + width + "x" + height + " image");
+        }
+        return offset + y * stride + x;
+    }
+
+    /**
+     * Get the ARGB value of the pixel at the given position.
+     *
+     * @throws IndexOutOfBoundsException If the position is not within the image.
+     */
+    public int get(int x, int y)
+    {
+        return data[getIndex(x, y)];
+    }
+
+    /**
+     * Set the ARGB value of the pixel at the given position.
+     *
+     * @throws IndexOutOfBoundsException If the position is not within the image.
+     */
+    public void set(int x, int y, int argb)
+    {
+        data[getIndex(x, y)] = argb;
+    }
+
+    /**
+     * Get the pixels as an IntBuffer, covering just the part of the array used by the
+     * image: the pixel at (x, y) is at index <code>y * getStride() + x</code> of the
+     * buffer.
+     */
+    public IntBuffer asIntBuffer()
+    {
+        int length = height == 0 ? 0 : (height - 1) * stride + width;
+        return IntBuffer.wrap(data, offset, length).slice();
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2021  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2021,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -27,6 +27,7 @@ import greenfoot.collision.CollisionChecker;
 import greenfoot.collision.ibsp.Rect;
 import greenfoot.core.TextLabel;
 import greenfoot.core.WorldHandler;
+import greenfoot.platforms.ActorDelegate;
 import threadchecker.OnThread;
 import threadchecker.Tag;
 
@@ -60,9 +61,8 @@ public abstract class World
 {    
     private static final greenfoot.Color DEFAULT_BACKGROUND_COLOR = greenfoot.Color.WHITE;
 
-    // private CollisionChecker collisionChecker = new GridCollisionChecker();
-    // private CollisionChecker collisionChecker = new BVHInsChecker();
-    private CollisionChecker collisionChecker = new ColManager();
+    // The collision checker is chosen by project property; see createCollisionChecker()
+    private final CollisionChecker collisionChecker;
     
     //{
     //    collisionChecker = new CollisionProfiler(collisionChecker);
@@ -125,6 +125,7 @@ public abstract class World
         this.width = worldWidth;
         this.height = worldHeight;
         this.cellSize = cellSize;
+        collisionChecker = new ColManager(createCollisionChecker());
         collisionChecker.initialize(worldWidth, worldHeight, cellSize, false);
         this.isBounded = bounded;
         
@@ -657,6 +658,20 @@ public abstract class World
         return collisionChecker.getIntersectingObjects(actor, (Class)cls);
     }
 
+    /**
+     * Add all the objects that intersect the given object to the given list.
+     * The list is not cleared first.
+     * 
+     * @param actor An Actor in the world
+     * @param cls Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result The list to which the objects are added
+     */
+    <A> void getIntersectingObjects(Actor actor, Class<A> cls, List<? super A> result)
+    {
+        collisionChecker.getIntersectingObjects(actor, (Class)cls, (List)result);
+    }
+
     /**
      * Returns all objects with the logical location within the specified
      * circle. In other words an object A is within the range of an object B if
@@ -673,6 +688,22 @@ public abstract class World
         return collisionChecker.getObjectsInRange(x, y, r, (Class)cls);
     }
 
+    /**
+     * Add all objects with the logical location within the specified circle
+     * to the given list. The list is not cleared first.
+     * 
+     * @param x Centre of the cirle
+     * @param y Centre of the cirle
+     * @param r Radius of the cirle
+     * @param cls Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result The list to which the objects are added
+     */
+    <A> void getObjectsInRange(int x, int y, int r, Class<A> cls, List<? super A> result)
+    {
+        collisionChecker.getObjectsInRange(x, y, r, (Class)cls, (List)result);
+    }
+
     /**
      * Returns the neighbours to the given location. This method only looks at
      * the logical location and not the extent of objects. Hence it is most
@@ -693,6 +724,25 @@ public abstract class World
         return collisionChecker.getNeighbours(actor, distance, diag, (Class)cls);
     }
 
+    /**
+     * Add the neighbours to the given location to the given list. The list
+     * is not cleared first.
+     *
+     * @param actor  The actor whose neighbours to locate
+     * @param distance Distance in which to look for other objects
+     * @param diag Is the distance also diagonal?
+     * @param cls Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result The list to which the neighbours are added
+     */
+    <A> void getNeighbours(Actor actor, int distance, boolean diag, Class<A> cls, List<? super A> result)
+    {
+        if(distance < 0) {
+            throw new IllegalArgumentException("Distance must not be less than 0. It was: " + distance);
+        }
+        collisionChecker.getNeighbours(actor, distance, diag, (Class)cls, (List)result);
+    }
+
     /**
      * Return all objects that intersect a straight line from the location at a
      * specified angle. The angle is clockwise.
@@ -840,6 +890,15 @@ public abstract class World
         }
     }
     
+    /**
+     * Check whether paintDebug paints anything. Debug painting is for working on Greenfoot
+     * itself, and is disabled; while it is, renderers need not make room for it.
+     */
+    boolean isDebugPainted()
+    {
+        return false;
+    }
+    
     void paintDebug(@SuppressWarnings("unused") Graphics g)
     {
         /*
@@ -855,6 +914,23 @@ public abstract class World
     //
     // =================================================
 
+    /**
+     * Create the collision checker for this world, as selected by the project properties.
+     * A setting for this world's class ("class.<i>WorldClassName</i>.collision.checker")
+     * takes precedence over the project-wide setting ("collision.checker").
+     */
+    private CollisionChecker createCollisionChecker()
+    {
+        String checkerName = null;
+        ActorDelegate delegate = Actor.getDelegate();
+        if (delegate != null) { // will be null when running unit tests.
+            checkerName = delegate.getProjectProperty(ColManager.CHECKER_PROPERTY, null);
+            checkerName = delegate.getProjectProperty("class." + getClass().getName()
+                    + "." + ColManager.CHECKER_PROPERTY, checkerName);
+        }
+        return ColManager.createCollisionChecker(checkerName);
+    }
+
     /**
      * Get the default image for objects of this class. May return null.
      */
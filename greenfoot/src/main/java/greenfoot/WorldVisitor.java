@@ -81,6 +81,11 @@ public class WorldVisitor
         w.startSequence();
     }
 
+    public static boolean isDebugPainted(World world)
+    {
+        return world.isDebugPainted();
+    }
+
     public static void paintDebug(World world, Graphics g)
     {
         world.paintDebug(g);
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -22,6 +22,7 @@
 package greenfoot.collision;
 
 import greenfoot.Actor;
+import greenfoot.collision.grid.GridColChecker;
 import greenfoot.collision.ibsp.IBSPColChecker;
 
 import java.awt.Graphics;
@@ -44,6 +45,14 @@ import java.util.Map.Entry;
  */
 public class ColManager implements CollisionChecker
 {
+    /**
+     * Project property which selects the collision checker for worlds. It can also be set
+     * for a single world class, as "class.<i>WorldClassName</i>.collision.checker".
+     */
+    public static final String CHECKER_PROPERTY = "collision.checker";
+    
+    /** Value of the checker property selecting the uniform grid collision checker. */
+    public static final String CHECKER_GRID = "grid";
 
     /** Map from classes to objects that are not part of the collision checking (yet). */
     private Map<Class<? extends Actor>, LinkedList<Actor>> freeObjects = new HashMap<Class<? extends Actor>, LinkedList<Actor>>();
@@ -52,7 +61,35 @@ public class ColManager implements CollisionChecker
     private Set<Class<? extends Actor>> collisionClasses = new HashSet<Class<? extends Actor>>();
     
     /** The actual collision checker. */
-    private CollisionChecker collisionChecker = new IBSPColChecker();
+    private CollisionChecker collisionChecker;
+
+    /**
+     * Construct a ColManager which delegates to the default (IBSP) collision checker.
+     */
+    public ColManager()
+    {
+        this(new IBSPColChecker());
+    }
+
+    /**
+     * Construct a ColManager which delegates to the given collision checker.
+     */
+    public ColManager(CollisionChecker collisionChecker)
+    {
+        this.collisionChecker = collisionChecker;
+    }
+
+    /**
+     * Create the collision checker named by a value of the checker property. A null or
+     * unrecognised name gives the default (IBSP) checker.
+     */
+    public static CollisionChecker createCollisionChecker(String name)
+    {
+        if (CHECKER_GRID.equals(name)) {
+            return new GridColChecker();
+        }
+        return new IBSPColChecker();
+    }
 
     /**
      * Ensures that objects of this class are in the collision checker
@@ -138,12 +175,24 @@ public class ColManager implements CollisionChecker
         return collisionChecker.getIntersectingObjects(actor, cls);
     }
 
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        prepareForCollision(actor, cls);
+        collisionChecker.getIntersectingObjects(actor, cls, result);
+    }
+
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
     {
         prepareForCollision(actor, cls);
         return collisionChecker.getNeighbours(actor, distance, diag, cls);
     }
 
+    public <T extends Actor> void getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls, List<? super T> result)
+    {
+        prepareForCollision(actor, cls);
+        collisionChecker.getNeighbours(actor, distance, diag, cls, result);
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjects(Class<T> cls)
     {
@@ -176,6 +225,12 @@ public class ColManager implements CollisionChecker
         return collisionChecker.getObjectsInRange(x, y, r, cls);
     }
 
+    public <T extends Actor> void getObjectsInRange(int x, int y, int r, Class<T> cls, List<? super T> result)
+    {
+        makeCollisionObjects(cls, true);
+        collisionChecker.getObjectsInRange(x, y, r, cls, result);
+    }
+
     public List<Actor> getObjectsList()
     {
         return getObjects(null);
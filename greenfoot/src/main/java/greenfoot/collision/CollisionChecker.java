@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -91,6 +91,21 @@ public interface CollisionChecker
      */
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls);
 
+    /**
+     * Finds all the objects that intersect the given object, as per
+     * {@link #getIntersectingObjects(Actor, Class)}, and adds them to the given list
+     * instead of allocating a new one. Existing contents of the list are kept.
+     * 
+     * @param actor
+     *            An Actor in the world
+     * @param cls
+     *            Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result
+     *            The list to which the objects found are added
+     */
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result);
+
     /**
      * Returns all objects with the logical location within the specified
      * circle. In other words an object A is within the range of an object B if
@@ -108,6 +123,26 @@ public interface CollisionChecker
      */
     public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls);
 
+    /**
+     * Finds all objects with the logical location within the specified circle,
+     * as per {@link #getObjectsInRange(int, int, int, Class)}, and adds them to
+     * the given list instead of allocating a new one. Existing contents of the
+     * list are kept.
+     * 
+     * @param x
+     *            Center of the cirle
+     * @param y
+     *            Center of the cirle
+     * @param r
+     *            Radius of the cirle
+     * @param cls
+     *            Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result
+     *            The list to which the objects found are added
+     */
+    public <T extends Actor> void getObjectsInRange(int x, int y, int r, Class<T> cls, List<? super T> result);
+
     /**
      * Returns the neighbours to the given location. This method only looks at
      * the logical location and not the extent of objects. Hence it is most
@@ -128,6 +163,24 @@ public interface CollisionChecker
      */
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls);
 
+    /**
+     * Finds the neighbours to the given location, as per
+     * {@link #getNeighbours(Actor, int, boolean, Class)}, and adds them to the
+     * given list instead of allocating a new one. Existing contents of the list
+     * are kept.
+     * 
+     * @param distance
+     *            Distance in which to look for other objects
+     * @param diag
+     *            Is the distance also diagonal?
+     * @param cls
+     *            Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result
+     *            The list to which the neighbours found are added
+     */
+    public <T extends Actor> void getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls, List<? super T> result);
+
     /**
      * Return all objects that intersect a straight line from this object at
      * a specified angle. The angle is clockwise relative to the current 
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -149,6 +149,14 @@ public class CollisionProfiler implements CollisionChecker
         return l;
     }
 
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        long t1 = System.nanoTime();
+        checker.getIntersectingObjects(actor, cls, result);
+        long t2 = System.nanoTime();
+        getIntersectingObjectsTime += t2 - t1;
+    }
+
     public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
     {
         long t1 = System.nanoTime();
@@ -158,6 +166,14 @@ public class CollisionProfiler implements CollisionChecker
         return l;
     }
 
+    public <T extends Actor> void getObjectsInRange(int x, int y, int r, Class<T> cls, List<? super T> result)
+    {
+        long t1 = System.nanoTime();
+        checker.getObjectsInRange(x, y, r, cls, result);
+        long t2 = System.nanoTime();
+        getObjectsInRangeTime += t2 - t1;
+    }
+
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
     {
         long t1 = System.nanoTime();
@@ -167,6 +183,14 @@ public class CollisionProfiler implements CollisionChecker
         return l;
     }
 
+    public <T extends Actor> void getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls, List<? super T> result)
+    {
+        long t1 = System.nanoTime();
+        checker.getNeighbours(actor, distance, diag, cls, result);
+        long t2 = System.nanoTime();
+        getNeighboursTime += t2 - t1;
+    }
+
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
     {
         long t1 = System.nanoTime();
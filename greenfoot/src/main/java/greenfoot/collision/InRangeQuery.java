@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -24,6 +24,8 @@ package greenfoot.collision;
 import greenfoot.Actor;
 import greenfoot.ActorVisitor;
 
+import java.util.List;
+
 /**
  * A collision query to check for actors within a certain range of a certain
  * point
@@ -66,4 +68,23 @@ public class InRangeQuery
         return (dist) <= r;
     }
 
+    /**
+     * Remove from the list all actors, at or after the given index, which are not
+     * within the circle. The remaining actors keep their order.
+     */
+    public <E> void retainInRange(List<E> actors, int start)
+    {
+        int dest = start;
+        int size = actors.size();
+        for (int i = start; i < size; i++) {
+            E actor = actors.get(i);
+            if (checkCollision((Actor) actor)) {
+                actors.set(dest++, actor);
+            }
+        }
+        while (size > dest) {
+            actors.remove(--size);
+        }
+    }
+
 }
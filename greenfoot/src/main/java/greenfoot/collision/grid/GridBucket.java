@@ -0,0 +1,67 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+/**
+ * One square bucket of the uniform grid. A bucket holds the entries of all actors
+ * whose bounding rectangle overlaps it. Buckets are expected to hold only a handful
+ * of actors, so removal is a linear search followed by a swap with the last element.
+ */
+final class GridBucket
+{
+    private GridEntry[] entries = new GridEntry[4];
+    private int size;
+
+    void add(GridEntry entry)
+    {
+        if (size == entries.length) {
+            GridEntry[] newEntries = new GridEntry[size * 2];
+            System.arraycopy(entries, 0, newEntries, 0, size);
+            entries = newEntries;
+        }
+        entries[size++] = entry;
+    }
+
+    void remove(GridEntry entry)
+    {
+        for (int i = 0; i < size; i++) {
+            if (entries[i] == entry) {
+                entries[i] = entries[--size];
+                entries[size] = null;
+                return;
+            }
+        }
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Get the entry at the given index. Valid indexes are 0 to size() - 1.
+     */
+    GridEntry get(int index)
+    {
+        return entries[index];
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.collision.*;
+import greenfoot.collision.ibsp.Rect;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A collision checker using a uniform grid of square buckets (a spatial hash).
+ *
+ * <p>Each actor is stored in every bucket which its bounding rectangle overlaps. Moving
+ * an actor only touches the buckets it leaves and enters, and most moves of small actors
+ * don't change buckets at all, so updates are constant time. This suits worlds with many
+ * small, fast-moving actors better than the IBSP tree, which must be re-balanced as actors
+ * move.
+ *
+ * <p>The grid covers the world area. Actors outside the world (in unbounded worlds) are
+ * stored in the nearest edge bucket; queries map their area in the same way, so results
+ * are still correct, just slower to compute for actors far outside the world.
+ */
+public class GridColChecker implements CollisionChecker
+{
+    /** The minimum bucket size, in pixels */
+    public static final int MIN_BUCKET_SIZE = 32;
+
+    private GOCollisionQuery actorQuery = new GOCollisionQuery();
+    private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
+    private PointCollisionQuery pointQuery = new PointCollisionQuery();
+    private InRangeQuery inRangeQuery = new InRangeQuery();
+
+    private int cellSize;
+    private int bucketSize;
+    private int columns;
+    private int rows;
+
+    /** The buckets, in row-major order. Buckets are created when first needed. */
+    private GridBucket[] buckets;
+
+    /** All entries, so that we can list all objects without visiting every bucket */
+    private final ArrayList<GridEntry> allEntries = new ArrayList<GridEntry>();
+
+    /** Query counter; see GridEntry.lastQuery */
+    private int queryCount;
+
+    /*
+     * @see greenfoot.collision.CollisionChecker#initialize(int, int, int, boolean)
+     */
+    public void initialize(int width, int height, int cellSize, boolean wrap)
+    {
+        this.cellSize = cellSize;
+        // Buckets are a whole number of cells, but not too small, since then large
+        // actors would span a lot of buckets:
+        int cellsPerBucket = Math.max(1, (MIN_BUCKET_SIZE + cellSize - 1) / cellSize);
+        bucketSize = cellsPerBucket * cellSize;
+        columns = Math.max(1, (width * cellSize + bucketSize - 1) / bucketSize);
+        rows = Math.max(1, (height * cellSize + bucketSize - 1) / bucketSize);
+        buckets = new GridBucket[columns * rows];
+        allEntries.clear();
+    }
+
+    /**
+     * Get the size (width and height) of the buckets, in pixels.
+     */
+    public int getBucketSize()
+    {
+        return bucketSize;
+    }
+
+    /*
+     * @see greenfoot.collision.CollisionChecker#addObject(greenfoot.Actor)
+     */
+    public void addObject(Actor actor)
+    {
+        GridEntry entry = new GridEntry(actor);
+        Rect bounds = ActorVisitor.getBoundingRect(actor);
+        entry.minCol = toColumn(bounds.getX());
+        entry.maxCol = toColumn(Math.max(bounds.getX(), bounds.getRight() - 1));
+        entry.minRow = toRow(bounds.getY());
+        entry.maxRow = toRow(Math.max(bounds.getY(), bounds.getTop() - 1));
+
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                getOrCreateBucket(col, row).add(entry);
+            }
+        }
+
+        entry.index = allEntries.size();
+        allEntries.add(entry);
+        ActorVisitor.setData(actor, entry);
+    }
+
+    /*
+     * @see greenfoot.collision.CollisionChecker#removeObject(greenfoot.Actor)
+     */
+    public void removeObject(Actor object)
+    {
+        GridEntry entry = getEntry(object);
+        if (entry == null) {
+            return;
+        }
+
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                buckets[row * columns + col].remove(entry);
+            }
+        }
+
+        // Swap the last entry into the removed entry's place:
+        GridEntry last = allEntries.remove(allEntries.size() - 1);
+        if (last != entry) {
+            last.index = entry.index;
+            allEntries.set(entry.index, last);
+        }
+        ActorVisitor.setData(object, null);
+    }
+
+    public void updateObjectLocation(Actor object, int oldX, int oldY)
+    {
+        updateObject(object);
+    }
+
+    public void updateObjectSize(Actor object)
+    {
+        updateObject(object);
+    }
+
+    /**
+     * An actor's position or size has changed - move it to the buckets which it now
+     * overlaps.
+     */
+    private void updateObject(Actor object)
+    {
+        GridEntry entry = getEntry(object);
+        if (entry == null) {
+            // As with the IBSP checker, this can get called before the actor is
+            // added to the checker.
+            return;
+        }
+
+        Rect bounds = ActorVisitor.getBoundingRect(object);
+        int minCol = toColumn(bounds.getX());
+        int maxCol = toColumn(Math.max(bounds.getX(), bounds.getRight() - 1));
+        int minRow = toRow(bounds.getY());
+        int maxRow = toRow(Math.max(bounds.getY(), bounds.getTop() - 1));
+
+        if (minCol == entry.minCol && maxCol == entry.maxCol
+                && minRow == entry.minRow && maxRow == entry.maxRow) {
+            // The common case: still in the same buckets
+            return;
+        }
+
+        // Remove from buckets we have left:
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                if (col < minCol || col > maxCol || row < minRow || row > maxRow) {
+                    buckets[row * columns + col].remove(entry);
+                }
+            }
+        }
+
+        // Add to buckets we have entered:
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                if (col < entry.minCol || col > entry.maxCol || row < entry.minRow || row > entry.maxRow) {
+                    getOrCreateBucket(col, row).add(entry);
+                }
+            }
+        }
+
+        entry.minCol = minCol;
+        entry.maxCol = maxCol;
+        entry.minRow = minRow;
+        entry.maxRow = maxRow;
+    }
+
+    private static GridEntry getEntry(Actor actor)
+    {
+        return (GridEntry) ActorVisitor.getData(actor);
+    }
+
+    private GridBucket getOrCreateBucket(int col, int row)
+    {
+        int index = row * columns + col;
+        GridBucket bucket = buckets[index];
+        if (bucket == null) {
+            bucket = new GridBucket();
+            buckets[index] = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * Get the column of the bucket containing the given x pixel co-ordinate.
+     */
+    private int toColumn(int x)
+    {
+        return Math.max(0, Math.min(columns - 1, Math.floorDiv(x, bucketSize)));
+    }
+
+    /**
+     * Get the row of the bucket containing the given y pixel co-ordinate.
+     */
+    private int toRow(int y)
+    {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y, bucketSize)));
+    }
+
+    /**
+     * Add all actors in buckets overlapping the given area (in pixels, right and
+     * bottom edges inclusive) which match the given query to the result list. Each
+     * actor is examined at most once.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Actor> void getIntersectingObjects(int x1, int y1, int x2, int y2,
+            CollisionQuery query, List<? super T> result)
+    {
+        int queryId = ++queryCount;
+        int maxCol = toColumn(x2);
+        int maxRow = toRow(y2);
+        for (int row = toRow(y1); row <= maxRow; row++) {
+            for (int col = toColumn(x1); col <= maxCol; col++) {
+                GridBucket bucket = buckets[row * columns + col];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    GridEntry entry = bucket.get(i);
+                    if (entry.lastQuery != queryId) {
+                        entry.lastQuery = queryId;
+                        if (query.checkCollision(entry.actor)) {
+                            result.add((T) entry.actor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find one actor (other than the ignored actor) in buckets overlapping the given
+     * area (in pixels, right and bottom edges inclusive) which matches the given query.
+     */
+    private Actor getOneIntersectingObject(int x1, int y1, int x2, int y2,
+            CollisionQuery query, Actor ignore)
+    {
+        int maxCol = toColumn(x2);
+        int maxRow = toRow(y2);
+        for (int row = toRow(y1); row <= maxRow; row++) {
+            for (int col = toColumn(x1); col <= maxCol; col++) {
+                GridBucket bucket = buckets[row * columns + col];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    Actor candidate = bucket.get(i).actor;
+                    if (candidate != ignore && query.checkCollision(candidate)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
+    {
+        int px = x * cellSize + cellSize / 2;
+        int py = y * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(px, py, px, py, pointQuery, result);
+        return result;
+    }
+
+    public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(actor, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        actorQuery.init(cls, actor);
+        getIntersectingObjects(r.getX(), r.getY(), r.getRight(), r.getTop(), actorQuery, result);
+    }
+
+    public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getObjectsInRange(x, y, r, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getObjectsInRange(int x, int y, int r, Class<T> cls, List<? super T> result)
+    {
+        int halfCell = cellSize / 2;
+        int cx = x * cellSize + halfCell;
+        int cy = y * cellSize + halfCell;
+        int pr = r * cellSize;
+
+        int start = result.size();
+        actorQuery.init(cls, null);
+        getIntersectingObjects(cx - pr, cy - pr, cx + pr, cy + pr, actorQuery, result);
+        inRangeQuery.init(cx, cy, pr);
+        inRangeQuery.retainInRange(result, start);
+    }
+
+    public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getNeighbours(actor, distance, diag, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls, List<? super T> result)
+    {
+        int x = ActorVisitor.getX(actor);
+        int y = ActorVisitor.getY(actor);
+
+        // Neighbours are found by their logical location, so look at the whole
+        // of each cell within range:
+        neighbourQuery.init(x, y, distance, diag, cls);
+        getIntersectingObjects((x - distance) * cellSize, (y - distance) * cellSize,
+                (x + distance + 1) * cellSize - 1, (y + distance + 1) * cellSize - 1, neighbourQuery, result);
+    }
+
+    public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
+    {
+        // non-functional, as for the IBSP checker
+        return new ArrayList<T>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjects(Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        for (GridEntry entry : allEntries) {
+            if (cls == null || cls.isInstance(entry.actor)) {
+                result.add((T) entry.actor);
+            }
+        }
+        return result;
+    }
+
+    public List<Actor> getObjectsList()
+    {
+        return getObjects(null);
+    }
+
+    public void startSequence()
+    {
+        // Nothing necessary.
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
+    {
+        int px = dx * cellSize + cellSize / 2;
+        int py = dy * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (T) getOneIntersectingObject(px, py, px, py, pointQuery, object);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneIntersectingObject(Actor actor, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        actorQuery.init(cls, actor);
+        return (T) getOneIntersectingObject(r.getX(), r.getY(), r.getRight(), r.getTop(), actorQuery, actor);
+    }
+
+    public void paintDebug(Graphics g)
+    {
+        Color oldColor = g.getColor();
+        g.setColor(Color.RED);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                GridBucket bucket = buckets[row * columns + col];
+                if (bucket != null && bucket.size() != 0) {
+                    g.drawRect(col * bucketSize, row * bucketSize, bucketSize, bucketSize);
+                }
+            }
+        }
+        g.setColor(oldColor);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+import greenfoot.Actor;
+
+/**
+ * The grid collision checker's record of an actor. It remembers the range of buckets
+ * the actor is currently stored in, so that a move which stays within the same buckets
+ * needs no further work.
+ */
+final class GridEntry
+{
+    final Actor actor;
+
+    /** Index of this entry in the checker's list of all entries */
+    int index;
+
+    /** The (inclusive) range of bucket columns and rows the actor is stored in */
+    int minCol, maxCol, minRow, maxRow;
+
+    /** The query during which this entry was last examined, used to avoid duplicates */
+    int lastQuery;
+
+    GridEntry(Actor actor)
+    {
+        this.actor = actor;
+    }
+}
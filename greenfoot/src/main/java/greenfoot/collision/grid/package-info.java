@@ -0,0 +1,5 @@
+@OnThread(Tag.Simulation)
+package greenfoot.collision.grid;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
\ No newline at end of file
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -37,6 +37,8 @@ public final class ActorNode
     private ActorNode next;
     private ActorNode prev;
     private boolean mark;
+    private int index; // index within the BSPNode
+    private int lastQuery; // used by the collision checker to avoid duplicate results
     
     public ActorNode(Actor actor, BSPNode node)
     {
@@ -84,6 +86,36 @@ public final class ActorNode
         return markVal;
     }
     
+    /**
+     * Get the index of this actor node within its BSPNode.
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+    
+    /**
+     * Set the index of this actor node within its BSPNode.
+     */
+    public void setIndex(int index)
+    {
+        this.index = index;
+    }
+    
+    /**
+     * Get the id of the last query which found this actor. Only meaningful for the
+     * first actor node of an actor.
+     */
+    public int getLastQuery()
+    {
+        return lastQuery;
+    }
+    
+    public void setLastQuery(int lastQuery)
+    {
+        this.lastQuery = lastQuery;
+    }
+    
     public Actor getActor()
     {
         return actor;
@@ -112,7 +144,7 @@ public final class ActorNode
     public void remove()
     {
         removed();
-        node.actorRemoved(actor);
+        node.actorRemoved(this);
     }
     
     /**
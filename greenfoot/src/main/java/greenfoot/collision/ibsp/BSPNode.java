@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2012,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2012,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -28,14 +28,16 @@ import java.util.*;
 /**
  * A node in a BSP tree. Each node covers a rectangular area, and is potentially split
  * down either axis to allow two child nodes. A BSP node area contains one or more
- * Actors (or parts of Actors); in implementation, this is represented as a map of
- * Actor to ActorNode.
+ * Actors (or parts of Actors); in implementation, this is represented as an array of
+ * ActorNodes, each of which knows its own index in the array. This allows the actors
+ * to be traversed without allocating an iterator.
  * 
  * @author Davin McCall
  */
 public final class BSPNode
 {
-    private Map<Actor, ActorNode> actors;
+    private ActorNode [] actorNodes = new ActorNode[4];
+    private int numActors;
     
     private BSPNode parent;
     private Rect area;
@@ -52,9 +54,6 @@ public final class BSPNode
         this.area = area;
         this.splitAxis = splitAxis;
         this.splitPos = splitPos;
-        
-        // actorNodes = new LinkedList<ActorNode>();
-        actors = new HashMap<Actor, ActorNode>();
     }
     
     /**
@@ -110,22 +109,42 @@ public final class BSPNode
     }
 
     public Rect getLeftArea()
+    {
+        Rect leftArea = new Rect(0, 0, 0, 0);
+        getLeftArea(leftArea);
+        return leftArea;
+    }
+    
+    /**
+     * Get the area covered by the left child, storing it in the given rect.
+     */
+    public void getLeftArea(Rect dest)
     {
         if (splitAxis == IBSPColChecker.X_AXIS) {
-            return new Rect(area.getX(), area.getY(), splitPos - area.getX(), area.getHeight());
+            dest.set(area.getX(), area.getY(), splitPos - area.getX(), area.getHeight());
         }
         else {
-            return new Rect(area.getX(), area.getY(), area.getWidth(), splitPos - area.getY());
+            dest.set(area.getX(), area.getY(), area.getWidth(), splitPos - area.getY());
         }
     }
     
     public Rect getRightArea()
+    {
+        Rect rightArea = new Rect(0, 0, 0, 0);
+        getRightArea(rightArea);
+        return rightArea;
+    }
+    
+    /**
+     * Get the area covered by the right child, storing it in the given rect.
+     */
+    public void getRightArea(Rect dest)
     {
         if (splitAxis == IBSPColChecker.X_AXIS) {
-            return new Rect(splitPos, area.getY(), area.getRight() - splitPos, area.getHeight());
+            dest.set(splitPos, area.getY(), area.getRight() - splitPos, area.getHeight());
         }
         else {
-            return new Rect(area.getX(), splitPos, area.getWidth(), area.getTop() - splitPos);
+            dest.set(area.getX(), splitPos, area.getWidth(), area.getTop() - splitPos);
         }
     }
     
@@ -140,11 +159,14 @@ public final class BSPNode
     
     private void resizeChildren()
     {
+        // The children own their area rects, so we can update them in place:
         if (left != null) {
-            left.setArea(getLeftArea());
+            getLeftArea(left.area);
+            left.areaRipple = true;
         }
         if (right != null) {
-            right.setArea(getRightArea());
+            getRightArea(right.area);
+            right.areaRipple = true;
         }
     }
     
@@ -193,7 +215,14 @@ public final class BSPNode
     
     public void addActor(Actor actor)
     {
-        actors.put(actor, new ActorNode(actor, this));
+        if (numActors == actorNodes.length) {
+            ActorNode [] newNodes = new ActorNode[numActors * 2];
+            System.arraycopy(actorNodes, 0, newNodes, 0, numActors);
+            actorNodes = newNodes;
+        }
+        ActorNode anode = new ActorNode(actor, this);
+        anode.setIndex(numActors);
+        actorNodes[numActors++] = anode;
     }
     
     /**
@@ -202,22 +231,34 @@ public final class BSPNode
      */
     public boolean containsActor(Actor actor)
     {
-        ActorNode anode = actors.get(actor);
-        if (anode != null) {
-            anode.mark();
-            return true;
+        // An actor is in only a few nodes, so it is quicker to check the
+        // actor's nodes than the nodes's actors:
+        ActorNode anode = IBSPColChecker.getNodeForActor(actor);
+        while (anode != null) {
+            if (anode.getBSPNode() == this) {
+                anode.mark();
+                return true;
+            }
+            anode = anode.getNext();
         }
         return false;
     }
     
-    public void actorRemoved(Actor actor)
+    /**
+     * Remove an actor node from this node.
+     */
+    public void actorRemoved(ActorNode anode)
     {
-        actors.remove(actor);
+        int index = anode.getIndex();
+        ActorNode last = actorNodes[--numActors];
+        actorNodes[index] = last;
+        last.setIndex(index);
+        actorNodes[numActors] = null;
     }
     
     public int numberActors()
     {
-        return actors.size();
+        return numActors;
     }
     
     /**
@@ -225,28 +266,41 @@ public final class BSPNode
      */
     public boolean isEmpty()
     {
-        return actors.isEmpty();
+        return numActors == 0;
     }
     
-    public Iterator<Map.Entry<Actor, ActorNode>> getEntriesIterator()
+    /**
+     * Get the actor node at the given index (from 0 to numberActors() - 1).
+     */
+    public ActorNode getActorNode(int index)
     {
-        return actors.entrySet().iterator();
+        return actorNodes[index];
     }
     
-    public Iterator<Actor> getActorsIterator()
+    /**
+     * Get the actor at the given index (from 0 to numberActors() - 1).
+     */
+    public Actor getActor(int index)
     {
-        return actors.keySet().iterator();
+        return actorNodes[index].getActor();
     }
     
     public List<Actor> getActorsList()
     {
-        return new ArrayList<Actor>(actors.keySet());
+        List<Actor> actors = new ArrayList<Actor>(numActors);
+        for (int i = 0; i < numActors; i++) {
+            actors.add(actorNodes[i].getActor());
+        }
+        return actors;
     }
     
     // Blanks the node.  Used by BSPNodeCache 
     void blankNode()
     {
-        actors.clear();
+        for (int i = 0; i < numActors; i++) {
+            actorNodes[i] = null;
+        }
+        numActors = 0;
     }
     
     public void areaChanged()
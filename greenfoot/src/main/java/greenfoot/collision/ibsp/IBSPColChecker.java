@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2012,2013,2015  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2012,2013,2015,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -58,6 +58,12 @@ public class IBSPColChecker implements CollisionChecker
     
     private BSPNode bspTree;
     
+    /** Scratch stack used when traversing the tree, to avoid allocating one for each query. */
+    private ArrayList<BSPNode> nodeStack = new ArrayList<BSPNode>();
+    
+    /** Id of the most recent query, used to avoid returning the same actor twice. */
+    private int queryCount;
+    
     public static boolean debugging = false;
     
     /* (non-Javadoc)
@@ -100,10 +106,10 @@ public class IBSPColChecker implements CollisionChecker
                 if (bounds.getX() < treeArea.getX()) {
                     // double the width out to the left
                     int bx = treeArea.getX() - treeArea.getWidth();
-                    Rect newArea = new Rect(bx, treeArea.getY(),
-                            treeArea.getRight() - bx, treeArea.getHeight());
                     BSPNode newTop = BSPNodeCache.getBSPNode();
-                    newTop.getArea().copyFrom(newArea);
+                    Rect newArea = newTop.getArea();
+                    newArea.set(bx, treeArea.getY(),
+                            treeArea.getRight() - bx, treeArea.getHeight());
                     newTop.setSplitAxis(X_AXIS);
                     newTop.setSplitPos(treeArea.getX());
                     newTop.setChild(PARENT_RIGHT, bspTree);
@@ -113,10 +119,10 @@ public class IBSPColChecker implements CollisionChecker
                 if (bounds.getRight() > treeArea.getRight()) {
                     // double the width out to the right
                     int bx = treeArea.getRight() + treeArea.getWidth();
-                    Rect newArea = new Rect(treeArea.getX(), treeArea.getY(),
-                            bx - treeArea.getX(), treeArea.getHeight());
                     BSPNode newTop = BSPNodeCache.getBSPNode();
-                    newTop.getArea().copyFrom(newArea);
+                    Rect newArea = newTop.getArea();
+                    newArea.set(treeArea.getX(), treeArea.getY(),
+                            bx - treeArea.getX(), treeArea.getHeight());
                     newTop.setSplitAxis(X_AXIS);
                     newTop.setSplitPos(treeArea.getRight());
                     newTop.setChild(PARENT_LEFT, bspTree);
@@ -126,10 +132,10 @@ public class IBSPColChecker implements CollisionChecker
                 if (bounds.getY() < treeArea.getY()) {
                     // double the height out the top
                     int by = treeArea.getY() - treeArea.getHeight();
-                    Rect newArea = new Rect(treeArea.getX(), by,
-                            treeArea.getWidth(), treeArea.getTop() - by);
                     BSPNode newTop = BSPNodeCache.getBSPNode();
-                    newTop.getArea().copyFrom(newArea);
+                    Rect newArea = newTop.getArea();
+                    newArea.set(treeArea.getX(), by,
+                            treeArea.getWidth(), treeArea.getTop() - by);
                     newTop.setSplitAxis(Y_AXIS);
                     newTop.setSplitPos(treeArea.getY());
                     newTop.setChild(PARENT_RIGHT, bspTree);
@@ -139,10 +145,10 @@ public class IBSPColChecker implements CollisionChecker
                 if (bounds.getTop() > treeArea.getTop()) {
                     // double the height out the bottom
                     int by = treeArea.getTop() + treeArea.getHeight();
-                    Rect newArea = new Rect(treeArea.getX(), treeArea.getY(),
-                            treeArea.getWidth(), by - treeArea.getY());
                     BSPNode newTop = BSPNodeCache.getBSPNode();
-                    newTop.getArea().copyFrom(newArea);
+                    Rect newArea = newTop.getArea();
+                    newArea.set(treeArea.getX(), treeArea.getY(),
+                            treeArea.getWidth(), by - treeArea.getY());
                     newTop.setSplitAxis(Y_AXIS);
                     newTop.setSplitPos(treeArea.getTop());
                     newTop.setChild(PARENT_LEFT, bspTree);
@@ -230,13 +236,15 @@ public class IBSPColChecker implements CollisionChecker
         }
 
         // The search continues...
-        Rect leftArea = node.getLeftArea();
-        Rect rightArea = node.getRightArea();
+        Rect leftArea = RectCache.getRect();
+        Rect rightArea = RectCache.getRect();
+        node.getLeftArea(leftArea);
+        node.getRightArea(rightArea);
 
-        Rect leftIntersects = Rect.getIntersection(leftArea, bounds);
-        Rect rightIntersects = Rect.getIntersection(rightArea, bounds);
+        Rect leftIntersects = RectCache.getRect();
+        Rect rightIntersects = RectCache.getRect();
 
-        if (leftIntersects != null) {
+        if (Rect.getIntersection(leftArea, bounds, leftIntersects)) {
             if (node.getLeft() == null) {
                 BSPNode newLeft = createNewNode(leftArea);
                 newLeft.addActor(actor);
@@ -247,7 +255,7 @@ public class IBSPColChecker implements CollisionChecker
             }
         }
 
-        if (rightIntersects != null) {
+        if (Rect.getIntersection(rightArea, bounds, rightIntersects)) {
             if (node.getRight() == null) {
                 BSPNode newRight = createNewNode(rightArea);
                 newRight.addActor(actor);
@@ -257,10 +265,16 @@ public class IBSPColChecker implements CollisionChecker
                 insertObject(actor, actorBounds, rightIntersects, rightArea, node.getRight());
             }
         }
+        
+        RectCache.returnRect(leftArea);
+        RectCache.returnRect(rightArea);
+        RectCache.returnRect(leftIntersects);
+        RectCache.returnRect(rightIntersects);
     }
     
     /**
-     * Create a new node for the given area.
+     * Create a new node for the given area. The area is copied, so the passed
+     * rect may be re-used afterwards.
      */
     private BSPNode createNewNode(Rect area)
     {
@@ -274,7 +288,8 @@ public class IBSPColChecker implements CollisionChecker
             splitPos = area.getMiddleY();
         }
         BSPNode newNode = BSPNodeCache.getBSPNode();
-        newNode.setArea(area);
+        newNode.getArea().copyFrom(area);
+        newNode.areaChanged();
         newNode.setSplitAxis(splitAxis);
         newNode.setSplitPos(splitPos);
         return newNode;
@@ -537,42 +552,47 @@ public class IBSPColChecker implements CollisionChecker
         updateObject(object);
     }
 
-    private List<Actor> getIntersectingObjects(Rect r, CollisionQuery query)
-    {
-        Set<Actor> set = new HashSet<Actor>();
-        getIntersectingObjects(r, query, set, bspTree);
-        List<Actor> l = new ArrayList<Actor>(set);
-        return l;
-    }
-    
-    private void getIntersectingObjects(Rect r, CollisionQuery query, Set<Actor> resultSet, BSPNode startNode)
+    /**
+     * Add all actors which intersect the given area and match the given query to
+     * the result list. Each actor is added once only, even if it is stored in
+     * several nodes.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Actor> void getIntersectingObjects(Rect r, CollisionQuery query, List<? super T> result)
     {
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        
-        if (startNode != null) {
-            nodeStack.add(startNode);
+        if (bspTree == null) {
+            return;
         }
         
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
-            if (node.getArea().intersects(r)) {
-                Iterator<Actor> i = node.getActorsIterator();
-                while (i.hasNext()) {
-                    Actor actor = i.next();
-                    if (query.checkCollision(actor)) {
-                        if (! resultSet.contains(actor)) {
-                            resultSet.add(actor);
+        synchronized (nodeStack) {
+            int queryId = ++queryCount;
+            nodeStack.clear();
+            nodeStack.add(bspTree);
+            
+            while (! nodeStack.isEmpty()) {
+                BSPNode node = nodeStack.remove(nodeStack.size() - 1);
+                if (node.getArea().intersects(r)) {
+                    int numActors = node.numberActors();
+                    for (int i = 0; i < numActors; i++) {
+                        Actor actor = node.getActor(i);
+                        // The actor's first node records whether we have seen the actor already
+                        ActorNode firstNode = getNodeForActor(actor);
+                        if (firstNode.getLastQuery() != queryId) {
+                            firstNode.setLastQuery(queryId);
+                            if (query.checkCollision(actor)) {
+                                result.add((T) actor);
+                            }
                         }
                     }
-                }
-                
-                BSPNode left = node.getLeft();
-                BSPNode right = node.getRight();
-                if (left != null) {
-                    nodeStack.add(left);
-                }
-                if (right != null) {
-                    nodeStack.add(right);
+                    
+                    BSPNode left = node.getLeft();
+                    BSPNode right = node.getRight();
+                    if (left != null) {
+                        nodeStack.add(left);
+                    }
+                    if (right != null) {
+                        nodeStack.add(right);
+                    }
                 }
             }
         }
@@ -584,10 +604,9 @@ public class IBSPColChecker implements CollisionChecker
      */
     private Actor checkForOneCollision(Actor ignore, BSPNode node, CollisionQuery query)
     {
-        Iterator<Actor> i = node.getActorsIterator();
-        
-        while (i.hasNext()) {
-            Actor candidate = i.next();
+        int numActors = node.numberActors();
+        for (int i = 0; i < numActors; i++) {
+            Actor candidate = node.getActor(i);
             if (ignore != candidate && query.checkCollision(candidate)) {
                 return candidate;
             }
@@ -613,24 +632,26 @@ public class IBSPColChecker implements CollisionChecker
             return null;
         }
         
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        nodeStack.add(startNode);
-        
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
-            if (node.getArea().intersects(r)) {
-                Actor res = checkForOneCollision(ignore, node, query);
-                if (res != null) {
-                    return res;
-                }
-                
-                BSPNode left = node.getLeft();
-                BSPNode right = node.getRight();
-                if (left != null) {
-                    nodeStack.add(left);
-                }
-                if (right != null) {
-                    nodeStack.add(right);
+        synchronized (nodeStack) {
+            nodeStack.clear();
+            nodeStack.add(startNode);
+            
+            while (! nodeStack.isEmpty()) {
+                BSPNode node = nodeStack.remove(nodeStack.size() - 1);
+                if (node.getArea().intersects(r)) {
+                    Actor res = checkForOneCollision(ignore, node, query);
+                    if (res != null) {
+                        return res;
+                    }
+                    
+                    BSPNode left = node.getLeft();
+                    BSPNode right = node.getRight();
+                    if (left != null) {
+                        nodeStack.add(left);
+                    }
+                    if (right != null) {
+                        nodeStack.add(right);
+                    }
                 }
             }
         }
@@ -651,24 +672,26 @@ public class IBSPColChecker implements CollisionChecker
             return null;
         }
         
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        nodeStack.add(bspTree);
-        
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
-            if (node.getArea().contains(r)) {
-                Actor res = checkForOneCollision(actor, node, query);
-                if (res != null) {
-                    return res;
-                }
-                
-                BSPNode left = node.getLeft();
-                BSPNode right = node.getRight();
-                if (left != null) {
-                    nodeStack.add(left);
-                }
-                if (right != null) {
-                    nodeStack.add(right);
+        synchronized (nodeStack) {
+            nodeStack.clear();
+            nodeStack.add(bspTree);
+            
+            while (! nodeStack.isEmpty()) {
+                BSPNode node = nodeStack.remove(nodeStack.size() - 1);
+                if (node.getArea().contains(r)) {
+                    Actor res = checkForOneCollision(actor, node, query);
+                    if (res != null) {
+                        return res;
+                    }
+                    
+                    BSPNode left = node.getLeft();
+                    BSPNode right = node.getRight();
+                    if (left != null) {
+                        nodeStack.add(left);
+                    }
+                    if (right != null) {
+                        nodeStack.add(right);
+                    }
                 }
             }
         }
@@ -695,63 +718,83 @@ public class IBSPColChecker implements CollisionChecker
         return null;
     }
     
-    @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
     {
+        List<T> result = new ArrayList<T>();
+        Rect r = RectCache.getRect();
         synchronized (pointQuery) {
             int px = x * cellSize + cellSize / 2;
             int py = y * cellSize + cellSize / 2;
             pointQuery.init(px, py, cls);
-            return (List<T>) getIntersectingObjects(new Rect(px, py, 1, 1), pointQuery);
+            r.set(px, py, 1, 1);
+            getIntersectingObjects(r, pointQuery, result);
         }
+        RectCache.returnRect(r);
+        return result;
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor,
             Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(actor, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getIntersectingObjects(Actor actor,
+            Class<T> cls, List<? super T> result)
     {
         Rect r = getActorBounds(actor);
         
         synchronized (actorQuery) {
             actorQuery.init(cls, actor);
-            return (List<T>) getIntersectingObjects(r, actorQuery);
+            getIntersectingObjects(r, actorQuery, result);
         }
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r,
             Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getObjectsInRange(x, y, r, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getObjectsInRange(int x, int y, int r,
+            Class<T> cls, List<? super T> result)
     {
         int halfCell = cellSize / 2;
         int size = 2 * r * cellSize;
         
-        Rect rect = new Rect((x - r) * cellSize + halfCell,
+        Rect rect = RectCache.getRect();
+        rect.set((x - r) * cellSize + halfCell,
                 (y - r) * cellSize + halfCell,
                 size,
                 size);
         
-        List<T> result;
+        int start = result.size();
         synchronized (actorQuery) {
             actorQuery.init(cls, null);
-            result = (List<T>) getIntersectingObjects(rect, actorQuery);
+            getIntersectingObjects(rect, actorQuery, result);
         }
+        RectCache.returnRect(rect);
         
-        Iterator<T> i = result.iterator();
         synchronized (inRangeQuery) {
             inRangeQuery.init(x * cellSize + halfCell , y * cellSize + halfCell, r * cellSize);
-            while (i.hasNext()) {
-                if (! inRangeQuery.checkCollision(i.next())) {
-                    i.remove();
-                }
-            }
+            inRangeQuery.retainInRange(result, start);
         }
-        
-        return result;
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance,
             boolean diag, Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getNeighbours(actor, distance, diag, cls, result);
+        return result;
+    }
+
+    public <T extends Actor> void getNeighbours(Actor actor, int distance,
+            boolean diag, Class<T> cls, List<? super T> result)
     {
         int x = ActorVisitor.getX(actor);
         int y = ActorVisitor.getY(actor);
@@ -759,13 +802,14 @@ public class IBSPColChecker implements CollisionChecker
         int yPixel = y * cellSize;
         int dPixel = distance * cellSize;
         
-        Rect r = new Rect(xPixel - dPixel, yPixel - dPixel, dPixel * 2 + 1, dPixel * 2 + 1);
+        Rect r = RectCache.getRect();
+        r.set(xPixel - dPixel, yPixel - dPixel, dPixel * 2 + 1, dPixel * 2 + 1);
         
         synchronized (neighbourQuery) {
             neighbourQuery.init(x, y, distance, diag, cls);
-            List<T> res = (List<T>) getIntersectingObjects(r, neighbourQuery);
-            return res;
+            getIntersectingObjects(r, neighbourQuery, result);
         }
+        RectCache.returnRect(r);
     }
 
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y,
@@ -778,34 +822,41 @@ public class IBSPColChecker implements CollisionChecker
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjects(Class<T> cls)
     {
-        Set<T> set = new HashSet<T>();
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        
-        if (bspTree != null) {
-            nodeStack.add(bspTree);
+        List<T> result = new ArrayList<T>();
+        if (bspTree == null) {
+            return result;
         }
         
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
-            Iterator<Actor> i = node.getActorsIterator();
-            while (i.hasNext()) {
-                Actor actor = i.next();
-                if (cls == null || cls.isInstance(actor)) {
-                    set.add((T) actor);
+        synchronized (nodeStack) {
+            int queryId = ++queryCount;
+            nodeStack.clear();
+            nodeStack.add(bspTree);
+            
+            while (! nodeStack.isEmpty()) {
+                BSPNode node = nodeStack.remove(nodeStack.size() - 1);
+                int numActors = node.numberActors();
+                for (int i = 0; i < numActors; i++) {
+                    Actor actor = node.getActor(i);
+                    ActorNode firstNode = getNodeForActor(actor);
+                    if (firstNode.getLastQuery() != queryId) {
+                        firstNode.setLastQuery(queryId);
+                        if (cls == null || cls.isInstance(actor)) {
+                            result.add((T) actor);
+                        }
+                    }
+                }
+                BSPNode left = node.getLeft();
+                BSPNode right = node.getRight();
+                if (left != null) {
+                    nodeStack.add(left);
+                }
+                if (right != null) {
+                    nodeStack.add(right);
                 }
-            }
-            BSPNode left = node.getLeft();
-            BSPNode right = node.getRight();
-            if (left != null) {
-                nodeStack.add(left);
-            }
-            if (right != null) {
-                nodeStack.add(right);
             }
         }
         
-        List<T> list = new ArrayList<T>(set);
-        return list;
+        return result;
     }
 
     public List<Actor> getObjectsList()
@@ -822,17 +873,18 @@ public class IBSPColChecker implements CollisionChecker
     public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy,
             Class<T> cls)
     {
+        Rect r = RectCache.getRect();
         synchronized (pointQuery) {
             int px = dx * cellSize + cellSize / 2;
             int py = dy * cellSize + cellSize / 2;
+            // The point query checks the class, if one is given:
             pointQuery.init(px, py, cls);
-            CollisionQuery query = pointQuery;
-            if (cls != null) {
-                query = new ClassQuery(cls, pointQuery);
-            }
+            r.set(px, py, 1, 1);
             // Use of getOneIntersectingDown is ok, because the area is only 1x1 pixel
             // in size - it will be contained by all nodes.
-            return (T) getOneIntersectingDown(new Rect(px, py, 1, 1), query, object);
+            T result = (T) getOneIntersectingDown(r, pointQuery, object);
+            RectCache.returnRect(r);
+            return result;
         }
     }
 
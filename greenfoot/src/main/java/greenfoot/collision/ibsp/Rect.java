@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -33,6 +33,17 @@ final public class Rect
         this.height = height;
     }
     
+    /**
+     * Set the position and size of this rect.
+     */
+    public void set(int x, int y, int width, int height)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+    
     public void copyFrom(Rect other)
     {
         this.x = other.x;
@@ -95,6 +106,19 @@ final public class Rect
     }
 
     public static Rect getIntersection(Rect a, Rect b)
+    {
+        Rect dest = new Rect(0, 0, 0, 0);
+        return getIntersection(a, b, dest) ? dest : null;
+    }
+    
+    /**
+     * Calculate the intersection of two rects, storing it in a third (which may be
+     * the same as either of the first two) without allocating a new Rect.
+     * 
+     * @return  true if the rects intersect; false if they do not, in which case
+     *          the destination rect is left unmodified.
+     */
+    public static boolean getIntersection(Rect a, Rect b, Rect dest)
     {
         int a_x = a.getX();
         int a_r = a.getRight();
@@ -112,10 +136,11 @@ final public class Rect
         int i_y = Math.max(a_y, b_y);
         int i_t = Math.min(a_t, b_t);
         if (i_x >= i_r || i_y >= i_t) {
-            return null;
+            return false;
         }
         else {
-            return new Rect(i_x, i_y, i_r - i_x, i_t - i_y);
+            dest.set(i_x, i_y, i_r - i_x, i_t - i_y);
+            return true;
         }
     }
     
@@ -0,0 +1,55 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.ibsp;
+
+/**
+ * A cache of scratch Rect objects, used by the collision checker when traversing
+ * the tree so that it doesn't need to allocate new Rects at every tree level.
+ * Rects obtained from getRect() should be returned via returnRect() once they
+ * are no longer needed.
+ */
+public class RectCache
+{
+    private static final int CACHE_SIZE = 100;
+    
+    private static Rect [] cache = new Rect[CACHE_SIZE];
+    private static int size = 0;
+    
+    public static Rect getRect()
+    {
+        if (size == 0) {
+            return new Rect(0,0,0,0);
+        }
+        else {
+            Rect rect = cache[--size];
+            cache[size] = null;
+            return rect;
+        }
+    }
+    
+    public static void returnRect(Rect rect)
+    {
+        if (size < CACHE_SIZE) {
+            cache[size++] = rect;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import bluej.utility.GeneralCache;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A cache of rotated copies of actor images, so that rotated actors can be drawn
+ * without transforming their image each time they are painted.
+ *
+ * <p>Copies are keyed by the image's content (see
+ * {@link ImageVisitor#getContentSource(GreenfootImage)}), so that actors whose images
+ * are copies of the same image share rotated copies, and so that a copy is no longer
+ * used once its image has been changed. The key also includes the fractional part of
+ * the rotation centre, so that drawing a copy gives exactly the same pixels as drawing
+ * the image through a rotated graphics. The least recently used copies are discarded
+ * when the total number of pixels goes over a limit.
+ *
+ * <p>A rotated copy is only kept once its image has been drawn twice without changing
+ * in between, so that images which are redrawn every frame (or replaced by a new image
+ * every frame) don't fill the cache with copies that will never be used again.
+ */
+@OnThread(Tag.Any)
+class RotatedImageCache
+{
+    private static final long MAX_PIXELS = 4_000_000;
+    private static final int MAX_IMAGES = 4096;
+
+    private final GeneralCache<Key, RotatedImage> cache = new GeneralCache<>(MAX_IMAGES, MAX_PIXELS,
+            r -> (long) r.image.getWidth() * r.image.getHeight());
+    // The content version of each source at its last lookup. Guarded by itself:
+    private final Map<Object, Integer> lastVersions = new WeakHashMap<>();
+
+    @OnThread(Tag.Any)
+    private static class Key
+    {
+        private final Object source;
+        private final int version;
+        private final int rotation;
+        private final double xOffset;
+        private final double yOffset;
+
+        private Key(Object source, int version, int rotation, double xOffset, double yOffset)
+        {
+            this.source = source;
+            this.version = version;
+            this.rotation = rotation;
+            this.xOffset = xOffset;
+            this.yOffset = yOffset;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (! (obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return source == other.source && version == other.version && rotation == other.rotation
+                    && xOffset == other.xOffset && yOffset == other.yOffset;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = System.identityHashCode(source);
+            hash = hash * 31 + version;
+            hash = hash * 31 + rotation;
+            hash = hash * 31 + Double.hashCode(xOffset);
+            return hash * 31 + Double.hashCode(yOffset);
+        }
+    }
+
+    /**
+     * A rotated copy of an image, and where it should be drawn relative to the
+     * whole-pixel part of the rotation centre.
+     */
+    @OnThread(Tag.Any)
+    private static class RotatedImage
+    {
+        private final BufferedImage image;
+        private final int x;
+        private final int y;
+
+        private RotatedImage(BufferedImage image, int x, int y)
+        {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * Draw an image rotated about the given centre, with its transparency. This gives
+     * the same result as rotating the graphics about the centre and drawing the image at
+     * (floor(xCenter - width / 2), floor(yCenter - height / 2)).
+     */
+    void drawRotated(Graphics2D g, GreenfootImage image, int rotation, double xCenter, double yCenter)
+    {
+        int originX = (int) Math.floor(xCenter);
+        int originY = (int) Math.floor(yCenter);
+        Object source = ImageVisitor.getContentSource(image);
+        int version = ImageVisitor.getContentVersion(image);
+        Key key = new Key(source, version, rotation, xCenter - originX, yCenter - originY);
+        RotatedImage rotated = cache.get(key);
+        if (rotated == null) {
+            rotated = createRotated(image, rotation, key.xOffset, key.yOffset);
+            if (isUnchanged(source, version)) {
+                cache.put(key, rotated);
+            }
+        }
+
+        Composite oldComposite = null;
+        float opacity = image.getTransparency() / 255f;
+        if (opacity < 1) {
+            oldComposite = g.getComposite();
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        }
+        g.drawImage(rotated.image, originX + rotated.x, originY + rotated.y, null);
+        if (oldComposite != null) {
+            g.setComposite(oldComposite);
+        }
+    }
+
+    /**
+     * Record the content version of a source, and check whether it is the same as at
+     * the previous lookup of the source.
+     */
+    private boolean isUnchanged(Object source, int version)
+    {
+        synchronized (lastVersions) {
+            Integer lastVersion = lastVersions.put(source, version);
+            return lastVersion != null && lastVersion == version;
+        }
+    }
+
+    /**
+     * Draw the image rotated about the given centre (which is between 0 and 1 in each
+     * direction) into an image just large enough for it.
+     */
+    private static RotatedImage createRotated(GreenfootImage image, int rotation, double xCenter, double yCenter)
+    {
+        AffineTransform tx = AffineTransform.getRotateInstance(Math.toRadians(rotation), xCenter, yCenter);
+        tx.translate(Math.floor(xCenter - image.getWidth() / 2.), Math.floor(yCenter - image.getHeight() / 2.));
+        Rectangle bounds = tx.createTransformedShape(new Rectangle(0, 0, image.getWidth(), image.getHeight())).getBounds();
+
+        // Java2D draws transformed images via premultiplied pixels, so we store them
+        // that way to get the same result when they are drawn:
+        BufferedImage rotated = new BufferedImage(Math.max(1, bounds.width), Math.max(1, bounds.height),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = rotated.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.translate(-bounds.x, -bounds.y);
+        g.transform(tx);
+        ImageVisitor.drawImage(image, g, 0, 0, null, false);
+        g.dispose();
+        return new RotatedImage(rotated, bounds.x, bounds.y);
+    }
+
+    /**
+     * Get the number of rotated images in the cache.
+     */
+    int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Get the number of lookups which found a rotated image.
+     */
+    long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Get the number of lookups which had to rotate the image.
+     */
+    long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * The damaged (changed) area of a world image, recorded as a grid of square tiles.
+ * A tile is damaged if any pixel within it may have changed.
+ *
+ * <p>This class is not thread-safe; users must synchronize if sharing an instance
+ * between threads.
+ */
+@OnThread(Tag.Any)
+public class TileDamage
+{
+    /** The width and height of a tile, in pixels */
+    public static final int TILE_SIZE = 32;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private boolean[] tiles = new boolean[0];
+    private int damagedCount;
+
+    /**
+     * Create a TileDamage for an image of the given size. Initially, all tiles are damaged.
+     */
+    public TileDamage(int width, int height)
+    {
+        setSize(width, height);
+        damageAll();
+    }
+
+    /**
+     * Set the size of the image. If this differs from the current size, the whole
+     * image is marked as damaged.
+     */
+    public void setSize(int width, int height)
+    {
+        if (width == this.width && height == this.height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        if (tiles.length < columns * rows) {
+            tiles = new boolean[columns * rows];
+        }
+        damageAll();
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Mark the given rectangle (in pixels) as damaged. The rectangle may extend
+     * outside the image.
+     */
+    public void damage(int x, int y, int w, int h)
+    {
+        int x2 = Math.min(x + w, width);
+        int y2 = Math.min(y + h, height);
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+        if (x >= x2 || y >= y2) {
+            return;
+        }
+
+        int maxCol = (x2 - 1) / TILE_SIZE;
+        int maxRow = (y2 - 1) / TILE_SIZE;
+        for (int row = y / TILE_SIZE; row <= maxRow; row++) {
+            for (int col = x / TILE_SIZE; col <= maxCol; col++) {
+                int index = row * columns + col;
+                if (! tiles[index]) {
+                    tiles[index] = true;
+                    damagedCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the whole image as damaged.
+     */
+    public void damageAll()
+    {
+        int numTiles = columns * rows;
+        for (int i = 0; i < numTiles; i++) {
+            tiles[i] = true;
+        }
+        damagedCount = numTiles;
+    }
+
+    /**
+     * Add all the damage recorded in another TileDamage to this one. If the two
+     * are for images of a different size, this adopts the other's size and is
+     * then wholly damaged.
+     */
+    public void add(TileDamage other)
+    {
+        if (other.width != width || other.height != height) {
+            setSize(other.width, other.height);
+            return;
+        }
+        int numTiles = columns * rows;
+        for (int i = 0; i < numTiles; i++) {
+            if (other.tiles[i] && ! tiles[i]) {
+                tiles[i] = true;
+                damagedCount++;
+            }
+        }
+    }
+
+    /**
+     * Copy the size and damage from another TileDamage into this one.
+     */
+    public void copyFrom(TileDamage other)
+    {
+        setSize(other.width, other.height);
+        clear();
+        add(other);
+    }
+
+    /**
+     * Mark the whole image as undamaged.
+     */
+    public void clear()
+    {
+        int numTiles = columns * rows;
+        for (int i = 0; i < numTiles; i++) {
+            tiles[i] = false;
+        }
+        damagedCount = 0;
+    }
+
+    public boolean isEmpty()
+    {
+        return damagedCount == 0;
+    }
+
+    /**
+     * Get the number of damaged tiles.
+     */
+    public int getDamagedCount()
+    {
+        return damagedCount;
+    }
+
+    /**
+     * Get the total number of tiles.
+     */
+    public int getTileCount()
+    {
+        return columns * rows;
+    }
+
+    /**
+     * Get the damaged area as a list of non-overlapping rectangles, each formed from
+     * a horizontal run of damaged tiles and clipped to the image bounds. The rectangles
+     * are stored as four successive ints (x, y, width, height).
+     *
+     * @param rects  The array to store rectangles in; it must have room for at least
+     *               four times the number of damaged tiles.
+     * @return  The number of rectangles stored
+     */
+    public int getRects(int[] rects)
+    {
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            int col = 0;
+            while (col < columns) {
+                if (! tiles[row * columns + col]) {
+                    col++;
+                    continue;
+                }
+                int startCol = col;
+                while (col < columns && tiles[row * columns + col]) {
+                    col++;
+                }
+                int x = startCol * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                rects[count * 4] = x;
+                rects[count * 4 + 1] = y;
+                rects[count * 4 + 2] = Math.min(col * TILE_SIZE, width) - x;
+                rects[count * 4 + 3] = Math.min(y + TILE_SIZE, height) - y;
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -22,7 +22,6 @@
 package greenfoot.gui;
 
 import greenfoot.Actor;
-import greenfoot.ActorVisitor;
 import greenfoot.GreenfootImage;
 import greenfoot.ImageVisitor;
 import greenfoot.World;
@@ -33,20 +32,41 @@ import threadchecker.OnThread;
 import threadchecker.Tag;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * A class which handles the rendering of a World into a BufferedImage, including
  * handling the currently-dragging actor (if any).
+ * 
+ * <p>The renderer can also track which parts of the world image have changed since
+ * the previous render (see {@link #renderWorld(World, BufferedImage, TileDamage)}).
+ * It does this by remembering where each actor was painted, and with which image,
+ * rather than by comparing pixels.
+ * 
+ * <p>A renderer may paint large worlds in parallel, by splitting the world image
+ * into horizontal bands. Each band is painted with the background and those actors
+ * which reach into it, in paint order, so that the result is the same as painting
+ * the whole image at once.
+ * 
+ * <p>A world can be rendered from a {@link WorldSnapshot} on a thread other than the
+ * simulation thread. A renderer keeps state between renders, so it must only be used
+ * by one thread at a time.
  */
-@OnThread(Tag.Simulation)
+@OnThread(Tag.Any)
 public class WorldRenderer
 {
     private static final Color BACKGROUND = Color.WHITE;
+    /** The smallest world (in pixels) which is painted in bands, when painting in parallel */
+    private static final int MIN_PARALLEL_PIXELS = 400_000;
+    /** The smallest height of a band, in pixels */
+    private static final int MIN_BAND_HEIGHT = 32;
     
     /** The actor being dragged. Null if no dragging. */
     private Actor dragActor;
@@ -54,10 +74,111 @@ public class WorldRenderer
     private Point dragLocation;
     /** Image used when dragging new actors on the world. Includes the drop shadow.*/
     private BufferedImage dragImage;
+    
+    /** Rotated copies of actor images */
+    private final RotatedImageCache rotatedImages = new RotatedImageCache();
+    
+    /** The pool on which bands of the world are painted, or null to paint serially. */
+    private final ForkJoinPool bandPool;
+    private final int minParallelPixels;
+    
+    // State as of the previous damage-tracked render:
+    /** Where each actor was painted, and with what */
+    private final Map<Actor, PaintedActor> paintedActors = new IdentityHashMap<>();
+    private World lastWorld;
+    private GreenfootImage lastBackground;
+    private int lastBackgroundVersion;
+    private final List<TextLabel> lastLabels = new ArrayList<>();
+    private boolean lastDebugPainted;
+    private int renderCount;
+    
+    /**
+     * The record of where an actor was last painted.
+     */
+    @OnThread(Tag.Any)
+    private static class PaintedActor
+    {
+        GreenfootImage image;
+        int imageVersion;
+        int rotation;
+        // The bounds of the painted area, in pixels:
+        int x, y, width, height;
+        // The paint sequence number in the last render in which the actor was painted:
+        int paintIndex;
+        // The last render in which the actor was painted:
+        int renderCount;
+    }
+
+    /**
+     * An actor image to be painted in a band. Like all images in a snapshot, it has
+     * been flushed (see {@link ImageVisitor#flushGraphics(GreenfootImage)}), so it
+     * can be drawn by several bands at once.
+     */
+    private static class ActorPainting
+    {
+        final GreenfootImage image;
+        final int rotation;
+        final double xCenter, yCenter;
+        final int paintX, paintY;
+        // The rows the image may cover (top inclusive, bottom exclusive), allowing
+        // for rounding of the rotated image's position:
+        final int top, bottom;
+
+        ActorPainting(GreenfootImage image, int rotation, double xCenter, double yCenter, int paintX, int paintY)
+        {
+            this.image = image;
+            this.rotation = rotation;
+            this.xCenter = xCenter;
+            this.yCenter = yCenter;
+            this.paintX = paintX;
+            this.paintY = paintY;
+            if (rotation == 0)
+            {
+                top = paintY;
+                bottom = paintY + image.getHeight();
+            }
+            else
+            {
+                double radians = Math.toRadians(rotation);
+                double halfHeight = (image.getWidth() * Math.abs(Math.sin(radians))
+                        + image.getHeight() * Math.abs(Math.cos(radians))) / 2.;
+                top = (int) Math.floor(yCenter - halfHeight) - 2;
+                bottom = (int) Math.ceil(yCenter + halfHeight) + 2;
+            }
+        }
+    }
 
+    /**
+     * Construct a renderer which paints serially.
+     */
     @OnThread(Tag.Any)
     public WorldRenderer()
     {
+        this(null, 0);
+    }
+    
+    /**
+     * Construct a renderer.
+     * 
+     * @param parallel  Whether to paint large worlds in bands, in parallel (which
+     *                  is only done if there is more than one processor).
+     */
+    @OnThread(Tag.Any)
+    public WorldRenderer(boolean parallel)
+    {
+        this(parallel && Runtime.getRuntime().availableProcessors() > 1 ? ForkJoinPool.commonPool() : null,
+                MIN_PARALLEL_PIXELS);
+    }
+    
+    /**
+     * Construct a renderer which paints worlds of at least the given size (in pixels)
+     * in bands on the given pool (or serially if the pool is null).
+     */
+    @OnThread(Tag.Any)
+    WorldRenderer(ForkJoinPool bandPool, int minParallelPixels)
+    {
+        this.bandPool = bandPool;
+        this.minParallelPixels = minParallelPixels;
     }
     
     /**
@@ -69,111 +190,390 @@ public class WorldRenderer
      *                   of the right size for the world (or desired blank size
      *                   if drawWorld is null)
      */
+    @OnThread(Tag.Simulation)
     public void renderWorld(World drawWorld, BufferedImage worldImage)
+    {
+        renderWorld(drawWorld, worldImage, null);
+    }
+    
+    /**
+     * Render the world into the given image, and record which parts of the image
+     * have changed since the previous call to this method. See
+     * {@link #renderWorld(World, BufferedImage)}.
+     * 
+     * @param damage  The damage record to which changed areas are added (the
+     *                record is not cleared first). May be null, in which case
+     *                changes are not tracked.
+     */
+    @OnThread(Tag.Simulation)
+    public void renderWorld(World drawWorld, BufferedImage worldImage, TileDamage damage)
+    {
+        WorldSnapshot snapshot = drawWorld == null ? null : WorldSnapshot.take(drawWorld, null, false);
+        Graphics2D g2 = render(snapshot, worldImage, damage);
+        if (drawWorld != null)
+        {
+            // Debug painting goes under the world text:
+            if (snapshot.isDebugPainted())
+            {
+                WorldVisitor.paintDebug(drawWorld, g2);
+            }
+            paintWorldText(g2, snapshot);
+        }
+    }
+    
+    /**
+     * Render a snapshot of a world into the given image, and record which parts of the
+     * image have changed since the previous render. See
+     * {@link #renderWorld(World, BufferedImage, TileDamage)}. Unlike renderWorld, this
+     * may be called on any thread, if the snapshot was taken with copies of the images.
+     * 
+     * @param snapshot  The snapshot to draw (may be null, in which case a blank image is drawn)
+     */
+    public void renderSnapshot(WorldSnapshot snapshot, BufferedImage worldImage, TileDamage damage)
+    {
+        Graphics2D g2 = render(snapshot, worldImage, damage);
+        if (snapshot != null)
+        {
+            // Debug painting goes under the world text:
+            BufferedImage debugImage = snapshot.getDebugImage();
+            if (debugImage != null)
+            {
+                g2.drawImage(debugImage, 0, 0, null);
+            }
+            paintWorldText(g2, snapshot);
+        }
+    }
+    
+    /**
+     * Render everything except for the debug painting and the world text.
+     * 
+     * @return  The graphics used, for painting the rest of the world on.
+     */
+    private Graphics2D render(WorldSnapshot snapshot, BufferedImage worldImage, TileDamage damage)
     {
         Graphics2D g2 = (Graphics2D)worldImage.getGraphics();
         
-        if (drawWorld == null)
+        if (damage != null)
+        {
+            damage.setSize(worldImage.getWidth(), worldImage.getHeight());
+            checkWorldDamage(snapshot, damage);
+        }
+        
+        if (snapshot == null)
         {
             g2.setColor(BACKGROUND);
             g2.fillRect(0, 0, worldImage.getWidth(), worldImage.getHeight());
         }
         else
         {
-            paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
-            paintObjects(g2, drawWorld);
-            paintDraggedObject(g2, drawWorld);
-            WorldVisitor.paintDebug(drawWorld, g2);
-            paintWorldText(g2, drawWorld);
+            int bands = countBands(worldImage.getWidth(), worldImage.getHeight());
+            if (bands > 1)
+            {
+                GreenfootImage background = snapshot.getBackground();
+                List<ActorPainting> paintings = new ArrayList<>();
+                paintObjects(null, snapshot, damage, paintings);
+                paintBands(worldImage, background, paintings, bands);
+            }
+            else
+            {
+                paintBackground(g2, snapshot.getBackground(), worldImage.getWidth(), worldImage.getHeight());
+                paintObjects(g2, snapshot, damage, null);
+            }
+            paintDraggedObject(g2, snapshot.getWorld());
         }
+        return g2;
     }
 
     /**
-     * Paints all the objects.
-     *
-     * Must be synchronized on the World.lock.
+     * Get the number of bands in which to paint a world image of the given size.
+     * One band means that the image is painted serially.
+     */
+    private int countBands(int width, int height)
+    {
+        if (bandPool == null || (long) width * height < minParallelPixels)
+        {
+            return 1;
+        }
+        return Math.max(1, Math.min(bandPool.getParallelism() + 1, height / MIN_BAND_HEIGHT));
+    }
+
+    /**
+     * Paint the background and actors in horizontal bands, in parallel. This thread
+     * paints the first band while the pool paints the others.
      */
-    private void paintObjects(Graphics2D g, World drawWorld)
+    private void paintBands(BufferedImage worldImage, GreenfootImage background,
+            List<ActorPainting> paintings, int bands)
     {
-        // This can happen if we try to grab a screenshot while the world is being replaced:
+        int height = worldImage.getHeight();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands - 1);
+        try
+        {
+            for (int i = 1; i < bands; i++)
+            {
+                int top = height * i / bands;
+                int bottom = height * (i + 1) / bands;
+                tasks.add(bandPool.submit(() -> paintBand(worldImage, background, paintings, top, bottom)));
+            }
+            paintBand(worldImage, background, paintings, 0, height / bands);
+        }
+        finally
+        {
+            // The image must not be used until all bands are done:
+            for (ForkJoinTask<?> task : tasks)
+            {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * Paint the background and actors within the given rows of the world image.
+     */
+    private void paintBand(BufferedImage worldImage, GreenfootImage background,
+            List<ActorPainting> paintings, int top, int bottom)
+    {
+        Graphics2D g = worldImage.createGraphics();
+        g.clipRect(0, top, worldImage.getWidth(), bottom - top);
+        paintBackground(g, background, worldImage.getWidth(), worldImage.getHeight());
+        for (ActorPainting painting : paintings)
+        {
+            if (painting.bottom > top && painting.top < bottom)
+            {
+                paintActor(g, painting.image, painting.rotation, painting.xCenter, painting.yCenter,
+                        painting.paintX, painting.paintY);
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Check for changes to the world as a whole (as opposed to changes to its
+     * actors) since the last damage-tracked render. Any such change damages
+     * the whole image.
+     */
+    private void checkWorldDamage(WorldSnapshot snapshot, TileDamage damage)
+    {
+        World drawWorld = snapshot == null ? null : snapshot.getWorld();
+        if (drawWorld != lastWorld)
+        {
+            damage.damageAll();
+            lastWorld = drawWorld;
+            paintedActors.clear();
+        }
         if (drawWorld == null)
+        {
+            lastBackground = null;
+            lastLabels.clear();
             return;
+        }
+        
+        GreenfootImage background = snapshot.getBackground();
+        int backgroundVersion = background == null ? 0 : ImageVisitor.getVersion(background);
+        if (background != lastBackground || backgroundVersion != lastBackgroundVersion)
+        {
+            damage.damageAll();
+            lastBackground = background;
+            lastBackgroundVersion = backgroundVersion;
+        }
+        
+        // Text labels are immutable, so we need only check for the same labels:
+        List<TextLabel> labels = snapshot.getTextLabels();
+        boolean labelsChanged = labels.size() != lastLabels.size();
+        for (int i = 0; i < labels.size() && ! labelsChanged; i++)
+        {
+            labelsChanged = labels.get(i) != lastLabels.get(i);
+        }
+        if (labelsChanged)
+        {
+            damage.damageAll();
+            lastLabels.clear();
+            lastLabels.addAll(labels);
+        }
+        
+        // We don't know what has changed in the debug painting:
+        boolean debugPainted = snapshot.isDebugPainted();
+        if (debugPainted || lastDebugPainted)
+        {
+            damage.damageAll();
+            lastDebugPainted = debugPainted;
+        }
+        
+        if (dragImage != null)
+        {
+            damage.damageAll();
+        }
+    }
 
-        Set<Actor> objects = WorldVisitor.getObjectsListInPaintOrder(drawWorld);
-        int paintSeq = 0;
-        for (Iterator<Actor> iter = objects.iterator(); iter.hasNext();) {
-            Actor thing = iter.next();
-            int cellSize = WorldVisitor.getCellSize(drawWorld);
+    /**
+     * Record that an actor has been painted, and add any change since it was
+     * last painted to the damage record.
+     * 
+     * @return  The actor's paint sequence number from the previous render, or -1 if
+     *          it was not painted in the previous render.
+     */
+    private int recordPaintedActor(Actor actor, GreenfootImage image, int rotation, int paintIndex,
+            double xCenter, double yCenter, TileDamage damage)
+    {
+        // Find the painted bounds, allowing a pixel either side for anti-aliasing when rotated:
+        int x, y, width, height;
+        if (rotation == 0)
+        {
+            x = (int) Math.floor(xCenter - image.getWidth() / 2.);
+            y = (int) Math.floor(yCenter - image.getHeight() / 2.);
+            width = image.getWidth();
+            height = image.getHeight();
+        }
+        else
+        {
+            double radians = Math.toRadians(rotation);
+            double cos = Math.abs(Math.cos(radians));
+            double sin = Math.abs(Math.sin(radians));
+            double halfWidth = (image.getWidth() * cos + image.getHeight() * sin) / 2.;
+            double halfHeight = (image.getWidth() * sin + image.getHeight() * cos) / 2.;
+            x = (int) Math.floor(xCenter - halfWidth) - 1;
+            y = (int) Math.floor(yCenter - halfHeight) - 1;
+            width = (int) Math.ceil(xCenter + halfWidth) + 1 - x;
+            height = (int) Math.ceil(yCenter + halfHeight) + 1 - y;
+        }
+        int imageVersion = ImageVisitor.getVersion(image);
+        
+        PaintedActor painted = paintedActors.get(actor);
+        int previousIndex = -1;
+        if (painted == null)
+        {
+            painted = new PaintedActor();
+            paintedActors.put(actor, painted);
+            damage.damage(x, y, width, height);
+        }
+        else
+        {
+            if (painted.renderCount == renderCount - 1)
+            {
+                previousIndex = painted.paintIndex;
+            }
+            if (painted.image != image || painted.imageVersion != imageVersion
+                    || painted.rotation != rotation || painted.x != x || painted.y != y
+                    || painted.width != width || painted.height != height)
+            {
+                damage.damage(painted.x, painted.y, painted.width, painted.height);
+                damage.damage(x, y, width, height);
+            }
+        }
+        
+        painted.image = image;
+        painted.imageVersion = imageVersion;
+        painted.rotation = rotation;
+        painted.x = x;
+        painted.y = y;
+        painted.width = width;
+        painted.height = height;
+        painted.paintIndex = paintIndex;
+        painted.renderCount = renderCount;
+        return previousIndex;
+    }
 
-            GreenfootImage image = ActorVisitor.getDisplayImage(thing);
-            if (image != null) {
-                ActorVisitor.setLastPaintSeqNum(thing, paintSeq++);
-
-                double halfWidth = image.getWidth() / 2.;
-                double halfHeight = image.getHeight() / 2.;
-
-                AffineTransform oldTx = null;
-                try {
-                    int ax = ActorVisitor.getX(thing);
-                    int ay = ActorVisitor.getY(thing);
-                    double xCenter = ax * cellSize + cellSize / 2.;
-                    int paintX = (int) Math.floor(xCenter - halfWidth);
-                    double yCenter = ay * cellSize + cellSize / 2.;
-                    int paintY = (int) Math.floor(yCenter - halfHeight);
-
-                    int rotation = ActorVisitor.getRotation(thing);
-                    if (rotation != 0) {
-                        // don't bother transforming if it is not rotated at
-                        // all.
-                        oldTx = g.getTransform();
-                        g.rotate(Math.toRadians(rotation), xCenter, yCenter);
-                    }
-
-                    ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
-                }
-                catch (IllegalStateException e) {
-                    // We get this if the object has been removed from the
-                    // world. That can happen when interactively invoking a
-                    // method that removes an object from the world, while the
-                    // scenario is executing.
-                }
+    /**
+     * Paints all the objects.
+     * 
+     * @param g       The graphics to paint on, if paintings is null.
+     * @param damage  The damage record to update, or null if not tracking damage.
+     * @param paintings  If not null, the objects are not painted but added to this list
+     *                   to be painted in bands.
+     */
+    private void paintObjects(Graphics2D g, WorldSnapshot snapshot, TileDamage damage,
+            List<ActorPainting> paintings)
+    {
+        if (damage != null) {
+            renderCount++;
+        }
+        // The highest previous paint sequence number seen so far, used to spot re-ordering:
+        int lastPreviousIndex = -1;
+        boolean orderChanged = false;
+        
+        int cellSize = snapshot.getCellSize();
+        for (int paintIndex = 0; paintIndex < snapshot.getActorCount(); paintIndex++) {
+            GreenfootImage image = snapshot.getImage(paintIndex);
+            double xCenter = snapshot.getX(paintIndex) * cellSize + cellSize / 2.;
+            int paintX = (int) Math.floor(xCenter - image.getWidth() / 2.);
+            double yCenter = snapshot.getY(paintIndex) * cellSize + cellSize / 2.;
+            int paintY = (int) Math.floor(yCenter - image.getHeight() / 2.);
 
-                // Restore the old state of the graphics
-                if (oldTx != null) {
-                    g.setTransform(oldTx);
+            int rotation = snapshot.getRotation(paintIndex);
+            if (damage != null) {
+                int previousIndex = recordPaintedActor(snapshot.getActor(paintIndex), image, rotation,
+                        paintIndex, xCenter, yCenter, damage);
+                if (previousIndex != -1) {
+                    // Unmoved actors which have swapped places in the paint order
+                    // may still need repainting where they overlap:
+                    orderChanged |= previousIndex < lastPreviousIndex;
+                    lastPreviousIndex = previousIndex;
+                }
+            }
+            if (paintings != null) {
+                paintings.add(new ActorPainting(image, rotation, xCenter, yCenter, paintX, paintY));
+            }
+            else {
+                paintActor(g, image, rotation, xCenter, yCenter, paintX, paintY);
+            }
+        }
+        
+        if (damage != null) {
+            if (orderChanged) {
+                damage.damageAll();
+            }
+            
+            // Actors which weren't painted this time have been removed (or lost their image):
+            for (Iterator<PaintedActor> i = paintedActors.values().iterator(); i.hasNext(); ) {
+                PaintedActor painted = i.next();
+                if (painted.renderCount != renderCount) {
+                    damage.damage(painted.x, painted.y, painted.width, painted.height);
+                    i.remove();
                 }
             }
         }
     }
 
+    /**
+     * Paint an actor's image, rotated about its centre.
+     */
+    private void paintActor(Graphics2D g, GreenfootImage image, int rotation, double xCenter, double yCenter,
+            int paintX, int paintY)
+    {
+        if (rotation != 0) {
+            rotatedImages.drawRotated(g, image, rotation, xCenter, yCenter);
+        }
+        else {
+            ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
+        }
+    }
+
     /**
      * Paint the world background. This takes tiling into account: the
      * world image is painted either once or tiled onto this component.
+     * 
+     * @param backgroundImage  The world's background image, or null for a plain background.
      */
-    private void paintBackground(Graphics2D g, World drawWorld, int width, int height)
+    private static void paintBackground(Graphics2D g, GreenfootImage backgroundImage, int width, int height)
     {
-        if (drawWorld != null) {
-            GreenfootImage backgroundImage = WorldVisitor.getBackgroundImage(drawWorld);
-            if (backgroundImage != null) {
-                ImageVisitor.drawImage(backgroundImage, g, 0, 0, null, true);
-            }
-            else {
-                Color oldColor = g.getColor();
-                g.setColor(BACKGROUND);
-                g.fillRect(0, 0, width, height);
-                g.setColor(oldColor);
-            }
+        if (backgroundImage != null) {
+            ImageVisitor.drawImage(backgroundImage, g, 0, 0, null, true);
+        }
+        else {
+            Color oldColor = g.getColor();
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, width, height);
+            g.setColor(oldColor);
         }
     }
 
     /**
      * Paint text labels that have been placed on the world using World.showText(...).
      * @param g   The graphics context to draw on
-     * @param drawWorld   The world
+     * @param snapshot   The snapshot of the world
      */
-    private void paintWorldText(Graphics2D g, World drawWorld)
+    private void paintWorldText(Graphics2D g, WorldSnapshot snapshot)
     {
-        List<TextLabel> labels = WorldVisitor.getTextLabels(drawWorld);
+        List<TextLabel> labels = snapshot.getTextLabels();
 
         if (labels.isEmpty()) {
             return;
@@ -184,7 +584,7 @@ public class WorldRenderer
         Color orig = g.getColor();
         Object origAntiAliasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
 
-        int cellsize = WorldVisitor.getCellSize(drawWorld);
+        int cellsize = snapshot.getCellSize();
         for (TextLabel label : labels) {
             label.draw(g, cellsize);
         }
@@ -0,0 +1,321 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.World;
+import greenfoot.WorldVisitor;
+import greenfoot.core.TextLabel;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a world which is needed to render it: its size, background and text
+ * labels, and the image, location and rotation of each actor, in paint order.
+ *
+ * <p>A snapshot may be taken with copies of the images, so that it can be rendered on
+ * another thread while the simulation carries on. The copies share their data with
+ * the original images (which become copy-on-write), so they are cheap to take unless
+ * the images are changed afterwards. The copy of an image which has not changed since
+ * the previous snapshot is carried over from it, so that the renderer can tell that
+ * the image is unchanged.
+ *
+ * <p>Copying an image is cheap, but the original is then copy-on-write, so the next
+ * drawing on it copies all its pixels (on the simulation thread). Only images which
+ * have changed since the previous snapshot are copied, but an image which is drawn on
+ * every frame costs one copy of its pixels per snapshot.
+ *
+ * <p>The world's debug painting can only be done on the simulation thread, so a
+ * snapshot taken with copies of the images records it in an image of its own.
+ */
+@OnThread(Tag.Any)
+public final class WorldSnapshot
+{
+    private final World world;
+    private final int cellSize;
+    private final int widthInPixels;
+    private final int heightInPixels;
+    private final GreenfootImage background;
+    private final List<TextLabel> labels;
+    private final Actor[] actors;
+    private final GreenfootImage[] images;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] rotations;
+    /** The copy made of each image, keyed by the original; null if images are not copied. */
+    private final Map<GreenfootImage, ImageCopy> copies;
+    /** Whether the world has debug painting (see WorldVisitor.isDebugPainted). */
+    private final boolean debugPainted;
+    /** The debug painting, or null if there is none (or it was not recorded). */
+    private final BufferedImage debugImage;
+
+    /**
+     * A copy of an image, and the version of the original that it is a copy of.
+     */
+    @OnThread(Tag.Any)
+    private static class ImageCopy
+    {
+        private final int version;
+        private final GreenfootImage copy;
+
+        private ImageCopy(int version, GreenfootImage copy)
+        {
+            this.version = version;
+            this.copy = copy;
+        }
+    }
+
+    @OnThread(Tag.Simulation)
+    private WorldSnapshot(World world, GreenfootImage background, List<TextLabel> labels, List<Actor> actors,
+            List<GreenfootImage> images, int[] xs, int[] ys, int[] rotations, Map<GreenfootImage, ImageCopy> copies,
+            boolean debugPainted, BufferedImage debugImage)
+    {
+        this.world = world;
+        this.cellSize = WorldVisitor.getCellSize(world);
+        this.widthInPixels = WorldVisitor.getWidthInPixels(world);
+        this.heightInPixels = WorldVisitor.getHeightInPixels(world);
+        this.background = background;
+        this.labels = labels;
+        this.actors = actors.toArray(new Actor[0]);
+        this.images = images.toArray(new GreenfootImage[0]);
+        this.xs = xs;
+        this.ys = ys;
+        this.rotations = rotations;
+        this.copies = copies;
+        this.debugPainted = debugPainted;
+        this.debugImage = debugImage;
+    }
+
+    /**
+     * Take a snapshot of a world. This also sets the paint sequence number of each
+     * actor which has an image.
+     *
+     * Must be synchronized on the World.lock.
+     *
+     * @param world  The world
+     * @param previous  The previous snapshot taken with copied images, whose copies
+     *                  of unchanged images are reused. May be null.
+     * @param copyImages  Whether to copy the images (and record the debug painting), so
+     *                    that the snapshot can be used on another thread. If false, the
+     *                    snapshot refers to the images themselves (with any drawing on
+     *                    them completed), and must be used before the simulation continues.
+     */
+    @OnThread(Tag.Simulation)
+    public static WorldSnapshot take(World world, WorldSnapshot previous, boolean copyImages)
+    {
+        Map<GreenfootImage, ImageCopy> copies = copyImages ? new IdentityHashMap<>() : null;
+        Map<GreenfootImage, ImageCopy> previousCopies = previous == null ? null : previous.copies;
+
+        List<Actor> actors = new ArrayList<>();
+        List<GreenfootImage> images = new ArrayList<>();
+        int[] xs = new int[16];
+        int[] ys = new int[16];
+        int[] rotations = new int[16];
+        for (Actor actor : WorldVisitor.getObjectsListInPaintOrder(world)) {
+            GreenfootImage image = ActorVisitor.getDisplayImage(actor);
+            if (image == null) {
+                continue;
+            }
+            int index = actors.size();
+            if (index == xs.length) {
+                xs = Arrays.copyOf(xs, index * 2);
+                ys = Arrays.copyOf(ys, index * 2);
+                rotations = Arrays.copyOf(rotations, index * 2);
+            }
+            try {
+                xs[index] = ActorVisitor.getX(actor);
+                ys[index] = ActorVisitor.getY(actor);
+            }
+            catch (IllegalStateException e) {
+                // We get this if the object has been removed from the
+                // world. That can happen when interactively invoking a
+                // method that removes an object from the world, while the
+                // scenario is executing.
+                continue;
+            }
+            rotations[index] = ActorVisitor.getRotation(actor);
+            ActorVisitor.setLastPaintSeqNum(actor, index);
+            actors.add(actor);
+            images.add(copyImages ? copyImage(image, copies, previousCopies) : flushImage(image));
+        }
+
+        GreenfootImage background = WorldVisitor.getBackgroundImage(world);
+        if (background != null) {
+            background = copyImages ? copyImage(background, copies, previousCopies) : flushImage(background);
+        }
+        // Text labels are immutable, but the list of them is not:
+        List<TextLabel> labels = new ArrayList<>(WorldVisitor.getTextLabels(world));
+
+        // Debug painting is normally disabled, in which case there is nothing to record:
+        boolean debugPainted = WorldVisitor.isDebugPainted(world);
+        BufferedImage debugImage = null;
+        if (copyImages && debugPainted) {
+            debugImage = new BufferedImage(WorldVisitor.getWidthInPixels(world),
+                    WorldVisitor.getHeightInPixels(world), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = debugImage.createGraphics();
+            WorldVisitor.paintDebug(world, g);
+            g.dispose();
+        }
+        return new WorldSnapshot(world, background, labels, actors, images, xs, ys, rotations, copies,
+                debugPainted, debugImage);
+    }
+
+    /**
+     * Complete any drawing on an image, so that the renderer can draw it (possibly on
+     * several threads at once) without changing it.
+     */
+    @OnThread(Tag.Simulation)
+    private static GreenfootImage flushImage(GreenfootImage image)
+    {
+        ImageVisitor.flushGraphics(image);
+        return image;
+    }
+
+    /**
+     * Get an unchanging copy of an image, reusing the copy made for this snapshot or
+     * for the previous snapshot if the image has not changed since.
+     */
+    @OnThread(Tag.Simulation)
+    private static GreenfootImage copyImage(GreenfootImage image, Map<GreenfootImage, ImageCopy> copies,
+            Map<GreenfootImage, ImageCopy> previousCopies)
+    {
+        ImageCopy copy = copies.get(image);
+        if (copy == null) {
+            int version = ImageVisitor.getVersion(image);
+            copy = previousCopies == null ? null : previousCopies.get(image);
+            if (copy == null || copy.version != version) {
+                copy = new ImageCopy(version, ImageVisitor.getSnapshot(image));
+            }
+            copies.put(image, copy);
+        }
+        return copy.copy;
+    }
+
+    /**
+     * Get the world of which this is a snapshot. This is for identifying the world; its
+     * state may have changed since the snapshot was taken.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int getWidthInPixels()
+    {
+        return widthInPixels;
+    }
+
+    public int getHeightInPixels()
+    {
+        return heightInPixels;
+    }
+
+    /**
+     * Get the background image, or null if the world has none.
+     */
+    public GreenfootImage getBackground()
+    {
+        return background;
+    }
+
+    /**
+     * Check whether the world had debug painting when the snapshot was taken.
+     */
+    public boolean isDebugPainted()
+    {
+        return debugPainted;
+    }
+
+    /**
+     * Get the world's debug painting, to be drawn over the actors (and under the text
+     * labels). Null if there is none, or if the snapshot was taken without copying the
+     * images (in which case the debug painting must be done from the world itself).
+     */
+    public BufferedImage getDebugImage()
+    {
+        return debugImage;
+    }
+
+    public List<TextLabel> getTextLabels()
+    {
+        return labels;
+    }
+
+    /**
+     * Get the number of actors in the snapshot (which excludes actors without an image).
+     */
+    public int getActorCount()
+    {
+        return actors.length;
+    }
+
+    /**
+     * Get an actor, by paint order. This is for identifying the actor; its state may
+     * have changed since the snapshot was taken.
+     */
+    public Actor getActor(int index)
+    {
+        return actors[index];
+    }
+
+    public GreenfootImage getImage(int index)
+    {
+        return images[index];
+    }
+
+    /**
+     * Get the x location of an actor, in cells.
+     */
+    public int getX(int index)
+    {
+        return xs[index];
+    }
+
+    /**
+     * Get the y location of an actor, in cells.
+     */
+    public int getY(int index)
+    {
+        return ys[index];
+    }
+
+    public int getRotation(int index)
+    {
+        return rotations[index];
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2017,2018,2019,2019,2020,2021,2022,2023,2024  Poul Henriksen and Michael Kolling
+ Copyright (C) 2017,2018,2019,2019,2020,2021,2022,2023,2024,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -117,6 +117,7 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
@@ -251,6 +252,12 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
     // World image
     private final WritableImage[] worldImg = new WritableImage[2];
     private int nextWorldImgToWrite = 0;
+    // Each world image is two received frames out of date by the time we write to it again,
+    // so we write both the previous and the current frame's damaged rectangles to it.
+    // The previous frame's damaged rectangles (null if the whole image changed):
+    private int[] prevWorldDamage = null;
+    // The number of upcoming frames which must be written in full to bring all the images up to date:
+    private int fullWorldImgWritesNeeded = worldImg.length;
 
     // The scenario information that usually shipped with it when uploading
     // to the gallery. We should maintain a reference to it and make sure
@@ -1675,19 +1682,30 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
      * 
      * @param width   The image width
      * @param height  The image height
-     * @param buffer  The buffer containing the pixel data
+     * @param buffer  The buffer containing the pixel data; pixels not within the
+     *                damaged rectangles are unchanged since the previous image.
+     * @param damagedRects  The areas which have changed since the previous image, as
+     *                      four ints (x, y, width, height) per rectangle, or null if
+     *                      the whole image may have changed.
      */
-    public void receivedWorldImage(int width, int height, IntBuffer buffer)
+    public void receivedWorldImage(int width, int height, IntBuffer buffer, int[] damagedRects)
     {
         // If we are closing a project but receive an image late on, ignore it:
         if (project == null)
         {
+            fullWorldImgWritesNeeded = worldImg.length;
             return;
         }
         
+        if (damagedRects == null)
+        {
+            fullWorldImgWritesNeeded = worldImg.length;
+        }
+        
         if (worldImg[nextWorldImgToWrite] == null || worldImg[nextWorldImgToWrite].getWidth() != width || worldImg[nextWorldImgToWrite].getHeight() != height)
         {
             worldImg[nextWorldImgToWrite] = new WritableImage(width == 0 ? 1 : width, height == 0 ? 1 : height);
+            fullWorldImgWritesNeeded = worldImg.length;
 
             if (worldViewScroll.getWidth() < worldImg[nextWorldImgToWrite].getWidth() ||
                     worldViewScroll.getHeight() < worldImg[nextWorldImgToWrite].getHeight())
@@ -1700,8 +1718,19 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
         try
         {
-            worldImg[nextWorldImgToWrite].getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
-                    buffer, width);
+            PixelWriter pixelWriter = worldImg[nextWorldImgToWrite].getPixelWriter();
+            if (fullWorldImgWritesNeeded > 0)
+            {
+                pixelWriter.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                        buffer, width);
+                fullWorldImgWritesNeeded -= 1;
+            }
+            else
+            {
+                writeWorldDamage(pixelWriter, width, buffer, prevWorldDamage);
+                writeWorldDamage(pixelWriter, width, buffer, damagedRects);
+            }
+            prevWorldDamage = damagedRects;
             worldDisplay.setImage(worldImg[nextWorldImgToWrite]);
             nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
             worldInstantiationError = false;
@@ -1709,6 +1738,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
         catch (IndexOutOfBoundsException ex)
         {
+            fullWorldImgWritesNeeded = worldImg.length;
             Debug.reportError("Error receiving world (world image probably too large)");
             worldInstantiationError = true;
             worldVisible.set(false);
@@ -1720,6 +1750,28 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
     
+    /**
+     * Write the pixels within the given damaged rectangles to a world image.
+     * 
+     * @param width  The width of the whole image
+     * @param buffer  The buffer containing the image pixel data, positioned at the first
+     *                pixel.  The position will be unchanged on return.
+     * @param damagedRects  The damaged rectangles, as four ints each (x, y, width, height)
+     */
+    private static void writeWorldDamage(PixelWriter pixelWriter, int width, IntBuffer buffer, int[] damagedRects)
+    {
+        int pixelStart = buffer.position();
+        for (int i = 0; i < damagedRects.length; i += 4)
+        {
+            int x = damagedRects[i];
+            int y = damagedRects[i + 1];
+            buffer.position(pixelStart + y * width + x);
+            pixelWriter.setPixels(x, y, damagedRects[i + 2], damagedRects[i + 3],
+                    PixelFormat.getIntArgbInstance(), buffer, width);
+        }
+        buffer.position(pixelStart);
+    }
+
     /**
      * When processing messages from the remote VM, we discovered the world has changed.
      * 
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -38,4 +38,10 @@ public interface ActorDelegate
      */
     @OnThread(Tag.Simulation)
     public GreenfootImage getImage(String name);
+
+    /**
+     * Get a project property, or the given default value if the property is not set.
+     */
+    @OnThread(Tag.Simulation)
+    public String getProjectProperty(String key, String defaultValue);
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -57,4 +57,9 @@ public class ActorDelegateStandAlone
     {
         return properties.getImage(name);
     }
+    
+    public String getProjectProperty(String key, String defaultValue)
+    {
+        return properties.getString(key, defaultValue);
+    }
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2014,2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2011,2012,2014,2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -49,7 +49,7 @@ public class WorldHandlerDelegateStandAlone implements WorldHandlerDelegate
     @OnThread(Tag.Any)
     private final GreenfootScenarioViewer viewer;
     private boolean lockScenario;
-    private final WorldRenderer worldRenderer = new WorldRenderer();
+    private final WorldRenderer worldRenderer = new WorldRenderer(true);
     // Time last frame was painted, from System.nanoTime
     private long lastFramePaint;
     
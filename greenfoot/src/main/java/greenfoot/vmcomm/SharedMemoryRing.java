@@ -0,0 +1,224 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A single-producer, single-consumer ring buffer of ints held in a (shared memory) byte buffer.
+ * The producer and consumer may be in different processes; no locks are used. Instead, the
+ * producer publishes the ring's tail index with release semantics after writing the data, and
+ * the consumer publishes the head index the same way once it has read the data. Each index is
+ * only ever written by one side.
+ *
+ * <p>The indexes count ints written (read) since the ring was created, and wrap around at
+ * the int range; the capacity must be a power of two so that this works.
+ *
+ * <p>The static {@link #getAcquire} and {@link #setRelease} methods are also used for the other
+ * control words in the shared memory (see {@link VMCommsMain}).
+ */
+@OnThread(Tag.Any)
+public class SharedMemoryRing
+{
+    // Big-endian, to match the IntBuffer views of the (by default big-endian) mapped buffer:
+    private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    // Limits on the back-off when waiting (see backOff):
+    // Spinning is pointless with only one processor, as the other side can't make progress:
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+    private static final int YIELD_LIMIT = 2000;
+    private static final long MIN_PARK_NANOS = 20_000L;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    /**
+     * The number of attempts after which {@link #backOff} has parked for some time at its longest
+     * period (about 25ms in all, which is longer than a frame). A caller which may wait
+     * indefinitely should then stop backing off and block until the other side signals it,
+     * rather than waking every millisecond.
+     */
+    public static final int BACK_OFF_LIMIT = YIELD_LIMIT + 64;
+
+    private final ByteBuffer buffer;
+    private final int headPos;
+    private final int tailPos;
+    private final int dataPos;
+    private final int mask;
+
+    // The producer's tail, or the consumer's head. Only one of these is used, depending
+    // on which side of the ring we are:
+    private int localTail;
+    private int localHead;
+
+    /**
+     * Create a view of a ring buffer in the given buffer. All positions are int positions
+     * (i.e. byte positions divided by four). The head and tail words should be on separate
+     * cache lines.
+     *
+     * @param buffer   The buffer holding the ring
+     * @param headPos  The position of the head (consumer) index
+     * @param tailPos  The position of the tail (producer) index
+     * @param dataPos  The position of the ring data
+     * @param capacity The capacity of the ring in ints; must be a power of two
+     */
+    public SharedMemoryRing(ByteBuffer buffer, int headPos, int tailPos, int dataPos, int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Ring capacity must be a power of two");
+        }
+        this.buffer = buffer;
+        this.headPos = headPos;
+        this.tailPos = tailPos;
+        this.dataPos = dataPos;
+        this.mask = capacity - 1;
+        reset();
+    }
+
+    /**
+     * Re-read the head and tail from the buffer, for example after it has been zeroed.
+     */
+    public void reset()
+    {
+        localHead = getAcquire(buffer, headPos);
+        localTail = getAcquire(buffer, tailPos);
+    }
+
+    /**
+     * Get the capacity of the ring in ints.
+     */
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    // ------------------------------- Producer -------------------------------
+
+    /**
+     * Check whether the producer can write the given number of ints without overwriting
+     * data which the consumer has not yet read.
+     */
+    public boolean hasSpace(int count)
+    {
+        return getCapacity() - (localTail - getAcquire(buffer, headPos)) >= count;
+    }
+
+    /**
+     * Write an int. The int is not visible to the consumer until {@link #publish()} is called.
+     * The caller must first check that there is space, via {@link #hasSpace(int)}.
+     */
+    public void put(int value)
+    {
+        buffer.putInt((dataPos + (localTail & mask)) * 4, value);
+        localTail++;
+    }
+
+    /**
+     * Make all ints written so far visible to the consumer.
+     */
+    public void publish()
+    {
+        setRelease(buffer, tailPos, localTail);
+    }
+
+    // ------------------------------- Consumer -------------------------------
+
+    /**
+     * Get the number of ints which are available to read.
+     */
+    public int available()
+    {
+        return getAcquire(buffer, tailPos) - localHead;
+    }
+
+    /**
+     * Read the next int. The caller must first check that it is available, via {@link #available()}.
+     */
+    public int get()
+    {
+        int value = buffer.getInt((dataPos + (localHead & mask)) * 4);
+        localHead++;
+        return value;
+    }
+
+    /**
+     * Tell the producer that all ints read so far have been consumed, so that their space can
+     * be re-used.
+     */
+    public void release()
+    {
+        setRelease(buffer, headPos, localHead);
+    }
+
+    // ---------------------------- Control words ----------------------------
+
+    /**
+     * Read an int from the given int position, with acquire semantics: reads following this one
+     * will see all writes made by the other side before its corresponding release write.
+     */
+    public static int getAcquire(ByteBuffer buffer, int intPos)
+    {
+        return (int) INT_HANDLE.getAcquire(buffer, intPos * 4);
+    }
+
+    /**
+     * Write an int to the given int position, with release semantics: all writes preceding
+     * this one will be seen by the other side once it has read the value with acquire semantics.
+     */
+    public static void setRelease(ByteBuffer buffer, int intPos, int value)
+    {
+        INT_HANDLE.setRelease(buffer, intPos * 4, value);
+    }
+
+    /**
+     * Pause while waiting for the other side, backing off progressively: first spinning, then
+     * yielding, then parking for increasing periods (up to a millisecond, which is short compared
+     * to the interval between frames).
+     *
+     * @param attempt  The number of times the caller has already waited for the same condition
+     * @see #BACK_OFF_LIMIT
+     */
+    @OnThread(Tag.Worker)
+    public static void backOff(int attempt)
+    {
+        if (attempt < SPIN_LIMIT)
+        {
+            Thread.onSpinWait();
+        }
+        else if (attempt < YIELD_LIMIT)
+        {
+            Thread.yield();
+        }
+        else
+        {
+            // Double the park time every eight attempts:
+            int shift = Math.min((attempt - YIELD_LIMIT) / 8, 10);
+            LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << shift, MAX_PARK_NANOS));
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2018,2021,2024 Poul Henriksen and Michael Kolling
+ Copyright (C) 2018,2021,2024,2026 Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -25,11 +25,12 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -52,55 +53,70 @@ import static greenfoot.vmcomm.Command.*;
  */
 public class VMCommsMain implements Closeable
 {
-    // The server-debug VM protocol relies on locking three distinct areas of the file:
-    //  A - the server VM "put" area
-    //  B - the debug VM "put" area
-    //  C - a small region not used for data but to ensure synchronisation
+    // The server-debug VM protocol does not use locks. Instead, each control word in the shared
+    // memory is written by only one side, with release semantics, and read by the other side
+    // with acquire semantics (see SharedMemoryRing):
+    //
+    //  - Commands go from the server to the debug VM via a single-producer, single-consumer
+    //    ring buffer in the server area. The server publishes the ring tail, and the debug VM
+    //    publishes the ring head once it has read the commands.
+    //  - Frames go from the debug VM to the server in the debug VM area. The debug VM writes
+    //    the frame, then publishes its sequence number (the first int of the area). The server
+    //    reads the frame, then acknowledges it by publishing the same sequence number as the
+    //    frame acknowledgement. The debug VM does not write another frame until then.
+    //  - The image pixels are not rewritten by the debug VM until the server has published that
+    //    it has consumed the image (the "last consumed image" word).
+    //
+    // A side waiting for the other polls, backing off. The debug VM may wait for a long time
+    // (while this VM is idle), so once it has backed off for a while, it blocks instead, on a
+    // file lock which this VM holds except when it has something for the debug VM. This VM
+    // never waits long for the debug VM:
     //
-    //    Server                          Debug
-    //   (holds A, C)                     (holds B)
-    // [command issued/want update]
-    //                                       [updates data while B is held]
-    //     -> release A
-    //                                    -> acquire A   (commands are available...)
-    //                                    -> release B   (ensures server can get data)
-    //     -> acquire B
-    //        (read image)
-    //                                       (read commands)
-    //     -> release C
-    //                                    -> acquire C   (Server has acquired B)
-    //                                    -> release A
-    //     -> acquire A
-    //     -> release B
-    //                                    -> acquire B (Server has A and C)
-    //                                    -> release C
-    //     -> acquire C
+    //  - The debug VM sets the "waiting" word, checks once more for a frame acknowledgement or
+    //    commands, and if there are none, blocks acquiring the signal lock. Once it has the
+    //    lock, it releases it and clears the waiting word.
+    //  - Having acknowledged a frame or written commands, this VM checks the waiting word, and
+    //    if it is set, releases the signal lock. It takes the lock again once the waiting word
+    //    has been cleared (it must not do so before, or it might take the lock back before the
+    //    debug VM has been given it).
     //
-    // The acquisition order is B-->A, A-->C, and C-->B. This ensures that there can never
-    // be deadlock. No process holds all three locks at once and each process always holds at
-    // least one lock.
+    // Each side makes its write visible (with a full fence) before reading the other's word,
+    // so either the debug VM sees what this VM wrote, or this VM sees that it is waiting.
 
     public static final int DEFAULT_MAPPED_SIZE = 20_000_000;
     public static final int USER_AREA_OFFSET = 0x1000; // offset in 4-byte chunks; 16KB worth.
     public static final int USER_AREA_OFFSET_BYTES = USER_AREA_OFFSET * 4;
 
-    public static final int SERVER_AREA_OFFSET_BYTES = 4;
-    public static final int SERVER_AREA_SIZE_BYTES = USER_AREA_OFFSET_BYTES - SERVER_AREA_OFFSET_BYTES;
-    
-    public static final int SYNC_AREA_OFFSET_BYTES = 0;
-    public static final int SYNC_AREA_SIZE_BYTES = 4;
+
+    // Positions of the control words in the server area (in 4-byte chunks). The ring head
+    // and tail are kept on separate cache lines, as they are written by different VMs:
+    public static final int FRAME_ACK_POS = 1;
+    public static final int CONSUMED_IMG_POS = 2;
+    public static final int COMMAND_TAIL_POS = 16;
+    public static final int COMMAND_HEAD_POS = 32;
+    // Set (by the debug VM) while the debug VM is blocked acquiring the signal lock:
+    public static final int SIM_WAITING_POS = 48;
+    // The signal lock is a lock on the (otherwise unused) first word of the server area:
+    public static final int SIGNAL_LOCK_POS_BYTES = 0;
+    public static final int SIGNAL_LOCK_SIZE_BYTES = 4;
+    // The command ring occupies the second half of the server area:
+    public static final int COMMAND_RING_POS = USER_AREA_OFFSET / 2;
+    public static final int COMMAND_RING_CAPACITY = USER_AREA_OFFSET / 2;
     
     private final int fileSize;
     private File shmFile;
     private FileChannel fc;
     private MappedByteBuffer sharedMemoryByte;
     private IntBuffer sharedMemory;
-    private FileLock putLock;
-    private FileLock syncLock;
+    private SharedMemoryRing commandRing;
 
     // Needs to be AtomicInteger because it's modified from multiple threads:
     private final AtomicInteger lastSeq = new AtomicInteger(0);
     private final List<Command> pendingCommands = new ArrayList<>();
+    // The sequence ID of the last command written to the command ring:
+    private int lastWrittenCommand = -1;
+    // The last frame sequence acknowledged to the debug VM:
+    private int lastAckedFrame = 0;
     private int setSpeedCommandCount = 0;
     private int lastPaintSeq = -1;
     private int lastConsumedImg = -1;
@@ -136,6 +152,9 @@ public class VMCommsMain implements Closeable
     private boolean vmReadyForInvocations = false;
     private int askId = -1;
     private boolean workerWaiting = false;
+    // The signal lock (see above), or null while it is released for the debug VM. Only used
+    // by the IO thread:
+    private FileLock signalLock;
 
     /**
      * Constructor for VMCommsMain. Creates a temporary file and maps it into memory.
@@ -152,10 +171,8 @@ public class VMCommsMain implements Closeable
         fc = new RandomAccessFile(shmFile, "rw").getChannel();
         sharedMemoryByte = fc.map(MapMode.READ_WRITE, 0, fileSize);
         sharedMemory = sharedMemoryByte.asIntBuffer();
-        
-        // Obtain the put-area lock right from the start:
-        putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
-        syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+        commandRing = new SharedMemoryRing(sharedMemoryByte, COMMAND_HEAD_POS, COMMAND_TAIL_POS,
+                COMMAND_RING_POS, COMMAND_RING_CAPACITY);
         
         ioThread = new Thread("VMCommsMain") {
             @OnThread(Tag.Worker)
@@ -226,41 +243,46 @@ public class VMCommsMain implements Closeable
     }
 
     /**
-     * Write commands into the shared memory buffer.
+     * Write any commands not yet written into the command ring, as far as there is space,
+     * and publish them to the debug VM. Commands remain pending until the debug VM
+     * acknowledges them.
      */
     private synchronized void writeCommands(List<Command> pendingCommands)
     {
-        // Number of commands:
-        int pendingCountPos = sharedMemory.position();
-        sharedMemory.put(pendingCommands.size());
-        
-        int numIssued = 0;
         for (Command pendingCommand : pendingCommands)
         {
-            // sequence, type, extra info:
-            int totalLength = pendingCommand.extraInfo.length + 2;
-            if (sharedMemory.position() + totalLength > USER_AREA_OFFSET)
+            if (pendingCommand.commandSequence <= lastWrittenCommand)
             {
-                // We can't write all commands in the available buffer:
-                sharedMemory.put(pendingCountPos, numIssued);
-                if (numIssued == 0)
-                {
-                    // I don't imagine this should ever happen, but let's make sure we get
-                    // something meaningful in the log if it does:
-                    throw new RuntimeException("Single command exceeds buffer size");
-                }
-                return;
+                continue;
+            }
+            
+            // sequence, length, type, extra info:
+            int totalLength = pendingCommand.extraInfo.length + 3;
+            if (totalLength > commandRing.getCapacity())
+            {
+                // I don't imagine this should ever happen, but let's make sure we get
+                // something meaningful in the log if it does:
+                throw new RuntimeException("Single command exceeds buffer size");
+            }
+            if (!commandRing.hasSpace(totalLength))
+            {
+                // The remaining commands will be written once the debug VM has read some:
+                break;
             }
             
             // Start with sequence ID:
-            sharedMemory.put(pendingCommand.commandSequence);
+            commandRing.put(pendingCommand.commandSequence);
             // Put size of this command (measured in integers), including command type:
-            sharedMemory.put(pendingCommand.extraInfo.length + 1);
+            commandRing.put(pendingCommand.extraInfo.length + 1);
             // Then put that many integers:
-            sharedMemory.put(pendingCommand.commandType);
-            sharedMemory.put(pendingCommand.extraInfo);
-            numIssued++;
+            commandRing.put(pendingCommand.commandType);
+            for (int extra : pendingCommand.extraInfo)
+            {
+                commandRing.put(extra);
+            }
+            lastWrittenCommand = pendingCommand.commandSequence;
         }
+        commandRing.publish();
     }
     
     /**
@@ -302,7 +324,18 @@ public class VMCommsMain implements Closeable
             copy.position(USER_AREA_OFFSET + 2);
             int width = copy.get();
             int height = copy.get();
-            stage.receivedWorldImage(width, height, copy);
+            // The damaged rectangles follow the image pixels:
+            int pixelStart = copy.position();
+            copy.position(pixelStart + width * height);
+            int rectCount = copy.get();
+            int[] damagedRects = null;
+            if (rectCount != -1)
+            {
+                damagedRects = new int[rectCount * 4];
+                copy.get(damagedRects);
+            }
+            copy.position(pixelStart);
+            stage.receivedWorldImage(width, height, copy, damagedRects);
             haveUpdatedImage = false;
             lastConsumedImg = lastPaintSeq;
         }
@@ -344,23 +377,15 @@ public class VMCommsMain implements Closeable
     @OnThread(Tag.Worker)
     private boolean checkIO()
     {
-        FileChannel sharedMemoryLock = this.fc;
-
-        // We are holding the lock for the main put area:
-        sharedMemory.position(1);
-        sharedMemory.put(-lastSeq.get());
-        sharedMemory.put(lastConsumedImg);
+        takeSignalLock();
+        SharedMemoryRing.setRelease(sharedMemoryByte, CONSUMED_IMG_POS, lastConsumedImg);
         writeCommands(pendingCommands);
         
-        FileLock fileLock = null;
-        
+        // The frame sequence is published last by the debug VM, so the rest of the frame
+        // is complete once we see it:
+        int seq = SharedMemoryRing.getAcquire(sharedMemoryByte, USER_AREA_OFFSET);
         try
         {
-            putLock.release();
-            fileLock = sharedMemoryLock.lock(USER_AREA_OFFSET_BYTES, fileSize - USER_AREA_OFFSET_BYTES, false);
-            syncLock.release();
-
-            int seq = sharedMemory.get(USER_AREA_OFFSET);
             if (seq > lastSeq.get())
             {
                 // The client VM has painted a new frame for us:
@@ -378,6 +403,12 @@ public class VMCommsMain implements Closeable
                         haveUpdatedImage = true;
                     }
                     sharedMemory.position(sharedMemory.position() + width * height);
+                    // Skip the damaged rectangles, if any:
+                    int rectCount = sharedMemory.get();
+                    if (rectCount > 0)
+                    {
+                        sharedMemory.position(sharedMemory.position() + rectCount * 4);
+                    }
     
                     // Get rid of all commands that the client has confirmed it has seen:
                     int lastAckCommand = sharedMemory.get();
@@ -447,34 +478,20 @@ public class VMCommsMain implements Closeable
                 }
             }
         }
-        catch (IOException ex)
-        {
-            Debug.reportError(ex);
-        }
         catch (IllegalArgumentException ex)
         {
             // Happens when world size is too large: swallow quietly, as will happen repeatedly.
             // The exception will be reported to the user from the debug VM side.
         }
-        finally
+        
+        // Let the debug VM know that it may write the next frame. We acknowledge any new
+        // frame, even one we ignored, so that the debug VM never waits for us indefinitely:
+        if (seq != 0 && seq != lastAckedFrame)
         {
-            // Re-acquire the put-area lock (A), and then release the get-area lock (B)
-            // before re-acquiring the sync lock (C):
-            try
-            {
-                putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
-                if (fileLock != null)
-                {
-                    fileLock.release();
-                }
-                syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
-            }
-            catch (IOException ex)
-            {
-                Debug.reportError(ex);
-            }
+            lastAckedFrame = seq;
+            SharedMemoryRing.setRelease(sharedMemoryByte, FRAME_ACK_POS, seq);
         }
-        
+        signalDebugVM();
         
         // To avoid consuming close to 100% CPU, we wait on the animation timer:
         synchronized (this)
@@ -493,6 +510,58 @@ public class VMCommsMain implements Closeable
         }
     }
     
+    /**
+     * Take the signal lock, unless we already hold it or the debug VM has yet to notice that
+     * it was released.
+     */
+    @OnThread(Tag.Worker)
+    private void takeSignalLock()
+    {
+        if (signalLock == null && SharedMemoryRing.getAcquire(sharedMemoryByte, SIM_WAITING_POS) == 0)
+        {
+            try
+            {
+                signalLock = fc.lock(SIGNAL_LOCK_POS_BYTES, SIGNAL_LOCK_SIZE_BYTES, false);
+            }
+            catch (IOException ioe)
+            {
+                // Without the lock, the debug VM will poll for us instead.
+            }
+        }
+    }
+
+    /**
+     * Wake the debug VM, if it is blocked waiting for us. This is called once we have
+     * acknowledged its frame and written any commands.
+     */
+    @OnThread(Tag.Worker)
+    private void signalDebugVM()
+    {
+        // Our writes must be visible before we read whether the debug VM is waiting:
+        VarHandle.fullFence();
+        if (signalLock != null && SharedMemoryRing.getAcquire(sharedMemoryByte, SIM_WAITING_POS) != 0)
+        {
+            try
+            {
+                signalLock.release();
+            }
+            catch (IOException ioe)
+            {
+                // The channel has been closed, which also releases the lock.
+            }
+            signalLock = null;
+            
+            // Take the lock again as soon as the debug VM has woken, so that it can block
+            // again if it needs to (if it doesn't wake in time, we try again next checkIO):
+            for (int attempt = 0; attempt < SharedMemoryRing.BACK_OFF_LIMIT
+                    && SharedMemoryRing.getAcquire(sharedMemoryByte, SIM_WAITING_POS) != 0; attempt++)
+            {
+                SharedMemoryRing.backOff(attempt);
+            }
+            takeSignalLock();
+        }
+    }
+
     /**
      * Send an "instantiate world" command.
      */
@@ -646,6 +715,8 @@ public class VMCommsMain implements Closeable
         }
         lastSeq.addAndGet(1000);
         pendingCommands.clear();        
+        lastWrittenCommand = -1;
+        lastAckedFrame = 0;
         setSpeedCommandCount = 0;
         lastAnswer = -1;
         previousStoppedWithErrorCount = 0;
@@ -654,6 +725,7 @@ public class VMCommsMain implements Closeable
         // Zero the buffer:
         sharedMemoryByte.position(0);
         sharedMemoryByte.put(new byte[fileSize], 0, fileSize);
+        commandRing.reset();
         vmReadyForInvocations = false;
     }
 
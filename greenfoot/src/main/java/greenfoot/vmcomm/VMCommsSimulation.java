@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018,2019,2021,2024  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018,2019,2021,2024,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -27,7 +27,9 @@ import greenfoot.WorldVisitor;
 import greenfoot.core.ShadowProjectProperties;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
+import greenfoot.gui.TileDamage;
 import greenfoot.gui.WorldRenderer;
+import greenfoot.gui.WorldSnapshot;
 import greenfoot.gui.input.KeyboardManager;
 import greenfoot.gui.input.mouse.MousePollingManager;
 import javafx.scene.input.KeyCode;
@@ -39,11 +41,11 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
 import java.nio.BufferOverflowException;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,12 +57,44 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class VMCommsSimulation
 {
+    /**
+     * Project property which, if "true", makes the world be rendered on a separate thread
+     * while the simulation continues (see {@link #paintRemote(PaintWhen)}).
+     */
+    public static final String PIPELINE_PROPERTY = "render.pipeline";
+    
     private final WorldRenderer worldRenderer;    
 
     /** Available old world images for painting onto: */
     private final BlockingQueue<BufferedImage> worldImagesForPainting = new ArrayBlockingQueue<BufferedImage>(3);
     /** The current image waiting to send (may be null if none): */
     private final AtomicReference<BufferedImage> worldImageForSending = new AtomicReference<>(null);
+    /** The damage from rendering the latest frame; only used by the thread rendering it. */
+    private final TileDamage frameDamage = new TileDamage(0, 0);
+    /**
+     * The damage accumulated since the last image was sent. Setting or taking the image
+     * for sending and updating this damage must be done while synchronized on it.
+     */
+    private final TileDamage pendingDamage = new TileDamage(0, 0);
+    /** The damage of the image currently being sent; only used on the comms thread. */
+    private final TileDamage sendDamage = new TileDamage(0, 0);
+    /** Scratch array for the damaged rectangles of the image being sent. */
+    private int[] damageRects = new int[0];
+    
+    // When rendering is pipelined, the simulation thread hands snapshots of the world to
+    // the render thread. These variables are guarded by renderLock:
+    private final Object renderLock = new Object();
+    /** The latest snapshot waiting to be rendered (null if none) */
+    private WorldSnapshot snapshotForRendering;
+    /** Whether the render thread is rendering a snapshot */
+    private boolean rendering;
+    
+    /** Whether rendering is pipelined, from the {@link #PIPELINE_PROPERTY} project property */
+    private volatile boolean pipelined;
+    /** The render thread, once started; only used on the simulation thread. */
+    private Thread renderThread;
+    /** The latest snapshot taken for the render thread; only used on the simulation thread. */
+    private WorldSnapshot lastSnapshot;
     // These variables are shared with the remote communications thread and need synchronised access:
     /** The prompt for Greenfoot.ask() */
     @OnThread(value = Tag.Any, requireSynchronized = true)
@@ -82,25 +116,29 @@ public class VMCommsSimulation
      * Shared memory documentation (this comment may get moved to somewhere more appropriate later).
      *
      * The shared memory consists of two successive lumps of memory. One is used by the server VM to
-     * transmit data, and the other is used by the debug VM for the same purpose. File locks protect
-     * both regions to prevent (in cases where it matters) either side from reading a potentially
-     * incomplete data frame while the other side is still writing it. The locking protocol is
-     * described in VMCommsMain.
+     * transmit data, and the other is used by the debug VM for the same purpose. Control words,
+     * written with release semantics and read with acquire semantics, prevent either side from
+     * reading a potentially incomplete data frame while the other side is still writing it. The
+     * protocol is described in VMCommsMain.
      * 
      * Its format is as follows, where each position is an integer position (i.e. bytes times four):
      * 
      * Server area (16kb):
-     * Pos 0: Reserved. Currently this region is locked independently; the "real" server area starts
-     *        following this position.
-     * Pos 1: When the number is negative, it indicates that the server VM has sent back
-     *        information to the debug VM to read.  This includes keyboard and mouse events,
-     *        as shown below.
+     * Pos 0: Not written. The server VM holds a file lock on this word, which the debug VM
+     *        blocks on when it has nothing to do (see VMCommsMain).
+     * Pos 1: The sequence number of the last frame the server VM has read from the debug VM area.
+     *        The debug VM does not write another frame until the server VM has read the last one.
      * Pos 2: The last consumed image frame received from the debug VM. Note that the debug VM
      *        should not update the image in the buffer until the current image is consumed
      *        (otherwise there may be paint artifacts such as tearing). 
-     * Pos 3: Count of commands (C), can be zero
-     * Pos 4 onwards:
-     *        Commands.  Each command begins with an integer sequence ID, then has
+     * Pos 16: Tail index of the command ring (written by the server VM).
+     * Pos 32: Head index of the command ring (written by the debug VM).
+     * Pos 48: 1 while the debug VM is blocked waiting for the server VM, otherwise 0 (written
+     *        by the debug VM).
+     * Pos 2048 to 4096 excl:
+     *        The command ring (see SharedMemoryRing), holding commands from the server VM
+     *        which include keyboard and mouse events.
+     *        Each command begins with an integer sequence ID, then has
      *        an integer length (L), followed by L integers (L >= 1).
      *        The first integer of the L integers is always the
      *        command type, and the amount of other integers depend on the command.  For example,
@@ -109,34 +147,50 @@ public class VMCommsSimulation
      *
      * Debug VM area (10M - 16kb): [Positions relative to beginning]
      * 
-     * Pos 0: Sequence index when the current (included) image was painted (the image is included
+     * Pos 0: Sequence number of this frame. This is written last, once the rest of the frame
+     *        is complete.
+     * Pos 1: Sequence index when the current (included) image was painted (the image is included
      *        unchanged in subsequent frames).
-     * Pos 1: Width of world image in pixels (W)
-     * Pos 2: Height of world image in pixels (H)
-     * Pos 3 incl to 3+(W*H) excl, if W and H are both greater than zero:
+     * Pos 2: Width of world image in pixels (W)
+     * Pos 3: Height of world image in pixels (H)
+     * Pos 4 incl to 4+(W*H) excl, if W and H are both greater than zero:
      *        W * H pixels one row at a time with no gaps, each pixel is one
      *        integer, in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
-     * Pos 3+(W*H): Sequence ID of most recently processed command, or -1 if N/A.
-     * Pos 4+(W*H): Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
-     * Pos 5+(W*H) and 6+(W*H): Two ints (highest bits first) with value of System.currentTimeMillis()
-     *                          at the point when some execution that may contain user code last started on
-     *                          the simulation thread, or 0L if user code is not currently running.
-     * Pos 7+(W*H): The current simulation speed (1 to 100)
-     * Pos 8+(W*H): world counter if a world is currently installed, or 0 if there is no world.
-     * Pos 9+(W*H): The world cell size in pixels
-     * Pos 10+(W*H): -1 if not currently awaiting a Greenfoot.ask() answer.
-     *              If awaiting, it is count (P) of following codepoints which make up prompt.
-     * Pos 11+(W*H) to 11+(W*H)+P excl: codepoints making up ask prompt.
-     * Pos 11+(W*H)+P: 1 if the the delay loop is currently running, or 0 otherwise.
+     *        The pixels persist from one image to the next; when a new image is painted,
+     *        only the pixels within the damaged rectangles (see below) are rewritten.
+     * Pos 4+(W*H): Count (R) of damaged rectangles, i.e. the areas of the image which changed
+     *        since the previous image, or -1 if the whole image changed (a "keyframe").
+     * Pos 5+(W*H) to 5+(W*H)+4R excl: Damaged rectangles, as four ints each: x, y, width, height.
+     * 
+     * Following positions are given relative to the end of the damaged rectangles (D = 5+(W*H)+4R):
+     * 
+     * Pos D: Sequence ID of most recently processed command, or -1 if N/A.
+     * Pos D+1: Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
+     * Pos D+2 and D+3: Two ints (highest bits first) with value of System.currentTimeMillis()
+     *                  at the point when some execution that may contain user code last started on
+     *                  the simulation thread, or 0L if user code is not currently running.
+     * Pos D+4: The current simulation speed (1 to 100)
+     * Pos D+5: world counter if a world is currently installed, or 0 if there is no world.
+     * Pos D+6: The world cell size in pixels
+     * Pos D+7: -1 if not currently awaiting a Greenfoot.ask() answer.
+     *          If awaiting, it is count (P) of following codepoints which make up prompt.
+     * Pos D+8 to D+8+P excl: codepoints making up ask prompt.
+     * Pos D+8+P: 1 if the the delay loop is currently running, or 0 otherwise.
      */
     private final IntBuffer sharedMemory;
-    private int seq = 1;
     private final FileChannel shmFileChannel;
-    private FileLock putLock;
+    private final MappedByteBuffer sharedMemoryByte;
+    private final SharedMemoryRing commandRing;
+    private int seq = 1;
+    // Whether we have sent a frame, and if so, the sequence number of the last one:
+    private boolean frameSent = false;
+    private int lastSentSeq;
     private long lastPaintNanos = System.nanoTime();
     private int lastAckCommand = -1;
     private int lastPaintSeq = -1; // last paint sequence
-    private int lastPaintSize; // number of ints last transmitted as image
+    private int lastPaintSize = 1; // number of ints last transmitted as image and damaged rectangles
+    private int lastSentWidth = -1; // size of last image transmitted, or -1 if none
+    private int lastSentHeight = -1;
     
     // How many times have we stopped with an error?  We continuously send the count to the
     // server VM, so that the server VM can observe changes in the count (only ever increases).
@@ -146,8 +200,6 @@ public class VMCommsSimulation
     // A strictly incrementing counter, incremented each time the world changes.
     private int worldCounter = 0;
     private World world;
-    // Size of the shared memory file
-    private final int fileSize;
     private final AtomicBoolean userVMReadyForInvocations = new AtomicBoolean(false);
 
     /**
@@ -161,16 +213,16 @@ public class VMCommsSimulation
     public VMCommsSimulation(ShadowProjectProperties projectProperties, String shmFilePath, int fileSize, int seqStart)
     {
         this.projectProperties = projectProperties;
+        this.pipelined = Boolean.parseBoolean(projectProperties.getString(PIPELINE_PROPERTY, "false"));
         this.seq = seqStart;
-        worldRenderer = new WorldRenderer();
+        worldRenderer = new WorldRenderer(true);
         try
         {
             shmFileChannel = new RandomAccessFile(shmFilePath, "rw").getChannel();
-            this.fileSize = fileSize;
-            MappedByteBuffer mbb = shmFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
-            sharedMemory = mbb.asIntBuffer();
-            putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
-                    fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+            sharedMemoryByte = shmFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            sharedMemory = sharedMemoryByte.asIntBuffer();
+            commandRing = new SharedMemoryRing(sharedMemoryByte, VMCommsMain.COMMAND_HEAD_POS,
+                    VMCommsMain.COMMAND_TAIL_POS, VMCommsMain.COMMAND_RING_POS, VMCommsMain.COMMAND_RING_CAPACITY);
             
             new Thread("VMCommsSimulation") {
                 @OnThread(value = Tag.Worker,ignoreParent = true)
@@ -213,6 +265,12 @@ public class VMCommsSimulation
     /**
      * Paints the current world into the shared memory buffer so that the server VM can
      * display it in the window there.
+     * 
+     * <p>If the project property {@link #PIPELINE_PROPERTY} is "true", this only takes a
+     * snapshot of the world, which the render thread then renders while the simulation
+     * continues. If the render thread has not yet started on the previous snapshot,
+     * painting is skipped unless forced (to avoid copying images for a snapshot which
+     * would never be rendered).
      *
      * @param paintWhen  If IF_DUE, painting may be skipped if it's close to a recent paint.
      *                   FORCE always paints, NO_PAINT indicates that an actual image update
@@ -230,26 +288,168 @@ public class VMCommsSimulation
 
         if (world != null)
         {
-            lastPaintNanos = now;
-            int imageWidth = WorldVisitor.getWidthInPixels(world);
-            int imageHeight = WorldVisitor.getHeightInPixels(world);
-            BufferedImage worldImage = worldImagesForPainting.poll();
-            
-            // If there are no available old images or it's the wrong size, make our own:
-            if (worldImage == null || worldImage.getHeight() != imageHeight
-                    || worldImage.getWidth() != imageWidth)
+            if (pipelined)
             {
-                worldImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+                if (paintWhen == PaintWhen.IF_DUE)
+                {
+                    synchronized (renderLock)
+                    {
+                        if (snapshotForRendering != null)
+                        {
+                            return;
+                        }
+                    }
+                }
+                lastPaintNanos = now;
+                lastSnapshot = WorldSnapshot.take(world, lastSnapshot, true);
+                synchronized (renderLock)
+                {
+                    snapshotForRendering = lastSnapshot;
+                    renderLock.notifyAll();
+                }
+                if (renderThread == null)
+                {
+                    startRenderThread();
+                }
             }
-            
-            worldRenderer.renderWorld(world, worldImage);
-            
-            BufferedImage oldImage = worldImageForSending.getAndSet(worldImage);
-            // If there was an old image waiting which we've overwritten, put it back in our queue of old images:
-            if (oldImage != null)
+            else
             {
-                worldImagesForPainting.offer(oldImage);
-                // If it doesn't fit because the queue is full, just let it get GCed.
+                lastPaintNanos = now;
+                // The renderer must not be used by two threads at once:
+                awaitRendering();
+                lastSnapshot = null;
+                BufferedImage worldImage = getImageForPainting(WorldVisitor.getWidthInPixels(world),
+                        WorldVisitor.getHeightInPixels(world));
+                frameDamage.clear();
+                worldRenderer.renderWorld(world, worldImage, frameDamage);
+                publishImage(worldImage);
+            }
+        }
+    }
+
+    /**
+     * Get an image to paint the world onto, from the old images if there is one of the
+     * right size.
+     */
+    @OnThread(Tag.Any)
+    private BufferedImage getImageForPainting(int imageWidth, int imageHeight)
+    {
+        BufferedImage worldImage = worldImagesForPainting.poll();
+        
+        // If there are no available old images or it's the wrong size, make our own:
+        if (worldImage == null || worldImage.getHeight() != imageHeight
+                || worldImage.getWidth() != imageWidth)
+        {
+            worldImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+        }
+        return worldImage;
+    }
+
+    /**
+     * Make a newly painted world image (with its damage in frameDamage) the next image
+     * to be sent to the server VM.
+     */
+    @OnThread(Tag.Any)
+    private void publishImage(BufferedImage worldImage)
+    {
+        BufferedImage oldImage;
+        synchronized (pendingDamage)
+        {
+            pendingDamage.add(frameDamage);
+            oldImage = worldImageForSending.getAndSet(worldImage);
+        }
+        // If there was an old image waiting which we've overwritten, put it back in our queue of old images:
+        if (oldImage != null)
+        {
+            worldImagesForPainting.offer(oldImage);
+            // If it doesn't fit because the queue is full, just let it get GCed.
+        }
+    }
+
+    /**
+     * Start the thread which renders snapshots of the world, for pipelined rendering.
+     */
+    @OnThread(Tag.Simulation)
+    private void startRenderThread()
+    {
+        renderThread = new Thread("VMCommsSimulation render") {
+            @OnThread(value = Tag.Worker,ignoreParent = true)
+            public void run()
+            {
+                try
+                {
+                    while (true)
+                    {
+                        renderNextSnapshot();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // Just stop
+                }
+            }
+        };
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Wait for a snapshot of the world, then render it and make it the next image to send.
+     */
+    @OnThread(Tag.Worker)
+    private void renderNextSnapshot() throws InterruptedException
+    {
+        WorldSnapshot snapshot;
+        synchronized (renderLock)
+        {
+            while (snapshotForRendering == null)
+            {
+                renderLock.wait();
+            }
+            snapshot = snapshotForRendering;
+            snapshotForRendering = null;
+            rendering = true;
+        }
+        
+        try
+        {
+            BufferedImage worldImage = getImageForPainting(snapshot.getWidthInPixels(), snapshot.getHeightInPixels());
+            frameDamage.clear();
+            worldRenderer.renderSnapshot(snapshot, worldImage, frameDamage);
+            publishImage(worldImage);
+        }
+        catch (RuntimeException e)
+        {
+            Debug.reportError("Error rendering the world", e);
+        }
+        finally
+        {
+            synchronized (renderLock)
+            {
+                rendering = false;
+                renderLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until the render thread (if any) has finished rendering snapshots.
+     */
+    @OnThread(Tag.Simulation)
+    private void awaitRendering()
+    {
+        synchronized (renderLock)
+        {
+            while (snapshotForRendering != null || rendering)
+            {
+                try
+                {
+                    renderLock.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
             }
         }
     }
@@ -286,15 +486,11 @@ public class VMCommsSimulation
         // One element array to allow a reference to be set by readCommands:
         String[] answer = new String[] {null};
         
-        FileLock fileLock = null;
-        FileLock syncLock = null;
+        // Wait until the server VM has read our last frame, or has sent us commands:
+        boolean canSendFrame = awaitServer();
         
         try
         {
-            // Get lock for our read area:
-            fileLock = shmFileChannel.lock(VMCommsMain.SERVER_AREA_OFFSET_BYTES,
-                    VMCommsMain.SERVER_AREA_SIZE_BYTES, false);
-
             boolean doUpdateImage;
             World curWorld;
             int curWorldCounter;
@@ -306,13 +502,12 @@ public class VMCommsSimulation
                 curWorldCounter = this.worldCounter;
             }
             
-            sharedMemory.position(1);
-            int recvSeq = sharedMemory.get();
-            if (recvSeq < 0 && Simulation.getInstance() != null)
+            // Only update the image if the previous one was consumed, since the damage
+            // we send is relative to it:
+            int lastConsumedImg = SharedMemoryRing.getAcquire(sharedMemoryByte, VMCommsMain.CONSUMED_IMG_POS);
+            doUpdateImage &= lastConsumedImg >= lastPaintSeq;
+            if (Simulation.getInstance() != null)
             {
-                int lastConsumedImg = sharedMemory.get();
-                // Only update the image if the previous one was consumed:
-                doUpdateImage &= (lastConsumedImg >= lastPaintSeq);
                 int latest = readCommands(answer);
                 if (latest != -1)
                 {
@@ -320,126 +515,263 @@ public class VMCommsSimulation
                 }
             }
             
-            BufferedImage img = doUpdateImage ? worldImageForSending.getAndSet(null) : null;
-            int [] raw = (img == null) ? null : ((DataBufferInt) img.getData().getDataBuffer()).getData();
-
-            int imageWidth = 0;
-            int imageHeight = 0;
-            if (img != null)
+            if (canSendFrame)
             {
-                imageWidth = img.getWidth();
-                imageHeight = img.getHeight();
+                writeFrame(doUpdateImage, curWorld, curWorldCounter, answer);
             }
+        }
+        catch (BufferOverflowException ex)
+        {
+            // Note: the user will see this message in the terminal, so it should be helpful:
+            Debug.message("World size is too large.  If your world contains more than around 2.5 million pixels you will need to do the following.\n"
+                + "Close your project, then edit project.greenfoot in a text editor to add the following line:\n"
+                + "shm.size=40000000\n"
+                + "(The default is 20000000, keep increasing if needed.)  Save the file and re-open the project in Greenfoot.");
+        }
             
-            sharedMemory.position(VMCommsMain.USER_AREA_OFFSET);
-            sharedMemory.put(this.seq++);
-            if (img == null)
+        if (answer[0] != null)
+        {
+            gotAskAnswer(answer[0]);
+        }
+    }
+    
+    /**
+     * Wait until the server VM has read the last frame we sent, so that we may send another,
+     * or until there are commands from the server VM for us to read.
+     * 
+     * @return  true if we may send a frame
+     */
+    @OnThread(Tag.Worker)
+    private boolean awaitServer()
+    {
+        int attempt = 0;
+        while (true)
+        {
+            if (canSendFrame())
             {
-                sharedMemory.put(lastPaintSeq);
-                sharedMemory.get(); // skip width
-                sharedMemory.get(); // skip height
-                sharedMemory.position(sharedMemory.position() + lastPaintSize);
+                return true;
             }
-            else
+            if (hasCommands())
             {
-                lastPaintSeq = (seq - 1);
-                sharedMemory.put(lastPaintSeq);
-                sharedMemory.put(imageWidth);
-                sharedMemory.put(imageHeight);
-                for (int i = 0; i < raw.length; i++)
-                {
-                    sharedMemory.put(raw[i]);
-                }
-                lastPaintSize = raw.length;
-                
-                // Now that we've rendered from it, put it back into the old images for re-use:
-                worldImagesForPainting.offer(img);
-                // If it doesn't fit, just let it get GCed.
+                return false;
             }
-            sharedMemory.put(lastAckCommand);
-            sharedMemory.put(stoppedWithErrorCount);
-            sharedMemory.put((int)(startOfCurExecution >> 32));
-            sharedMemory.put((int)(startOfCurExecution & 0xFFFFFFFFL));
-            if (Simulation.getInstance() != null)
+            if (attempt < SharedMemoryRing.BACK_OFF_LIMIT)
             {
-                sharedMemory.put(Simulation.getInstance().getSpeed());
+                SharedMemoryRing.backOff(attempt++);
             }
             else
             {
-                sharedMemory.put(0);
+                // The server VM is idle (or the scenario is paused); don't keep waking up:
+                blockUntilSignalled();
+                attempt = 0;
             }
-            sharedMemory.put(curWorld == null ? 0 : curWorldCounter);
-            sharedMemory.put(curWorld == null ? 0 : WorldVisitor.getCellSize(curWorld));
-            
-            // If not asking, put -1
-            synchronized (this)
-            {
-                if (pAskPrompt == null || answer[0] != null)
-                {
-                    sharedMemory.put(-1);
-                }
-                else
-                {
-                    // Asking, so put the ask ID, and the prompt string:
-                    int[] codepoints = pAskPrompt.codePoints().toArray();
-                    sharedMemory.put(pAskId);
-                    sharedMemory.put(codepoints.length);
-                    sharedMemory.put(codepoints);
-                }
+        }
+    }
 
-                // Write the status of the delay loop
-                sharedMemory.put(delayLoopEntered ? 1 : 0);
-                sharedMemory.put(userVMReadyForInvocations.get() ? 1 : 0);
-            }
+    /**
+     * Check whether the server VM has read the last frame we sent (if any).
+     */
+    @OnThread(Tag.Worker)
+    private boolean canSendFrame()
+    {
+        return !frameSent || SharedMemoryRing.getAcquire(sharedMemoryByte, VMCommsMain.FRAME_ACK_POS) == lastSentSeq;
+    }
 
-            putLock.release();
+    /**
+     * Check whether the server VM has sent commands which we should read.
+     */
+    @OnThread(Tag.Worker)
+    private boolean hasCommands()
+    {
+        return Simulation.getInstance() != null && commandRing.available() > 0;
+    }
 
-            // Lock the synchronisation area (C) to make sure that the server has acquired our put area:
-            syncLock = shmFileChannel.lock(VMCommsMain.SYNC_AREA_OFFSET_BYTES,
-                    VMCommsMain.SYNC_AREA_SIZE_BYTES, false);
-            
-            fileLock.release();
-            putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
-                    fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
-            syncLock.release();
-        }
-        catch (IOException ex)
+    /**
+     * Block until the server VM signals that it has acknowledged our frame or sent us
+     * commands, by releasing the signal lock (see VMCommsMain). This may return early,
+     * if the server VM had not taken the lock again since it last signalled.
+     */
+    @OnThread(Tag.Worker)
+    private void blockUntilSignalled()
+    {
+        SharedMemoryRing.setRelease(sharedMemoryByte, VMCommsMain.SIM_WAITING_POS, 1);
+        // The server VM must see that we are waiting before we check for the last time:
+        VarHandle.fullFence();
+        try
         {
-            try
+            if (!canSendFrame() && !hasCommands())
             {
-                putLock.release();
+                shmFileChannel.lock(VMCommsMain.SIGNAL_LOCK_POS_BYTES, VMCommsMain.SIGNAL_LOCK_SIZE_BYTES,
+                        false).release();
             }
-            catch (Exception e) {}
-            Debug.reportError(ex);
         }
-        catch (BufferOverflowException ex)
+        catch (IOException e)
         {
-            try
+            // We will poll again instead.
+        }
+        finally
+        {
+            SharedMemoryRing.setRelease(sharedMemoryByte, VMCommsMain.SIM_WAITING_POS, 0);
+        }
+    }
+
+    /**
+     * Write a frame (the world image, if there is a new one, and our status) into the shared
+     * memory, and publish it to the server VM.
+     * 
+     * @param doUpdateImage  Whether a new world image may be sent (which is only the case once
+     *                       the server VM has consumed the last image we sent)
+     * @param answer  The ask-answer received with the latest commands, if any
+     */
+    @OnThread(Tag.Worker)
+    private void writeFrame(boolean doUpdateImage, World curWorld, int curWorldCounter, String[] answer)
+    {
+        BufferedImage img = null;
+        if (doUpdateImage)
+        {
+            synchronized (pendingDamage)
             {
-                putLock.release();
-                if (fileLock != null)
-                {
-                    fileLock.release();
-                }
-                if (syncLock != null)
+                img = worldImageForSending.getAndSet(null);
+                if (img != null)
                 {
-                    syncLock.release();
+                    sendDamage.copyFrom(pendingDamage);
+                    pendingDamage.clear();
                 }
             }
-            catch (Exception e) {}
-            // Note: the user will see this message in the terminal, so it should be helpful:
-            Debug.message("World size is too large.  If your world contains more than around 2.5 million pixels you will need to do the following.\n"
-                + "Close your project, then edit project.greenfoot in a text editor to add the following line:\n"
-                + "shm.size=40000000\n"
-                + "(The default is 20000000, keep increasing if needed.)  Save the file and re-open the project in Greenfoot.");
         }
+        // Note we use the raster directly; getData() would copy the whole image:
+        int [] raw = (img == null) ? null : ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+
+        int imageWidth = 0;
+        int imageHeight = 0;
+        if (img != null)
+        {
+            imageWidth = img.getWidth();
+            imageHeight = img.getHeight();
+        }
+        
+        // The frame sequence number is written last, once the rest of the frame is complete:
+        int frameSeq = this.seq++;
+        sharedMemory.position(VMCommsMain.USER_AREA_OFFSET + 1);
+        if (img == null)
+        {
+            sharedMemory.put(lastPaintSeq);
+            sharedMemory.get(); // skip width
+            sharedMemory.get(); // skip height
+            sharedMemory.position(sharedMemory.position() + lastPaintSize);
+        }
+        else
+        {
+            lastPaintSeq = frameSeq;
+            sharedMemory.put(lastPaintSeq);
+            sharedMemory.put(imageWidth);
+            sharedMemory.put(imageHeight);
+            lastPaintSize = writeImage(raw, imageWidth, imageHeight);
             
-        if (answer[0] != null)
+            // Now that we've rendered from it, put it back into the old images for re-use:
+            worldImagesForPainting.offer(img);
+            // If it doesn't fit, just let it get GCed.
+        }
+        sharedMemory.put(lastAckCommand);
+        sharedMemory.put(stoppedWithErrorCount);
+        sharedMemory.put((int)(startOfCurExecution >> 32));
+        sharedMemory.put((int)(startOfCurExecution & 0xFFFFFFFFL));
+        if (Simulation.getInstance() != null)
         {
-            gotAskAnswer(answer[0]);
+            sharedMemory.put(Simulation.getInstance().getSpeed());
+        }
+        else
+        {
+            sharedMemory.put(0);
+        }
+        sharedMemory.put(curWorld == null ? 0 : curWorldCounter);
+        sharedMemory.put(curWorld == null ? 0 : WorldVisitor.getCellSize(curWorld));
+        
+        // If not asking, put -1
+        synchronized (this)
+        {
+            if (pAskPrompt == null || answer[0] != null)
+            {
+                sharedMemory.put(-1);
+            }
+            else
+            {
+                // Asking, so put the ask ID, and the prompt string:
+                int[] codepoints = pAskPrompt.codePoints().toArray();
+                sharedMemory.put(pAskId);
+                sharedMemory.put(codepoints.length);
+                sharedMemory.put(codepoints);
+            }
+
+            // Write the status of the delay loop
+            sharedMemory.put(delayLoopEntered ? 1 : 0);
+            sharedMemory.put(userVMReadyForInvocations.get() ? 1 : 0);
         }
+
+        SharedMemoryRing.setRelease(sharedMemoryByte, VMCommsMain.USER_AREA_OFFSET, frameSeq);
+        frameSent = true;
+        lastSentSeq = frameSeq;
     }
     
+    /**
+     * Write the image pixels and damaged rectangles into the shared memory, at the current
+     * position. Only the damaged parts of the image are written, unless the whole image
+     * must be sent (a keyframe): because the image size has changed, or because so much of
+     * the image has changed that sending it all is simpler. A new image is only sent once the
+     * server VM has consumed the previous one, so it has always seen the image which the
+     * damage is relative to.
+     * 
+     * @param raw  The image pixels
+     * @return  The number of ints written, including the pixel area (whether or not all
+     *          pixels were written) and the damaged rectangles.
+     */
+    @OnThread(Tag.Worker)
+    private int writeImage(int[] raw, int width, int height)
+    {
+        boolean keyframe = width != lastSentWidth || height != lastSentHeight
+                || width != sendDamage.getWidth() || height != sendDamage.getHeight()
+                || sendDamage.getDamagedCount() * 2 > sendDamage.getTileCount();
+        // Until this is written successfully, the pixels in shared memory are unknown:
+        lastSentWidth = -1;
+        lastSentHeight = -1;
+        
+        int pixelStart = sharedMemory.position();
+        int rectCount;
+        if (keyframe)
+        {
+            sharedMemory.put(raw, 0, width * height);
+            sharedMemory.put(-1);
+            rectCount = 0;
+        }
+        else
+        {
+            if (damageRects.length < sendDamage.getDamagedCount() * 4)
+            {
+                damageRects = new int[sendDamage.getDamagedCount() * 4];
+            }
+            rectCount = sendDamage.getRects(damageRects);
+            for (int i = 0; i < rectCount; i++)
+            {
+                int x = damageRects[i * 4];
+                int y = damageRects[i * 4 + 1];
+                int w = damageRects[i * 4 + 2];
+                int h = damageRects[i * 4 + 3];
+                for (int row = y; row < y + h; row++)
+                {
+                    sharedMemory.position(pixelStart + row * width + x);
+                    sharedMemory.put(raw, row * width + x, w);
+                }
+            }
+            sharedMemory.position(pixelStart + width * height);
+            sharedMemory.put(rectCount);
+            sharedMemory.put(damageRects, 0, rectCount * 4);
+        }
+        
+        lastSentWidth = width;
+        lastSentHeight = height;
+        return width * height + 1 + rectCount * 4;
+    }
+
     /**
      * An "ask" answer has been received from the other VM; record it and signal the simulation
      * thread.
@@ -460,13 +792,16 @@ public class VMCommsSimulation
     private int readCommands(String[] answer)
     {
         int lastSeqID = -1;
-        int commandCount = sharedMemory.get();
-        for (int i = 0; i < commandCount; i++)
+        // The server VM publishes whole commands, so if any data is available, a command is:
+        while (commandRing.available() > 0)
         {
-            lastSeqID = sharedMemory.get();
-            int commandLength = sharedMemory.get();
+            lastSeqID = commandRing.get();
+            int commandLength = commandRing.get();
             int data[] = new int[commandLength];
-            sharedMemory.get(data);
+            for (int i = 0; i < commandLength; i++)
+            {
+                data[i] = commandRing.get();
+            }
             if (Command.isKeyEvent(data[0]))
             {
                 KeyboardManager keyboardManager = WorldHandler.getInstance().getKeyboardManager();
@@ -553,6 +888,10 @@ public class VMCommsSimulation
                         int valueLength = data[2+keyLength];
                         String value = valueLength < 0 ? null : new String(data, 3 + keyLength, valueLength);
                         projectProperties.propertyChangedOnServerVM(key, value);
+                        if (key.equals(PIPELINE_PROPERTY))
+                        {
+                            pipelined = Boolean.parseBoolean(value);
+                        }
                         break;
                     case Command.COMMAND_SET_SPEED:
                         Simulation.getInstance().setSpeed(data[1]);
@@ -566,6 +905,8 @@ public class VMCommsSimulation
                 }
             }
         }
+        // Let the server VM re-use the space:
+        commandRing.release();
         return lastSeqID;
     }
 
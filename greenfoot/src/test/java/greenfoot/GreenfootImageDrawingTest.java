@@ -0,0 +1,121 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that drawing on a GreenfootImage, which keeps its graphics between drawing
+ * operations, behaves as if each operation had a new graphics.
+ */
+public class GreenfootImageDrawingTest extends TestCase
+{
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+    }
+
+    public void testColorChanges()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        image.setColor(Color.RED);
+        image.fillRect(0, 0, 5, 10);
+        image.setColor(Color.BLUE);
+        image.fillRect(5, 0, 5, 10);
+        assertEquals(Color.RED, image.getColorAt(2, 2));
+        assertEquals(Color.BLUE, image.getColorAt(7, 2));
+
+        image.clear();
+        assertEquals(0, image.getColorAt(2, 2).getAlpha());
+    }
+
+    public void testCopyOnWrite()
+    {
+        GreenfootImage original = new GreenfootImage(10, 10);
+        original.setColor(Color.RED);
+        original.fill();
+        GreenfootImage clone = original.getCopyOnWriteClone();
+        clone.setColor(Color.GREEN);
+        clone.fillRect(0, 0, 5, 5);
+        original.fillRect(5, 5, 5, 5);
+
+        assertEquals(Color.GREEN, clone.getColorAt(1, 1));
+        assertEquals(Color.RED, original.getColorAt(1, 1));
+        assertEquals(Color.RED, clone.getColorAt(7, 7));
+    }
+
+    public void testDrawingSeenByAwtImageAndRenderer()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        image.setColor(Color.RED);
+        image.fill();
+        assertEquals(Color.RED.getColorObject().getRGB(), image.getAwtImage().getRGB(3, 3));
+
+        // Drawing continues to work after the image has been handed out:
+        image.setColor(Color.BLUE);
+        image.drawLine(0, 0, 9, 0);
+        BufferedImage target = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        ImageVisitor.flushGraphics(image);
+        ImageVisitor.drawImage(image, target.createGraphics(), 0, 0, null, true);
+        assertEquals(Color.BLUE.getColorObject().getRGB(), target.getRGB(5, 0));
+        assertEquals(Color.RED.getColorObject().getRGB(), target.getRGB(5, 5));
+    }
+
+    public void testDrawOntoSelf()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        image.setColor(Color.RED);
+        image.fillRect(0, 0, 5, 5);
+        image.drawImage(image, 5, 5);
+        image.fillRect(0, 5, 1, 1);
+        assertEquals(Color.RED, image.getColorAt(7, 7));
+        assertEquals(Color.RED, image.getColorAt(0, 5));
+    }
+
+    public void testVersionChangesOnEachDraw()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        int version = image.getVersion();
+        image.drawRect(1, 1, 3, 3);
+        assertTrue(version != image.getVersion());
+        version = image.getVersion();
+        image.drawRect(1, 1, 3, 3);
+        assertTrue(version != image.getVersion());
+    }
+
+    public void testFontReset()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        Font defaultFont = image.getFont();
+        image.setFont(new Font("Serif", true, false, 30));
+        image.drawString("x", 0, 9);
+        assertEquals(30, image.getFont().getSize());
+        image.setFont(null);
+        assertEquals(defaultFont, image.getFont());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.GreenfootUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the bulk pixel access methods of GreenfootImage.
+ */
+public class GreenfootImagePixelsTest extends TestCase
+{
+    private static final int RED = 0xffff0000;
+    private static final int HALF_BLUE = 0x800000ff;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+    }
+
+    public void testGetAndSetPixels()
+    {
+        GreenfootImage image = new GreenfootImage(20, 10);
+        int[] pixels = new int[3 + 2 * 8];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | i;
+        }
+        // Two rows of five pixels, with an offset and gaps between the rows:
+        image.setPixels(4, 6, 5, 2, pixels, 3, 8);
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 5; x++) {
+                assertEquals(pixels[3 + y * 8 + x], image.getColorAt(4 + x, 6 + y).getColorObject().getRGB());
+            }
+        }
+        assertEquals(0, image.getColorAt(9, 6).getAlpha());
+
+        int[] result = new int[10];
+        image.getPixels(4, 6, 5, 2, result, 0, 5);
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 5; x++) {
+                assertEquals(pixels[3 + y * 8 + x], result[y * 5 + x]);
+            }
+        }
+    }
+
+    public void testFillPixelsReplacesTransparency()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        image.fillPixels(0, 0, 10, 10, RED);
+        image.fillPixels(2, 3, 4, 5, HALF_BLUE);
+        assertEquals(HALF_BLUE, image.getColorAt(2, 3).getColorObject().getRGB());
+        assertEquals(HALF_BLUE, image.getColorAt(5, 7).getColorObject().getRGB());
+        assertEquals(RED, image.getColorAt(6, 7).getColorObject().getRGB());
+        assertEquals(RED, image.getColorAt(5, 8).getColorObject().getRGB());
+    }
+
+    public void testCopyPixelsOverlapping()
+    {
+        GreenfootImage image = new GreenfootImage(10, 1);
+        int[] row = new int[10];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = 0xff000000 | i;
+        }
+        image.setPixels(0, 0, 10, 1, row, 0, 10);
+        image.copyPixels(image, 0, 0, 6, 1, 3, 0);
+
+        int[] result = new int[10];
+        image.getPixels(0, 0, 10, 1, result, 0, 10);
+        int[] expected = {0, 1, 2, 0, 1, 2, 3, 4, 5, 9};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(0xff000000 | expected[i], result[i]);
+        }
+    }
+
+    public void testCopyOnWrite()
+    {
+        GreenfootImage original = new GreenfootImage(5, 5);
+        original.fillPixels(0, 0, 5, 5, RED);
+        GreenfootImage clone = original.getCopyOnWriteClone();
+
+        clone.fillPixels(1, 1, 1, 1, HALF_BLUE);
+        assertEquals(HALF_BLUE, clone.getColorAt(1, 1).getColorObject().getRGB());
+        assertEquals(RED, original.getColorAt(1, 1).getColorObject().getRGB());
+
+        GreenfootImage clone2 = original.getCopyOnWriteClone();
+        clone2.getPixelBuffer().set(2, 2, HALF_BLUE);
+        assertEquals(HALF_BLUE, clone2.getColorAt(2, 2).getColorObject().getRGB());
+        assertEquals(RED, original.getColorAt(2, 2).getColorObject().getRGB());
+    }
+
+    public void testVersionChanges()
+    {
+        GreenfootImage image = new GreenfootImage(5, 5);
+        int version = image.getVersion();
+        image.getPixels(0, 0, 5, 5, new int[25], 0, 5);
+        assertEquals(version, image.getVersion());
+        image.setPixels(0, 0, 1, 1, new int[1], 0, 1);
+        assertTrue(version != image.getVersion());
+        version = image.getVersion();
+        image.fillPixels(0, 0, 0, 0, RED);
+        assertTrue(version != image.getVersion());
+        version = image.getVersion();
+        image.getPixelBuffer();
+        assertTrue(version != image.getVersion());
+    }
+
+    public void testPixelBuffer()
+    {
+        GreenfootImage image = new GreenfootImage(7, 4);
+        image.fillPixels(0, 0, 7, 4, RED);
+        PixelBuffer buffer = image.getPixelBuffer();
+        assertEquals(7, buffer.getWidth());
+        assertEquals(4, buffer.getHeight());
+        assertEquals(RED, buffer.get(6, 3));
+
+        buffer.getData()[buffer.getOffset() + 2 * buffer.getStride() + 5] = HALF_BLUE;
+        assertEquals(HALF_BLUE, image.getColorAt(5, 2).getColorObject().getRGB());
+        buffer.asIntBuffer().put(buffer.getStride() + 1, HALF_BLUE);
+        assertEquals(HALF_BLUE, image.getColorAt(1, 1).getColorObject().getRGB());
+
+        try {
+            buffer.get(7, 0);
+            fail("Expected an exception for a pixel outside the image");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testBounds()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        assertOutOfBounds(() -> image.getPixels(8, 0, 3, 1, new int[3], 0, 3));
+        assertOutOfBounds(() -> image.setPixels(0, -1, 1, 1, new int[1], 0, 1));
+        assertOutOfBounds(() -> image.setPixels(0, 0, 3, 2, new int[5], 0, 3));
+        assertOutOfBounds(() -> image.fillPixels(0, 5, 10, 6, RED));
+        assertOutOfBounds(() -> image.copyPixels(new GreenfootImage(2, 2), 0, 0, 3, 3, 0, 0));
+        assertOutOfBounds(() -> image.copyPixels(image, 0, 0, 3, 3, 8, 8));
+    }
+
+    private static void assertOutOfBounds(Runnable r)
+    {
+        try {
+            r.run();
+            fail("Expected an IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2014,2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2014,2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -58,6 +58,18 @@ public class TestObject extends Actor
         return getObjectsInRange(distance, cls);
     }
 
+    @SuppressWarnings("unchecked")
+    public void getNeighboursP(int distance, boolean diagonal, Class cls, List result)
+    {
+        getNeighbours(distance, diagonal, cls, result);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void getObjectsInRangeP(int distance, Class cls, List result)
+    {
+        getObjectsInRange(distance, cls, result);
+    }
+
     public boolean intersectsP(Actor other)
     {
         return intersects(other);
@@ -69,6 +81,12 @@ public class TestObject extends Actor
         return getIntersectingObjects(cls);
     }
 
+    @SuppressWarnings("unchecked")
+    public void getIntersectingObjectsP(Class cls, List result)
+    {
+        getIntersectingObjects(cls, result);
+    }
+
     @SuppressWarnings("unchecked")
     public List getObjectsAtP(int dx, int dy, Class cls)
     {
@@ -0,0 +1,205 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.ActorVisitor;
+import greenfoot.GreenfootImage;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.platforms.ActorDelegate;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the grid collision checker, by checking that it gives the same results
+ * as the default (IBSP) collision checker for the same set of actors.
+ */
+public class GridColCheckerTest extends TestCase
+{
+    private World gridWorld;
+    private World ibspWorld;
+    private List<TestObject> gridActors = new ArrayList<TestObject>();
+    private List<TestObject> ibspActors = new ArrayList<TestObject>();
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        ActorVisitor.setDelegate(null);
+    }
+
+    private void createWorlds(int width, int height, int cellSize)
+    {
+        ActorVisitor.setDelegate(new ActorDelegate() {
+            public GreenfootImage getImage(String name)
+            {
+                return null;
+            }
+
+            public String getProjectProperty(String key, String defaultValue)
+            {
+                return ColManager.CHECKER_PROPERTY.equals(key) ? ColManager.CHECKER_GRID : defaultValue;
+            }
+        });
+        gridWorld = new World(width, height, cellSize, false) {};
+        ActorVisitor.setDelegate(null);
+        ibspWorld = new World(width, height, cellSize, false) {};
+    }
+
+    private void addActorPair(int width, int height, int x, int y, int rotation)
+    {
+        TestObject gridActor = new TestObject(width, height);
+        gridActor.setRotation(rotation);
+        gridWorld.addObject(gridActor, x, y);
+        gridActors.add(gridActor);
+
+        TestObject ibspActor = new TestObject(width, height);
+        ibspActor.setRotation(rotation);
+        ibspWorld.addObject(ibspActor, x, y);
+        ibspActors.add(ibspActor);
+    }
+
+    /**
+     * Map a result list from the IBSP world to the equivalent set of actors in the grid world.
+     */
+    @SuppressWarnings("rawtypes")
+    private HashSet<Object> toGrid(List ibspResult)
+    {
+        HashSet<Object> result = new HashSet<Object>();
+        for (Object o : ibspResult) {
+            result.add(gridActors.get(ibspActors.indexOf(o)));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void checkQueries(int i)
+    {
+        TestObject gridActor = gridActors.get(i);
+        TestObject ibspActor = ibspActors.get(i);
+
+        assertEquals(toGrid(ibspActor.getIntersectingObjectsP(TestObject.class)),
+                new HashSet<Object>(gridActor.getIntersectingObjectsP(TestObject.class)));
+        assertEquals(toGrid(ibspActor.getNeighboursP(2, true, null)),
+                new HashSet<Object>(gridActor.getNeighboursP(2, true, null)));
+        assertEquals(toGrid(ibspActor.getNeighboursP(3, false, null)),
+                new HashSet<Object>(gridActor.getNeighboursP(3, false, null)));
+        assertEquals(toGrid(ibspActor.getObjectsInRangeP(5, null)),
+                new HashSet<Object>(gridActor.getObjectsInRangeP(5, null)));
+        assertEquals(toGrid(ibspActor.getObjectsAtP(1, 0, null)),
+                new HashSet<Object>(gridActor.getObjectsAtP(1, 0, null)));
+        assertEquals(ibspActor.isTouchingP(TestObject.class), gridActor.isTouchingP(TestObject.class));
+        assertEquals(ibspActor.getOneObjectAtP(0, 1, null) == null, gridActor.getOneObjectAtP(0, 1, null) == null);
+
+        checkBufferQueries(gridActor);
+        checkBufferQueries(ibspActor);
+    }
+
+    /**
+     * Check that the queries which store their results in a supplied list give the
+     * same results as those returning a new list.
+     */
+    @SuppressWarnings("unchecked")
+    private void checkBufferQueries(TestObject actor)
+    {
+        List<Object> buffer = new ArrayList<Object>();
+        buffer.add("stale");
+
+        actor.getIntersectingObjectsP(TestObject.class, buffer);
+        assertEquals(new HashSet<Object>(actor.getIntersectingObjectsP(TestObject.class)), new HashSet<Object>(buffer));
+        assertEquals(new HashSet<Object>(buffer).size(), buffer.size());
+
+        actor.getNeighboursP(2, true, null, buffer);
+        assertEquals(new HashSet<Object>(actor.getNeighboursP(2, true, null)), new HashSet<Object>(buffer));
+        assertEquals(new HashSet<Object>(buffer).size(), buffer.size());
+
+        actor.getObjectsInRangeP(5, null, buffer);
+        assertEquals(new HashSet<Object>(actor.getObjectsInRangeP(5, null)), new HashSet<Object>(buffer));
+        assertEquals(new HashSet<Object>(buffer).size(), buffer.size());
+    }
+
+    public void testSameAsIBSP()
+    {
+        createWorlds(100, 80, 2);
+        Random random = new Random(12345);
+
+        for (int i = 0; i < 200; i++) {
+            addActorPair(1 + random.nextInt(30), 1 + random.nextInt(30),
+                    random.nextInt(100), random.nextInt(80), random.nextInt(360));
+        }
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < gridActors.size(); i++) {
+                // Moves may take actors outside the (unbounded) world:
+                int dx = random.nextInt(11) - 5;
+                int dy = random.nextInt(11) - 5;
+                int rotation = random.nextInt(360);
+                gridActors.get(i).setLocation(gridActors.get(i).getX() + dx, gridActors.get(i).getY() + dy);
+                gridActors.get(i).setRotation(rotation);
+                ibspActors.get(i).setLocation(ibspActors.get(i).getX() + dx, ibspActors.get(i).getY() + dy);
+                ibspActors.get(i).setRotation(rotation);
+            }
+            for (int i = 0; i < gridActors.size(); i++) {
+                checkQueries(i);
+            }
+        }
+
+        // Remove half of the actors and check again:
+        for (int i = gridActors.size() - 1; i >= 0; i -= 2) {
+            gridWorld.removeObject(gridActors.remove(i));
+            ibspWorld.removeObject(ibspActors.remove(i));
+        }
+        assertEquals(ibspWorld.getObjects(null).size(), gridWorld.getObjects(null).size());
+        for (int i = 0; i < gridActors.size(); i++) {
+            checkQueries(i);
+        }
+    }
+
+    public void testLargeCells()
+    {
+        createWorlds(10, 10, 60);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y += 2) {
+                addActorPair(60, 60, x, y, 0);
+            }
+        }
+        for (int i = 0; i < gridActors.size(); i++) {
+            checkQueries(i);
+        }
+    }
+}
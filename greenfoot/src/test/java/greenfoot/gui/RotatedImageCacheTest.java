@@ -0,0 +1,160 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.TestUtilDelegate;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that drawing rotated images through the RotatedImageCache gives the same result
+ * as drawing them through a rotated graphics. Where a pixel centre falls exactly on the
+ * edge of a source pixel (which happens at multiples of 45 degrees), rounding may choose
+ * a different source pixel, so a few pixels are allowed to differ along one edge.
+ */
+public class RotatedImageCacheTest extends TestCase
+{
+    private RotatedImageCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        cache = new RotatedImageCache();
+    }
+
+    private static GreenfootImage makeImage(int width, int height)
+    {
+        GreenfootImage image = new GreenfootImage(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setColorAt(x, y, new Color(x * 255 / width, y * 255 / height, 100, 100 + (x + y) % 156));
+            }
+        }
+        return image;
+    }
+
+    public void testSameAsRotatedGraphics()
+    {
+        GreenfootImage[] images = {makeImage(20, 11), makeImage(7, 16)};
+        double[] centres = {30, 30.5};
+        for (GreenfootImage image : images) {
+            for (int transparency : new int[] {255, 128}) {
+                image.setTransparency(transparency);
+                for (double xCenter : centres) {
+                    for (double yCenter : centres) {
+                        for (int rotation = 1; rotation < 360; rotation += 7) {
+                            BufferedImage direct = makeBackground();
+                            Graphics2D g = direct.createGraphics();
+                            AffineTransform oldTx = g.getTransform();
+                            g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                            ImageVisitor.drawImage(image, g, (int) Math.floor(xCenter - image.getWidth() / 2.),
+                                    (int) Math.floor(yCenter - image.getHeight() / 2.), null, true);
+                            g.setTransform(oldTx);
+
+                            BufferedImage cached = makeBackground();
+                            cache.drawRotated(cached.createGraphics(), image, rotation, xCenter, yCenter);
+                            int differences = countDifferences(direct, cached);
+                            assertTrue("rotation " + rotation + " about " + xCenter + ", " + yCenter
+                                    + ": " + differences + " pixels differ",
+                                    differences <= Math.max(image.getWidth(), image.getHeight()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void testChangedImages()
+    {
+        GreenfootImage image = makeImage(10, 10);
+        BufferedImage target = makeBackground();
+
+        // The rotated copy is kept once the image has been drawn twice unchanged:
+        cache.drawRotated(target.createGraphics(), image, 45, 30, 30);
+        assertEquals(0, cache.size());
+        cache.drawRotated(target.createGraphics(), image, 45, 20, 20);
+        assertEquals(1, cache.size());
+        cache.drawRotated(target.createGraphics(), image, 45, 20, 20);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        cache.drawRotated(target.createGraphics(), image, 45, 20.5, 20);
+        assertEquals(3, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        // Once changed, the image needs a new rotated copy:
+        image.setColorAt(0, 0, Color.RED);
+        cache.drawRotated(target.createGraphics(), image, 45, 20, 20);
+        cache.drawRotated(target.createGraphics(), image, 45, 20, 20);
+        assertEquals(5, cache.getMissCount());
+        cache.drawRotated(target.createGraphics(), image, 45, 20, 20);
+        assertEquals(2, cache.getHitCount());
+    }
+
+    public void testImagesChangedEveryFrame()
+    {
+        BufferedImage target = makeBackground();
+
+        // An image changed before each draw, and a new image for each draw:
+        GreenfootImage changing = makeImage(10, 10);
+        for (int i = 0; i < 10; i++) {
+            changing.setColorAt(0, 0, new Color(i, i, i));
+            cache.drawRotated(target.createGraphics(), changing, 45, 20, 20);
+            cache.drawRotated(target.createGraphics(), makeImage(10, 10), 45, 20, 20);
+        }
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.size());
+    }
+
+    private static BufferedImage makeBackground()
+    {
+        BufferedImage image = new BufferedImage(60, 60, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 60; y++) {
+            for (int x = 0; x < 60; x++) {
+                image.setRGB(x, y, 0xff000000 | (x * 4) << 8 | y * 4);
+            }
+        }
+        return image;
+    }
+
+    private static int countDifferences(BufferedImage expected, BufferedImage actual)
+    {
+        int differences = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+}
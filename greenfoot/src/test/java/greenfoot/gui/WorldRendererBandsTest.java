@@ -0,0 +1,142 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that painting the world in bands, in parallel, gives exactly the same image
+ * as painting it serially.
+ */
+public class WorldRendererBandsTest extends TestCase
+{
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 250;
+
+    private ForkJoinPool pool;
+    private WorldRenderer serialRenderer;
+    private WorldRenderer bandRenderer;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        pool = new ForkJoinPool(4);
+        serialRenderer = new WorldRenderer();
+        bandRenderer = new WorldRenderer(pool, 0);
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Render the world with both renderers, and check that the images are identical.
+     */
+    private void checkSameImage(World world, int width, int height)
+    {
+        BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        serialRenderer.renderWorld(world, expected);
+        BufferedImage actual = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        bandRenderer.renderWorld(world, actual);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals("pixel at " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    private TestObject createActor(Random random)
+    {
+        TestObject actor = new TestObject(3 + random.nextInt(40), 3 + random.nextInt(40));
+        GreenfootImage image = actor.getImage();
+        image.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+        image.fill();
+        image.setColor(Color.BLACK);
+        image.drawLine(0, 0, image.getWidth(), image.getHeight());
+        image.setTransparency(random.nextBoolean() ? 255 : random.nextInt(256));
+        return actor;
+    }
+
+    public void testSameAsSerial()
+    {
+        Random random = new Random(2024);
+        World world = new World(WIDTH, HEIGHT, 1) {};
+        GreenfootImage background = new GreenfootImage(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y += 10) {
+            background.setColor(new Color(y, 255 - y, 128));
+            background.fillRect(0, y, WIDTH, 10);
+        }
+        world.setBackground(background);
+
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < 200; i++) {
+            TestObject actor = createActor(random);
+            world.addObject(actor, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            actor.setRotation(random.nextInt(4) == 0 ? 0 : random.nextInt(360));
+            actors.add(actor);
+        }
+        world.showText("Bands", WIDTH / 2, HEIGHT / 2);
+        checkSameImage(world, WIDTH, HEIGHT);
+
+        // Actors whose images have changed size since they were set:
+        for (int i = 0; i < 20; i++) {
+            actors.get(i).getImage().scale(60, 60);
+        }
+        // And which have just been drawn on:
+        for (int i = 20; i < 40; i++) {
+            actors.get(i).getImage().drawRect(1, 1, 2, 2);
+        }
+        checkSameImage(world, WIDTH, HEIGHT);
+    }
+
+    public void testLargeCells()
+    {
+        Random random = new Random(77);
+        World world = new World(30, 25, 10) {};
+        for (int i = 0; i < 100; i++) {
+            TestObject actor = createActor(random);
+            world.addObject(actor, random.nextInt(30), random.nextInt(25));
+            actor.setRotation(random.nextInt(8) * 45);
+        }
+        checkSameImage(world, 300, 250);
+    }
+}
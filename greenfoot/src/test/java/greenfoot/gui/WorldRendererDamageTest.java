@@ -0,0 +1,192 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that the damage recorded by the WorldRenderer covers every pixel which
+ * changes between renders.
+ */
+public class WorldRendererDamageTest extends TestCase
+{
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    private World world;
+    private WorldRenderer renderer;
+    private BufferedImage lastImage;
+    private TileDamage damage;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = new World(WIDTH, HEIGHT, 1) {};
+        renderer = new WorldRenderer();
+        damage = new TileDamage(WIDTH, HEIGHT);
+        damage.clear();
+        lastImage = render();
+        assertEquals(damage.getTileCount(), damage.getDamagedCount());
+    }
+
+    private BufferedImage render()
+    {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        renderer.renderWorld(world, image, damage);
+        return image;
+    }
+
+    /**
+     * Render the world again, and check that all pixels which changed since the
+     * last render are within the damaged tiles.
+     */
+    private void checkDamage()
+    {
+        damage.clear();
+        BufferedImage image = render();
+        TileDamage changed = new TileDamage(WIDTH, HEIGHT);
+        changed.clear();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (image.getRGB(x, y) != lastImage.getRGB(x, y)) {
+                    changed.damage(x, y, 1, 1);
+                }
+            }
+        }
+        // Adding the damage must not increase the changed tiles:
+        changed.add(damage);
+        assertEquals(damage.getDamagedCount(), changed.getDamagedCount());
+        lastImage = image;
+    }
+
+    private TestObject createActor(Random random)
+    {
+        TestObject actor = new TestObject(3 + random.nextInt(20), 3 + random.nextInt(20));
+        actor.getImage().setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+        actor.getImage().fill();
+        return actor;
+    }
+
+    public void testDamageCoversChanges()
+    {
+        Random random = new Random(4242);
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < 30; i++) {
+            TestObject actor = createActor(random);
+            world.addObject(actor, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            actors.add(actor);
+        }
+        checkDamage();
+
+        for (int round = 0; round < 50; round++) {
+            TestObject actor = actors.get(random.nextInt(actors.size()));
+            switch (random.nextInt(6)) {
+                case 0:
+                    actor.setLocation(actor.getX() + random.nextInt(21) - 10, actor.getY() + random.nextInt(21) - 10);
+                    break;
+                case 1:
+                    actor.setRotation(random.nextInt(360));
+                    break;
+                case 2:
+                    world.removeObject(actor);
+                    actors.remove(actor);
+                    TestObject newActor = createActor(random);
+                    world.addObject(newActor, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+                    actors.add(newActor);
+                    break;
+                case 3:
+                    actor.getImage().setColor(Color.BLACK);
+                    actor.getImage().drawLine(0, 0, 2, 2);
+                    break;
+                case 4:
+                    actor.getImage().setTransparency(random.nextInt(256));
+                    break;
+                case 5:
+                    actor.setImage(new TestObject(5, 5).getImage());
+                    break;
+            }
+            checkDamage();
+        }
+    }
+
+    public void testSmallMoveGivesSmallDamage()
+    {
+        TestObject actor = new TestObject(10, 10);
+        world.addObject(actor, 50, 50);
+        checkDamage();
+
+        actor.setLocation(52, 50);
+        checkDamage();
+        assertTrue(damage.getDamagedCount() > 0);
+        assertTrue(damage.getDamagedCount() <= 4);
+
+        // Nothing changed:
+        checkDamage();
+        assertTrue(damage.isEmpty());
+    }
+
+    public void testWorldChangesDamageAll()
+    {
+        world.getBackground().setColor(Color.RED);
+        world.getBackground().fillRect(0, 0, 5, 5);
+        checkDamage();
+        assertEquals(damage.getTileCount(), damage.getDamagedCount());
+
+        world.showText("Hello", 10, 10);
+        checkDamage();
+        assertEquals(damage.getTileCount(), damage.getDamagedCount());
+    }
+
+    public void testRects()
+    {
+        TileDamage tiles = new TileDamage(100, 40);
+        tiles.clear();
+        tiles.damage(0, 0, 1, 1);
+        tiles.damage(40, 35, 60, 10);
+        int[] rects = new int[tiles.getDamagedCount() * 4];
+        assertEquals(2, tiles.getRects(rects));
+        assertEquals(0, rects[0]);
+        assertEquals(0, rects[1]);
+        assertEquals(TileDamage.TILE_SIZE, rects[2]);
+        assertEquals(TileDamage.TILE_SIZE, rects[3]);
+        // Second rect is tiles 1 to 3 of the second row, clipped to the image:
+        assertEquals(TileDamage.TILE_SIZE, rects[4]);
+        assertEquals(TileDamage.TILE_SIZE, rects[5]);
+        assertEquals(100 - TileDamage.TILE_SIZE, rects[6]);
+        assertEquals(40 - TileDamage.TILE_SIZE, rects[7]);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that a snapshot of a world, taken with copies of the images, renders the world
+ * as it was when the snapshot was taken.
+ */
+public class WorldSnapshotTest extends TestCase
+{
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 80;
+
+    private World world;
+    private TestObject actor;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = new World(WIDTH, HEIGHT, 1) {};
+        actor = new TestObject(20, 10);
+        actor.getImage().setColor(Color.RED);
+        actor.getImage().fill();
+        world.addObject(actor, 30, 30);
+        world.addObject(new TestObject(15, 15), 35, 30);
+        world.showText("Snap", 50, 60);
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual)
+    {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("pixel at " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testSnapshotUnaffectedByChanges()
+    {
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        new WorldRenderer().renderWorld(world, expected);
+        WorldSnapshot snapshot = WorldSnapshot.take(world, null, true);
+
+        actor.getImage().setColor(Color.BLUE);
+        actor.getImage().fillRect(0, 0, 5, 5);
+        actor.setLocation(60, 20);
+        actor.setRotation(30);
+        world.showText(null, 50, 60);
+        world.getBackground().fill();
+
+        BufferedImage actual = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        new WorldRenderer().renderSnapshot(snapshot, actual, null);
+        assertSameImage(expected, actual);
+        assertEquals(Color.BLUE, actor.getImage().getColorAt(1, 1));
+    }
+
+    public void testUnchangedImagesCarriedOver()
+    {
+        WorldSnapshot first = WorldSnapshot.take(world, null, true);
+        WorldSnapshot second = WorldSnapshot.take(world, first, true);
+        assertEquals(2, second.getActorCount());
+        assertSame(first.getImage(0), second.getImage(0));
+        assertSame(first.getBackground(), second.getBackground());
+
+        actor.getImage().drawLine(0, 0, 3, 3);
+        WorldSnapshot third = WorldSnapshot.take(world, second, true);
+        int index = third.getActor(0) == actor ? 0 : 1;
+        assertTrue(second.getImage(index) != third.getImage(index));
+        assertSame(second.getImage(1 - index), third.getImage(1 - index));
+    }
+
+    public void testDamageFromSnapshots()
+    {
+        WorldRenderer renderer = new WorldRenderer();
+        TileDamage damage = new TileDamage(WIDTH, HEIGHT);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        WorldSnapshot snapshot = WorldSnapshot.take(world, null, true);
+        renderer.renderSnapshot(snapshot, image, damage);
+
+        // Nothing has changed, so nothing is damaged:
+        damage.clear();
+        snapshot = WorldSnapshot.take(world, snapshot, true);
+        renderer.renderSnapshot(snapshot, image, damage);
+        assertEquals(0, damage.getDamagedCount());
+
+        actor.getImage().drawLine(0, 0, 3, 3);
+        snapshot = WorldSnapshot.take(world, snapshot, true);
+        renderer.renderSnapshot(snapshot, image, damage);
+        assertTrue(damage.getDamagedCount() > 0);
+        assertTrue(damage.getDamagedCount() < damage.getTileCount());
+    }
+}
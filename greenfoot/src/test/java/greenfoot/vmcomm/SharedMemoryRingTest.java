@@ -0,0 +1,145 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the shared memory ring buffer used to send commands between VMs.
+ */
+public class SharedMemoryRingTest extends TestCase
+{
+    private static final int HEAD_POS = 0;
+    private static final int TAIL_POS = 16;
+    private static final int DATA_POS = 32;
+    private static final int CAPACITY = 16;
+
+    private ByteBuffer buffer;
+    private SharedMemoryRing producer;
+    private SharedMemoryRing consumer;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        buffer = ByteBuffer.allocateDirect((DATA_POS + CAPACITY) * 4);
+        producer = new SharedMemoryRing(buffer, HEAD_POS, TAIL_POS, DATA_POS, CAPACITY);
+        consumer = new SharedMemoryRing(buffer.duplicate(), HEAD_POS, TAIL_POS, DATA_POS, CAPACITY);
+    }
+
+    public void testPublishAndWrap()
+    {
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 20; round++) {
+            assertTrue(producer.hasSpace(10));
+            for (int i = 0; i < 10; i++) {
+                producer.put(next++);
+            }
+            // Nothing is visible until published:
+            assertEquals(0, consumer.available());
+            producer.publish();
+            assertEquals(10, consumer.available());
+
+            // The ring can't take another 10 until the consumer releases:
+            assertFalse(producer.hasSpace(10));
+            assertTrue(producer.hasSpace(CAPACITY - 10));
+            for (int i = 0; i < 10; i++) {
+                assertEquals(expected++, consumer.get());
+            }
+            assertFalse(producer.hasSpace(10));
+            consumer.release();
+            assertTrue(producer.hasSpace(CAPACITY));
+        }
+    }
+
+    public void testReset()
+    {
+        producer.put(1);
+        producer.publish();
+        consumer.get();
+        consumer.release();
+
+        // Zero the buffer, as the server VM does when the debug VM terminates:
+        buffer.clear();
+        buffer.put(new byte[buffer.capacity()]);
+        producer.reset();
+        consumer.reset();
+        assertEquals(0, consumer.available());
+        producer.put(2);
+        producer.publish();
+        assertEquals(1, consumer.available());
+        assertEquals(2, consumer.get());
+    }
+
+    public void testCapacityMustBePowerOfTwo()
+    {
+        try {
+            new SharedMemoryRing(buffer, HEAD_POS, TAIL_POS, DATA_POS, 12);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testBetweenThreads()
+        throws InterruptedException
+    {
+        final int count = 100000;
+        final boolean[] ok = new boolean[] {true};
+        Thread consumerThread = new Thread() {
+            public void run()
+            {
+                int expected = 0;
+                for (int attempt = 0; expected < count; attempt++) {
+                    if (consumer.available() == 0) {
+                        SharedMemoryRing.backOff(attempt);
+                        continue;
+                    }
+                    attempt = 0;
+                    while (consumer.available() > 0) {
+                        ok[0] &= consumer.get() == expected++;
+                    }
+                    consumer.release();
+                }
+            }
+        };
+        consumerThread.start();
+
+        int attempt = 0;
+        for (int i = 0; i < count; ) {
+            if (!producer.hasSpace(1)) {
+                SharedMemoryRing.backOff(attempt++);
+                continue;
+            }
+            attempt = 0;
+            producer.put(i++);
+            producer.publish();
+        }
+        consumerThread.join(10000);
+        assertFalse(consumerThread.isAlive());
+        assertTrue(ok[0]);
+    }
+}